@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.jackson.EpochTimestampDeserializer;
+import com.github.storeconnect.sensors.api.server.injector.jackson.JsonArrayIterator;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the flat-motion parsing stages. Each operation processes a whole dataset of {@link #size} observations.
+ *
+ * @author Aurelien Bourdon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FlatMotionParsingBenchmark {
+
+    private static final long SEED = 42L;
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"20"})
+    public int sensors;
+
+    private File input;
+    private FlatMotionObservationInjector injector;
+    private FlatMotionObservationInjector parallelInjector;
+    private ObjectReader appUserIdReader;
+    private ObjectReader epochTimestampReader;
+    private byte[][] rawAppUserIds;
+    private byte[][] rawDeviceDates;
+
+    @Setup
+    public void setUp() throws IOException, URISyntaxException {
+        input = File.createTempFile("flat-motion-benchmark", ".json");
+        FlatMotionDatasets.write(input, size, sensors, SEED);
+        injector = new FlatMotionObservationInjector(input, new SensorThingsService(new URL("http://localhost/v1.0/")));
+        final InjectorConfiguration parallelConfiguration = new InjectorConfiguration();
+        parallelConfiguration.setParseThreads(Runtime.getRuntime().availableProcessors());
+        parallelInjector = new FlatMotionObservationInjector(input, new InjectionContext(new SensorThingsService(new URL("http://localhost/v1.0/")), parallelConfiguration));
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        appUserIdReader = objectMapper.readerFor(AppUserId.class);
+        epochTimestampReader = new ObjectMapper()
+                .registerModule(new SimpleModule().addDeserializer(Instant.class, new EpochTimestampDeserializer()))
+                .readerFor(Instant.class);
+
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(size, sensors, SEED);
+        rawAppUserIds = new byte[size][];
+        rawDeviceDates = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            final FlatMotionObservation observation = observations.get(i);
+            rawAppUserIds[i] = String.format("\"%s_%s_%d\"", observation.getAppUserId().getSensor(), observation.getAppUserId().getSequence(), observation.getAppUserId().getId())
+                    .getBytes(StandardCharsets.UTF_8);
+            rawDeviceDates[i] = Long.toString(observation.getDeviceDate().toEpochMilli()).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input.toPath());
+    }
+
+    @Benchmark
+    public void appUserIdDeserializer(final Blackhole blackhole) throws IOException {
+        for (final byte[] rawAppUserId : rawAppUserIds) {
+            blackhole.consume(appUserIdReader.<AppUserId>readValue(rawAppUserId));
+        }
+    }
+
+    @Benchmark
+    public void epochTimestampDeserializer(final Blackhole blackhole) throws IOException {
+        for (final byte[] rawDeviceDate : rawDeviceDates) {
+            blackhole.consume(epochTimestampReader.<Instant>readValue(rawDeviceDate));
+        }
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) throws IOException {
+        try (final Stream<FlatMotionObservation> observations = injector.parse(input)) {
+            observations.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void parseInParallel(final Blackhole blackhole) throws IOException {
+        try (final Stream<FlatMotionObservation> observations = parallelInjector.parse(input)) {
+            observations.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void parseWithDatabind(final Blackhole blackhole) throws IOException {
+        try (final JsonArrayIterator<FlatMotionObservation> observations = new JsonArrayIterator<>(ObjectMapperFactory.get().getFactory().createParser(input), FlatMotionObservation.class)) {
+            observations.forEachRemaining(blackhole::consume);
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.storeconnect.sensors.api.client.model.ObservedProperties;
+import com.github.storeconnect.sensors.api.client.model.builder.DatastreamBuilder;
+import com.github.storeconnect.sensors.api.client.model.builder.FeatureOfInterestBuilder;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatch;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatcher;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.model.Things;
+import com.github.storeconnect.sensors.api.server.injector.model.UnitOfMeasurements;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.FeatureOfInterest;
+import de.fraunhofer.iosb.ilt.sta.model.IdLong;
+import de.fraunhofer.iosb.ilt.sta.model.Sensor;
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayDocument;
+import de.fraunhofer.iosb.ilt.sta.model.builder.SensorBuilder;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks of the flat-motion transformation stages, from parsed observations to the model sent to server.
+ * Server entities are resolved in memory, so that only the transformation cost is measured. Each operation processes a whole dataset of {@link #size} observations.
+ * <p>
+ * The {@code write*} benchmarks compare the request bodies built from client model objects with the streamed ones, from columns to serialized bytes (discarded).
+ *
+ * @author Aurelien Bourdon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FlatMotionTransformationBenchmark {
+
+    private static final long SEED = 42L;
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"20"})
+    public int sensors;
+
+    private FlatMotionObservationInjector injector;
+    private List<FlatMotionObservation> observations;
+    private FlatMotionObservationColumns columns;
+    private DataArrayBatcher batcher;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() throws MalformedURLException, URISyntaxException {
+        final SensorThingsService sensorThingsService = new SensorThingsService(new URL("http://localhost/v1.0/"));
+        final InjectionContext context = new InjectionContext(sensorThingsService, new InjectorConfiguration());
+        context.getShared(FlatMotionEntityResolver.class, () -> new InMemoryEntityResolver(sensorThingsService));
+        injector = new FlatMotionObservationInjector(new File("benchmark"), context);
+        observations = FlatMotionDatasets.generate(size, sensors, SEED);
+        columns = FlatMotionObservationColumns.of(observations);
+        batcher = new DataArrayBatcher(InjectorConfiguration.DEFAULT_BATCH_SIZE, InjectorConfiguration.DEFAULT_BATCH_MAX_BYTES, FlatMotionObservationInjector::newDataArrayValue);
+        objectMapper = ObjectMapperFactory.get();
+    }
+
+    @Benchmark
+    public FlatMotionObservationColumns toColumns() {
+        return FlatMotionObservationColumns.of(observations);
+    }
+
+    @Benchmark
+    public DataArrayDocument toDataArrayDocument() throws ServiceFailureException {
+        return injector.toDataArrayDocument(columns);
+    }
+
+    @Benchmark
+    public FlatMotionDataArraySource toDataArraySource() throws ServiceFailureException {
+        return injector.toDataArraySource(columns);
+    }
+
+    @Benchmark
+    public void writeDataArrayDocument() throws ServiceFailureException, IOException {
+        for (final DataArrayBatch batch : batcher.split(injector.toDataArrayDocument(columns))) {
+            objectMapper.writeValue(NullOutputStream.INSTANCE, batch.getDocument().getValue());
+        }
+    }
+
+    @Benchmark
+    public void writeDataArraySource() throws ServiceFailureException, IOException {
+        for (final DataArrayBatch batch : batcher.split(injector.toDataArraySource(columns))) {
+            try (final JsonGenerator generator = objectMapper.getFactory().createGenerator(NullOutputStream.INSTANCE)) {
+                batch.getWriter().write(generator);
+            }
+        }
+    }
+
+    @Benchmark
+    public void newObservation(final Blackhole blackhole) throws ServiceFailureException {
+        for (final FlatMotionObservation observation : observations) {
+            blackhole.consume(injector.newObservation(observation));
+        }
+    }
+
+    /**
+     * {@link OutputStream} that discards written bytes
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+
+    }
+
+    /**
+     * {@link FlatMotionEntityResolver} that creates entities in memory instead of requesting server
+     */
+    private static final class InMemoryEntityResolver extends FlatMotionEntityResolver {
+
+        private final AtomicLong ids = new AtomicLong();
+
+        private InMemoryEntityResolver(final SensorThingsService sensorThingsService) {
+            super(sensorThingsService);
+        }
+
+        @Override
+        protected Sensor getOrCreateSensor(final String name) {
+            final Sensor sensor = SensorBuilder.builder()
+                    .name(name)
+                    .description(name)
+                    .build();
+            sensor.setId(new IdLong(ids.incrementAndGet()));
+            return sensor;
+        }
+
+        @Override
+        protected Datastream getOrCreateDatastream(final Sensor sensor) {
+            final Datastream datastream = DatastreamBuilder.builder()
+                    .name(sensor.getName())
+                    .description(sensor.getName())
+                    .observedProperty(ObservedProperties.MOTION)
+                    .unitOfMeasurement(UnitOfMeasurements.UNKNOWN)
+                    .sensor(sensor)
+                    .thing(Things.UNKNOWN)
+                    .build();
+            datastream.setId(new IdLong(ids.incrementAndGet()));
+            return datastream;
+        }
+
+        @Override
+        protected FeatureOfInterest getOrCreateFeatureOfInterest(final Integer venueId) {
+            final FeatureOfInterest featureOfInterest = FeatureOfInterestBuilder.builder()
+                    .name(String.valueOf(venueId))
+                    .description(String.valueOf(venueId))
+                    .build();
+            featureOfInterest.setId(new IdLong(ids.incrementAndGet()));
+            return featureOfInterest;
+        }
+
+    }
+
+}
@@ -19,14 +19,26 @@ import com.beust.jcommander.IValueValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.validators.PositiveInteger;
 import com.github.storeconnect.sensors.api.server.injector.format.FormatInjectorManager;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionSummary;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.http.HttpTransport;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.util.InputUtils;
+import com.github.storeconnect.sensors.api.server.injector.watch.InboxWatcher;
 import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +49,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class Application {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
+
     private ApplicationIdentification applicationIdentification;
     private ApplicationArguments applicationArguments;
 
@@ -70,6 +84,7 @@ public class Application {
         );
         try {
             jCommander.parse(rawArgs);
+            applicationArguments.validate();
         } catch (final ParameterException e) {
             JCommander.getConsole().println("Command line error: " + e.getMessage());
             jCommander.usage();
@@ -81,20 +96,150 @@ public class Application {
      * {@link Application}'s execution entry point
      */
     public void execute() {
-        try {
-            // Inject data based on the user arguments
-            FormatInjectorManager.getInstance().handle(
-                    applicationArguments.getDataFormat(),
-                    new File(URI.create(applicationArguments.getFileInputPath().toString())),
-                    new SensorThingsService(applicationArguments.getEndpoint())
-            );
-            // Wait long enough for injection to complete
-            FormatInjectorManager.getInstance().awaitTermination(1, TimeUnit.DAYS);
+        final MetricsRegistry metrics = new MetricsRegistry();
+        if (applicationArguments.isMetricsJmx()) {
+            metrics.registerMBean();
+        }
+        final InjectorConfiguration configuration = toInjectorConfiguration(applicationArguments);
+        try (final HttpTransport httpTransport = new HttpTransport(configuration, metrics)) {
+            final SensorThingsService sensorThingsService = new SensorThingsService(applicationArguments.getEndpoint());
+            sensorThingsService.setClient(httpTransport.getClient());
+            final InjectionContext context = new InjectionContext(sensorThingsService, configuration, metrics);
+            if (applicationArguments.isWatch()) {
+                watch(context);
+                return;
+            }
+            // Inject data based on the user arguments, by sharing the same context between all inputs
+            for (final File input : InputUtils.resolve(applicationArguments.getFileInputPaths())) {
+                FormatInjectorManager.getInstance().handle(applicationArguments.getDataFormat(), input, context);
+            }
+            // Wait long enough for injection to complete, or until terminated when following inputs
+            final List<InjectionSummary> summaries = configuration.isFollow()
+                    ? executeUntilTerminated(context::requestStop, () -> FormatInjectorManager.getInstance().awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS))
+                    : FormatInjectorManager.getInstance().awaitTermination(1, TimeUnit.DAYS);
+            final long failures = summaries.stream().filter(summary -> !summary.isSucceeded()).count();
+            if (failures > 0) {
+                throw new IllegalStateException(String.format("%d of %d injection%s failed", failures, summaries.size(), summaries.size() > 1 ? "s" : ""));
+            }
         } catch (final URISyntaxException e) {
             throw new IllegalArgumentException("Endpoint URI is not valid", e);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to resolve inputs", e);
         } catch (final InterruptedException e) {
             throw new IllegalStateException("Cannot wait until injector finished", e);
+        } finally {
+            metrics.unregisterMBean();
+            writeMetricsReport(metrics, applicationArguments.getMetricsReport());
+        }
+    }
+
+    private void watch(final InjectionContext context) throws IOException, InterruptedException {
+        final Path inbox = applicationArguments.getWatchInbox().toPath();
+        final Path doneDirectory = applicationArguments.getWatchDoneDirectory() != null ? applicationArguments.getWatchDoneDirectory().toPath() : inbox.resolve(InboxWatcher.DEFAULT_DONE_DIRECTORY_NAME);
+        final Path failedDirectory = applicationArguments.getWatchFailedDirectory() != null ? applicationArguments.getWatchFailedDirectory().toPath() : inbox.resolve(InboxWatcher.DEFAULT_FAILED_DIRECTORY_NAME);
+        final InboxWatcher watcher = new InboxWatcher(
+                inbox,
+                doneDirectory,
+                failedDirectory,
+                input -> FormatInjectorManager.getInstance().newInjector(applicationArguments.getDataFormat(), input, context),
+                context.getConfiguration().getWorkers(),
+                context.getMetrics()
+        );
+        executeUntilTerminated(watcher::close, () -> {
+            watcher.run();
+            return null;
+        });
+    }
+
+    /**
+     * Execute the given {@link Execution} that would run indefinitely otherwise, by stopping it on termination signal but letting it complete gracefully, so that metrics report is still written
+     *
+     * @param stop      how to ask the given {@link Execution} to stop
+     * @param execution the {@link Execution} to execute
+     * @param <R>       the type of the {@link Execution}'s result
+     * @return the {@link Execution}'s result
+     */
+    private static <R> R executeUntilTerminated(final Runnable stop, final Execution<R> execution) throws IOException, InterruptedException {
+        final Thread executingThread = Thread.currentThread();
+        final Thread shutdownHook = new Thread(() -> {
+            stop.run();
+            try {
+                executingThread.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "graceful-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try {
+            return execution.execute();
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (final IllegalStateException e) {
+                // Execution stopped because of termination signal, hook is already waiting for this thread to complete
+            }
+        }
+    }
+
+    /**
+     * An execution that can be stopped by {@link #executeUntilTerminated(Runnable, Execution)}
+     *
+     * @param <R> the type of the execution's result
+     */
+    @FunctionalInterface
+    private interface Execution<R> {
+
+        R execute() throws IOException, InterruptedException;
+
+    }
+
+    private static void writeMetricsReport(final MetricsRegistry metrics, final File metricsReport) {
+        if (metricsReport == null) {
+            return;
         }
+        try {
+            LOGGER.info("Writing metrics report to {}...", metricsReport);
+            metrics.writeReport(metricsReport);
+            LOGGER.info("Writing metrics report to {}... Done.", metricsReport);
+        } catch (final IOException e) {
+            LOGGER.error("Unable to write metrics report to {}", metricsReport, e);
+        }
+    }
+
+    private static InjectorConfiguration toInjectorConfiguration(final ApplicationArguments applicationArguments) {
+        final InjectorConfiguration configuration = new InjectorConfiguration();
+        configuration.setBatchSize(applicationArguments.getBatchSize());
+        configuration.setBatchMaxBytes(applicationArguments.getBatchMaxBytes());
+        configuration.setConcurrentRequests(applicationArguments.getConcurrentRequests());
+        configuration.setWorkers(applicationArguments.getWorkers());
+        configuration.setResume(applicationArguments.isResume());
+        configuration.setCheckpointDirectory(applicationArguments.getCheckpointDirectory());
+        configuration.setPrefetchPageSize(applicationArguments.getPrefetchPageSize());
+        configuration.setParseThreads(applicationArguments.getParseThreads());
+        configuration.setReplaySpeed(applicationArguments.getReplaySpeed());
+        configuration.setReplayWindow(applicationArguments.getReplayWindow());
+        configuration.setDedupWindow(applicationArguments.getDedupWindow());
+        configuration.setTrackMinInterval(applicationArguments.getTrackMinInterval());
+        configuration.setTrackMinDistance(applicationArguments.getTrackMinDistance());
+        configuration.setTrackTolerance(applicationArguments.getTrackTolerance());
+        configuration.setSendRetries(applicationArguments.getSendRetries());
+        configuration.setSendRetryBackoff(applicationArguments.getSendRetryBackoff());
+        configuration.setCircuitBreakerThreshold(applicationArguments.getCircuitBreakerThreshold());
+        configuration.setCircuitBreakerCooldown(applicationArguments.getCircuitBreakerCooldown());
+        configuration.setDeadLetter(applicationArguments.isDeadLetter());
+        configuration.setDeadLetterDirectory(applicationArguments.getDeadLetterDirectory());
+        configuration.setAdaptiveSending(applicationArguments.isAdaptiveSending());
+        configuration.setAdaptiveLatencyTolerance(applicationArguments.getAdaptiveLatencyTolerance());
+        configuration.setStreamingRequests(applicationArguments.isStreamingRequests());
+        configuration.setFollow(applicationArguments.isFollow());
+        configuration.setFollowLinger(applicationArguments.getFollowLinger());
+        configuration.setFollowPollInterval(applicationArguments.getFollowPollInterval());
+        configuration.setHttpMaxConnections(applicationArguments.getHttpMaxConnections());
+        configuration.setHttpConnectTimeout(applicationArguments.getHttpConnectTimeout());
+        configuration.setHttpSocketTimeout(applicationArguments.getHttpSocketTimeout());
+        configuration.setHttpKeepAlive(applicationArguments.getHttpKeepAlive());
+        configuration.setHttpTcpNoDelay(applicationArguments.isHttpTcpNoDelay());
+        return configuration;
     }
 
     /**
@@ -143,8 +288,10 @@ public class Application {
      */
     public static final class ApplicationArguments {
 
-        @Parameter(names = {"-i", "--input"}, description = "URL to the file containing data to inject to the StoreConnect Sensor API's server", required = true)
-        private URL fileInputPath;
+        private static final String FOLLOWED_DATA_FORMAT = "flat-motion-ndjson";
+
+        @Parameter(names = {"-i", "--input"}, description = "URL(s) to the file(s) containing data to inject to the StoreConnect Sensor API's server. Can be a file, a directory or a glob pattern within the last path segment. Can be repeated or comma-separated", required = true)
+        private List<URL> fileInputPaths;
 
         @Parameter(names = {"-e", "--endpoint"}, description = "Endpoint URL to the StoreConnect Sensors API's server", required = true)
         private URL endpoint;
@@ -152,8 +299,116 @@ public class Application {
         @Parameter(names = {"-f", "--data-format"}, description = "The data format to inject", validateValueWith = DataFormatValueValidator.class, required = true)
         private String dataFormat;
 
-        public URL getFileInputPath() {
-            return fileInputPath;
+        @Parameter(names = {"--batch-size"}, description = "Maximum number of observations to send within a single request", validateValueWith = StrictlyPositiveIntegerValueValidator.class)
+        private int batchSize = InjectorConfiguration.DEFAULT_BATCH_SIZE;
+
+        @Parameter(names = {"--batch-max-bytes"}, description = "Maximum serialized size, in bytes, of the observations to send within a single request", validateValueWith = PositiveLongValueValidator.class)
+        private long batchMaxBytes = InjectorConfiguration.DEFAULT_BATCH_MAX_BYTES;
+
+        @Parameter(names = {"--concurrent-requests"}, description = "Maximum number of requests to keep in flight at the same time when sending observations", validateValueWith = StrictlyPositiveIntegerValueValidator.class)
+        private int concurrentRequests = InjectorConfiguration.DEFAULT_CONCURRENT_REQUESTS;
+
+        @Parameter(names = {"-w", "--workers"}, description = "Maximum number of inputs to inject at the same time", validateValueWith = StrictlyPositiveIntegerValueValidator.class)
+        private int workers = InjectorConfiguration.DEFAULT_WORKERS;
+
+        @Parameter(names = {"--resume"}, description = "Skip the batches already acknowledged by server during a previous interrupted injection of the same input")
+        private boolean resume;
+
+        @Parameter(names = {"--checkpoint-directory"}, description = "Directory where to store checkpoint journals. Default to the directory of each input")
+        private File checkpointDirectory;
+
+        @Parameter(names = {"--prefetch-page-size"}, description = "Number of entities to request per page when prefetching existing Sensors, Datastreams and FeaturesOfInterest at startup. 0 disables prefetching", validateWith = PositiveInteger.class)
+        private int prefetchPageSize = InjectorConfiguration.DEFAULT_PREFETCH_PAGE_SIZE;
+
+        @Parameter(names = {"--parse-threads"}, description = "Number of threads to use to parse a single uncompressed input, while keeping its order", validateValueWith = StrictlyPositiveIntegerValueValidator.class)
+        private int parseThreads = InjectorConfiguration.DEFAULT_PARSE_THREADS;
+
+        @Parameter(names = {"--replay-speed"}, description = "Send observations at the pace they have been recorded, sped up by the given factor (e.g., 1 for real time, 10 for 10 times faster). 0 sends observations as fast as possible", validateValueWith = PositiveDoubleValueValidator.class)
+        private double replaySpeed = InjectorConfiguration.DEFAULT_REPLAY_SPEED;
+
+        @Parameter(names = {"--replay-window"}, description = "Wall-clock time span, in milliseconds, within which observations due at the same time are sent together when replaying", validateValueWith = PositiveLongValueValidator.class)
+        private long replayWindow = InjectorConfiguration.DEFAULT_REPLAY_WINDOW;
+
+        @Parameter(names = {"--dedup-window"}, description = "Width, in milliseconds, of the sliding window of recording dates within which duplicate observations are dropped. 0 keeps duplicates", validateWith = PositiveInteger.class)
+        private int dedupWindow = InjectorConfiguration.DEFAULT_DEDUP_WINDOW;
+
+        @Parameter(names = {"--track-min-interval"}, description = "Minimum interval, in milliseconds, between two sent observations of a same track. 0 sends all of them", validateWith = PositiveInteger.class)
+        private int trackMinInterval = InjectorConfiguration.DEFAULT_TRACK_MIN_INTERVAL;
+
+        @Parameter(names = {"--track-min-distance"}, description = "Minimum distance, in meters, between two sent observations of a same track. 0 sends all of them", validateValueWith = PositiveDoubleValueValidator.class)
+        private double trackMinDistance = InjectorConfiguration.DEFAULT_TRACK_MIN_DISTANCE;
+
+        @Parameter(names = {"--track-tolerance"}, description = "Maximum distance, in meters, between a dropped observation and the simplified trajectory of its track. 0 disables trajectory simplification", validateValueWith = PositiveDoubleValueValidator.class)
+        private double trackTolerance = InjectorConfiguration.DEFAULT_TRACK_TOLERANCE;
+
+        @Parameter(names = {"--send-retries"}, description = "Maximum number of times a batch is sent again after a failed request. As server may have created observations of a request that timed out or got a server error, retries may duplicate observations. 0 never sends a batch again", validateWith = PositiveInteger.class)
+        private int sendRetries = InjectorConfiguration.DEFAULT_SEND_RETRIES;
+
+        @Parameter(names = {"--send-retry-backoff"}, description = "Initial delay, in milliseconds, before sending again a batch after a failed request. Delay doubles after each failed request, and is randomized", validateValueWith = PositiveLongValueValidator.class)
+        private long sendRetryBackoff = InjectorConfiguration.DEFAULT_SEND_RETRY_BACKOFF;
+
+        @Parameter(names = {"--circuit-breaker-threshold"}, description = "Number of consecutive failed requests after which all requests are paused. 0 never pauses requests", validateWith = PositiveInteger.class)
+        private int circuitBreakerThreshold = InjectorConfiguration.DEFAULT_CIRCUIT_BREAKER_THRESHOLD;
+
+        @Parameter(names = {"--circuit-breaker-cooldown"}, description = "Time, in milliseconds, during which requests are paused once too many consecutive requests failed, before probing server again", validateValueWith = PositiveLongValueValidator.class)
+        private long circuitBreakerCooldown = InjectorConfiguration.DEFAULT_CIRCUIT_BREAKER_COOLDOWN;
+
+        @Parameter(names = {"--dead-letter"}, description = "Write the batches still failing after retries to a dead-letter file, from which they can be injected again, instead of failing injection")
+        private boolean deadLetter;
+
+        @Parameter(names = {"--dead-letter-directory"}, description = "Directory where to write dead-letter files. Default to the directory of each input")
+        private File deadLetterDirectory;
+
+        @Parameter(names = {"--adaptive-sending"}, description = "Tune the number of observations per request and the number of requests in flight according to server latency and errors, up to --batch-size and --concurrent-requests. Cannot be used with --resume or --checkpoint-directory")
+        private boolean adaptiveSending;
+
+        @Parameter(names = {"--adaptive-latency-tolerance"}, description = "Factor by which the recent average latency of requests can exceed the long-term one before backing off, when sending adaptively. Must be greater than 1")
+        private double adaptiveLatencyTolerance = InjectorConfiguration.DEFAULT_ADAPTIVE_LATENCY_TOLERANCE;
+
+        @Parameter(names = {"--streaming-requests"}, description = "Write observations straight to requests while they are being sent, instead of first building them as client model objects")
+        private boolean streamingRequests;
+
+        @Parameter(names = {"--http-max-connections"}, description = "Maximum number of HTTP connections to keep open to server. 0 sizes the connection pool to the number of workers times the number of concurrent requests, plus one per worker", validateWith = PositiveInteger.class)
+        private int httpMaxConnections = InjectorConfiguration.DEFAULT_HTTP_MAX_CONNECTIONS;
+
+        @Parameter(names = {"--http-connect-timeout"}, description = "Time, in milliseconds, to wait for a connection to server to be established, or for a pooled connection to be available", validateValueWith = PositiveLongValueValidator.class)
+        private long httpConnectTimeout = InjectorConfiguration.DEFAULT_HTTP_CONNECT_TIMEOUT;
+
+        @Parameter(names = {"--http-socket-timeout"}, description = "Maximum time, in milliseconds, of inactivity while waiting for server response", validateValueWith = PositiveLongValueValidator.class)
+        private long httpSocketTimeout = InjectorConfiguration.DEFAULT_HTTP_SOCKET_TIMEOUT;
+
+        @Parameter(names = {"--http-keep-alive"}, description = "Time, in milliseconds, during which an idle connection is kept open for reuse, unless server asks for another one", validateValueWith = PositiveLongValueValidator.class)
+        private long httpKeepAlive = InjectorConfiguration.DEFAULT_HTTP_KEEP_ALIVE;
+
+        @Parameter(names = {"--http-tcp-no-delay"}, description = "Disable Nagle's algorithm on connections to server (TCP_NODELAY), so that small requests are not delayed", arity = 1)
+        private boolean httpTcpNoDelay = InjectorConfiguration.DEFAULT_HTTP_TCP_NO_DELAY;
+
+        @Parameter(names = {"--watch"}, description = "Keep running and inject any file dropped into the --input directory, until terminated. Files have to be written under a temporary name (starting with '.', or ending with '.tmp' or '.part') and then renamed within the directory")
+        private boolean watch;
+
+        @Parameter(names = {"--watch-done-directory"}, description = "Directory where to move the successfully injected files, when watching. Default to the 'done' subdirectory of the --input directory")
+        private File watchDoneDirectory;
+
+        @Parameter(names = {"--watch-failed-directory"}, description = "Directory where to move the files whose injection failed, when watching. Default to the 'failed' subdirectory of the --input directory")
+        private File watchFailedDirectory;
+
+        @Parameter(names = {"--follow"}, description = "Keep reading the single flat-motion-ndjson --input file as lines are appended to it, as with 'tail -f', until terminated. Rotated or truncated input is read again from its beginning")
+        private boolean follow;
+
+        @Parameter(names = {"--follow-linger"}, description = "Maximum time, in milliseconds, to wait for more observations once an observation has been read from the followed input, before sending the ones read so far. Up to --batch-size observations are sent together", validateValueWith = PositiveLongValueValidator.class)
+        private long followLinger = InjectorConfiguration.DEFAULT_FOLLOW_LINGER;
+
+        @Parameter(names = {"--follow-poll-interval"}, description = "Time, in milliseconds, to wait before checking the followed input again, once all its lines have been read", validateValueWith = PositiveLongValueValidator.class)
+        private long followPollInterval = InjectorConfiguration.DEFAULT_FOLLOW_POLL_INTERVAL;
+
+        @Parameter(names = {"--metrics-report"}, description = "File where to write the JSON report of the injection metrics, once injection is done")
+        private File metricsReport;
+
+        @Parameter(names = {"--metrics-jmx"}, description = "Expose the injection metrics through JMX while injection is in progress")
+        private boolean metricsJmx;
+
+        public List<URL> getFileInputPaths() {
+            return fileInputPaths;
         }
 
         public URL getEndpoint() {
@@ -164,6 +419,202 @@ public class Application {
             return dataFormat;
         }
 
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public long getBatchMaxBytes() {
+            return batchMaxBytes;
+        }
+
+        public int getConcurrentRequests() {
+            return concurrentRequests;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public boolean isResume() {
+            return resume;
+        }
+
+        public File getCheckpointDirectory() {
+            return checkpointDirectory;
+        }
+
+        public int getPrefetchPageSize() {
+            return prefetchPageSize;
+        }
+
+        public int getParseThreads() {
+            return parseThreads;
+        }
+
+        public double getReplaySpeed() {
+            return replaySpeed;
+        }
+
+        public long getReplayWindow() {
+            return replayWindow;
+        }
+
+        public int getDedupWindow() {
+            return dedupWindow;
+        }
+
+        public int getTrackMinInterval() {
+            return trackMinInterval;
+        }
+
+        public double getTrackMinDistance() {
+            return trackMinDistance;
+        }
+
+        public double getTrackTolerance() {
+            return trackTolerance;
+        }
+
+        public int getSendRetries() {
+            return sendRetries;
+        }
+
+        public long getSendRetryBackoff() {
+            return sendRetryBackoff;
+        }
+
+        public int getCircuitBreakerThreshold() {
+            return circuitBreakerThreshold;
+        }
+
+        public long getCircuitBreakerCooldown() {
+            return circuitBreakerCooldown;
+        }
+
+        public boolean isDeadLetter() {
+            return deadLetter;
+        }
+
+        public File getDeadLetterDirectory() {
+            return deadLetterDirectory;
+        }
+
+        public boolean isAdaptiveSending() {
+            return adaptiveSending;
+        }
+
+        public double getAdaptiveLatencyTolerance() {
+            return adaptiveLatencyTolerance;
+        }
+
+        public boolean isStreamingRequests() {
+            return streamingRequests;
+        }
+
+        public int getHttpMaxConnections() {
+            return httpMaxConnections;
+        }
+
+        public long getHttpConnectTimeout() {
+            return httpConnectTimeout;
+        }
+
+        public long getHttpSocketTimeout() {
+            return httpSocketTimeout;
+        }
+
+        public long getHttpKeepAlive() {
+            return httpKeepAlive;
+        }
+
+        public boolean isHttpTcpNoDelay() {
+            return httpTcpNoDelay;
+        }
+
+        public boolean isWatch() {
+            return watch;
+        }
+
+        /**
+         * Get the directory to watch, from the single {@link #fileInputPaths} when {@link #watch}ing
+         *
+         * @return the directory to watch
+         */
+        public File getWatchInbox() {
+            return new File(URI.create(fileInputPaths.get(0).toString()));
+        }
+
+        public File getWatchDoneDirectory() {
+            return watchDoneDirectory;
+        }
+
+        public File getWatchFailedDirectory() {
+            return watchFailedDirectory;
+        }
+
+        public boolean isFollow() {
+            return follow;
+        }
+
+        public long getFollowLinger() {
+            return followLinger;
+        }
+
+        public long getFollowPollInterval() {
+            return followPollInterval;
+        }
+
+        public File getMetricsReport() {
+            return metricsReport;
+        }
+
+        public boolean isMetricsJmx() {
+            return metricsJmx;
+        }
+
+        /**
+         * Check the arguments that depend on each other
+         *
+         * @throws ParameterException if arguments are inconsistent
+         */
+        public void validate() {
+            if (adaptiveSending && (resume || checkpointDirectory != null)) {
+                throw new ParameterException("Parameters --resume and --checkpoint-directory cannot be used with --adaptive-sending, as adaptive batches cannot be split the same way again");
+            }
+            if (!(adaptiveLatencyTolerance > 1) || Double.isInfinite(adaptiveLatencyTolerance)) {
+                throw new ParameterException(String.format("Parameter --adaptive-latency-tolerance should be a finite number greater than 1 (found %s)", adaptiveLatencyTolerance));
+            }
+            // The sliding window of recording dates only makes sense if observations are fed in order, which concurrent inputs do not
+            if (dedupWindow > 0 && workers > 1) {
+                throw new ParameterException(String.format("Parameter --dedup-window cannot be used with more than one worker (found %d workers)", workers));
+            }
+            if (follow) {
+                if (watch || resume || replaySpeed > 0) {
+                    throw new ParameterException("Parameter --follow cannot be used with --watch, --resume or --replay-speed");
+                }
+                if (!FOLLOWED_DATA_FORMAT.equals(dataFormat)) {
+                    throw new ParameterException(String.format("Parameter --follow expects the %s data format (found %s)", FOLLOWED_DATA_FORMAT, dataFormat));
+                }
+                if (fileInputPaths.size() != 1) {
+                    throw new ParameterException(String.format("Parameter --follow expects a single --input file (found %d inputs)", fileInputPaths.size()));
+                }
+            }
+            if (watch) {
+                if (fileInputPaths.size() != 1) {
+                    throw new ParameterException(String.format("Parameter --watch expects a single --input directory (found %d inputs)", fileInputPaths.size()));
+                }
+                final File inbox;
+                try {
+                    inbox = getWatchInbox();
+                } catch (final IllegalArgumentException e) {
+                    throw new ParameterException("Parameter --watch expects a local --input directory (found " + fileInputPaths.get(0) + ")");
+                }
+                if (!inbox.isDirectory()) {
+                    throw new ParameterException("Parameter --watch expects an existing --input directory (found " + inbox + ")");
+                }
+            }
+        }
+
         /**
          * {@link IValueValidator} for the {@link #dataFormat} argument.
          * <p>
@@ -184,6 +635,48 @@ public class Application {
             }
         }
 
+        /**
+         * {@link IValueValidator} for strictly positive {@link Integer} arguments, as {@link PositiveInteger} accepts 0
+         *
+         * @author Aurelien Bourdon
+         */
+        public static class StrictlyPositiveIntegerValueValidator implements IValueValidator<Integer> {
+            @Override
+            public void validate(final String name, final Integer value) {
+                if (value <= 0) {
+                    throw new ParameterException(String.format("Parameter %s should be strictly positive (found %d)", name, value));
+                }
+            }
+        }
+
+        /**
+         * {@link IValueValidator} for strictly positive {@link Long} arguments
+         *
+         * @author Aurelien Bourdon
+         */
+        public static class PositiveLongValueValidator implements IValueValidator<Long> {
+            @Override
+            public void validate(final String name, final Long value) {
+                if (value <= 0) {
+                    throw new ParameterException(String.format("Parameter %s should be strictly positive (found %d)", name, value));
+                }
+            }
+        }
+
+        /**
+         * {@link IValueValidator} for positive (or zero) {@link Double} arguments
+         *
+         * @author Aurelien Bourdon
+         */
+        public static class PositiveDoubleValueValidator implements IValueValidator<Double> {
+            @Override
+            public void validate(final String name, final Double value) {
+                if (value < 0 || value.isNaN() || value.isInfinite()) {
+                    throw new ParameterException(String.format("Parameter %s should be a finite positive number (found %s)", name, value));
+                }
+            }
+        }
+
     }
 
 }
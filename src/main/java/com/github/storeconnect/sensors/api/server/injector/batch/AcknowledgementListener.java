@@ -0,0 +1,33 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+/**
+ * Get notified once a {@link DataArrayBatch} has been acknowledged by server
+ *
+ * @author Aurelien Bourdon
+ */
+@FunctionalInterface
+public interface AcknowledgementListener {
+
+    /**
+     * Notify that the given {@link DataArrayBatch} has been acknowledged by server. Called from the thread that sent the {@link DataArrayBatch}
+     *
+     * @param batch the {@link DataArrayBatch} acknowledged by server
+     */
+    void acknowledged(DataArrayBatch batch);
+
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Histogram;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tune the number of observations per request and the number of requests in flight according to server latency and errors, following an AIMD (additive increase, multiplicative decrease) scheme.
+ * <p>
+ * Server is considered congested when a request fails, or when the short-term average latency of requests rises above the long-term one by more than a tolerance factor
+ * (a latency gradient, as TCP Vegas does with round-trip times). Latency changes due to the batch size itself are progressively absorbed by the long-term average, whereas congested latencies barely move it,
+ * so that a lasting congestion keeps being detected.
+ * <ul>
+ * <li>When congested, the number of requests in flight is halved and, once a single request is in flight, the number of observations per request is halved instead.
+ * A failure halves both. The outcome of the requests that were already in flight is then ignored, as it has already been taken into account</li>
+ * <li>Once as many requests as in flight completed without congestion, the number of observations per request is increased by a tenth of its maximum and, once maximum is reached, one more request is allowed in flight</li>
+ * </ul>
+ * Limits start from the maximum number of observations per request and a single request in flight. Decisions are reported as {@link Histogram}s of the limits in effect when each request completed,
+ * and as {@link Counter}s of the increases and decreases.
+ * <p>
+ * Thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class AdaptiveSendController {
+
+    /**
+     * {@link Histogram} of the number of observations per request in effect when each request completed
+     */
+    public static final String BATCH_SIZE_HISTOGRAM = "adaptive.batchSize";
+
+    /**
+     * {@link Histogram} of the number of requests in flight allowed when each request completed
+     */
+    public static final String CONCURRENCY_HISTOGRAM = "adaptive.concurrency";
+
+    public static final String INCREASES_COUNTER = "adaptive.increases";
+    public static final String DECREASES_COUNTER = "adaptive.decreases";
+
+    /**
+     * Minimum number of observations per request, unless the maximum one is lower
+     */
+    static final int MIN_BATCH_SIZE = 100;
+
+    private static final double SHORT_TERM_WEIGHT = 0.5;
+    private static final double LONG_TERM_WEIGHT = 0.05;
+    private static final double CONGESTED_LONG_TERM_WEIGHT = 0.005;
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveSendController.class);
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final double latencyTolerance;
+    private final MetricsRegistry metrics;
+    private int batchSize;
+    private int concurrency = 1;
+    private double shortTermLatencyNanos = Double.NaN;
+    private double longTermLatencyNanos = Double.NaN;
+    // Number of requests completed since the last change of limits
+    private int completions;
+    // Number of requests, sent before the last decrease, whose outcome has to be ignored
+    private int cooldown;
+
+    /**
+     * Create a new {@link AdaptiveSendController}
+     *
+     * @param maxBatchSize     the maximum number of observations per request
+     * @param maxConcurrency   the maximum number of requests in flight
+     * @param latencyTolerance the factor by which the short-term average latency can exceed the long-term one before server is considered congested
+     * @param metrics          the {@link MetricsRegistry} in which recording decisions
+     */
+    public AdaptiveSendController(final int maxBatchSize, final int maxConcurrency, final double latencyTolerance, final MetricsRegistry metrics) {
+        if (maxBatchSize <= 0 || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum batch size and concurrency must be strictly positive");
+        }
+        if (!(latencyTolerance > 1)) {
+            throw new IllegalArgumentException("Latency tolerance must be greater than 1");
+        }
+        this.minBatchSize = Math.min(MIN_BATCH_SIZE, maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        this.maxConcurrency = maxConcurrency;
+        this.latencyTolerance = latencyTolerance;
+        this.metrics = metrics;
+        this.batchSize = maxBatchSize;
+    }
+
+    /**
+     * Record a successful request
+     *
+     * @param latencyNanos the request latency, in nanoseconds
+     */
+    public synchronized void onSuccess(final long latencyNanos) {
+        if (Double.isNaN(longTermLatencyNanos)) {
+            shortTermLatencyNanos = latencyNanos;
+            longTermLatencyNanos = latencyNanos;
+        } else {
+            shortTermLatencyNanos += SHORT_TERM_WEIGHT * (latencyNanos - shortTermLatencyNanos);
+            // Congested latencies barely move the long-term average, so that a lasting congestion keeps being detected
+            final double longTermWeight = latencyNanos > latencyTolerance * longTermLatencyNanos ? CONGESTED_LONG_TERM_WEIGHT : LONG_TERM_WEIGHT;
+            longTermLatencyNanos += longTermWeight * (latencyNanos - longTermLatencyNanos);
+        }
+        record();
+        if (isCoolingDown()) {
+            return;
+        }
+        completions++;
+        if (shortTermLatencyNanos > latencyTolerance * longTermLatencyNanos) {
+            decrease(false, String.format("latency rose to %d ms (%d ms on average)", toMillis(shortTermLatencyNanos), toMillis(longTermLatencyNanos)));
+        } else if (completions >= concurrency) {
+            increase();
+        }
+    }
+
+    /**
+     * Record a failed request
+     */
+    public synchronized void onFailure() {
+        record();
+        if (!isCoolingDown()) {
+            decrease(true, "request failed");
+        }
+    }
+
+    /**
+     * Check if requests sent before the last decrease are still completing, in which case their outcome has already been taken into account
+     *
+     * @return true if requests sent before the last decrease are still completing, false otherwise
+     */
+    private boolean isCoolingDown() {
+        if (cooldown > 0) {
+            cooldown--;
+            return true;
+        }
+        return false;
+    }
+
+    private void increase() {
+        final int previousBatchSize = batchSize;
+        final int previousConcurrency = concurrency;
+        if (batchSize < maxBatchSize) {
+            batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 10));
+        } else if (concurrency < maxConcurrency) {
+            concurrency++;
+        }
+        completions = 0;
+        if (batchSize != previousBatchSize || concurrency != previousConcurrency) {
+            metrics.counter(INCREASES_COUNTER).increment();
+            LOGGER.debug("Server is healthy, sending {} observations per request with {} request{} in flight", batchSize, concurrency, concurrency > 1 ? "s" : "");
+        }
+    }
+
+    private void decrease(final boolean both, final String reason) {
+        cooldown = concurrency - 1;
+        if (concurrency > 1) {
+            concurrency = Math.max(1, concurrency / 2);
+            if (both) {
+                batchSize = Math.max(minBatchSize, batchSize / 2);
+            }
+        } else {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        }
+        completions = 0;
+        // Latency is expected to drop, so that the new short-term average has to start from the long-term one
+        shortTermLatencyNanos = longTermLatencyNanos;
+        metrics.counter(DECREASES_COUNTER).increment();
+        LOGGER.info("Server seems congested ({}), backing off to {} observations per request with {} request{} in flight", reason, batchSize, concurrency, concurrency > 1 ? "s" : "");
+    }
+
+    private void record() {
+        metrics.histogram(BATCH_SIZE_HISTOGRAM).record(batchSize);
+        metrics.histogram(CONCURRENCY_HISTOGRAM).record(concurrency);
+    }
+
+    private static long toMillis(final double nanos) {
+        return TimeUnit.NANOSECONDS.toMillis((long) nanos);
+    }
+
+    /**
+     * The number of observations to send per request
+     *
+     * @return the number of observations to send per request
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The number of requests to keep in flight
+     *
+     * @return the number of requests to keep in flight
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+}
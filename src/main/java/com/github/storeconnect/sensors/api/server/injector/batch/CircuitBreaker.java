@@ -0,0 +1,160 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker that pauses all requests to server while it is unhealthy.
+ * <p>
+ * Once a given number of consecutive requests failed, the circuit breaker opens: any request has to wait for a cooldown period.
+ * Then, a single request is let through to probe server. If it succeeds, the circuit breaker closes and all requests are let through again, otherwise it opens for another cooldown period.
+ * <p>
+ * Any request has to call {@link #acquire()} before being sent, and then either {@link #onSuccess()} or {@link #onFailure()} once completed.
+ * <p>
+ * Thread-safe, so that it can be shared by all senders to a same server.
+ *
+ * @author Aurelien Bourdon
+ */
+public class CircuitBreaker {
+
+    /**
+     * {@link Counter} of the times the circuit breaker opened
+     */
+    public static final String OPENED_COUNTER = "circuitBreaker.opened";
+
+    /**
+     * {@link Timer} of the time spent by requests waiting for the circuit breaker to let them through
+     */
+    public static final String WAIT_TIMER = "circuitBreaker.wait";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * State of a {@link CircuitBreaker}
+     */
+    public enum State {
+        /**
+         * All requests are let through
+         */
+        CLOSED,
+        /**
+         * Requests wait for the cooldown period to end
+         */
+        OPEN,
+        /**
+         * A single request is let through to probe server, the other ones wait for its outcome
+         */
+        HALF_OPEN
+    }
+
+    private final int threshold;
+    private final long cooldownNanos;
+    private final MetricsRegistry metrics;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private boolean probing;
+
+    /**
+     * Create a new {@link CircuitBreaker}
+     *
+     * @param threshold      the number of consecutive failed requests after which opening, or 0 to never open
+     * @param cooldownMillis the time, in milliseconds, during which staying open before probing server
+     * @param metrics        the {@link MetricsRegistry} in which recording openings and waiting times
+     */
+    public CircuitBreaker(final int threshold, final long cooldownMillis, final MetricsRegistry metrics) {
+        if (threshold < 0 || cooldownMillis <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive and cooldown strictly positive");
+        }
+        this.threshold = threshold;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wait until a request can be sent
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        final long start = System.nanoTime();
+        boolean waited = false;
+        synchronized (this) {
+            while (state != State.CLOSED) {
+                if (state == State.OPEN) {
+                    final long remainingNanos = openUntilNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        state = State.HALF_OPEN;
+                        probing = false;
+                        continue;
+                    }
+                    waited = true;
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                } else if (!probing) {
+                    probing = true;
+                    LOGGER.info("Probing server health...");
+                    break;
+                } else {
+                    waited = true;
+                    TimeUnit.NANOSECONDS.timedWait(this, cooldownNanos);
+                }
+            }
+        }
+        if (waited) {
+            metrics.timer(WAIT_TIMER).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record that a request succeeded, which closes the circuit breaker
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            LOGGER.info("Server is healthy again, resuming requests");
+            state = State.CLOSED;
+            probing = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Record that a request failed, which opens the circuit breaker if too many consecutive requests failed or if the probing request failed
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && threshold > 0 && consecutiveFailures >= threshold)) {
+            state = State.OPEN;
+            probing = false;
+            openUntilNanos = System.nanoTime() + cooldownNanos;
+            metrics.counter(OPENED_COUNTER).increment();
+            LOGGER.warn("{} consecutive requests failed, pausing requests for {} ms", consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(cooldownNanos));
+            notifyAll();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+/**
+ * Limit the number of operations in progress at the same time, as a {@link java.util.concurrent.Semaphore} would do, but with a limit that can be changed at any time.
+ * <p>
+ * Lowering the limit does not interrupt the operations in progress: new operations just wait until the number of operations in progress goes below the new limit.
+ * <p>
+ * Thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class ConcurrencyLimiter {
+
+    private int limit;
+    private int inProgress;
+
+    /**
+     * Create a new {@link ConcurrencyLimiter}
+     *
+     * @param limit the initial maximum number of operations in progress at the same time
+     */
+    public ConcurrencyLimiter(final int limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Wait until an operation can start, and then count it as in progress
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inProgress >= limit) {
+            wait();
+        }
+        inProgress++;
+    }
+
+    /**
+     * Count an operation as completed
+     */
+    public synchronized void release() {
+        if (inProgress == 0) {
+            throw new IllegalStateException("No operation in progress");
+        }
+        inProgress--;
+        notifyAll();
+    }
+
+    /**
+     * Wait until no operation is in progress
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (inProgress > 0) {
+            wait();
+        }
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized void setLimit(final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be strictly positive");
+        }
+        this.limit = limit;
+        notifyAll();
+    }
+
+    public synchronized int getInProgress() {
+        return inProgress;
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayDocument;
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayValue;
+
+/**
+ * A {@link DataArrayDocument} to send within a single request, with its characteristics.
+ * <p>
+ * A {@link DataArrayBatch} can also be streamed, in which case it holds no {@link DataArrayDocument} but a {@link DataArrayWriter} that writes the request body straight to the connection.
+ *
+ * @author Aurelien Bourdon
+ */
+public class DataArrayBatch {
+
+    private final DataArrayDocument document;
+    private final DataArrayWriter writer;
+    private final int observationCount;
+    private final long estimatedBytes;
+    private final int firstObservationIndex;
+
+    public DataArrayBatch(final DataArrayDocument document, final int observationCount, final long estimatedBytes) {
+        this(document, observationCount, estimatedBytes, 0);
+    }
+
+    public DataArrayBatch(final DataArrayDocument document, final int observationCount, final long estimatedBytes, final int firstObservationIndex) {
+        this(document, null, observationCount, estimatedBytes, firstObservationIndex);
+    }
+
+    public DataArrayBatch(final DataArrayWriter writer, final int observationCount, final long estimatedBytes, final int firstObservationIndex) {
+        this(null, writer, observationCount, estimatedBytes, firstObservationIndex);
+    }
+
+    private DataArrayBatch(final DataArrayDocument document, final DataArrayWriter writer, final int observationCount, final long estimatedBytes, final int firstObservationIndex) {
+        this.document = document;
+        this.writer = writer;
+        this.observationCount = observationCount;
+        this.estimatedBytes = estimatedBytes;
+        this.firstObservationIndex = firstObservationIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "DataArrayBatch{" +
+                "streamed=" + isStreamed() +
+                ", observationCount=" + observationCount +
+                ", estimatedBytes=" + estimatedBytes +
+                ", firstObservationIndex=" + firstObservationIndex +
+                '}';
+    }
+
+    public DataArrayDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * The {@link DataArrayWriter} of this {@link DataArrayBatch}'s request body, if streamed
+     *
+     * @return the {@link DataArrayWriter} of this {@link DataArrayBatch}'s request body, or <code>null</code> if not streamed
+     */
+    public DataArrayWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * If this {@link DataArrayBatch} is streamed, i.e., written by a {@link DataArrayWriter} instead of being held as a {@link DataArrayDocument}
+     *
+     * @return if this {@link DataArrayBatch} is streamed
+     */
+    public boolean isStreamed() {
+        return writer != null;
+    }
+
+    public int getObservationCount() {
+        return observationCount;
+    }
+
+    /**
+     * The estimated serialized size, in bytes, of this {@link DataArrayBatch}'s {@link DataArrayDocument}
+     *
+     * @return the estimated serialized size, in bytes, of this {@link DataArrayBatch}'s {@link DataArrayDocument}
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * The index of this {@link DataArrayBatch}'s first observation within the {@link DataArrayDocument} it has been split from, observations being counted across all {@link DataArrayValue}s in order
+     *
+     * @return the index of this {@link DataArrayBatch}'s first observation within the {@link DataArrayDocument} it has been split from
+     */
+    public int getFirstObservationIndex() {
+        return firstObservationIndex;
+    }
+
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.Observation;
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayDocument;
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Split a {@link DataArrayDocument}, or a {@link DataArraySource}, into {@link DataArrayBatch}es capped by number of observations and by serialized size.
+ * <p>
+ * Observations order is kept, so that each {@link DataArrayBatch} holds a contiguous range of the {@link DataArrayDocument}'s observations. A single observation whose serialized size exceeds the maximum size is sent alone within its own {@link DataArrayBatch}.
+ * <p>
+ * {@link DataArrayBatch}es split from a {@link DataArraySource} are streamed: they only refer to ranges of the {@link DataArraySource}'s rows, which are written straight to the request once sent.
+ *
+ * @author Aurelien Bourdon
+ */
+public class DataArrayBatcher {
+
+    /**
+     * Estimated serialized size, in bytes, of a {@link DataArrayValue} without any observation (i.e., {@link Datastream} reference and components)
+     */
+    static final long DATA_ARRAY_VALUE_OVERHEAD = 256;
+
+    private final int maxObservations;
+    private final long maxBytes;
+    private final Function<Datastream, DataArrayValue> dataArrayValueFactory;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create a new {@link DataArrayBatcher}
+     *
+     * @param maxObservations       the maximum number of observations within a {@link DataArrayBatch}
+     * @param maxBytes              the maximum serialized size, in bytes, of a {@link DataArrayBatch}
+     * @param dataArrayValueFactory how to create an empty {@link DataArrayValue} for a given {@link Datastream}
+     */
+    public DataArrayBatcher(final int maxObservations, final long maxBytes, final Function<Datastream, DataArrayValue> dataArrayValueFactory) {
+        if (maxObservations <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Batch limits must be strictly positive");
+        }
+        this.maxObservations = maxObservations;
+        this.maxBytes = maxBytes;
+        this.dataArrayValueFactory = dataArrayValueFactory;
+        this.objectMapper = ObjectMapperFactory.get();
+    }
+
+    /**
+     * Split the given {@link DataArrayDocument} into {@link DataArrayBatch}es
+     *
+     * @param document the {@link DataArrayDocument} to split
+     * @return the {@link DataArrayBatch}es containing all the given {@link DataArrayDocument}'s observations
+     */
+    public List<DataArrayBatch> split(final DataArrayDocument document) {
+        return split(document, maxObservations);
+    }
+
+    /**
+     * Split the given {@link DataArrayDocument} into {@link DataArrayBatch}es, with a lower maximum number of observations than this {@link DataArrayBatcher}'s one
+     *
+     * @param document        the {@link DataArrayDocument} to split
+     * @param maxObservations the maximum number of observations within a {@link DataArrayBatch}, capped by this {@link DataArrayBatcher}'s one
+     * @return the {@link DataArrayBatch}es containing all the given {@link DataArrayDocument}'s observations
+     */
+    public List<DataArrayBatch> split(final DataArrayDocument document, final int maxObservations) {
+        if (maxObservations <= 0) {
+            throw new IllegalArgumentException("Batch limits must be strictly positive");
+        }
+        final int batchMaxObservations = Math.min(maxObservations, this.maxObservations);
+        final List<DataArrayBatch> batches = new ArrayList<>();
+        final CountingOutputStream counter = new CountingOutputStream();
+        try (final JsonGenerator generator = objectMapper.getFactory().createGenerator(counter)) {
+            BatchBuilder batch = new BatchBuilder(batchMaxObservations, 0);
+            int observationIndex = 0;
+            for (final DataArrayValue dataArrayValue : document.getValue()) {
+                final List<Observation> observations = dataArrayValue.getObservations();
+                final List<List<Object>> rows = dataArrayValue.getDataArray();
+                DataArrayValue batchDataArrayValue = null;
+                for (int i = 0; i < observations.size(); i++) {
+                    final long rowBytes = sizeOf(rows.get(i), generator, counter);
+                    if (!batch.isEmpty() && !batch.canAccept(rowBytes + (batchDataArrayValue == null ? DATA_ARRAY_VALUE_OVERHEAD : 0))) {
+                        batches.add(batch.build());
+                        batch = new BatchBuilder(batchMaxObservations, observationIndex);
+                        batchDataArrayValue = null;
+                    }
+                    if (batchDataArrayValue == null) {
+                        batchDataArrayValue = dataArrayValueFactory.apply(dataArrayValue.getDatastream());
+                        batch.add(batchDataArrayValue);
+                    }
+                    batchDataArrayValue.addObservation(observations.get(i));
+                    batch.accept(rowBytes);
+                    observationIndex++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch.build());
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to estimate serialized size of observations", e);
+        }
+        return batches;
+    }
+
+    /**
+     * Split the given {@link DataArraySource} into streamed {@link DataArrayBatch}es
+     *
+     * @param source the {@link DataArraySource} to split
+     * @return the streamed {@link DataArrayBatch}es containing all the given {@link DataArraySource}'s rows
+     */
+    public List<DataArrayBatch> split(final DataArraySource source) {
+        return split(source, maxObservations);
+    }
+
+    /**
+     * Split the given {@link DataArraySource} into streamed {@link DataArrayBatch}es, with a lower maximum number of observations than this {@link DataArrayBatcher}'s one
+     *
+     * @param source          the {@link DataArraySource} to split
+     * @param maxObservations the maximum number of observations within a {@link DataArrayBatch}, capped by this {@link DataArrayBatcher}'s one
+     * @return the streamed {@link DataArrayBatch}es containing all the given {@link DataArraySource}'s rows
+     */
+    public List<DataArrayBatch> split(final DataArraySource source, final int maxObservations) {
+        if (maxObservations <= 0) {
+            throw new IllegalArgumentException("Batch limits must be strictly positive");
+        }
+        final int batchMaxObservations = Math.min(maxObservations, this.maxObservations);
+        final List<DataArrayBatch> batches = new ArrayList<>();
+        final CountingOutputStream counter = new CountingOutputStream();
+        try (final JsonGenerator generator = objectMapper.getFactory().createGenerator(counter)) {
+            BatchBuilder batch = new BatchBuilder(batchMaxObservations, 0);
+            int observationIndex = 0;
+            for (int group = 0; group < source.getGroupCount(); group++) {
+                boolean inBatch = false;
+                for (int i = 0; i < source.getRowCount(group); i++) {
+                    final long rowBytes = sizeOf(source, group, i, generator, counter);
+                    if (!batch.isEmpty() && !batch.canAccept(rowBytes + (inBatch ? 0 : DATA_ARRAY_VALUE_OVERHEAD))) {
+                        batches.add(batch.build(source));
+                        batch = new BatchBuilder(batchMaxObservations, observationIndex);
+                        inBatch = false;
+                    }
+                    if (!inBatch) {
+                        batch.add(group, i);
+                        inBatch = true;
+                    }
+                    batch.accept(rowBytes);
+                    observationIndex++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch.build(source));
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to estimate serialized size of observations", e);
+        }
+        return batches;
+    }
+
+    private long sizeOf(final DataArraySource source, final int group, final int index, final JsonGenerator generator, final CountingOutputStream counter) throws IOException {
+        final long before = counter.getCount();
+        source.writeRow(generator, group, index);
+        generator.flush();
+        return counter.getCount() - before;
+    }
+
+    /**
+     * Write the given ranges of the given {@link DataArraySource}'s rows as a {@code CreateObservations} request body
+     *
+     * @param generator the {@link JsonGenerator} to which writing the request body
+     * @param source    the {@link DataArraySource} from which writing rows
+     * @param ranges    the ranges of rows to write, each one as its group index, first row index and row count
+     * @throws IOException if request body cannot be written
+     */
+    static void write(final JsonGenerator generator, final DataArraySource source, final List<int[]> ranges) throws IOException {
+        generator.writeStartArray();
+        for (final int[] range : ranges) {
+            final int group = range[0];
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("Datastream");
+            generator.writeFieldName("@iot.id");
+            generator.writeObject(source.getDatastream(group).getId().getValue());
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("components");
+            for (final String component : source.getComponents()) {
+                generator.writeString(component);
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("dataArray@iot.count", range[2]);
+            generator.writeArrayFieldStart("dataArray");
+            for (int i = range[1]; i < range[1] + range[2]; i++) {
+                source.writeRow(generator, group, i);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private long sizeOf(final List<Object> row, final JsonGenerator generator, final CountingOutputStream counter) throws IOException {
+        final long before = counter.getCount();
+        objectMapper.writeValue(generator, row);
+        generator.flush();
+        return counter.getCount() - before;
+    }
+
+    /**
+     * Mutable {@link DataArrayBatch} under construction
+     */
+    private final class BatchBuilder {
+
+        private final List<DataArrayValue> dataArrayValues = new ArrayList<>();
+        // Ranges of DataArraySource rows, each one as its group index, first row index and row count
+        private final List<int[]> ranges = new ArrayList<>();
+        private final int maxObservations;
+        private final int firstObservationIndex;
+        private int observationCount;
+        private long bytes;
+
+        private BatchBuilder(final int maxObservations, final int firstObservationIndex) {
+            this.maxObservations = maxObservations;
+            this.firstObservationIndex = firstObservationIndex;
+        }
+
+        private boolean isEmpty() {
+            return observationCount == 0;
+        }
+
+        private boolean canAccept(final long additionalBytes) {
+            return observationCount < maxObservations && bytes + additionalBytes <= maxBytes;
+        }
+
+        private void add(final DataArrayValue dataArrayValue) {
+            dataArrayValues.add(dataArrayValue);
+            bytes += DATA_ARRAY_VALUE_OVERHEAD;
+        }
+
+        private void add(final int group, final int firstRow) {
+            ranges.add(new int[]{group, firstRow, 0});
+            bytes += DATA_ARRAY_VALUE_OVERHEAD;
+        }
+
+        private void accept(final long rowBytes) {
+            observationCount++;
+            bytes += rowBytes;
+            if (!ranges.isEmpty()) {
+                ranges.get(ranges.size() - 1)[2]++;
+            }
+        }
+
+        private DataArrayBatch build() {
+            final DataArrayDocument document = new DataArrayDocument();
+            dataArrayValues.forEach(document::addDataArrayValue);
+            return new DataArrayBatch(document, observationCount, bytes, firstObservationIndex);
+        }
+
+        private DataArrayBatch build(final DataArraySource source) {
+            final List<int[]> batchRanges = new ArrayList<>(ranges);
+            return new DataArrayBatch(generator -> write(generator, source, batchRanges), observationCount, bytes, firstObservationIndex);
+        }
+
+    }
+
+    /**
+     * {@link OutputStream} that only counts the written bytes
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+
+        private long getCount() {
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,476 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.storeconnect.sensors.api.server.injector.checkpoint.CheckpointJournal;
+import com.github.storeconnect.sensors.api.server.injector.http.DataArrayEntity;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.StatusCodeException;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Send {@link DataArrayBatch}es to server, by keeping at most a given number of requests in flight.
+ * <p>
+ * When all requests are in flight, {@link #send(DataArrayBatch)} blocks until one of them completes, so that batches waiting to be sent never pile up in memory.
+ * The number of requests in flight can be tuned while sending by an {@link AdaptiveSendController}, within the given maximum.
+ * A failed request is sent again according to the {@link RetryPolicy}, and only once the {@link CircuitBreaker} lets it through. As {@code CreateObservations} requests are not idempotent,
+ * sending again a request that server may have applied before failing may duplicate its observations.
+ * Streamed {@link DataArrayBatch}es are written straight to the {@code CreateObservations} request, through the {@link SensorThingsService}'s HTTP client, while being sent.
+ * Once a request failed despite retries, its {@link DataArrayBatch} is written by the given {@link DeadLetterWriter}, if any. Otherwise, no more {@link DataArrayBatch} is accepted
+ * and the failure is raised by the next call to {@link #send(DataArrayBatch)} or {@link #close()}.
+ *
+ * @author Aurelien Bourdon
+ */
+public class DataArraySender implements AutoCloseable {
+
+    /**
+     * {@link Timer} of the {@code CreateObservations} requests
+     */
+    public static final String CREATE_OBSERVATIONS_TIMER = "server.createObservations";
+
+    /**
+     * {@link Timer} of the time spent waiting for a request slot
+     */
+    public static final String WAIT_TIMER = "sender.wait";
+
+    /**
+     * {@link Timer} of the time spent waiting for in flight requests to complete when closing
+     */
+    public static final String DRAIN_TIMER = "sender.drain";
+
+    public static final String SENT_BATCHES_COUNTER = "batches.sent";
+    public static final String SKIPPED_BATCHES_COUNTER = "batches.skipped";
+    public static final String FAILED_BATCHES_COUNTER = "batches.failed";
+    public static final String RETRIED_BATCHES_COUNTER = "batches.retried";
+    public static final String DEAD_LETTERED_BATCHES_COUNTER = "batches.deadLettered";
+    public static final String UNCHECKPOINTED_BATCHES_COUNTER = "batches.uncheckpointed";
+    public static final String SENT_OBSERVATIONS_COUNTER = "observations.sent";
+    public static final String REJECTED_OBSERVATIONS_COUNTER = "observations.rejected";
+    public static final String BATCH_OBSERVATIONS_HISTOGRAM = "batch.observations";
+    public static final String BATCH_BYTES_HISTOGRAM = "batch.bytes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataArraySender.class);
+    private static final AtomicInteger SENDER_COUNT = new AtomicInteger();
+    private static final String CREATE_OBSERVATIONS = "CreateObservations";
+    private static final String ERROR_PREFIX = "error";
+
+    private final SensorThingsService sensorThingsService;
+    private final int maxInFlightRequests;
+    private final ConcurrencyLimiter inFlightRequests;
+    private final ExecutorService executor;
+    private final SendStatistics statistics;
+    private final CheckpointJournal checkpointJournal;
+    private final MetricsRegistry metrics;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveSendController controller;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final JsonFactory jsonFactory = ObjectMapperFactory.get().getFactory();
+    private int batchCount;
+
+    private DataArraySender(final Builder builder) {
+        this.sensorThingsService = builder.sensorThingsService;
+        this.maxInFlightRequests = builder.maxInFlightRequests;
+        this.statistics = builder.statistics;
+        this.checkpointJournal = builder.checkpointJournal;
+        this.metrics = builder.metrics;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.controller = builder.controller;
+        this.inFlightRequests = new ConcurrencyLimiter(limitInFlightRequests());
+        final int senderIndex = SENDER_COUNT.incrementAndGet();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxInFlightRequests, runnable -> {
+            final Thread thread = new Thread(runnable, String.format("data-array-sender-%d-%d", senderIndex, threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a new {@link Builder} of {@link DataArraySender}
+     *
+     * @param sensorThingsService the {@link SensorThingsService} to which sending {@link DataArrayBatch}es
+     * @param maxInFlightRequests the maximum number of requests being sent at the same time
+     * @return a new {@link Builder} of {@link DataArraySender}, without checkpoint journal, retry, circuit breaker nor adaptive sending
+     */
+    public static Builder builder(final SensorThingsService sensorThingsService, final int maxInFlightRequests) {
+        return new Builder(sensorThingsService, maxInFlightRequests);
+    }
+
+    /**
+     * Send asynchronously the given {@link DataArrayBatch}, by waiting for a request slot if all of them are in flight
+     *
+     * @param batch the {@link DataArrayBatch} to send
+     * @throws ServiceFailureException if a previous request failed
+     */
+    public void send(final DataArrayBatch batch) throws ServiceFailureException {
+        send(batch, null);
+    }
+
+    /**
+     * Send asynchronously the given {@link DataArrayBatch}, by waiting for a request slot if all of them are in flight
+     *
+     * @param batch            the {@link DataArrayBatch} to send
+     * @param deadLetterWriter the {@link DeadLetterWriter} of the given {@link DataArrayBatch} if it cannot be sent despite retries. Can be <code>null</code>
+     * @throws ServiceFailureException if a previous request failed
+     */
+    public void send(final DataArrayBatch batch, final DeadLetterWriter deadLetterWriter) throws ServiceFailureException {
+        send(batch, deadLetterWriter, null);
+    }
+
+    /**
+     * Send asynchronously the given {@link DataArrayBatch}, by waiting for a request slot if all of them are in flight
+     *
+     * @param batch                   the {@link DataArrayBatch} to send
+     * @param deadLetterWriter        the {@link DeadLetterWriter} of the given {@link DataArrayBatch} if it cannot be sent despite retries. Can be <code>null</code>
+     * @param acknowledgementListener the {@link AcknowledgementListener} to notify once the given {@link DataArrayBatch} is acknowledged by server. Can be <code>null</code>
+     * @throws ServiceFailureException if a previous request failed
+     */
+    public void send(final DataArrayBatch batch, final DeadLetterWriter deadLetterWriter, final AcknowledgementListener acknowledgementListener) throws ServiceFailureException {
+        checkFailure();
+        final int batchIndex = ++batchCount;
+        if (checkpointJournal != null && checkpointJournal.isAcknowledged(batchIndex)) {
+            LOGGER.debug("Skipping batch #{} as already acknowledged by server", batchIndex);
+            statistics.recordSkipped(batch);
+            metrics.counter(SKIPPED_BATCHES_COUNTER).increment();
+            return;
+        }
+        try (final Timer.Context waiting = metrics.timer(WAIT_TIMER).time()) {
+            inFlightRequests.setLimit(limitInFlightRequests());
+            inFlightRequests.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a request slot", e);
+        }
+        executor.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    doSend(batchIndex, batch);
+                    if (acknowledgementListener != null) {
+                        acknowledgementListener.acknowledged(batch);
+                    }
+                }
+            } catch (final ServiceFailureException | RuntimeException e) {
+                metrics.counter(FAILED_BATCHES_COUNTER).increment();
+                if (deadLetterWriter == null || !deadLetter(batchIndex, batch, deadLetterWriter, e)) {
+                    failure.compareAndSet(null, e);
+                }
+            } finally {
+                inFlightRequests.release();
+            }
+        });
+    }
+
+    private void doSend(final int batchIndex, final DataArrayBatch batch) throws ServiceFailureException {
+        LOGGER.info("Sending batch #{} ({} observations, ~{} bytes) to server...", batchIndex, batch.getObservationCount(), batch.getEstimatedBytes());
+        long start;
+        for (int retry = 1; ; retry++) {
+            acquireCircuitBreaker();
+            start = System.nanoTime();
+            try {
+                if (batch.isStreamed()) {
+                    createObservations(batchIndex, batch.getWriter());
+                } else {
+                    sensorThingsService.create(batch.getDocument());
+                }
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+                if (controller != null) {
+                    controller.onSuccess(System.nanoTime() - start);
+                }
+                break;
+            } catch (final ServiceFailureException | RuntimeException e) {
+                if (RetryPolicy.isTransient(e)) {
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+                    if (controller != null) {
+                        controller.onFailure();
+                    }
+                } else if (circuitBreaker != null && e instanceof StatusCodeException) {
+                    // Server rejected the request because of its content, so it is responsive and sending must neither be paused nor slowed down
+                    circuitBreaker.onSuccess();
+                }
+                if (!retryPolicy.canRetry(retry, e)) {
+                    throw e;
+                }
+                final long backoffMillis = retryPolicy.getBackoffMillis(retry);
+                LOGGER.warn("Sending batch #{} to server failed ({}), retrying in {} ms ({}/{})", batchIndex, e.getMessage(), backoffMillis, retry, retryPolicy.getMaxRetries());
+                statistics.recordRetry();
+                metrics.counter(RETRIED_BATCHES_COUNTER).increment();
+                sleep(backoffMillis);
+            }
+        }
+        final long end = System.nanoTime();
+        statistics.record(batch, start, end);
+        metrics.timer(CREATE_OBSERVATIONS_TIMER).record(end - start);
+        metrics.counter(SENT_BATCHES_COUNTER).increment();
+        metrics.counter(SENT_OBSERVATIONS_COUNTER).add(batch.getObservationCount());
+        metrics.histogram(BATCH_OBSERVATIONS_HISTOGRAM).record(batch.getObservationCount());
+        metrics.histogram(BATCH_BYTES_HISTOGRAM).record(batch.getEstimatedBytes());
+        if (checkpointJournal != null) {
+            checkpoint(batchIndex);
+        }
+        LOGGER.info("Sending batch #{} ({} observations, ~{} bytes) to server... Done in {} ms.",
+                batchIndex, batch.getObservationCount(), batch.getEstimatedBytes(), TimeUnit.NANOSECONDS.toMillis(end - start));
+    }
+
+    /**
+     * Record the given batch, already accepted by server, within the {@link CheckpointJournal}.
+     * A batch that cannot be recorded is not failed, as sending it again would duplicate its observations: it is only sent again if injection is resumed
+     */
+    private void checkpoint(final int batchIndex) {
+        try {
+            checkpointJournal.acknowledge(batchIndex);
+        } catch (final UncheckedIOException e) {
+            metrics.counter(UNCHECKPOINTED_BATCHES_COUNTER).increment();
+            LOGGER.error("Batch #{} has been acknowledged by server but cannot be checkpointed, it will be sent again if injection is resumed", batchIndex, e.getCause());
+        }
+    }
+
+    /**
+     * Send a {@code CreateObservations} request whose body is written by the given {@link DataArrayWriter} while being sent
+     *
+     * @throws ServiceFailureException if request failed
+     */
+    private void createObservations(final int batchIndex, final DataArrayWriter writer) throws ServiceFailureException {
+        final String endpoint = sensorThingsService.getEndpoint().toString();
+        final String url = endpoint.endsWith("/") ? endpoint + CREATE_OBSERVATIONS : endpoint + "/" + CREATE_OBSERVATIONS;
+        final HttpPost request = new HttpPost(url);
+        request.setEntity(new DataArrayEntity(writer, jsonFactory));
+        try (final CloseableHttpResponse response = sensorThingsService.getClient().execute(request)) {
+            final int statusCode = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new StatusCodeException(url, statusCode, response.getStatusLine().getReasonPhrase(), entity == null ? null : EntityUtils.toString(entity, StandardCharsets.UTF_8));
+            }
+            final long rejected = entity == null ? 0 : countRejectedObservations(entity);
+            if (rejected > 0) {
+                LOGGER.warn("{} observation{} of batch #{} rejected by server", rejected, rejected > 1 ? "s" : "", batchIndex);
+                metrics.counter(REJECTED_OBSERVATIONS_COUNTER).add(rejected);
+            }
+        } catch (final IOException e) {
+            throw new ServiceFailureException("Unable to send observations to " + url, e);
+        }
+    }
+
+    /**
+     * Count the observations rejected by server, from the {@code CreateObservations} response that contains either the link to each created observation or an error message
+     */
+    private long countRejectedObservations(final HttpEntity entity) throws IOException {
+        long rejected = 0;
+        // Response is read as a stream, as it can be as long as the number of sent observations
+        try (final InputStream content = entity.getContent(); final JsonParser parser = jsonFactory.createParser(content)) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token == JsonToken.VALUE_STRING && parser.getText().startsWith(ERROR_PREFIX)) {
+                    rejected++;
+                }
+            }
+        }
+        return rejected;
+    }
+
+    private int limitInFlightRequests() {
+        return controller != null ? Math.min(maxInFlightRequests, controller.getConcurrency()) : maxInFlightRequests;
+    }
+
+    private void acquireCircuitBreaker() {
+        if (circuitBreaker == null) {
+            return;
+        }
+        try {
+            circuitBreaker.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for server to be healthy again", e);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting before retrying", e);
+        }
+    }
+
+    /**
+     * Write the given {@link DataArrayBatch}, that failed to be sent, by using the given {@link DeadLetterWriter}
+     *
+     * @return true if the given {@link DataArrayBatch} has been written, false otherwise
+     */
+    private boolean deadLetter(final int batchIndex, final DataArrayBatch batch, final DeadLetterWriter deadLetterWriter, final Exception cause) {
+        try {
+            deadLetterWriter.write(batch);
+            // Dead-lettered batch is handled, so it must not be sent again when resuming
+            if (checkpointJournal != null) {
+                checkpointJournal.acknowledge(batchIndex);
+            }
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("Unable to write batch #{} to dead-letter file", batchIndex, e);
+            return false;
+        }
+        LOGGER.warn("Batch #{} ({} observations) failed to be sent to server ({}), written to dead-letter file instead", batchIndex, batch.getObservationCount(), cause.getMessage());
+        statistics.recordDeadLettered(batch);
+        metrics.counter(DEAD_LETTERED_BATCHES_COUNTER).increment();
+        return true;
+    }
+
+    private void checkFailure() throws ServiceFailureException {
+        final Exception e = failure.get();
+        if (e instanceof ServiceFailureException) {
+            throw (ServiceFailureException) e;
+        } else if (e != null) {
+            throw new ServiceFailureException("Unable to send batch to server", e);
+        }
+    }
+
+    /**
+     * Wait for all in flight requests to complete, and then log the {@link SendStatistics}
+     *
+     * @throws ServiceFailureException if any request failed
+     */
+    @Override
+    public void close() throws ServiceFailureException {
+        try (final Timer.Context draining = metrics.timer(DRAIN_TIMER).time()) {
+            inFlightRequests.awaitIdle();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in flight requests", e);
+        } finally {
+            executor.shutdown();
+        }
+        LOGGER.info("{}", statistics);
+        checkFailure();
+    }
+
+    public SendStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * {@link DataArraySender}'s builder, whose optional components are disabled by default
+     *
+     * @author Aurelien Bourdon
+     */
+    public static final class Builder {
+
+        private final SensorThingsService sensorThingsService;
+        private final int maxInFlightRequests;
+        private SendStatistics statistics = new SendStatistics();
+        private CheckpointJournal checkpointJournal;
+        private MetricsRegistry metrics = new MetricsRegistry();
+        private RetryPolicy retryPolicy = RetryPolicy.NONE;
+        private CircuitBreaker circuitBreaker;
+        private AdaptiveSendController controller;
+
+        private Builder(final SensorThingsService sensorThingsService, final int maxInFlightRequests) {
+            if (maxInFlightRequests <= 0) {
+                throw new IllegalArgumentException("Maximum number of in flight requests must be strictly positive");
+            }
+            this.sensorThingsService = sensorThingsService;
+            this.maxInFlightRequests = maxInFlightRequests;
+        }
+
+        /**
+         * @param statistics the {@link SendStatistics} to fill when sending {@link DataArrayBatch}es
+         * @return this {@link Builder}
+         */
+        public Builder statistics(final SendStatistics statistics) {
+            this.statistics = statistics;
+            return this;
+        }
+
+        /**
+         * @param checkpointJournal the {@link CheckpointJournal} in which recording {@link DataArrayBatch}es acknowledged by server and from which skipping the already acknowledged ones. Can be <code>null</code>
+         * @return this {@link Builder}
+         */
+        public Builder checkpointJournal(final CheckpointJournal checkpointJournal) {
+            this.checkpointJournal = checkpointJournal;
+            return this;
+        }
+
+        /**
+         * @param metrics the {@link MetricsRegistry} in which recording sending metrics
+         * @return this {@link Builder}
+         */
+        public Builder metrics(final MetricsRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param retryPolicy the {@link RetryPolicy} of failed requests
+         * @return this {@link Builder}
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @param circuitBreaker the {@link CircuitBreaker} that lets requests through, possibly shared with other {@link DataArraySender}s. Can be <code>null</code>
+         * @return this {@link Builder}
+         */
+        public Builder circuitBreaker(final CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * @param controller the {@link AdaptiveSendController} that tunes the number of requests in flight, up to the maximum, and to which reporting requests outcome. Can be <code>null</code>
+         * @return this {@link Builder}
+         */
+        public Builder controller(final AdaptiveSendController controller) {
+            this.controller = controller;
+            return this;
+        }
+
+        /**
+         * @return a new {@link DataArraySender}, ready to send {@link DataArrayBatch}es
+         */
+        public DataArraySender build() {
+            return new DataArraySender(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of DataArray rows, grouped by {@link Datastream}, that are written straight to a {@link JsonGenerator} instead of being first built as {@link de.fraunhofer.iosb.ilt.sta.model.Observation}s.
+ * <p>
+ * Rows are identified by their group index and their index within the group, and must be written in the order of {@link #getComponents()}.
+ * A {@link DataArraySource} is read again each time a request is sent (e.g., when retrying), so that it must not change until all its batches are sent.
+ *
+ * @author Aurelien Bourdon
+ */
+public interface DataArraySource {
+
+    /**
+     * Get the DataArray components, i.e., the names of the values within each row
+     *
+     * @return the DataArray components
+     */
+    List<String> getComponents();
+
+    /**
+     * Get the number of groups
+     *
+     * @return the number of groups
+     */
+    int getGroupCount();
+
+    /**
+     * Get the {@link Datastream} of the given group's rows
+     *
+     * @param group the group index
+     * @return the {@link Datastream} of the given group's rows
+     */
+    Datastream getDatastream(int group);
+
+    /**
+     * Get the number of rows within the given group
+     *
+     * @param group the group index
+     * @return the number of rows within the given group
+     */
+    int getRowCount(int group);
+
+    /**
+     * Write the given row as a JSON array
+     *
+     * @param generator the {@link JsonGenerator} to which writing the row
+     * @param group     the group index
+     * @param index     the row index within the group
+     * @throws IOException if row cannot be written
+     */
+    void writeRow(JsonGenerator generator, int group, int index) throws IOException;
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writer of the body of a {@code CreateObservations} request (i.e., the JSON array of DataArray values) straight to a {@link JsonGenerator}
+ *
+ * @author Aurelien Bourdon
+ */
+@FunctionalInterface
+public interface DataArrayWriter {
+
+    /**
+     * Write the body of a {@code CreateObservations} request
+     *
+     * @param generator the {@link JsonGenerator} to which writing the body
+     * @throws IOException if body cannot be written
+     */
+    void write(JsonGenerator generator) throws IOException;
+
+}
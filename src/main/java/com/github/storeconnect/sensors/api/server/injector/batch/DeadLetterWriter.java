@@ -0,0 +1,36 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import java.io.IOException;
+
+/**
+ * Write a {@link DataArrayBatch} that could not be sent to server, so that it can be injected again later
+ *
+ * @author Aurelien Bourdon
+ */
+@FunctionalInterface
+public interface DeadLetterWriter {
+
+    /**
+     * Write the given {@link DataArrayBatch}, that could not be sent to server
+     *
+     * @param batch the {@link DataArrayBatch} that could not be sent to server
+     * @throws IOException if {@link DataArrayBatch} cannot be written
+     */
+    void write(DataArrayBatch batch) throws IOException;
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import de.fraunhofer.iosb.ilt.sta.StatusCodeException;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How failed requests are sent again: up to a maximum number of retries, each of them delayed by an exponential backoff with full jitter.
+ * <p>
+ * The delay before the n-th retry is drawn uniformly between 0 and {@code min(maxBackoff, initialBackoff * 2^(n-1))}, so that senders that failed at the same time do not retry at the same time.
+ * <p>
+ * {@code CreateObservations} requests are not idempotent: a request that timed out or got a server error may have been applied by server anyway, so retrying it may duplicate its observations.
+ *
+ * @author Aurelien Bourdon
+ */
+public class RetryPolicy {
+
+    /**
+     * {@link RetryPolicy} that never retries
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, 1, 1);
+
+    /**
+     * Default maximum delay, in milliseconds, before a retry
+     */
+    public static final long DEFAULT_MAX_BACKOFF = 30_000;
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Create a new {@link RetryPolicy}
+     *
+     * @param maxRetries           the maximum number of retries of a same request
+     * @param initialBackoffMillis the maximum delay, in milliseconds, before the first retry
+     * @param maxBackoffMillis     the maximum delay, in milliseconds, before any retry
+     */
+    public RetryPolicy(final int maxRetries, final long initialBackoffMillis, final long maxBackoffMillis) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Maximum number of retries must be positive");
+        }
+        if (initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Backoff delays must be strictly positive, and the maximum one greater than the initial one");
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Check if a request that failed with the given {@link Exception} can be retried
+     *
+     * @param retry   the number of the retry to do, starting from 1
+     * @param failure the {@link Exception} the request failed with
+     * @return true if request can be retried, false otherwise
+     * @see #isTransient(Exception)
+     */
+    public boolean canRetry(final int retry, final Exception failure) {
+        return retry <= maxRetries && isTransient(failure);
+    }
+
+    /**
+     * Check if the given request failure is transient, i.e., if the same request could succeed later
+     * <p>
+     * Only requests that could not reach server (i.e., that failed because of an {@link IOException}) and requests answered with a server error, request timeout or too many requests status code are transient failures.
+     * Any other failure, such as a request rejected by server because of its content or an unexpected error of the injector itself, would fail again, so is not transient.
+     *
+     * @param failure the {@link Exception} the request failed with
+     * @return true if the given request failure is transient, false otherwise
+     */
+    public static boolean isTransient(final Exception failure) {
+        if (failure instanceof StatusCodeException) {
+            final int statusCode = ((StatusCodeException) failure).getStatusCode();
+            return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Draw the delay before the given retry
+     *
+     * @param retry the number of the retry to do, starting from 1
+     * @return the delay, in milliseconds, before the given retry
+     */
+    public long getBackoffMillis(final int retry) {
+        // Shift is capped so that the exponential bound never overflows
+        final long bound = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(Math.max(retry - 1, 0), Long.numberOfLeadingZeros(initialBackoffMillis) - 1));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxRetries=" + maxRetries +
+                ", initialBackoffMillis=" + initialBackoffMillis +
+                ", maxBackoffMillis=" + maxBackoffMillis +
+                '}';
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe statistics about {@link DataArrayBatch}es sent by a {@link DataArraySender}
+ *
+ * @author Aurelien Bourdon
+ */
+public class SendStatistics {
+
+    private long requestCount;
+    private long observationCount;
+    private long byteCount;
+    private long totalLatencyNanos;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private long maxLatencyNanos;
+    private long firstStartNanos = Long.MAX_VALUE;
+    private long lastEndNanos = Long.MIN_VALUE;
+    private long skippedRequestCount;
+    private long skippedObservationCount;
+    private long retryCount;
+    private long deadLetteredRequestCount;
+    private long deadLetteredObservationCount;
+
+    /**
+     * Record a successfully sent {@link DataArrayBatch}
+     *
+     * @param batch      the sent {@link DataArrayBatch}
+     * @param startNanos when request started, as given by {@link System#nanoTime()}
+     * @param endNanos   when request ended, as given by {@link System#nanoTime()}
+     */
+    public synchronized void record(final DataArrayBatch batch, final long startNanos, final long endNanos) {
+        final long latencyNanos = endNanos - startNanos;
+        requestCount++;
+        observationCount += batch.getObservationCount();
+        byteCount += batch.getEstimatedBytes();
+        totalLatencyNanos += latencyNanos;
+        minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        firstStartNanos = Math.min(firstStartNanos, startNanos);
+        lastEndNanos = Math.max(lastEndNanos, endNanos);
+    }
+
+    /**
+     * Record a {@link DataArrayBatch} not sent because already acknowledged by server during a previous injection
+     *
+     * @param batch the skipped {@link DataArrayBatch}
+     */
+    public synchronized void recordSkipped(final DataArrayBatch batch) {
+        skippedRequestCount++;
+        skippedObservationCount += batch.getObservationCount();
+    }
+
+    /**
+     * Record a failed request that is going to be sent again
+     */
+    public synchronized void recordRetry() {
+        retryCount++;
+    }
+
+    /**
+     * Record a {@link DataArrayBatch} not sent because still failing after retries, and written to a dead-letter file instead
+     *
+     * @param batch the dead-lettered {@link DataArrayBatch}
+     */
+    public synchronized void recordDeadLettered(final DataArrayBatch batch) {
+        deadLetteredRequestCount++;
+        deadLetteredObservationCount += batch.getObservationCount();
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getObservationCount() {
+        return observationCount;
+    }
+
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    public synchronized long getSkippedRequestCount() {
+        return skippedRequestCount;
+    }
+
+    public synchronized long getSkippedObservationCount() {
+        return skippedObservationCount;
+    }
+
+    public synchronized long getRetryCount() {
+        return retryCount;
+    }
+
+    public synchronized long getDeadLetteredRequestCount() {
+        return deadLetteredRequestCount;
+    }
+
+    public synchronized long getDeadLetteredObservationCount() {
+        return deadLetteredObservationCount;
+    }
+
+    public synchronized double getAverageLatencyMillis() {
+        return requestCount == 0 ? 0 : toMillis(totalLatencyNanos) / requestCount;
+    }
+
+    public synchronized double getMinLatencyMillis() {
+        return requestCount == 0 ? 0 : toMillis(minLatencyNanos);
+    }
+
+    public synchronized double getMaxLatencyMillis() {
+        return toMillis(maxLatencyNanos);
+    }
+
+    /**
+     * The elapsed time between the start of the first request and the end of the last one
+     *
+     * @return the elapsed time, in milliseconds, between the start of the first request and the end of the last one
+     */
+    public synchronized double getElapsedMillis() {
+        return requestCount == 0 ? 0 : toMillis(lastEndNanos - firstStartNanos);
+    }
+
+    /**
+     * The number of observations sent per second, during the elapsed time
+     *
+     * @return the number of observations sent per second
+     */
+    public synchronized double getThroughput() {
+        final double elapsedMillis = getElapsedMillis();
+        return elapsedMillis == 0 ? 0 : observationCount * 1000 / elapsedMillis;
+    }
+
+    private static double toMillis(final long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "%d observations sent within %d request%s (~%d bytes) in %.0f ms. Request latency: avg %.1f ms, min %.1f ms, max %.1f ms. Throughput: %.1f observations/s%s%s%s",
+                observationCount,
+                requestCount, requestCount > 1 ? "s" : "",
+                byteCount,
+                getElapsedMillis(),
+                getAverageLatencyMillis(), getMinLatencyMillis(), getMaxLatencyMillis(),
+                getThroughput(),
+                skippedRequestCount == 0 ? "" : String.format(". Skipped (already acknowledged): %d observations within %d request%s", skippedObservationCount, skippedRequestCount, skippedRequestCount > 1 ? "s" : ""),
+                retryCount == 0 ? "" : String.format(". Retried: %d request%s", retryCount, retryCount > 1 ? "s" : ""),
+                deadLetteredRequestCount == 0 ? "" : String.format(". Dead-lettered: %d observations within %d request%s", deadLetteredObservationCount, deadLetteredRequestCount, deadLetteredRequestCount > 1 ? "s" : "")
+        );
+    }
+
+}
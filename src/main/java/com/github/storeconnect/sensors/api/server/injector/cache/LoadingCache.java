@@ -0,0 +1,230 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.cache;
+
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A bounded, thread-safe and least recently used cache that loads its missing entries on demand.
+ * <p>
+ * A given key is never loaded twice concurrently (e.g., to avoid creating twice the same entity on server side): concurrent lookups of a key being loaded wait for its loading to complete.
+ * Loading is done outside of the cache lock, so that a slow loading never delays the lookups of other keys.
+ *
+ * @param <K> the type of the cache's keys
+ * @param <V> the type of the cache's values
+ * @author Aurelien Bourdon
+ */
+public class LoadingCache<K, V> {
+
+    private final String name;
+    private final int maximumSize;
+    private final Map<K, V> entries;
+    // Loadings in progress, by key
+    private final Map<K, FutureTask<V>> loadings = new ConcurrentHashMap<>();
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Create a new {@link LoadingCache}
+     *
+     * @param name        the name of this {@link LoadingCache}, used for reporting
+     * @param maximumSize the maximum number of entries to keep before evicting the least recently used ones
+     */
+    public LoadingCache(final String name, final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache maximum size must be strictly positive");
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                final boolean evict = size() > maximumSize;
+                if (evict) {
+                    evictionCount++;
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Get the value associated to the given key, by loading it with the given {@link Loader} if missing
+     *
+     * @param key    the key from which getting the associated value
+     * @param loader the {@link Loader} to use if value is missing
+     * @return the value associated to the given key
+     * @throws ServiceFailureException if value is missing and cannot be loaded
+     */
+    public V get(final K key, final Loader<? super K, ? extends V> loader) throws ServiceFailureException {
+        final V value = getLoaded(key);
+        if (value != null) {
+            return value;
+        }
+        final FutureTask<V> loading = new FutureTask<>(() -> load(key, loader));
+        final FutureTask<V> concurrentLoading = loadings.putIfAbsent(key, loading);
+        if (concurrentLoading != null) {
+            final V loaded = await(concurrentLoading);
+            synchronized (this) {
+                hitCount++;
+            }
+            return loaded;
+        }
+        try {
+            loading.run();
+            return await(loading);
+        } finally {
+            // Removed only once value is cached, so that no other thread can load it again meanwhile
+            loadings.remove(key, loading);
+        }
+    }
+
+    private V load(final K key, final Loader<? super K, ? extends V> loader) throws ServiceFailureException {
+        // Value may have been loaded by another thread since it has been looked up
+        final V loaded = getLoaded(key);
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            missCount++;
+        }
+        final V value = loader.load(key);
+        synchronized (this) {
+            entries.put(key, value);
+        }
+        return value;
+    }
+
+    private synchronized V getLoaded(final K key) {
+        final V value = entries.get(key);
+        if (value != null) {
+            hitCount++;
+        }
+        return value;
+    }
+
+    private static <V> V await(final FutureTask<V> loading) throws ServiceFailureException {
+        try {
+            return loading.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceFailureException("Interrupted while waiting for value to be loaded", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ServiceFailureException) {
+                throw (ServiceFailureException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServiceFailureException("Unable to load value", cause);
+        }
+    }
+
+    /**
+     * Associate the given value to the given key, without affecting hit and miss counters
+     *
+     * @param key   the key to associate
+     * @param value the value to associate
+     */
+    public synchronized void put(final K key, final V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Associate the given value to the given key if no value is associated to it yet, without affecting hit and miss counters
+     *
+     * @param key   the key to associate
+     * @param value the value to associate
+     * @return <code>true</code> if the given value has been associated, <code>false</code> if a value was already associated to the given key
+     */
+    public synchronized boolean putIfAbsent(final K key, final V value) {
+        if (entries.containsKey(key)) {
+            return false;
+        }
+        entries.put(key, value);
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Check if this {@link LoadingCache} reached its maximum size, so that any new entry evicts another one
+     *
+     * @return <code>true</code> if this {@link LoadingCache} reached its maximum size, <code>false</code> otherwise
+     */
+    public synchronized boolean isFull() {
+        return entries.size() >= maximumSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "%s cache: %d hit%s, %d miss%s, %d eviction%s, %d entr%s",
+                name,
+                hitCount, hitCount > 1 ? "s" : "",
+                missCount, missCount > 1 ? "es" : "",
+                evictionCount, evictionCount > 1 ? "s" : "",
+                entries.size(), entries.size() > 1 ? "ies" : "y"
+        );
+    }
+
+    /**
+     * Load a missing value of a {@link LoadingCache}
+     *
+     * @param <K> the type of the key to load
+     * @param <V> the type of the loaded value
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+
+        V load(K key) throws ServiceFailureException;
+
+    }
+
+}
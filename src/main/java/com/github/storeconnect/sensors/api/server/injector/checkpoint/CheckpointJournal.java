@@ -0,0 +1,272 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.checkpoint;
+
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Local journal of the batches acknowledged by server for a given input, so that an interrupted injection can be resumed without sending them again.
+ * <p>
+ * The journal is a text file whose first line identifies the input and the batching settings (so that batches are split the same way when resuming),
+ * followed by the indexes of the acknowledged batches, one per line, and finally by a completion trailer once the input has been fully injected.
+ *
+ * @author Aurelien Bourdon
+ */
+public class CheckpointJournal implements Closeable {
+
+    public static final String FILE_EXTENSION = ".checkpoint";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointJournal.class);
+    private static final String HEADER_PREFIX = "# ";
+    private static final String COMPLETE_TRAILER = "complete";
+
+    private final Path path;
+    private final BitSet acknowledged;
+    private final FileChannel channel;
+    private final Writer writer;
+    private boolean completed;
+
+    private CheckpointJournal(final Path path, final BitSet acknowledged, final boolean completed, final FileChannel channel) {
+        this.path = path;
+        this.acknowledged = acknowledged;
+        this.completed = completed;
+        this.channel = channel;
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+    }
+
+    /**
+     * Check if inputs have to be checkpointed according to the given {@link InjectorConfiguration}, i.e., if resuming a previous injection or if a checkpoint directory is given
+     *
+     * @param configuration the {@link InjectorConfiguration} used to inject inputs
+     * @return <code>true</code> if inputs have to be checkpointed, <code>false</code> otherwise
+     */
+    public static boolean isEnabled(final InjectorConfiguration configuration) {
+        return configuration.isResume() || configuration.getCheckpointDirectory() != null;
+    }
+
+    /**
+     * Open the {@link CheckpointJournal} of the given input
+     *
+     * @param input         the input for which opening the {@link CheckpointJournal}
+     * @param configuration the {@link InjectorConfiguration} used to inject the given input
+     * @return the {@link CheckpointJournal} of the given input, filled with the previously acknowledged batches if resuming a previous injection, and {@link #isCompleted()} if this injection had been completed
+     * @throws IOException if {@link CheckpointJournal} cannot be opened
+     */
+    public static CheckpointJournal open(final File input, final InjectorConfiguration configuration) throws IOException {
+        final File directory = configuration.getCheckpointDirectory() != null ? configuration.getCheckpointDirectory() : input.getAbsoluteFile().getParentFile();
+        final Path path = new File(directory, input.getName() + FILE_EXTENSION).toPath();
+        final String header = HEADER_PREFIX + fingerprint(input, configuration);
+
+        final Checkpoint checkpoint = configuration.isResume() ? load(path, header) : null;
+        if (checkpoint != null) {
+            if (checkpoint.completed) {
+                LOGGER.info("Resuming injection of {}: input already fully injected", input.getAbsolutePath());
+            } else {
+                LOGGER.info("Resuming injection of {}: {} batch{} already acknowledged by server", input.getAbsolutePath(), checkpoint.acknowledged.cardinality(), checkpoint.acknowledged.cardinality() > 1 ? "es" : "");
+            }
+            return new CheckpointJournal(path, checkpoint.acknowledged, checkpoint.completed, FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        }
+        final CheckpointJournal journal = new CheckpointJournal(path, new BitSet(), false, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        try {
+            journal.writeLine(header);
+        } catch (final IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private static String fingerprint(final File input, final InjectorConfiguration configuration) {
+        final String fingerprint = String.format(
+                "input=%s size=%d lastModified=%d batchSize=%d batchMaxBytes=%d",
+                input.getAbsolutePath(), input.length(), input.lastModified(), configuration.getBatchSize(), configuration.getBatchMaxBytes()
+        );
+        final StringBuilder options = new StringBuilder(fingerprint);
+        // Replay windows batch observations differently
+        if (configuration.getReplaySpeed() > 0) {
+            options.append(String.format(" replaySpeed=%s replayWindow=%d", configuration.getReplaySpeed(), configuration.getReplayWindow()));
+        }
+        // Dropping duplicates changes batches content
+        if (configuration.getDedupWindow() > 0) {
+            options.append(String.format(" dedupWindow=%d", configuration.getDedupWindow()));
+        }
+        // Simplifying tracks changes batches content
+        if (configuration.getTrackMinInterval() > 0 || configuration.getTrackMinDistance() > 0 || configuration.getTrackTolerance() > 0) {
+            options.append(String.format(" trackMinInterval=%d trackMinDistance=%s trackTolerance=%s", configuration.getTrackMinInterval(), configuration.getTrackMinDistance(), configuration.getTrackTolerance()));
+        }
+        // Adaptive sending splits batches according to server load, so that they cannot be split the same way when resuming
+        if (configuration.isAdaptiveSending()) {
+            options.append(" adaptiveSending=true");
+        }
+        // Streamed batches are split according to the size of their rows as written by the injector, which can differ from the one of built observations
+        if (configuration.isStreamingRequests()) {
+            options.append(" streamingRequests=true");
+        }
+        return options.toString();
+    }
+
+    private static Checkpoint load(final Path path, final String expectedHeader) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            LOGGER.info("No checkpoint found at {}, starting injection from the beginning", path);
+            return null;
+        }
+        truncateTornLine(path);
+        try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!expectedHeader.equals(reader.readLine())) {
+                LOGGER.warn("Checkpoint {} does not match input or batching settings, starting injection from the beginning", path);
+                return null;
+            }
+            final BitSet acknowledged = new BitSet();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (COMPLETE_TRAILER.equals(line.trim())) {
+                    return new Checkpoint(acknowledged, true);
+                }
+                try {
+                    acknowledged.set(Integer.parseInt(line.trim()));
+                } catch (final NumberFormatException e) {
+                    LOGGER.debug("Ignoring malformed checkpoint line '{}'", line);
+                }
+            }
+            return new Checkpoint(acknowledged, false);
+        }
+    }
+
+    /**
+     * Drop the last line of the given journal if it has been partially written when previous injection has been interrupted,
+     * so that it is neither read as another batch index (e.g., {@code 4} for {@code 42}) nor glued to the next appended line
+     */
+    private static void truncateTornLine(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+            final ByteBuffer lastByte = ByteBuffer.allocate(1);
+            long end = size;
+            while (end > 0) {
+                lastByte.clear();
+                channel.read(lastByte, end - 1);
+                if (lastByte.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                LOGGER.warn("Dropping the partially written last line of checkpoint {}", path);
+                channel.truncate(end);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Check if the given batch has already been acknowledged by server
+     *
+     * @param batchIndex the index of the batch to check
+     * @return <code>true</code> if the given batch has already been acknowledged by server, <code>false</code> otherwise
+     */
+    public synchronized boolean isAcknowledged(final int batchIndex) {
+        return acknowledged.get(batchIndex);
+    }
+
+    /**
+     * Durably record the given batch as acknowledged by server
+     *
+     * @param batchIndex the index of the acknowledged batch
+     */
+    public synchronized void acknowledge(final int batchIndex) {
+        try {
+            writeLine(Integer.toString(batchIndex));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to write checkpoint " + path, e);
+        }
+        acknowledged.set(batchIndex);
+    }
+
+    /**
+     * Check if the input of this {@link CheckpointJournal} has already been fully injected, so that there is nothing left to resume
+     *
+     * @return <code>true</code> if the input of this {@link CheckpointJournal} has already been fully injected, <code>false</code> otherwise
+     */
+    public synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Durably record the input of this {@link CheckpointJournal} as fully injected, and close it
+     *
+     * @throws IOException if {@link CheckpointJournal} cannot be written
+     */
+    public synchronized void complete() throws IOException {
+        try {
+            writeLine(COMPLETE_TRAILER);
+            completed = true;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Write the given line and force it to storage, so that it survives a crash of the injector or of the system
+     */
+    private void writeLine(final String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * The state of a previous injection, as loaded from its {@link CheckpointJournal}
+     */
+    private static class Checkpoint {
+
+        private final BitSet acknowledged;
+        private final boolean completed;
+
+        private Checkpoint(final BitSet acknowledged, final boolean completed) {
+            this.acknowledged = acknowledged;
+            this.completed = completed;
+        }
+
+    }
+
+}
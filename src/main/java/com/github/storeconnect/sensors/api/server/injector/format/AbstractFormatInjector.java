@@ -15,6 +15,15 @@
  */
 package com.github.storeconnect.sensors.api.server.injector.format;
 
+import com.github.storeconnect.sensors.api.server.injector.batch.CircuitBreaker;
+import com.github.storeconnect.sensors.api.server.injector.batch.RetryPolicy;
+import com.github.storeconnect.sensors.api.server.injector.batch.SendStatistics;
+import com.github.storeconnect.sensors.api.server.injector.checkpoint.CheckpointJournal;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MeteredIterator;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import com.github.storeconnect.sensors.api.server.injector.util.StreamUtils;
 import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
 import org.slf4j.Logger;
@@ -22,7 +31,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Base class for any {@link FormatInjector}
@@ -31,35 +42,123 @@ import java.util.List;
  */
 public abstract class AbstractFormatInjector<T extends Format> implements FormatInjector<T> {
 
+    /**
+     * {@link Timer} of the environment preparation, when actually done
+     */
+    public static final String INIT_ENVIRONMENT_TIMER = "initEnvironment";
+
+    /**
+     * {@link Timer} of the input parsing. As data is parsed while being injected, it is included into the {@link #INJECT_TIMER}
+     */
+    public static final String PARSE_TIMER = "parse";
+
+    /**
+     * {@link Timer} of the input injection, including its parsing
+     */
+    public static final String INJECT_TIMER = "inject";
+
+    /**
+     * {@link Counter} of the records parsed from inputs
+     */
+    public static final String RECORDS_COUNTER = "records";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractFormatInjector.class);
 
-    private final SensorThingsService sensorThingsService;
     private final File input;
+    private final InjectionContext context;
+    private final SendStatistics sendStatistics = new SendStatistics();
+    private volatile InjectionSummary summary;
+    private CheckpointJournal checkpointJournal;
 
     public AbstractFormatInjector(final File input, final SensorThingsService sensorThingsService) {
-        this.sensorThingsService = sensorThingsService;
+        this(input, new InjectionContext(sensorThingsService, new InjectorConfiguration()));
+    }
+
+    public AbstractFormatInjector(final File input, final InjectionContext context) {
         this.input = input;
+        this.context = context;
     }
 
     @Override
     public void run() {
+        final long start = System.nanoTime();
+        Throwable failure = null;
         try {
             LOGGER.info("Starting {}", this);
             LOGGER.info("Preparing environment...");
-            initEnvironment();
-            LOGGER.info("Preparing environment... Done.");
-            LOGGER.info("Parsing input file...");
-            final List<T> data = parse(input);
-            LOGGER.info("Parsing input file... Done.");
-            LOGGER.info("Injecting data...");
-            inject(data);
-            LOGGER.info("Injecting data... Done.");
+            if (context.initializeOnce(getEnvironmentKey(), this::initEnvironmentTimed)) {
+                LOGGER.info("Preparing environment... Done.");
+            } else {
+                LOGGER.info("Preparing environment... Already done.");
+            }
+            LOGGER.info("Parsing and injecting data...");
+            try (final CheckpointJournal journal = openCheckpointJournal()) {
+                checkpointJournal = journal;
+                if (journal != null && journal.isCompleted()) {
+                    LOGGER.info("Parsing and injecting data... Skipped, as input has already been fully injected.");
+                } else {
+                    // Data is parsed while being injected, so that input does not have to be fully loaded in memory
+                    try (final Stream<T> data = parse(input)) {
+                        final MeteredIterator<T> records = new MeteredIterator<>(data.iterator());
+                        try (final Timer.Context injecting = getMetrics().timer(INJECT_TIMER).time()) {
+                            inject(StreamUtils.stream(records, data::close));
+                        } finally {
+                            records.report(getMetrics().timer(PARSE_TIMER), getMetrics().counter(RECORDS_COUNTER));
+                        }
+                    }
+                    // Input is fully injected, so there is nothing to resume anymore
+                    if (journal != null) {
+                        journal.complete();
+                    }
+                    LOGGER.info("Parsing and injecting data... Done.");
+                }
+            }
             LOGGER.info("Injection process done for {}", this);
-        } catch (final ServiceFailureException | IOException e) {
+        } catch (final UncheckedIOException e) {
+            failure = e.getCause();
+            LOGGER.error("Unexpected failure for {}", this, failure);
+        } catch (final ServiceFailureException | IOException | RuntimeException e) {
+            failure = e;
             LOGGER.error("Unexpected failure for {}", this, e);
+        } finally {
+            summary = new InjectionSummary(
+                    input,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    sendStatistics.getObservationCount(),
+                    sendStatistics.getRequestCount(),
+                    failure
+            );
+        }
+    }
+
+    private CheckpointJournal openCheckpointJournal() {
+        if (!CheckpointJournal.isEnabled(getConfiguration())) {
+            return null;
+        }
+        try {
+            return CheckpointJournal.open(input, getConfiguration());
+        } catch (final IOException e) {
+            // Checkpointing only saves work when resuming, so it must not prevent injection
+            LOGGER.warn("Unable to open checkpoint journal of {}, injecting it without checkpoint", input.getAbsolutePath(), e);
+            return null;
         }
     }
 
+    private void initEnvironmentTimed() throws ServiceFailureException {
+        try (final Timer.Context initializing = getMetrics().timer(INIT_ENVIRONMENT_TIMER).time()) {
+            initEnvironment();
+        }
+    }
+
+    /**
+     * The key identifying the environment prepared by {@link #initEnvironment()}, so that it is prepared only once by {@link InjectionContext}
+     *
+     * @return the key identifying the environment prepared by {@link #initEnvironment()}
+     */
+    protected Object getEnvironmentKey() {
+        return getClass();
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -70,10 +169,80 @@ public abstract class AbstractFormatInjector<T extends Format> implements Format
     }
 
     public SensorThingsService getSensorThingsService() {
-        return sensorThingsService;
+        return context.getSensorThingsService();
     }
 
     public File getInput() {
         return input;
     }
+
+    public InjectionContext getContext() {
+        return context;
+    }
+
+    public InjectorConfiguration getConfiguration() {
+        return context.getConfiguration();
+    }
+
+    /**
+     * The {@link MetricsRegistry} in which recording metrics, shared by all {@link FormatInjector}s of the {@link InjectionContext}
+     *
+     * @return the {@link MetricsRegistry} in which recording metrics
+     */
+    public MetricsRegistry getMetrics() {
+        return context.getMetrics();
+    }
+
+    /**
+     * The {@link SendStatistics} to fill when sending data to server
+     *
+     * @return the {@link SendStatistics} to fill when sending data to server
+     */
+    public SendStatistics getSendStatistics() {
+        return sendStatistics;
+    }
+
+    /**
+     * The {@link RetryPolicy} of the requests that failed to send data to server
+     *
+     * @return the {@link RetryPolicy} of the requests that failed to send data to server
+     */
+    public RetryPolicy getRetryPolicy() {
+        return new RetryPolicy(
+                getConfiguration().getSendRetries(),
+                getConfiguration().getSendRetryBackoff(),
+                Math.max(getConfiguration().getSendRetryBackoff(), RetryPolicy.DEFAULT_MAX_BACKOFF)
+        );
+    }
+
+    /**
+     * The {@link CircuitBreaker} of the requests to send data to server, shared by all {@link FormatInjector}s of the {@link InjectionContext} as they target the same server
+     *
+     * @return the {@link CircuitBreaker} of the requests to send data to server
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return context.getShared(CircuitBreaker.class, () -> new CircuitBreaker(
+                getConfiguration().getCircuitBreakerThreshold(),
+                getConfiguration().getCircuitBreakerCooldown(),
+                getMetrics()
+        ));
+    }
+
+    /**
+     * The {@link CheckpointJournal} of the input being injected, in which recording batches acknowledged by server
+     *
+     * @return the {@link CheckpointJournal} of the input being injected, or <code>null</code> if input is not checkpointed
+     */
+    public CheckpointJournal getCheckpointJournal() {
+        return checkpointJournal;
+    }
+
+    /**
+     * The {@link InjectionSummary} of this {@link FormatInjector}, once executed
+     *
+     * @return the {@link InjectionSummary} of this {@link FormatInjector}, or <code>null</code> if not yet executed
+     */
+    public InjectionSummary getSummary() {
+        return summary;
+    }
 }
@@ -19,7 +19,7 @@ import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Base type for any {@link Format} injector
@@ -31,8 +31,24 @@ public interface FormatInjector<T extends Format> extends Runnable {
 
     void initEnvironment() throws ServiceFailureException;
 
-    List<T> parse(File input) throws IOException;
+    /**
+     * Lazily parse the given input, so that data units are read only when consumed by the returned {@link Stream}.
+     * <p>
+     * Returned {@link Stream} holds the underlying input and then needs to be closed once consumed.
+     * Any parsing failure occurring while consuming the {@link Stream} is raised as an {@link java.io.UncheckedIOException}.
+     *
+     * @param input the input to parse
+     * @return the {@link Stream} of parsed data units
+     * @throws IOException if input cannot be opened
+     */
+    Stream<T> parse(File input) throws IOException;
 
-    void inject(List<T> data) throws ServiceFailureException;
+    /**
+     * Inject the given data units while they are consumed from the given {@link Stream}
+     *
+     * @param data the data units to inject
+     * @throws ServiceFailureException if injection failed
+     */
+    void inject(Stream<T> data) throws ServiceFailureException;
 
 }
@@ -15,17 +15,24 @@
  */
 package com.github.storeconnect.sensors.api.server.injector.format;
 
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionNdjsonObservationInjector;
 import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionObservationInjector;
-import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionSyntheticObservationInjector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Manage all existing {@link FormatInjector}s
@@ -34,14 +41,19 @@ import java.util.concurrent.TimeUnit;
  */
 public final class FormatInjectorManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FormatInjectorManager.class);
     private static final FormatInjectorManager INSTANCE = new FormatInjectorManager();
     private final Map<String, Class<? extends AbstractFormatInjector<?>>> injectors = new HashMap<String, Class<? extends AbstractFormatInjector<?>>>() {
         {
             put("flat-motion", FlatMotionObservationInjector.class);
+            put("flat-motion-ndjson", FlatMotionNdjsonObservationInjector.class);
+            put("flat-motion-synthetic", FlatMotionSyntheticObservationInjector.class);
         }
     };
-    // Only one injection at a time
-    private final ExecutorService injectorsExecutionPool = Executors.newSingleThreadExecutor();
+    // Injections of the current run, executed by a pool of InjectorConfiguration#getWorkers() workers
+    private final List<AbstractFormatInjector<?>> startedInjectors = new ArrayList<>();
+    private ExecutorService injectorsExecutionPool;
+    private long runStartNanos;
 
     private FormatInjectorManager() {
     }
@@ -50,15 +62,26 @@ public final class FormatInjectorManager {
         return INSTANCE;
     }
 
-    public void handle(final String dataFormat, final File fileInput, final SensorThingsService sensorThingsService) {
+    public void handle(final String dataFormat, final File fileInput, final InjectionContext context) {
+        startInjector(newInjector(dataFormat, fileInput, context), context.getConfiguration().getWorkers());
+    }
+
+    /**
+     * Create a new {@link FormatInjector} of the given data format, without starting it
+     *
+     * @param dataFormat the data format of the given input
+     * @param fileInput  the input to inject
+     * @param context    the {@link InjectionContext} of the injection
+     * @return a new {@link FormatInjector} of the given data format, to be run by the caller
+     */
+    public AbstractFormatInjector<?> newInjector(final String dataFormat, final File fileInput, final InjectionContext context) {
         if (!canHandle(dataFormat)) {
             throw new IllegalArgumentException("Unable to handle format " + dataFormat);
         }
         final Class<? extends AbstractFormatInjector<?>> injectorClass = injectors.get(dataFormat);
         try {
-            final Constructor<? extends AbstractFormatInjector<?>> constructor = injectorClass.getDeclaredConstructor(File.class, SensorThingsService.class);
-            final FormatInjector<?> injector = constructor.newInstance(fileInput, sensorThingsService);
-            startInjector(injector);
+            final Constructor<? extends AbstractFormatInjector<?>> constructor = injectorClass.getDeclaredConstructor(File.class, InjectionContext.class);
+            return constructor.newInstance(fileInput, context);
         } catch (final ReflectiveOperationException e) {
             throw new IllegalArgumentException(e);
         }
@@ -68,7 +91,13 @@ public final class FormatInjectorManager {
         return injectors.containsKey(injectorName);
     }
 
-    private void startInjector(final FormatInjector<?> injector) {
+    private synchronized void startInjector(final AbstractFormatInjector<?> injector, final int workers) {
+        if (injectorsExecutionPool == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            injectorsExecutionPool = Executors.newFixedThreadPool(workers, runnable -> new Thread(runnable, "injector-" + threadCount.incrementAndGet()));
+            runStartNanos = System.nanoTime();
+        }
+        startedInjectors.add(injector);
         injectorsExecutionPool.execute(injector);
     }
 
@@ -76,9 +105,31 @@ public final class FormatInjectorManager {
         return injectors.keySet();
     }
 
-    public void awaitTermination(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+    /**
+     * Wait for all started injections to complete, log their combined summary and then make this {@link FormatInjectorManager} ready for a new run
+     *
+     * @param timeout  the maximum time to wait
+     * @param timeUnit the time unit of the timeout argument
+     * @return the {@link InjectionSummary}s of the completed injections
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized List<InjectionSummary> awaitTermination(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+        if (injectorsExecutionPool == null) {
+            return new ArrayList<>();
+        }
         injectorsExecutionPool.shutdown();
         injectorsExecutionPool.awaitTermination(timeout, timeUnit);
+        final List<InjectionSummary> summaries = startedInjectors.stream()
+                .map(AbstractFormatInjector::getSummary)
+                .filter(summary -> summary != null)
+                .collect(Collectors.toList());
+        if (summaries.size() > 1) {
+            summaries.forEach(summary -> LOGGER.info("{}", summary));
+        }
+        LOGGER.info("{}", InjectionSummary.combine(summaries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStartNanos)));
+        startedInjectors.clear();
+        injectorsExecutionPool = null;
+        return summaries;
     }
 
 }
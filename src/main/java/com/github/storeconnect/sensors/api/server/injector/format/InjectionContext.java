@@ -0,0 +1,129 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all {@link FormatInjector}s of a same injection run: server connection, configuration, metrics, environment bootstrap and shared components (e.g., entity caches)
+ *
+ * @author Aurelien Bourdon
+ */
+public class InjectionContext {
+
+    private final SensorThingsService sensorThingsService;
+    private final InjectorConfiguration configuration;
+    private final MetricsRegistry metrics;
+    private final Set<Object> initializedEnvironments = new HashSet<>();
+    private final Map<Class<?>, Object> sharedComponents = new HashMap<>();
+    private volatile boolean stopRequested;
+
+    public InjectionContext(final SensorThingsService sensorThingsService, final InjectorConfiguration configuration) {
+        this(sensorThingsService, configuration, new MetricsRegistry());
+    }
+
+    public InjectionContext(final SensorThingsService sensorThingsService, final InjectorConfiguration configuration, final MetricsRegistry metrics) {
+        this.sensorThingsService = sensorThingsService;
+        this.configuration = configuration;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Execute the given {@link EnvironmentInitializer} only if no other one has already been successfully executed for the same key
+     *
+     * @param key         the key identifying the environment to initialize
+     * @param initializer the {@link EnvironmentInitializer} to execute
+     * @return <code>true</code> if the given {@link EnvironmentInitializer} has been executed, <code>false</code> if environment was already initialized
+     * @throws ServiceFailureException if environment initialization failed
+     */
+    public synchronized boolean initializeOnce(final Object key, final EnvironmentInitializer initializer) throws ServiceFailureException {
+        if (initializedEnvironments.contains(key)) {
+            return false;
+        }
+        initializer.initialize();
+        initializedEnvironments.add(key);
+        return true;
+    }
+
+    /**
+     * Get the component of the given type shared by all {@link FormatInjector}s, by creating it if necessary
+     *
+     * @param type    the type of the shared component
+     * @param factory how to create the shared component if necessary
+     * @param <S>     the type of the shared component
+     * @return the component of the given type shared by all {@link FormatInjector}s
+     */
+    public synchronized <S> S getShared(final Class<S> type, final Supplier<? extends S> factory) {
+        Object sharedComponent = sharedComponents.get(type);
+        if (sharedComponent == null) {
+            sharedComponent = factory.get();
+            sharedComponents.put(type, sharedComponent);
+        }
+        return type.cast(sharedComponent);
+    }
+
+    public SensorThingsService getSensorThingsService() {
+        return sensorThingsService;
+    }
+
+    public InjectorConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * The {@link MetricsRegistry} in which all {@link FormatInjector}s record their metrics
+     *
+     * @return the {@link MetricsRegistry} in which all {@link FormatInjector}s record their metrics
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Ask the {@link FormatInjector}s that would run indefinitely otherwise (e.g., those following a growing input) to stop, once the data already read is injected
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    /**
+     * If {@link FormatInjector}s have been asked to stop
+     *
+     * @return true if {@link #requestStop()} has been called, false otherwise
+     */
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    /**
+     * Initialize an environment shared by {@link FormatInjector}s
+     */
+    @FunctionalInterface
+    public interface EnvironmentInitializer {
+
+        void initialize() throws ServiceFailureException;
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Summary of a {@link FormatInjector} execution
+ *
+ * @author Aurelien Bourdon
+ */
+public class InjectionSummary {
+
+    private final File input;
+    private final long durationMillis;
+    private final long observationCount;
+    private final long requestCount;
+    private final Throwable failure;
+
+    public InjectionSummary(final File input, final long durationMillis, final long observationCount, final long requestCount, final Throwable failure) {
+        this.input = input;
+        this.durationMillis = durationMillis;
+        this.observationCount = observationCount;
+        this.requestCount = requestCount;
+        this.failure = failure;
+    }
+
+    /**
+     * Format a combined summary of the given {@link InjectionSummary}s
+     *
+     * @param summaries     the {@link InjectionSummary}s to combine
+     * @param elapsedMillis the wall-clock time, in milliseconds, spent to execute all the associated {@link FormatInjector}s
+     * @return a combined summary of the given {@link InjectionSummary}s
+     */
+    public static String combine(final List<InjectionSummary> summaries, final long elapsedMillis) {
+        final long failed = summaries.stream().filter(summary -> !summary.isSucceeded()).count();
+        final long observations = summaries.stream().mapToLong(InjectionSummary::getObservationCount).sum();
+        final long requests = summaries.stream().mapToLong(InjectionSummary::getRequestCount).sum();
+        return String.format(
+                "%d input%s injected (%d succeeded, %d failed): %d observations sent within %d request%s in %d ms (%.1f observations/s)",
+                summaries.size(), summaries.size() > 1 ? "s" : "",
+                summaries.size() - failed, failed,
+                observations,
+                requests, requests > 1 ? "s" : "",
+                elapsedMillis,
+                elapsedMillis == 0 ? 0 : observations * 1000.0 / elapsedMillis
+        );
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %s, %d observations sent within %d request%s in %d ms",
+                input.getAbsolutePath(),
+                isSucceeded() ? "succeeded" : "failed (" + failure + ")",
+                observationCount,
+                requestCount, requestCount > 1 ? "s" : "",
+                durationMillis
+        );
+    }
+
+    public boolean isSucceeded() {
+        return failure == null;
+    }
+
+    public File getInput() {
+        return input;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getObservationCount() {
+        return observationCount;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+}
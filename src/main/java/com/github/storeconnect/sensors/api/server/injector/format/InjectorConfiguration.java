@@ -0,0 +1,524 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format;
+
+import java.io.File;
+
+/**
+ * Settings shared by any {@link FormatInjector}
+ *
+ * @author Aurelien Bourdon
+ */
+public class InjectorConfiguration {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final long DEFAULT_BATCH_MAX_BYTES = 8L * 1024 * 1024;
+    public static final int DEFAULT_CONCURRENT_REQUESTS = 1;
+    public static final int DEFAULT_WORKERS = 1;
+    public static final int DEFAULT_PREFETCH_PAGE_SIZE = 1000;
+    public static final int DEFAULT_PARSE_THREADS = 1;
+    public static final double DEFAULT_REPLAY_SPEED = 0;
+    public static final long DEFAULT_REPLAY_WINDOW = 100;
+    public static final int DEFAULT_DEDUP_WINDOW = 0;
+    public static final int DEFAULT_TRACK_MIN_INTERVAL = 0;
+    public static final double DEFAULT_TRACK_MIN_DISTANCE = 0;
+    public static final double DEFAULT_TRACK_TOLERANCE = 0;
+    public static final int DEFAULT_SEND_RETRIES = 3;
+    public static final long DEFAULT_SEND_RETRY_BACKOFF = 500;
+    public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_COOLDOWN = 10_000;
+    public static final double DEFAULT_ADAPTIVE_LATENCY_TOLERANCE = 2;
+    public static final int DEFAULT_HTTP_MAX_CONNECTIONS = 0;
+    public static final long DEFAULT_HTTP_CONNECT_TIMEOUT = 10_000;
+    public static final long DEFAULT_HTTP_SOCKET_TIMEOUT = 60_000;
+    public static final long DEFAULT_HTTP_KEEP_ALIVE = 30_000;
+    public static final boolean DEFAULT_HTTP_TCP_NO_DELAY = true;
+    public static final long DEFAULT_FOLLOW_LINGER = 1000;
+    public static final long DEFAULT_FOLLOW_POLL_INTERVAL = 100;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long batchMaxBytes = DEFAULT_BATCH_MAX_BYTES;
+    private int concurrentRequests = DEFAULT_CONCURRENT_REQUESTS;
+    private int workers = DEFAULT_WORKERS;
+    private boolean resume;
+    private File checkpointDirectory;
+    private int prefetchPageSize = DEFAULT_PREFETCH_PAGE_SIZE;
+    private int parseThreads = DEFAULT_PARSE_THREADS;
+    private double replaySpeed = DEFAULT_REPLAY_SPEED;
+    private long replayWindow = DEFAULT_REPLAY_WINDOW;
+    private int dedupWindow = DEFAULT_DEDUP_WINDOW;
+    private int trackMinInterval = DEFAULT_TRACK_MIN_INTERVAL;
+    private double trackMinDistance = DEFAULT_TRACK_MIN_DISTANCE;
+    private double trackTolerance = DEFAULT_TRACK_TOLERANCE;
+    private int sendRetries = DEFAULT_SEND_RETRIES;
+    private long sendRetryBackoff = DEFAULT_SEND_RETRY_BACKOFF;
+    private int circuitBreakerThreshold = DEFAULT_CIRCUIT_BREAKER_THRESHOLD;
+    private long circuitBreakerCooldown = DEFAULT_CIRCUIT_BREAKER_COOLDOWN;
+    private boolean deadLetter;
+    private File deadLetterDirectory;
+    private boolean adaptiveSending;
+    private double adaptiveLatencyTolerance = DEFAULT_ADAPTIVE_LATENCY_TOLERANCE;
+    private int httpMaxConnections = DEFAULT_HTTP_MAX_CONNECTIONS;
+    private long httpConnectTimeout = DEFAULT_HTTP_CONNECT_TIMEOUT;
+    private long httpSocketTimeout = DEFAULT_HTTP_SOCKET_TIMEOUT;
+    private long httpKeepAlive = DEFAULT_HTTP_KEEP_ALIVE;
+    private boolean httpTcpNoDelay = DEFAULT_HTTP_TCP_NO_DELAY;
+    private boolean streamingRequests;
+    private boolean follow;
+    private long followLinger = DEFAULT_FOLLOW_LINGER;
+    private long followPollInterval = DEFAULT_FOLLOW_POLL_INTERVAL;
+
+    @Override
+    public String toString() {
+        return "InjectorConfiguration{" +
+                "batchSize=" + batchSize +
+                ", batchMaxBytes=" + batchMaxBytes +
+                ", concurrentRequests=" + concurrentRequests +
+                ", workers=" + workers +
+                ", resume=" + resume +
+                ", checkpointDirectory=" + checkpointDirectory +
+                ", prefetchPageSize=" + prefetchPageSize +
+                ", parseThreads=" + parseThreads +
+                ", replaySpeed=" + replaySpeed +
+                ", replayWindow=" + replayWindow +
+                ", dedupWindow=" + dedupWindow +
+                ", trackMinInterval=" + trackMinInterval +
+                ", trackMinDistance=" + trackMinDistance +
+                ", trackTolerance=" + trackTolerance +
+                ", sendRetries=" + sendRetries +
+                ", sendRetryBackoff=" + sendRetryBackoff +
+                ", circuitBreakerThreshold=" + circuitBreakerThreshold +
+                ", circuitBreakerCooldown=" + circuitBreakerCooldown +
+                ", deadLetter=" + deadLetter +
+                ", deadLetterDirectory=" + deadLetterDirectory +
+                ", adaptiveSending=" + adaptiveSending +
+                ", adaptiveLatencyTolerance=" + adaptiveLatencyTolerance +
+                ", httpMaxConnections=" + httpMaxConnections +
+                ", httpConnectTimeout=" + httpConnectTimeout +
+                ", httpSocketTimeout=" + httpSocketTimeout +
+                ", httpKeepAlive=" + httpKeepAlive +
+                ", httpTcpNoDelay=" + httpTcpNoDelay +
+                ", streamingRequests=" + streamingRequests +
+                ", follow=" + follow +
+                ", followLinger=" + followLinger +
+                ", followPollInterval=" + followPollInterval +
+                '}';
+    }
+
+    /**
+     * The maximum number of observations to send within a single request
+     *
+     * @return the maximum number of observations to send within a single request
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The maximum serialized size, in bytes, of the observations to send within a single request
+     *
+     * @return the maximum serialized size, in bytes, of the observations to send within a single request
+     */
+    public long getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(final long batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * The maximum number of requests to keep in flight at the same time when sending observations
+     *
+     * @return the maximum number of requests to keep in flight at the same time when sending observations
+     */
+    public int getConcurrentRequests() {
+        return concurrentRequests;
+    }
+
+    public void setConcurrentRequests(final int concurrentRequests) {
+        this.concurrentRequests = concurrentRequests;
+    }
+
+    /**
+     * The maximum number of inputs to inject at the same time
+     *
+     * @return the maximum number of inputs to inject at the same time
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(final int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * If batches already acknowledged by server during a previous injection of the same input have to be skipped
+     *
+     * @return <code>true</code> if batches already acknowledged by server have to be skipped, <code>false</code> otherwise
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(final boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * The directory where to store checkpoint journals
+     *
+     * @return the directory where to store checkpoint journals, or <code>null</code> to store them next to their input
+     */
+    public File getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    public void setCheckpointDirectory(final File checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    /**
+     * The number of entities to request per page when prefetching existing server entities, or 0 to disable prefetching
+     *
+     * @return the number of entities to request per page when prefetching existing server entities, or 0 to disable prefetching
+     */
+    public int getPrefetchPageSize() {
+        return prefetchPageSize;
+    }
+
+    public void setPrefetchPageSize(final int prefetchPageSize) {
+        this.prefetchPageSize = prefetchPageSize;
+    }
+
+    /**
+     * The number of threads to use to parse a single input. When greater than 1, uncompressed inputs are memory-mapped, cut into chunks at record boundaries and chunks are parsed in parallel, while keeping the input order
+     *
+     * @return the number of threads to use to parse a single input
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public void setParseThreads(final int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * The replay speed factor, e.g., 1 to send observations at the pace they have been recorded or 10 to send them 10 times faster. 0 disables replay, i.e., observations are sent as fast as possible
+     *
+     * @return the replay speed factor, or 0 if replay is disabled
+     */
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    public void setReplaySpeed(final double replaySpeed) {
+        this.replaySpeed = replaySpeed;
+    }
+
+    /**
+     * The wall-clock time span, in milliseconds, within which observations due at the same time are sent together when replaying
+     *
+     * @return the wall-clock time span, in milliseconds, within which observations are sent together when replaying
+     */
+    public long getReplayWindow() {
+        return replayWindow;
+    }
+
+    public void setReplayWindow(final long replayWindow) {
+        this.replayWindow = replayWindow;
+    }
+
+    /**
+     * The width, in milliseconds, of the sliding window of recording dates within which duplicate observations are dropped. 0 disables duplicates dropping
+     *
+     * @return the width, in milliseconds, of the sliding window within which duplicate observations are dropped, or 0 if duplicates are not dropped
+     */
+    public int getDedupWindow() {
+        return dedupWindow;
+    }
+
+    public void setDedupWindow(final int dedupWindow) {
+        this.dedupWindow = dedupWindow;
+    }
+
+    /**
+     * The minimum interval, in milliseconds, between two observations of a same track
+     *
+     * @return the minimum interval, in milliseconds, between two observations of a same track, or 0 to keep all of them
+     */
+    public int getTrackMinInterval() {
+        return trackMinInterval;
+    }
+
+    public void setTrackMinInterval(final int trackMinInterval) {
+        this.trackMinInterval = trackMinInterval;
+    }
+
+    /**
+     * The minimum distance, in meters, between two observations of a same track
+     *
+     * @return the minimum distance, in meters, between two observations of a same track, or 0 to keep all of them
+     */
+    public double getTrackMinDistance() {
+        return trackMinDistance;
+    }
+
+    public void setTrackMinDistance(final double trackMinDistance) {
+        this.trackMinDistance = trackMinDistance;
+    }
+
+    /**
+     * The maximum distance, in meters, between a dropped observation and the simplified trajectory of its track
+     *
+     * @return the maximum distance, in meters, between a dropped observation and the simplified trajectory of its track, or 0 to disable trajectory simplification
+     */
+    public double getTrackTolerance() {
+        return trackTolerance;
+    }
+
+    public void setTrackTolerance(final double trackTolerance) {
+        this.trackTolerance = trackTolerance;
+    }
+
+    /**
+     * The maximum number of times a batch is sent again after a failed request
+     *
+     * @return the maximum number of times a batch is sent again after a failed request
+     */
+    public int getSendRetries() {
+        return sendRetries;
+    }
+
+    public void setSendRetries(final int sendRetries) {
+        this.sendRetries = sendRetries;
+    }
+
+    /**
+     * The initial delay, in milliseconds, before sending again a batch after a failed request. Delay doubles after each failed request, and is randomized (jittered) so that senders do not retry all at the same time
+     *
+     * @return the initial delay, in milliseconds, before sending again a batch after a failed request
+     */
+    public long getSendRetryBackoff() {
+        return sendRetryBackoff;
+    }
+
+    public void setSendRetryBackoff(final long sendRetryBackoff) {
+        this.sendRetryBackoff = sendRetryBackoff;
+    }
+
+    /**
+     * The number of consecutive failed requests after which all senders are paused, so that an unhealthy server is not hammered. 0 never pauses senders
+     *
+     * @return the number of consecutive failed requests after which all senders are paused, or 0 to never pause them
+     */
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(final int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    /**
+     * The time, in milliseconds, during which senders are paused once the circuit breaker opened, before a single request probes server again
+     *
+     * @return the time, in milliseconds, during which senders are paused once the circuit breaker opened
+     */
+    public long getCircuitBreakerCooldown() {
+        return circuitBreakerCooldown;
+    }
+
+    public void setCircuitBreakerCooldown(final long circuitBreakerCooldown) {
+        this.circuitBreakerCooldown = circuitBreakerCooldown;
+    }
+
+    /**
+     * If batches still failing after retries have to be written to a dead-letter file, from which they can be injected again, instead of failing injection
+     *
+     * @return if batches still failing after retries have to be written to a dead-letter file instead of failing injection
+     */
+    public boolean isDeadLetter() {
+        return deadLetter;
+    }
+
+    public void setDeadLetter(final boolean deadLetter) {
+        this.deadLetter = deadLetter;
+    }
+
+    /**
+     * The directory where to write dead-letter files
+     *
+     * @return the directory where to write dead-letter files, or <code>null</code> to write them within the directory of each input
+     */
+    public File getDeadLetterDirectory() {
+        return deadLetterDirectory;
+    }
+
+    public void setDeadLetterDirectory(final File deadLetterDirectory) {
+        this.deadLetterDirectory = deadLetterDirectory;
+    }
+
+    /**
+     * If the number of observations per request and the number of requests in flight have to be tuned according to server latency and errors, within the batch size and concurrent requests limits
+     *
+     * @return if the number of observations per request and the number of requests in flight have to be tuned according to server latency and errors
+     */
+    public boolean isAdaptiveSending() {
+        return adaptiveSending;
+    }
+
+    public void setAdaptiveSending(final boolean adaptiveSending) {
+        this.adaptiveSending = adaptiveSending;
+    }
+
+    /**
+     * The factor by which the recent average latency of requests can exceed the long-term one before server is considered congested, when sending adaptively
+     *
+     * @return the factor by which the recent average latency of requests can exceed the long-term one before server is considered congested
+     */
+    public double getAdaptiveLatencyTolerance() {
+        return adaptiveLatencyTolerance;
+    }
+
+    public void setAdaptiveLatencyTolerance(final double adaptiveLatencyTolerance) {
+        this.adaptiveLatencyTolerance = adaptiveLatencyTolerance;
+    }
+
+    /**
+     * The maximum number of HTTP connections to keep open to server, or 0 to size the connection pool according to the number of workers and concurrent requests
+     *
+     * @return the maximum number of HTTP connections to keep open to server, or 0 to size it automatically
+     */
+    public int getHttpMaxConnections() {
+        return httpMaxConnections;
+    }
+
+    public void setHttpMaxConnections(final int httpMaxConnections) {
+        this.httpMaxConnections = httpMaxConnections;
+    }
+
+    /**
+     * The time, in milliseconds, to wait for a connection to server to be established, or for a pooled connection to be available
+     *
+     * @return the time, in milliseconds, to wait for a connection to server
+     */
+    public long getHttpConnectTimeout() {
+        return httpConnectTimeout;
+    }
+
+    public void setHttpConnectTimeout(final long httpConnectTimeout) {
+        this.httpConnectTimeout = httpConnectTimeout;
+    }
+
+    /**
+     * The maximum time, in milliseconds, of inactivity while waiting for server response
+     *
+     * @return the maximum time, in milliseconds, of inactivity while waiting for server response
+     */
+    public long getHttpSocketTimeout() {
+        return httpSocketTimeout;
+    }
+
+    public void setHttpSocketTimeout(final long httpSocketTimeout) {
+        this.httpSocketTimeout = httpSocketTimeout;
+    }
+
+    /**
+     * The time, in milliseconds, during which an idle connection is kept open for reuse, unless server asks for another one
+     *
+     * @return the time, in milliseconds, during which an idle connection is kept open for reuse
+     */
+    public long getHttpKeepAlive() {
+        return httpKeepAlive;
+    }
+
+    public void setHttpKeepAlive(final long httpKeepAlive) {
+        this.httpKeepAlive = httpKeepAlive;
+    }
+
+    /**
+     * Whether to disable Nagle's algorithm on connections to server (TCP_NODELAY), so that small requests are not delayed
+     *
+     * @return whether to disable Nagle's algorithm on connections to server
+     */
+    public boolean isHttpTcpNoDelay() {
+        return httpTcpNoDelay;
+    }
+
+    public void setHttpTcpNoDelay(final boolean httpTcpNoDelay) {
+        this.httpTcpNoDelay = httpTcpNoDelay;
+    }
+
+    /**
+     * If observations have to be written straight to requests while being sent, instead of being first built as client model objects
+     *
+     * @return if observations have to be written straight to requests while being sent
+     */
+    public boolean isStreamingRequests() {
+        return streamingRequests;
+    }
+
+    public void setStreamingRequests(final boolean streamingRequests) {
+        this.streamingRequests = streamingRequests;
+    }
+
+    /**
+     * If the input has to be followed while growing, as with <code>tail -f</code>, rather than injected once up to its end
+     *
+     * @return if the input has to be followed while growing
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    public void setFollow(final boolean follow) {
+        this.follow = follow;
+    }
+
+    /**
+     * The maximum time, in milliseconds, to wait for more records once a record has been read from a followed input, before sending the ones read so far
+     *
+     * @return the maximum time, in milliseconds, to wait for more records before sending the ones read so far
+     */
+    public long getFollowLinger() {
+        return followLinger;
+    }
+
+    public void setFollowLinger(final long followLinger) {
+        this.followLinger = followLinger;
+    }
+
+    /**
+     * The time, in milliseconds, to wait before checking again a followed input for new records, once all its records have been read
+     *
+     * @return the time, in milliseconds, to wait before checking again a followed input for new records
+     */
+    public long getFollowPollInterval() {
+        return followPollInterval;
+    }
+
+    public void setFollowPollInterval(final long followPollInterval) {
+        this.followPollInterval = followPollInterval;
+    }
+
+}
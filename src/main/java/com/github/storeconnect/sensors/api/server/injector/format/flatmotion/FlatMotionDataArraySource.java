@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.storeconnect.sensors.api.client.model.motion.FeatureProperty;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArraySource;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DataArraySource} of the flat-motion observations of a {@link FlatMotionObservationColumns}, grouped by {@link Datastream}.
+ * <p>
+ * Each row is written straight from the columns, as the DataArray row of the motion observation that would be built by {@link FlatMotionObservationInjector#newObservation(FlatMotionObservationColumns, int)}, without building it.
+ * Hence, the {@link FlatMotionObservationColumns} must not be cleared until all requests are sent.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionDataArraySource implements DataArraySource {
+
+    /**
+     * The DataArray components of a flat-motion observation
+     */
+    public static final List<String> COMPONENTS = Collections.unmodifiableList(Arrays.asList("phenomenonTime", "result", "FeatureOfInterest/id"));
+
+    private static final String BUILDING = FeatureProperty.BUILDING.getName();
+    private static final String FLOOR = FeatureProperty.FLOOR.getName();
+
+    private final FlatMotionObservationColumns data;
+    private final List<Datastream> datastreams;
+    private final List<int[]> rows;
+    private final Object[] featureOfInterestIds;
+
+    /**
+     * Create a new {@link FlatMotionDataArraySource}
+     *
+     * @param data                 the {@link FlatMotionObservationColumns} from which writing rows
+     * @param datastreams          the {@link Datastream} of each group
+     * @param rows                 the rows of the {@link FlatMotionObservationColumns} within each group
+     * @param featureOfInterestIds the identifier of the FeatureOfInterest of each row of the {@link FlatMotionObservationColumns}
+     */
+    public FlatMotionDataArraySource(final FlatMotionObservationColumns data, final List<Datastream> datastreams, final List<int[]> rows, final Object[] featureOfInterestIds) {
+        if (datastreams.size() != rows.size() || featureOfInterestIds.length != data.size()) {
+            throw new IllegalArgumentException("Groups and rows must match the flat-motion observations");
+        }
+        this.data = data;
+        this.datastreams = datastreams;
+        this.rows = rows;
+        this.featureOfInterestIds = featureOfInterestIds;
+    }
+
+    @Override
+    public List<String> getComponents() {
+        return COMPONENTS;
+    }
+
+    @Override
+    public int getGroupCount() {
+        return datastreams.size();
+    }
+
+    @Override
+    public Datastream getDatastream(final int group) {
+        return datastreams.get(group);
+    }
+
+    @Override
+    public int getRowCount(final int group) {
+        return rows.get(group).length;
+    }
+
+    @Override
+    public void writeRow(final JsonGenerator generator, final int group, final int index) throws IOException {
+        final int row = rows.get(group)[index];
+        generator.writeStartArray();
+
+        // phenomenonTime
+        final Instant deviceDate = data.getDeviceDate(row);
+        if (deviceDate == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(deviceDate.atZone(FlatMotionObservationInjector.PHENOMENON_TIME_ZONE)));
+        }
+
+        // result, as a motion event
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("subject");
+        generator.writeStringField("id", data.getSequence(row) + "-" + data.getId(row));
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("location");
+        generator.writeStringField("type", "Feature");
+        generator.writeObjectFieldStart("properties");
+        writeNumberField(generator, BUILDING, data.getBuilding(row));
+        writeNumberField(generator, FLOOR, data.getFloor(row));
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("geometry");
+        generator.writeStringField("type", "Point");
+        // Coordinates are written in the same order than built observations' ones
+        generator.writeArrayFieldStart("coordinates");
+        writeNumber(generator, data.getLat(row));
+        writeNumber(generator, data.getLon(row));
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndObject();
+
+        // FeatureOfInterest/id
+        generator.writeObject(featureOfInterestIds[row]);
+
+        generator.writeEndArray();
+    }
+
+    private static void writeNumberField(final JsonGenerator generator, final String name, final Integer value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeNumber(final JsonGenerator generator, final Float value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            // Coordinates are doubles within built observations
+            generator.writeNumber((double) value);
+        }
+    }
+
+}
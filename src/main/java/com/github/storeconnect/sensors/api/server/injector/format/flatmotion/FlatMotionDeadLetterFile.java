@@ -0,0 +1,147 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * File where writing the {@link FlatMotionObservation}s that could not be sent to server, in the {@code flat-motion-ndjson} format, so that they can be injected again later.
+ * <p>
+ * File is only created when the first {@link FlatMotionObservation} is written, and then appended to (so that dead letters of a resumed injection are kept). It is flushed after each write.
+ * <p>
+ * Thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionDeadLetterFile implements Closeable {
+
+    public static final String FILE_EXTENSION = ".dead-letter.ndjson";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlatMotionDeadLetterFile.class);
+    private static final char SEPARATOR = '_';
+
+    private final File file;
+    private JsonGenerator generator;
+    private long observationCount;
+
+    public FlatMotionDeadLetterFile(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Get the {@link FlatMotionDeadLetterFile} of the given input
+     *
+     * @param input         the input whose {@link FlatMotionObservation}s are injected
+     * @param configuration the {@link InjectorConfiguration} telling where to write dead-letter files
+     * @return the {@link FlatMotionDeadLetterFile} of the given input
+     */
+    public static FlatMotionDeadLetterFile of(final File input, final InjectorConfiguration configuration) {
+        final File directory = configuration.getDeadLetterDirectory() != null ? configuration.getDeadLetterDirectory() : input.getAbsoluteFile().getParentFile();
+        return new FlatMotionDeadLetterFile(new File(directory, input.getName() + FILE_EXTENSION));
+    }
+
+    /**
+     * Write the {@link FlatMotionObservation}s of the given rows
+     *
+     * @param data  the {@link FlatMotionObservationColumns} containing the {@link FlatMotionObservation}s to write
+     * @param rows  the rows of {@link FlatMotionObservation}s
+     * @param from  the index, within the given rows, of the first {@link FlatMotionObservation} to write
+     * @param count the number of {@link FlatMotionObservation}s to write
+     * @throws IOException if {@link FlatMotionObservation}s cannot be written
+     */
+    public synchronized void write(final FlatMotionObservationColumns data, final int[] rows, final int from, final int count) throws IOException {
+        if (generator == null) {
+            LOGGER.info("Opening dead-letter file {}", file);
+            generator = new JsonFactory().createGenerator(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        }
+        for (int i = from; i < from + count; i++) {
+            write(data, rows[i]);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        observationCount += count;
+    }
+
+    private void write(final FlatMotionObservationColumns data, final int row) throws IOException {
+        generator.writeStartObject();
+        if (data.getSensor(row) != null || data.getSequence(row) != null || data.getId(row) != null) {
+            generator.writeStringField("appuserid", data.getSensor(row) + SEPARATOR + data.getSequence(row) + SEPARATOR + data.getId(row));
+        }
+        final Integer building = data.getBuilding(row);
+        if (building != null) {
+            generator.writeNumberField("building", building);
+        }
+        final Instant deviceDate = data.getDeviceDate(row);
+        if (deviceDate != null) {
+            generator.writeNumberField("devicedate", deviceDate.toEpochMilli());
+        }
+        final Integer floor = data.getFloor(row);
+        if (floor != null) {
+            generator.writeNumberField("floor", floor);
+        }
+        final Float lat = data.getLat(row);
+        if (lat != null) {
+            generator.writeNumberField("lat", lat);
+        }
+        final Float lon = data.getLon(row);
+        if (lon != null) {
+            generator.writeNumberField("lon", lon);
+        }
+        if (data.getType(row) != null) {
+            generator.writeStringField("type", data.getType(row).getValue());
+        }
+        final Integer venueId = data.getVenueId(row);
+        if (venueId != null) {
+            generator.writeStringField("venueid", String.valueOf(venueId));
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (generator != null) {
+            generator.close();
+            generator = null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * The number of {@link FlatMotionObservation}s written so far
+     *
+     * @return the number of {@link FlatMotionObservation}s written so far
+     */
+    public synchronized long getObservationCount() {
+        return observationCount;
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.util.TimeWindowedLongSet;
+
+/**
+ * Drop {@link FlatMotionObservation}s already seen within a sliding window of recording dates, e.g., the ones repeated by overlapping exports.
+ * <p>
+ * {@link FlatMotionObservation}s are compared through a 64-bit fingerprint of the fields used by {@link FlatMotionObservation#equals(Object)}, kept in a {@link TimeWindowedLongSet}.
+ * Hence, memory usage only depends on the number of {@link FlatMotionObservation}s within the window, and two different {@link FlatMotionObservation}s are only mistaken for each other on a 64-bit fingerprint collision.
+ * <p>
+ * Thread-safe, so that it can be shared by all injections of a same run.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionDeduplicator {
+
+    /**
+     * {@link Counter} of the dropped duplicate {@link FlatMotionObservation}s
+     */
+    public static final String DUPLICATES_COUNTER = "records.duplicates";
+
+    private static final long PRIME = 0x100000001B3L;
+    private static final long ABSENT = 0x6E756C6CL;
+    private static final long PRESENT = 0x76616C75L;
+
+    private final TimeWindowedLongSet fingerprints;
+    private final Counter duplicates;
+
+    /**
+     * Create a new {@link FlatMotionDeduplicator}
+     *
+     * @param windowMillis the width, in milliseconds, of the sliding window of recording dates within which duplicates are detected
+     * @param metrics      the {@link MetricsRegistry} in which counting the dropped duplicates
+     */
+    public FlatMotionDeduplicator(final long windowMillis, final MetricsRegistry metrics) {
+        this.fingerprints = new TimeWindowedLongSet(windowMillis);
+        this.duplicates = metrics.counter(DUPLICATES_COUNTER);
+    }
+
+    /**
+     * Check if the given {@link FlatMotionObservation} is the first occurrence of its value within the window, remembering it if so
+     *
+     * @param observation the {@link FlatMotionObservation} to check
+     * @return true if the given {@link FlatMotionObservation} has to be kept, false if it is a duplicate to drop
+     */
+    public boolean isFirstOccurrence(final FlatMotionObservation observation) {
+        // Observations without recording date cannot be located within the window, so they are always kept
+        if (observation.getDeviceDate() == null || fingerprints.add(fingerprint(observation), observation.getDeviceDate().toEpochMilli())) {
+            return true;
+        }
+        duplicates.increment();
+        return false;
+    }
+
+    /**
+     * Compute the 64-bit fingerprint of the given {@link FlatMotionObservation}, based on the fields used by {@link FlatMotionObservation#equals(Object)}
+     *
+     * @param observation the {@link FlatMotionObservation} from which computing the fingerprint
+     * @return the 64-bit fingerprint of the given {@link FlatMotionObservation}
+     */
+    public static long fingerprint(final FlatMotionObservation observation) {
+        final AppUserId appUserId = observation.getAppUserId();
+        long hash = 0xCBF29CE484222325L;
+        hash = mix(hash, appUserId != null);
+        if (appUserId != null) {
+            hash = mix(hash, appUserId.getSensor());
+            hash = mix(hash, appUserId.getSequence());
+            hash = mix(hash, appUserId.getId());
+        }
+        hash = mix(hash, observation.getVenueId());
+        hash = mix(hash, observation.getBuilding());
+        hash = mix(hash, observation.getFloor());
+        hash = mix(hash, observation.getLat());
+        hash = mix(hash, observation.getLon());
+        hash = mix(hash, observation.getDeviceDate() != null);
+        if (observation.getDeviceDate() != null) {
+            hash = mix(hash, observation.getDeviceDate().getEpochSecond());
+            hash = mix(hash, observation.getDeviceDate().getNano());
+        }
+        hash = mix(hash, observation.getType() != null ? observation.getType().ordinal() + 1 : 0);
+        return avalanche(hash);
+    }
+
+    // Any nullable field is preceded by a presence marker, so that a missing value is not mistaken for a zero one (e.g., floor 0 or 0.0 coordinates)
+    private static long mix(final long hash, final boolean present) {
+        return mix(hash, present ? PRESENT : ABSENT);
+    }
+
+    private static long mix(final long hash, final Integer value) {
+        return value == null ? mix(hash, false) : mix(mix(hash, true), value.longValue());
+    }
+
+    private static long mix(final long hash, final Float value) {
+        return value == null ? mix(hash, false) : mix(mix(hash, true), Float.floatToIntBits(value));
+    }
+
+    private static long mix(final long hash, final String value) {
+        return value == null ? mix(hash, false) : mix(mix(hash, true), fingerprint(value));
+    }
+
+    private static long fingerprint(final String value) {
+        // 64-bit FNV-1a, as String#hashCode() only has 32 bits
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(final long hash, final long value) {
+        return (hash ^ avalanche(value)) * PRIME;
+    }
+
+    // MurmurHash3's 64-bit finalizer, so that every bit of a value affects every bit of the fingerprint
+    private static long avalanche(final long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE1A85A53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.client.model.ObservedProperties;
+import com.github.storeconnect.sensors.api.client.model.builder.DatastreamBuilder;
+import com.github.storeconnect.sensors.api.client.model.builder.FeatureOfInterestBuilder;
+import com.github.storeconnect.sensors.api.client.model.feature.builder.PointFeatureBuilder;
+import com.github.storeconnect.sensors.api.client.model.motion.FeatureProperty;
+import com.github.storeconnect.sensors.api.server.injector.cache.LoadingCache;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import com.github.storeconnect.sensors.api.server.injector.model.Things;
+import com.github.storeconnect.sensors.api.server.injector.model.UnitOfMeasurements;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.FeatureOfInterest;
+import de.fraunhofer.iosb.ilt.sta.model.Id;
+import de.fraunhofer.iosb.ilt.sta.model.Sensor;
+import de.fraunhofer.iosb.ilt.sta.model.builder.SensorBuilder;
+import de.fraunhofer.iosb.ilt.sta.model.builder.api.AbstractSensorBuilder;
+import de.fraunhofer.iosb.ilt.sta.model.ext.EntityList;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.geojson.Feature;
+import org.geojson.LngLatAlt;
+import org.geojson.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resolve (i.e., get or create) the server entities associated to flat-motion observations.
+ * <p>
+ * Resolved entities are memoized, so that server is only requested once per distinct {@link Sensor} name, {@link Datastream} and {@link FeatureOfInterest} venue identifier.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionEntityResolver {
+
+    /**
+     * Default maximum number of entities to memoize by entity type
+     */
+    public static final int DEFAULT_CACHE_MAXIMUM_SIZE = 10_000;
+
+    /**
+     * {@link Timer} of the prefetch of existing server entities
+     */
+    public static final String PREFETCH_TIMER = "prefetch";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlatMotionEntityResolver.class);
+
+    private final SensorThingsService sensorThingsService;
+    private final MetricsRegistry metrics;
+    private final LoadingCache<String, Sensor> sensors;
+    private final LoadingCache<DatastreamKey, Datastream> datastreams;
+    private final LoadingCache<Integer, FeatureOfInterest> featuresOfInterest;
+
+    public FlatMotionEntityResolver(final SensorThingsService sensorThingsService) {
+        this(sensorThingsService, DEFAULT_CACHE_MAXIMUM_SIZE);
+    }
+
+    public FlatMotionEntityResolver(final SensorThingsService sensorThingsService, final int cacheMaximumSize) {
+        this(sensorThingsService, cacheMaximumSize, new MetricsRegistry());
+    }
+
+    public FlatMotionEntityResolver(final SensorThingsService sensorThingsService, final int cacheMaximumSize, final MetricsRegistry metrics) {
+        this.sensorThingsService = sensorThingsService;
+        this.metrics = metrics;
+        this.sensors = new LoadingCache<>("Sensor", cacheMaximumSize);
+        this.datastreams = new LoadingCache<>("Datastream", cacheMaximumSize);
+        this.featuresOfInterest = new LoadingCache<>("FeatureOfInterest", cacheMaximumSize);
+    }
+
+    /**
+     * Get or create the {@link Sensor} with the given name
+     *
+     * @param name the {@link Sensor}'s name
+     * @return the {@link Sensor} with the given name
+     * @throws ServiceFailureException if {@link Sensor} cannot be get nor created
+     */
+    public Sensor resolveSensor(final String name) throws ServiceFailureException {
+        metrics.counter("resolver.lookups.Sensor").increment();
+        return sensors.get(name, this::getOrCreateSensor);
+    }
+
+    /**
+     * Get or create the MOTION {@link Datastream} associated to the given {@link Sensor}
+     *
+     * @param sensor the {@link Sensor} from which getting the associated {@link Datastream}
+     * @return the MOTION {@link Datastream} associated to the given {@link Sensor}
+     * @throws ServiceFailureException if {@link Datastream} cannot be get nor created
+     */
+    public Datastream resolveDatastream(final Sensor sensor) throws ServiceFailureException {
+        metrics.counter("resolver.lookups.Datastream").increment();
+        return datastreams.get(new DatastreamKey(sensor.getId(), ObservedProperties.MOTION.getId()), key -> getOrCreateDatastream(sensor));
+    }
+
+    /**
+     * Get or create the {@link FeatureOfInterest} associated to the given venue identifier
+     *
+     * @param venueId the venue identifier from which getting the associated {@link FeatureOfInterest}
+     * @return the {@link FeatureOfInterest} associated to the given venue identifier
+     * @throws ServiceFailureException if {@link FeatureOfInterest} cannot be get nor created
+     */
+    public FeatureOfInterest resolveFeatureOfInterest(final Integer venueId) throws ServiceFailureException {
+        metrics.counter("resolver.lookups.FeatureOfInterest").increment();
+        return featuresOfInterest.get(venueId, this::getOrCreateFeatureOfInterest);
+    }
+
+    /**
+     * Prefetch existing {@link Sensor}s with their MOTION {@link Datastream}s, and existing {@link FeatureOfInterest}s, by pages of the given size,
+     * so that entities already known by server do not have to be requested one by one when being resolved.
+     * <p>
+     * When several entities match the same key, the first one is kept, as when resolving them one by one.
+     * Prefetching stops once caches are full, so that entities of a large server are not all downloaded to be evicted right after: the remaining ones are resolved on demand.
+     *
+     * @param pageSize the number of entities to request per page
+     * @throws ServiceFailureException if entities cannot be requested
+     */
+    public void prefetch(final int pageSize) throws ServiceFailureException {
+        try (final Timer.Context prefetching = metrics.timer(PREFETCH_TIMER).time()) {
+            LOGGER.info("Prefetching existing Sensors and their MOTION Datastreams...");
+            final Iterator<Sensor> existingSensors = sensorThingsService.sensors()
+                    .query()
+                    .top(Math.min(pageSize, sensors.getMaximumSize()))
+                    .expand(String.format("Datastreams($filter=ObservedProperty/id eq '%s')", ObservedProperties.MOTION.getId()))
+                    .list()
+                    .fullIterator();
+            int sensorCount = 0;
+            int datastreamCount = 0;
+            while (!sensors.isFull() && existingSensors.hasNext()) {
+                final Sensor sensor = existingSensors.next();
+                if (sensors.putIfAbsent(sensor.getName(), sensor)) {
+                    sensorCount++;
+                }
+                final EntityList<Datastream> sensorDatastreams = sensor.getDatastreams();
+                if (sensorDatastreams != null && !sensorDatastreams.isEmpty()
+                        && datastreams.putIfAbsent(new DatastreamKey(sensor.getId(), ObservedProperties.MOTION.getId()), sensorDatastreams.iterator().next())) {
+                    datastreamCount++;
+                }
+            }
+            LOGGER.info("Prefetching existing Sensors and their MOTION Datastreams... Done. {} Sensor(s) and {} Datastream(s) prefetched{}.", sensorCount, datastreamCount, sensors.isFull() ? " (cache is full)" : "");
+
+            LOGGER.info("Prefetching existing FeaturesOfInterest...");
+            final Iterator<FeatureOfInterest> existingFeaturesOfInterest = sensorThingsService.featuresOfInterest()
+                    .query()
+                    .top(Math.min(pageSize, featuresOfInterest.getMaximumSize()))
+                    .list()
+                    .fullIterator();
+            int featureOfInterestCount = 0;
+            while (!featuresOfInterest.isFull() && existingFeaturesOfInterest.hasNext()) {
+                final FeatureOfInterest featureOfInterest = existingFeaturesOfInterest.next();
+                final Integer venueId = getVenueId(featureOfInterest);
+                if (venueId != null && featuresOfInterest.putIfAbsent(venueId, featureOfInterest)) {
+                    featureOfInterestCount++;
+                }
+            }
+            LOGGER.info("Prefetching existing FeaturesOfInterest... Done. {} FeatureOfInterest(s) prefetched{}.", featureOfInterestCount, featuresOfInterest.isFull() ? " (cache is full)" : "");
+        }
+    }
+
+    private static Integer getVenueId(final FeatureOfInterest featureOfInterest) {
+        if (!(featureOfInterest.getFeature() instanceof Feature) || ((Feature) featureOfInterest.getFeature()).getProperties() == null) {
+            return null;
+        }
+        final Object venueId = ((Feature) featureOfInterest.getFeature()).getProperties().get(FeatureProperty.VENUE_ID.getName());
+        if (venueId instanceof Number) {
+            return ((Number) venueId).intValue();
+        }
+        if (venueId instanceof String) {
+            try {
+                return Integer.valueOf((String) venueId);
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the caches used by this {@link FlatMotionEntityResolver}, in order to report their usage
+     *
+     * @return the caches used by this {@link FlatMotionEntityResolver}
+     */
+    public List<LoadingCache<?, ?>> getCaches() {
+        return Arrays.asList(sensors, datastreams, featuresOfInterest);
+    }
+
+    protected Sensor getOrCreateSensor(final String name) throws ServiceFailureException {
+        // Search the Sensor associated to the given name
+        final EntityList<Sensor> candidates;
+        try (final Timer.Context querying = metrics.timer("server.query.Sensors").time()) {
+            candidates = sensorThingsService.sensors()
+                    .query()
+                    .filter(String.format("name eq '%s'", name))
+                    .list();
+        }
+
+        // If found, then returns it
+        if (!candidates.isEmpty()) {
+            return candidates.iterator().next();
+        }
+        // Else, create it
+        final Sensor newSensor = SensorBuilder.builder()
+                .name(name)
+                .description(name)
+                .encodingType(AbstractSensorBuilder.ValueCode.PDF) // TODO make it configurable
+                .metadata(String.format("http://example.org/sensors/%s/jsonschema", name)) // TODO make it configurable
+                .build();
+        LOGGER.debug("Creating new Sensor {}...", newSensor);
+        try (final Timer.Context creating = metrics.timer("server.create.Sensors").time()) {
+            sensorThingsService.create(newSensor);
+        }
+        LOGGER.debug("Creating new Sensor {}... Done.", newSensor);
+        return newSensor;
+    }
+
+    protected Datastream getOrCreateDatastream(final Sensor sensor) throws ServiceFailureException {
+        // Search the Datastream associated to the given Sensor
+        final EntityList<Datastream> candidates;
+        try (final Timer.Context querying = metrics.timer("server.query.Datastreams").time()) {
+            candidates = sensorThingsService.datastreams()
+                    .query()
+                    .filter(String.format("Sensor/id eq '%s' and ObservedProperty/id eq '%s'", sensor.getId(), ObservedProperties.MOTION.getId()))
+                    .list();
+        }
+
+        // If found, then returns it
+        if (!candidates.isEmpty()) {
+            return candidates.iterator().next();
+        }
+        // Else, create it
+        final Datastream newDatastream = DatastreamBuilder.builder()
+                .name(sensor.getName())
+                .description(String.format("Human motions caught by Sensor '%s' ('%s')", sensor.getName(), sensor.getId()))
+                .observedProperty(ObservedProperties.MOTION)
+                .unitOfMeasurement(UnitOfMeasurements.UNKNOWN)
+                .sensor(sensor)
+                .thing(Things.UNKNOWN)
+                .build();
+        LOGGER.debug("Creating new Datastream {}...", newDatastream);
+        try (final Timer.Context creating = metrics.timer("server.create.Datastreams").time()) {
+            sensorThingsService.create(newDatastream);
+        }
+        LOGGER.debug("Creating new Datastream {}... Done.", newDatastream);
+        return newDatastream;
+    }
+
+    protected FeatureOfInterest getOrCreateFeatureOfInterest(final Integer venueId) throws ServiceFailureException {
+        // Search the FeatureOfInterest associated to the given venue identifier
+        final EntityList<FeatureOfInterest> candidates;
+        try (final Timer.Context querying = metrics.timer("server.query.FeaturesOfInterest").time()) {
+            candidates = sensorThingsService.featuresOfInterest()
+                    .query()
+                    .filter(String.format("feature/properties/%s eq %d", FeatureProperty.VENUE_ID.getName(), venueId))
+                    .list();
+        }
+
+        // If found, then returns it
+        if (!candidates.isEmpty()) {
+            return candidates.iterator().next();
+        }
+        // Else, create it
+        final FeatureOfInterest newFeatureOfInterest = FeatureOfInterestBuilder.builder()
+                .name(String.valueOf(venueId))
+                .description("Dummy place for venueId " + venueId)
+                .feature(
+                        PointFeatureBuilder.builder()
+                                .geometry(new Point(new LngLatAlt(0.0, 0.0)))
+                                .property(FeatureProperty.VENUE_ID, venueId)
+                                .build()
+                )
+                .build();
+        LOGGER.debug("Creating new FeatureOfInterest {}...", newFeatureOfInterest);
+        try (final Timer.Context creating = metrics.timer("server.create.FeaturesOfInterest").time()) {
+            sensorThingsService.create(newFeatureOfInterest);
+        }
+        LOGGER.debug("Creating new FeatureOfInterest {}... Done.", newFeatureOfInterest);
+        return newFeatureOfInterest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s, %s", sensors, datastreams, featuresOfInterest);
+    }
+
+    /**
+     * Key of a {@link Datastream}, identified by its {@link Sensor} and its {@link de.fraunhofer.iosb.ilt.sta.model.ObservedProperty}
+     */
+    private static final class DatastreamKey {
+
+        private final Id sensorId;
+        private final Id observedPropertyId;
+
+        private DatastreamKey(final Id sensorId, final Id observedPropertyId) {
+            this.sensorId = sensorId;
+            this.observedPropertyId = observedPropertyId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sensorId, observedPropertyId);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DatastreamKey)) return false;
+            final DatastreamKey that = (DatastreamKey) o;
+            return Objects.equals(sensorId, that.sensorId) &&
+                    Objects.equals(observedPropertyId, that.observedPropertyId);
+        }
+
+    }
+
+}
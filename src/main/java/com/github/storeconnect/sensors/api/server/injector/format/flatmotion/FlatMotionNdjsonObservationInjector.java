@@ -0,0 +1,81 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson.FlatMotionObservationReader;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.jackson.JsonSequenceIterator;
+import com.github.storeconnect.sensors.api.server.injector.jackson.ParallelJsonReader;
+import com.github.storeconnect.sensors.api.server.injector.util.FollowingInputStream;
+import com.github.storeconnect.sensors.api.server.injector.util.InputUtils;
+import com.github.storeconnect.sensors.api.server.injector.util.StreamUtils;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.Stream;
+
+/**
+ * Inject newline-delimited flat-motion observations, i.e., one flat-motion observation JSON object per line instead of a single JSON array
+ * <p>
+ * Injection is otherwise the same as the {@link FlatMotionObservationInjector}'s one, with which server environment and entity caches are shared.
+ * <p>
+ * When following the input, lines are read as they are appended to it, across rotations, until injection is asked to stop.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionNdjsonObservationInjector extends FlatMotionObservationInjector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlatMotionNdjsonObservationInjector.class);
+
+    public FlatMotionNdjsonObservationInjector(final File input, final InjectionContext context) {
+        super(input, context);
+    }
+
+    @Override
+    public Stream<FlatMotionObservation> parse(final File input) throws IOException {
+        if (getConfiguration().isFollow()) {
+            return parseFollowing(input);
+        }
+        if (canParseInParallel(input)) {
+            return parseInParallel(input, ParallelJsonReader.Layout.NEWLINE_DELIMITED);
+        }
+        final JsonSequenceIterator<FlatMotionObservation> flatMotionObservations = new JsonSequenceIterator<>(createParser(input), new FlatMotionObservationReader());
+        return StreamUtils.stream(flatMotionObservations, flatMotionObservations);
+    }
+
+    private Stream<FlatMotionObservation> parseFollowing(final File input) throws IOException {
+        if (InputUtils.isCompressed(input)) {
+            throw new IOException("Compressed input " + input + " cannot be followed");
+        }
+        LOGGER.info("Following {} for new flat-motion observations", input);
+        final FollowingInputStream stream = new FollowingInputStream(input.toPath(), getConfiguration().getFollowPollInterval(), getContext()::isStopRequested);
+        final JsonParser jsonParser;
+        try {
+            jsonParser = ObjectMapperFactory.get().getFactory().createParser(stream);
+        } catch (final IOException e) {
+            stream.close();
+            throw e;
+        }
+        final JsonSequenceIterator<FlatMotionObservation> flatMotionObservations = new JsonSequenceIterator<>(jsonParser, new FlatMotionObservationReader());
+        return StreamUtils.stream(flatMotionObservations, flatMotionObservations);
+    }
+
+}
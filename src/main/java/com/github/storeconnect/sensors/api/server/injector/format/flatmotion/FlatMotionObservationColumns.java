@@ -0,0 +1,375 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.Type;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar (struct-of-arrays) store of {@link FlatMotionObservation}s.
+ * <p>
+ * Each {@link FlatMotionObservation}'s field is stored within its own primitive array, and {@link AppUserId}'s sensor and sequence are dictionary-encoded,
+ * so that a stored {@link FlatMotionObservation} takes about 43 bytes of heap instead of the 150+ bytes of its bean representation.
+ * Stored {@link FlatMotionObservation}s are accessed by row, either field by field or by materializing them back to their bean representation.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionObservationColumns {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    // Bits of the nulls column, one per nullable field
+    private static final short NULL_APP_USER_ID = 1;
+    private static final short NULL_ID = 1 << 1;
+    private static final short NULL_VENUE_ID = 1 << 2;
+    private static final short NULL_BUILDING = 1 << 3;
+    private static final short NULL_FLOOR = 1 << 4;
+    private static final short NULL_LAT = 1 << 5;
+    private static final short NULL_LON = 1 << 6;
+    private static final short NULL_DEVICE_DATE = 1 << 7;
+    private static final byte NULL_TYPE = -1;
+    private static final Type[] TYPES = Type.values();
+
+    private final Dictionary sensors = new Dictionary();
+    private final Dictionary sequences = new Dictionary();
+    private int[] sensor;
+    private int[] sequence;
+    private int[] id;
+    private int[] venueId;
+    private int[] building;
+    private int[] floor;
+    private float[] lat;
+    private float[] lon;
+    // Milliseconds since epoch, as parsed from inputs, so that any parsed date can be stored
+    private long[] deviceDate;
+    private byte[] type;
+    private short[] nulls;
+    private int size;
+
+    /**
+     * Create a new empty {@link FlatMotionObservationColumns} with a default initial capacity
+     */
+    public FlatMotionObservationColumns() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a new empty {@link FlatMotionObservationColumns}
+     *
+     * @param initialCapacity the number of {@link FlatMotionObservation}s that can be stored before columns have to grow
+     */
+    public FlatMotionObservationColumns(final int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must be positive");
+        }
+        allocate(initialCapacity);
+    }
+
+    /**
+     * Create a new {@link FlatMotionObservationColumns} that contains the given {@link FlatMotionObservation}s
+     *
+     * @param observations the {@link FlatMotionObservation}s to store
+     * @return a new {@link FlatMotionObservationColumns} that contains the given {@link FlatMotionObservation}s, in the same order
+     */
+    public static FlatMotionObservationColumns of(final List<FlatMotionObservation> observations) {
+        final FlatMotionObservationColumns columns = new FlatMotionObservationColumns(observations.size());
+        observations.forEach(columns::add);
+        return columns;
+    }
+
+    /**
+     * Append the given {@link FlatMotionObservation} as a new row
+     *
+     * @param observation the {@link FlatMotionObservation} to append
+     */
+    public void add(final FlatMotionObservation observation) {
+        if (size == nulls.length) {
+            grow();
+        }
+        short rowNulls = 0;
+        final AppUserId appUserId = observation.getAppUserId();
+        if (appUserId == null) {
+            rowNulls |= NULL_APP_USER_ID;
+        }
+        sensor[size] = sensors.encode(appUserId != null ? appUserId.getSensor() : null);
+        sequence[size] = sequences.encode(appUserId != null ? appUserId.getSequence() : null);
+        final Integer appUserIdId = appUserId != null ? appUserId.getId() : null;
+        if (appUserIdId == null) {
+            rowNulls |= NULL_ID;
+        } else {
+            id[size] = appUserIdId;
+        }
+        if (observation.getVenueId() == null) {
+            rowNulls |= NULL_VENUE_ID;
+        } else {
+            venueId[size] = observation.getVenueId();
+        }
+        if (observation.getBuilding() == null) {
+            rowNulls |= NULL_BUILDING;
+        } else {
+            building[size] = observation.getBuilding();
+        }
+        if (observation.getFloor() == null) {
+            rowNulls |= NULL_FLOOR;
+        } else {
+            floor[size] = observation.getFloor();
+        }
+        if (observation.getLat() == null) {
+            rowNulls |= NULL_LAT;
+        } else {
+            lat[size] = observation.getLat();
+        }
+        if (observation.getLon() == null) {
+            rowNulls |= NULL_LON;
+        } else {
+            lon[size] = observation.getLon();
+        }
+        if (observation.getDeviceDate() == null) {
+            rowNulls |= NULL_DEVICE_DATE;
+        } else {
+            deviceDate[size] = observation.getDeviceDate().toEpochMilli();
+        }
+        type[size] = observation.getType() != null ? (byte) observation.getType().ordinal() : NULL_TYPE;
+        nulls[size] = rowNulls;
+        size++;
+    }
+
+    /**
+     * Remove all rows, while keeping the allocated columns (and dictionaries) for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get the number of stored {@link FlatMotionObservation}s
+     *
+     * @return the number of stored {@link FlatMotionObservation}s
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if no {@link FlatMotionObservation} is stored
+     *
+     * @return true if no {@link FlatMotionObservation} is stored, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Materialize the {@link FlatMotionObservation} of the given row
+     *
+     * @param row the row of the {@link FlatMotionObservation} to materialize
+     * @return a new {@link FlatMotionObservation}, equal to the one stored at the given row
+     */
+    public FlatMotionObservation get(final int row) {
+        checkRow(row);
+        return FlatMotionObservationBuilder.builder()
+                .appUserId(isNull(row, NULL_APP_USER_ID) ? null : AppUserIdBuilder.builder()
+                        .sensor(getSensor(row))
+                        .sequence(getSequence(row))
+                        .id(getId(row))
+                        .build()
+                )
+                .venueId(getVenueId(row))
+                .building(getBuilding(row))
+                .floor(getFloor(row))
+                .lat(getLat(row))
+                .lon(getLon(row))
+                .deviceDate(getDeviceDate(row))
+                .type(getType(row))
+                .build();
+    }
+
+    /**
+     * Group rows by sensor
+     * <p>
+     * Groups are indexed by sensor code (see {@link #getSensorOfCode(int)}), i.e., in the order sensors appear within rows.
+     * Within a group, rows are sorted in ascending order. Sensors only contained within {@link #clear()}ed rows have an empty group.
+     *
+     * @return the rows of each sensor, indexed by sensor code
+     */
+    public int[][] groupBySensor() {
+        final int[] counts = new int[sensors.size()];
+        for (int row = 0; row < size; row++) {
+            counts[sensor[row]]++;
+        }
+        final int[][] groups = new int[counts.length][];
+        for (int code = 0; code < counts.length; code++) {
+            groups[code] = new int[counts[code]];
+            counts[code] = 0;
+        }
+        for (int row = 0; row < size; row++) {
+            final int code = sensor[row];
+            groups[code][counts[code]++] = row;
+        }
+        return groups;
+    }
+
+    /**
+     * Get the number of distinct sensors ever added, i.e., the number of sensor codes
+     *
+     * @return the number of distinct sensors ever added
+     */
+    public int getSensorCount() {
+        return sensors.size();
+    }
+
+    /**
+     * Get the sensor associated to the given sensor code
+     *
+     * @param code the sensor code
+     * @return the sensor associated to the given sensor code
+     */
+    public String getSensorOfCode(final int code) {
+        return sensors.decode(code);
+    }
+
+    public int getSensorCode(final int row) {
+        checkRow(row);
+        return sensor[row];
+    }
+
+    public String getSensor(final int row) {
+        return sensors.decode(getSensorCode(row));
+    }
+
+    public String getSequence(final int row) {
+        checkRow(row);
+        return sequences.decode(sequence[row]);
+    }
+
+    public Integer getId(final int row) {
+        return isNull(row, NULL_ID) ? null : id[row];
+    }
+
+    public Integer getVenueId(final int row) {
+        return isNull(row, NULL_VENUE_ID) ? null : venueId[row];
+    }
+
+    public Integer getBuilding(final int row) {
+        return isNull(row, NULL_BUILDING) ? null : building[row];
+    }
+
+    public Integer getFloor(final int row) {
+        return isNull(row, NULL_FLOOR) ? null : floor[row];
+    }
+
+    public Float getLat(final int row) {
+        return isNull(row, NULL_LAT) ? null : lat[row];
+    }
+
+    public Float getLon(final int row) {
+        return isNull(row, NULL_LON) ? null : lon[row];
+    }
+
+    public Instant getDeviceDate(final int row) {
+        if (isNull(row, NULL_DEVICE_DATE)) {
+            return null;
+        }
+        return Instant.ofEpochMilli(deviceDate[row]);
+    }
+
+    public Type getType(final int row) {
+        checkRow(row);
+        return type[row] == NULL_TYPE ? null : TYPES[type[row]];
+    }
+
+    private boolean isNull(final int row, final short field) {
+        checkRow(row);
+        return (nulls[row] & field) != 0;
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    private void allocate(final int capacity) {
+        sensor = new int[capacity];
+        sequence = new int[capacity];
+        id = new int[capacity];
+        venueId = new int[capacity];
+        building = new int[capacity];
+        floor = new int[capacity];
+        lat = new float[capacity];
+        lon = new float[capacity];
+        deviceDate = new long[capacity];
+        type = new byte[capacity];
+        nulls = new short[capacity];
+    }
+
+    private void grow() {
+        final int capacity = Math.max(nulls.length + (nulls.length >> 1), nulls.length + 16);
+        sensor = Arrays.copyOf(sensor, capacity);
+        sequence = Arrays.copyOf(sequence, capacity);
+        id = Arrays.copyOf(id, capacity);
+        venueId = Arrays.copyOf(venueId, capacity);
+        building = Arrays.copyOf(building, capacity);
+        floor = Arrays.copyOf(floor, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        lon = Arrays.copyOf(lon, capacity);
+        deviceDate = Arrays.copyOf(deviceDate, capacity);
+        type = Arrays.copyOf(type, capacity);
+        nulls = Arrays.copyOf(nulls, capacity);
+    }
+
+    /**
+     * Dictionary that encodes each distinct {@link String} (null included) to a code, codes being assigned in appearance order from 0
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int encode(final String value) {
+            final Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            final int newCode = values.size();
+            codes.put(value, newCode);
+            values.add(value);
+            return newCode;
+        }
+
+        private String decode(final int code) {
+            return values.get(code);
+        }
+
+        private int size() {
+            return values.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.Type;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Generate synthetic {@link FlatMotionObservation}s, in memory, from random-walk trajectories.
+ * <p>
+ * Each sensor follows a given number of tracks, each of them located a given number of times per second.
+ * Observations are generated tick by tick, so in recording date order: at each tick, every track of every sensor moves of one step in a slightly changing direction, bounded to a circular area around its venue's origin.
+ * Once a track reaches its lifetime, it restarts from its venue's origin under a new {@link AppUserId#getId()}, as a new person would enter the venue.
+ * <p>
+ * Generation is reproducible: the same {@link Settings} always generate the same observations.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionObservationGenerator implements Iterator<FlatMotionObservation> {
+
+    private static final double METERS_PER_LATITUDE_DEGREE = 111_320;
+    private static final double MAX_HEADING_CHANGE = Math.PI / 8;
+    // Distance, in degrees of latitude, between two venues' origins
+    private static final double VENUES_SPACING = 0.01;
+
+    private final Settings settings;
+    private final Random random;
+    private final Track[] tracks;
+    private final long ticks;
+    private final long ticksPerLifetime;
+    private final double tickMillis;
+    private long tick;
+    private int trackIndex;
+
+    /**
+     * Create a new {@link FlatMotionObservationGenerator}
+     *
+     * @param settings the generation {@link Settings}
+     */
+    public FlatMotionObservationGenerator(final Settings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+        this.ticks = (long) (settings.duration * settings.pointsPerSecond);
+        this.ticksPerLifetime = Math.max(1, (long) (settings.trackLifetime * settings.pointsPerSecond));
+        this.tickMillis = 1000d / settings.pointsPerSecond;
+        this.tracks = new Track[settings.sensors * settings.tracksPerSensor];
+        for (int sensor = 0; sensor < settings.sensors; sensor++) {
+            for (int track = 0; track < settings.tracksPerSensor; track++) {
+                tracks[sensor * settings.tracksPerSensor + track] = new Track("Cam" + (sensor + 1), "T" + (track + 1), sensor % settings.venues);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return tick < ticks;
+    }
+
+    @Override
+    public FlatMotionObservation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Track track = tracks[trackIndex];
+        track.move();
+        final FlatMotionObservation observation = FlatMotionObservationBuilder.builder()
+                .appUserId(track.appUserId)
+                .venueId(track.venue + 1)
+                .building(1)
+                .floor(0)
+                .lat((float) track.lat)
+                .lon((float) track.lon)
+                .deviceDate(Instant.ofEpochMilli(settings.start + (long) (tick * tickMillis)))
+                .type(Type.LOCATION)
+                .build();
+        if (++trackIndex == tracks.length) {
+            trackIndex = 0;
+            tick++;
+        }
+        return observation;
+    }
+
+    /**
+     * The total number of {@link FlatMotionObservation}s to generate
+     *
+     * @return the total number of {@link FlatMotionObservation}s to generate
+     */
+    public long getCount() {
+        return ticks * tracks.length;
+    }
+
+    /**
+     * A random-walk trajectory
+     */
+    private final class Track {
+
+        private final String sensor;
+        private final String sequence;
+        private final int venue;
+        private final double originLat;
+        private final double originLon;
+        private AppUserId appUserId;
+        private int id;
+        private long age;
+        private double lat;
+        private double lon;
+        private double heading;
+
+        private Track(final String sensor, final String sequence, final int venue) {
+            this.sensor = sensor;
+            this.sequence = sequence;
+            this.venue = venue;
+            this.originLat = settings.originLat + venue * VENUES_SPACING;
+            this.originLon = settings.originLon;
+            restart();
+        }
+
+        private void restart() {
+            id++;
+            age = 0;
+            appUserId = AppUserIdBuilder.builder().sensor(sensor).sequence(sequence).id(id).build();
+            lat = originLat;
+            lon = originLon;
+            heading = random.nextDouble() * 2 * Math.PI;
+        }
+
+        private void move() {
+            if (age++ == ticksPerLifetime) {
+                restart();
+                return;
+            }
+            final double metersPerLongitudeDegree = METERS_PER_LATITUDE_DEGREE * Math.cos(Math.toRadians(lat));
+            final double northMeters = (lat - originLat) * METERS_PER_LATITUDE_DEGREE;
+            final double eastMeters = (lon - originLon) * metersPerLongitudeDegree;
+            if (northMeters * northMeters + eastMeters * eastMeters > settings.radius * settings.radius) {
+                // Turn back toward the origin once out of the area
+                heading = Math.atan2(-eastMeters, -northMeters);
+            } else {
+                heading += (random.nextDouble() * 2 - 1) * MAX_HEADING_CHANGE;
+            }
+            lat += settings.step * Math.cos(heading) / METERS_PER_LATITUDE_DEGREE;
+            lon += settings.step * Math.sin(heading) / metersPerLongitudeDegree;
+        }
+
+    }
+
+    /**
+     * {@link FlatMotionObservationGenerator}'s settings, that can be read from {@link Properties}
+     */
+    public static final class Settings {
+
+        public static final String SENSORS = "sensors";
+        public static final String TRACKS_PER_SENSOR = "tracks-per-sensor";
+        public static final String VENUES = "venues";
+        public static final String POINTS_PER_SECOND = "points-per-second";
+        public static final String DURATION = "duration";
+        public static final String TRACK_LIFETIME = "track-lifetime";
+        public static final String STEP = "step";
+        public static final String RADIUS = "radius";
+        public static final String ORIGIN_LAT = "origin-lat";
+        public static final String ORIGIN_LON = "origin-lon";
+        public static final String START = "start";
+        public static final String SEED = "seed";
+
+        private int sensors = 10;
+        private int tracksPerSensor = 5;
+        private int venues = 1;
+        private double pointsPerSecond = 10;
+        private double duration = 60;
+        private double trackLifetime = 30;
+        private double step = 0.5;
+        private double radius = 50;
+        private double originLat = 50.633479;
+        private double originLon = 3.024194;
+        private long start;
+        private long seed = 42;
+
+        /**
+         * Read {@link Settings} from the given {@link Properties}. Missing properties are set to their default value
+         *
+         * @param properties   the {@link Properties} from which reading {@link Settings}
+         * @param defaultStart the default recording date of the first observations, in milliseconds since epoch
+         * @return the read {@link Settings}
+         * @throws IllegalArgumentException if a property is not valid
+         */
+        public static Settings fromProperties(final Properties properties, final long defaultStart) {
+            final Settings settings = new Settings();
+            settings.sensors = readPositive(properties, SENSORS, settings.sensors);
+            settings.tracksPerSensor = readPositive(properties, TRACKS_PER_SENSOR, settings.tracksPerSensor);
+            settings.venues = readPositive(properties, VENUES, settings.venues);
+            settings.pointsPerSecond = readPositive(properties, POINTS_PER_SECOND, settings.pointsPerSecond);
+            settings.duration = readPositive(properties, DURATION, settings.duration);
+            settings.trackLifetime = readPositive(properties, TRACK_LIFETIME, settings.trackLifetime);
+            settings.step = readPositive(properties, STEP, settings.step);
+            settings.radius = readPositive(properties, RADIUS, settings.radius);
+            settings.originLat = read(properties, ORIGIN_LAT, settings.originLat);
+            settings.originLon = read(properties, ORIGIN_LON, settings.originLon);
+            settings.start = read(properties, START, defaultStart);
+            settings.seed = read(properties, SEED, settings.seed);
+            return settings;
+        }
+
+        private static int readPositive(final Properties properties, final String name, final int defaultValue) {
+            final double value = readPositive(properties, name, (double) defaultValue);
+            if (value != Math.rint(value)) {
+                throw new IllegalArgumentException(String.format("Setting %s has to be an integer (found %s)", name, value));
+            }
+            return (int) value;
+        }
+
+        private static double readPositive(final Properties properties, final String name, final double defaultValue) {
+            final double value = read(properties, name, defaultValue);
+            if (value <= 0) {
+                throw new IllegalArgumentException(String.format("Setting %s has to be strictly positive (found %s)", name, value));
+            }
+            return value;
+        }
+
+        private static long read(final Properties properties, final String name, final long defaultValue) {
+            final String value = properties.getProperty(name);
+            if (value == null || value.trim().isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Setting %s has to be an integer (found %s)", name, value), e);
+            }
+        }
+
+        private static double read(final Properties properties, final String name, final double defaultValue) {
+            final String value = properties.getProperty(name);
+            if (value == null || value.trim().isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Setting %s has to be a number (found %s)", name, value), e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Settings{" +
+                    "sensors=" + sensors +
+                    ", tracksPerSensor=" + tracksPerSensor +
+                    ", venues=" + venues +
+                    ", pointsPerSecond=" + pointsPerSecond +
+                    ", duration=" + duration +
+                    ", trackLifetime=" + trackLifetime +
+                    ", step=" + step +
+                    ", radius=" + radius +
+                    ", originLat=" + originLat +
+                    ", originLon=" + originLon +
+                    ", start=" + start +
+                    ", seed=" + seed +
+                    '}';
+        }
+
+    }
+
+}
@@ -15,21 +15,33 @@
  */
 package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.github.storeconnect.sensors.api.client.model.ObservedProperties;
-import com.github.storeconnect.sensors.api.client.model.builder.DatastreamBuilder;
-import com.github.storeconnect.sensors.api.client.model.builder.FeatureOfInterestBuilder;
+import com.fasterxml.jackson.core.JsonParser;
 import com.github.storeconnect.sensors.api.client.model.feature.builder.PointFeatureBuilder;
 import com.github.storeconnect.sensors.api.client.model.motion.FeatureProperty;
 import com.github.storeconnect.sensors.api.client.model.motion.builder.MotionEventBuilder;
 import com.github.storeconnect.sensors.api.client.model.motion.builder.MotionObservationBuilder;
 import com.github.storeconnect.sensors.api.client.model.motion.builder.MotionSubjectBuilder;
+import com.github.storeconnect.sensors.api.server.injector.batch.AcknowledgementListener;
+import com.github.storeconnect.sensors.api.server.injector.batch.AdaptiveSendController;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatch;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatcher;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArraySender;
+import com.github.storeconnect.sensors.api.server.injector.batch.DeadLetterWriter;
 import com.github.storeconnect.sensors.api.server.injector.format.AbstractFormatInjector;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson.FlatMotionObservationReader;
 import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
-import com.github.storeconnect.sensors.api.server.injector.model.Things;
-import com.github.storeconnect.sensors.api.server.injector.model.UnitOfMeasurements;
+import com.github.storeconnect.sensors.api.server.injector.jackson.JsonArrayIterator;
+import com.github.storeconnect.sensors.api.server.injector.jackson.ParallelJsonReader;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Histogram;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import com.github.storeconnect.sensors.api.server.injector.replay.ReplayScheduler;
+import com.github.storeconnect.sensors.api.server.injector.util.InputUtils;
+import com.github.storeconnect.sensors.api.server.injector.util.LingeringPartitioner;
 import com.github.storeconnect.sensors.api.server.injector.util.LocationUtils;
 import com.github.storeconnect.sensors.api.server.injector.util.ObservedPropertyUtils;
+import com.github.storeconnect.sensors.api.server.injector.util.StreamUtils;
 import com.github.storeconnect.sensors.api.server.injector.util.ThingUtils;
 import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
 import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
@@ -38,12 +50,8 @@ import de.fraunhofer.iosb.ilt.sta.model.FeatureOfInterest;
 import de.fraunhofer.iosb.ilt.sta.model.Observation;
 import de.fraunhofer.iosb.ilt.sta.model.Sensor;
 import de.fraunhofer.iosb.ilt.sta.model.TimeObject;
-import de.fraunhofer.iosb.ilt.sta.model.builder.SensorBuilder;
-import de.fraunhofer.iosb.ilt.sta.model.builder.api.AbstractSensorBuilder;
 import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayDocument;
 import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayValue;
-import de.fraunhofer.iosb.ilt.sta.model.ext.EntityList;
-import de.fraunhofer.iosb.ilt.sta.model.ext.UnitOfMeasurement;
 import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
 import org.geojson.LngLatAlt;
 import org.geojson.Point;
@@ -52,12 +60,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
 import java.util.stream.Stream;
 
 /**
@@ -67,10 +80,49 @@ import java.util.stream.Stream;
  */
 public class FlatMotionObservationInjector extends AbstractFormatInjector<FlatMotionObservation> {
 
+    /**
+     * {@link Timer} of the transformation of observations windows into {@link DataArrayDocument}s, including server entities resolution
+     */
+    public static final String TRANSFORM_TIMER = "inject.transform";
+
+    /**
+     * {@link Timer} of the split of {@link DataArrayDocument}s into {@link DataArrayBatch}es
+     */
+    public static final String SPLIT_TIMER = "inject.split";
+
+    /**
+     * {@link Histogram} of the time, in milliseconds, from the recording of each observation of a followed input to its acknowledgement by server
+     */
+    public static final String FOLLOW_LAG_HISTOGRAM = "follow.lag";
+
+    /**
+     * {@link ZoneId} of the phenomenon time of sent observations, whether they are built or written straight from their columns
+     */
+    static final ZoneId PHENOMENON_TIME_ZONE = ZoneId.systemDefault(); // TODO make it configurable
+
     private static final Logger LOGGER = LoggerFactory.getLogger(FlatMotionObservationInjector.class);
+    // Windows bigger than that grow as they are filled, so that memory is only used by observations actually read
+    private static final int WINDOW_INITIAL_CAPACITY = 65536;
+
+    private final FlatMotionEntityResolver entityResolver;
+    private final FlatMotionDeduplicator deduplicator;
 
     public FlatMotionObservationInjector(final File input, final SensorThingsService sensorThingsService) {
-        super(input, sensorThingsService);
+        this(input, new InjectionContext(sensorThingsService, new InjectorConfiguration()));
+    }
+
+    public FlatMotionObservationInjector(final File input, final InjectionContext context) {
+        super(input, context);
+        // Entity caches are shared by all injectors of a same run
+        this.entityResolver = context.getShared(FlatMotionEntityResolver.class, () -> new FlatMotionEntityResolver(
+                context.getSensorThingsService(),
+                FlatMotionEntityResolver.DEFAULT_CACHE_MAXIMUM_SIZE,
+                context.getMetrics()
+        ));
+        // Duplicates are detected across all injectors of a same run, as exports overlap at file boundaries
+        this.deduplicator = getConfiguration().getDedupWindow() > 0
+                ? context.getShared(FlatMotionDeduplicator.class, () -> new FlatMotionDeduplicator(getConfiguration().getDedupWindow(), context.getMetrics()))
+                : null;
     }
 
     @Override
@@ -78,128 +130,345 @@ public class FlatMotionObservationInjector extends AbstractFormatInjector<FlatMo
         ObservedPropertyUtils.linkOrCreateMotionObservedProperty(getSensorThingsService());
         LocationUtils.linkOrCreateUnknownLocation(getSensorThingsService());
         ThingUtils.linkOrCreateUnknownThing(getSensorThingsService());
+        // Warm up entity resolution with the entities already known by server, once the MOTION ObservedProperty is known
+        if (getConfiguration().getPrefetchPageSize() > 0) {
+            entityResolver.prefetch(getConfiguration().getPrefetchPageSize());
+        }
     }
 
     @Override
-    public List<FlatMotionObservation> parse(final File input) throws IOException {
-        return ObjectMapperFactory.get().readValue(input, new TypeReference<List<FlatMotionObservation>>() {
-        });
+    protected Object getEnvironmentKey() {
+        return FlatMotionObservationInjector.class;
+    }
+
+    @Override
+    public Stream<FlatMotionObservation> parse(final File input) throws IOException {
+        if (canParseInParallel(input)) {
+            return parseInParallel(input, ParallelJsonReader.Layout.ARRAY);
+        }
+        final JsonParser jsonParser = createParser(input);
+        try {
+            final JsonArrayIterator<FlatMotionObservation> flatMotionObservations = new JsonArrayIterator<>(jsonParser, new FlatMotionObservationReader());
+            return StreamUtils.stream(flatMotionObservations, flatMotionObservations);
+        } catch (final IOException e) {
+            jsonParser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check if the given input file can be parsed by several threads, i.e., if several parsing threads are configured and input file can be memory-mapped (is not compressed)
+     *
+     * @param input the input file to parse
+     * @return true if the given input file can be parsed by several threads, false otherwise
+     */
+    protected boolean canParseInParallel(final File input) {
+        return getConfiguration().getParseThreads() > 1 && !InputUtils.isCompressed(input) && !getConfiguration().isFollow();
+    }
+
+    /**
+     * Parse the given input file by using {@link InjectorConfiguration#getParseThreads()} threads, while keeping the input file's order
+     *
+     * @param input  the input file to parse
+     * @param layout the {@link ParallelJsonReader.Layout} of the input file
+     * @return the {@link Stream} of the parsed {@link FlatMotionObservation}s
+     * @throws IOException if input file cannot be opened
+     */
+    protected Stream<FlatMotionObservation> parseInParallel(final File input, final ParallelJsonReader.Layout layout) throws IOException {
+        LOGGER.info("Parsing {} by using {} threads", input, getConfiguration().getParseThreads());
+        final ParallelJsonReader<FlatMotionObservation> flatMotionObservations = new ParallelJsonReader<>(
+                input,
+                layout,
+                ObjectMapperFactory.get().getFactory(),
+                new FlatMotionObservationReader(),
+                getConfiguration().getParseThreads(),
+                ParallelJsonReader.DEFAULT_CHUNK_SIZE
+        );
+        return StreamUtils.stream(flatMotionObservations, flatMotionObservations);
+    }
+
+    /**
+     * Create a {@link JsonParser} over the given input file's content, decompressed on the fly if input file is compressed
+     *
+     * @param input the input file to parse
+     * @return the {@link JsonParser} over the input file's content, that closes the input file once closed
+     * @throws IOException if input file cannot be opened
+     * @see InputUtils#open(File)
+     */
+    protected static JsonParser createParser(final File input) throws IOException {
+        final InputStream stream = InputUtils.open(input);
+        try {
+            return ObjectMapperFactory.get().getFactory().createParser(stream);
+        } catch (final IOException e) {
+            stream.close();
+            throw e;
+        }
     }
 
     @Override
-    public void inject(final List<FlatMotionObservation> data) throws ServiceFailureException {
-        LOGGER.info("Preparing flat-motion observations for sending...");
-        final DataArrayDocument flatMotionObservations = toDatastreams(data)
-                .entrySet()
-                .stream()
-                .map(this::toDataArrayValue)
-                .reduce(
-                        new DataArrayDocument(),
-                        (acc, dataArrayValue) -> {
-                            acc.addDataArrayValue(dataArrayValue);
-                            return acc;
-                        },
-                        (dataArrayDocument1, dataArrayDocument2) -> {
-                            final DataArrayDocument merge = new DataArrayDocument();
-                            dataArrayDocument1.getValue().forEach(merge::addDataArrayValue);
-                            dataArrayDocument2.getValue().forEach(merge::addDataArrayValue);
-                            return merge;
-                        }
+    public void inject(final Stream<FlatMotionObservation> data) throws ServiceFailureException {
+        final LongAdder duplicates = new LongAdder();
+        final Stream<FlatMotionObservation> deduplicated = deduplicator == null ? data : data.filter(observation -> {
+            if (deduplicator.isFirstOccurrence(observation)) {
+                return true;
+            }
+            duplicates.increment();
+            return false;
+        });
+        // Tracks are simplified before being windowed, so that dropped observations are never transformed nor sent
+        final FlatMotionTrackSimplifier simplifier = isTrackSimplificationEnabled()
+                ? new FlatMotionTrackSimplifier(deduplicated.iterator(), getConfiguration().getTrackMinInterval(), getConfiguration().getTrackMinDistance(), getConfiguration().getTrackTolerance(), getMetrics())
+                : null;
+        final Iterator<FlatMotionObservation> observations = simplifier != null ? simplifier : deduplicated.iterator();
+        // When replaying, observations are sent as they are due, together with the ones that are due within the same replay window
+        final ReplayScheduler replayScheduler = getConfiguration().getReplaySpeed() > 0 ? new ReplayScheduler(getConfiguration().getReplaySpeed(), getMetrics()) : null;
+        // Windows are stored in a columnar form, so that parsed observations do not have to be retained while their window is being filled
+        // When following input, a window is also sent once it lingered long enough, so that observations are not delayed until the window is full
+        final LingeringPartitioner<FlatMotionObservation, FlatMotionObservationColumns> lingeringWindows = getConfiguration().isFollow() ? new LingeringPartitioner<>(
+                observations,
+                getConfiguration().getBatchSize(),
+                getConfiguration().getFollowLinger(),
+                () -> new FlatMotionObservationColumns(Math.min(getConfiguration().getBatchSize(), WINDOW_INITIAL_CAPACITY)),
+                FlatMotionObservationColumns::add,
+                "follower-" + getInput().getName()
+        ) : null;
+        final Iterator<FlatMotionObservationColumns> windows = lingeringWindows != null ? lingeringWindows : StreamUtils.partition(
+                observations,
+                getConfiguration().getBatchSize(),
+                replayScheduler == null ? (first, observation) -> true : sameReplayWindow(replayScheduler.toRecordingMillis(getConfiguration().getReplayWindow())),
+                () -> new FlatMotionObservationColumns(Math.min(getConfiguration().getBatchSize(), WINDOW_INITIAL_CAPACITY)),
+                FlatMotionObservationColumns::add
+        );
+        try {
+            send(windows, replayScheduler);
+        } finally {
+            if (lingeringWindows != null) {
+                lingeringWindows.close();
+                final Histogram lag = getMetrics().histogram(FOLLOW_LAG_HISTOGRAM);
+                LOGGER.info("Followed flat-motion observations acknowledged by server {} ms after being recorded on median, and up to {} ms", lag.getPercentile(0.5), lag.getMax());
+            }
+            if (deduplicator != null) {
+                LOGGER.info("{} duplicate flat-motion observation{} dropped", duplicates.sum(), duplicates.sum() != 1 ? "s" : "");
+            }
+            if (simplifier != null && simplifier.getInputCount() > 0) {
+                LOGGER.info("Track simplification kept {} of {} flat-motion observations (compression ratio {}:1)",
+                        simplifier.getInputCount() - simplifier.getDroppedCount(),
+                        simplifier.getInputCount(),
+                        String.format("%.1f", (double) simplifier.getInputCount() / Math.max(1, simplifier.getInputCount() - simplifier.getDroppedCount()))
                 );
-        LOGGER.info("Preparing flat-motion observations for sending... {} flat-motion observations processed for {} Datastream{}.",
-                flatMotionObservations.getObservations().size(),
-                flatMotionObservations.getValue().size(),
-                flatMotionObservations.getValue().size() > 1 ? "s" : ""
+            }
+            if (replayScheduler != null) {
+                LOGGER.info("Replay at {}x drifted up to {} ms behind schedule", replayScheduler.getSpeed(), TimeUnit.NANOSECONDS.toMillis(replayScheduler.getMaxDriftNanos()));
+            }
+        }
+    }
+
+    /**
+     * Send the given windows of observations to server, each of them being split into as many batches as needed
+     *
+     * @param windows         the windows of observations to send
+     * @param replayScheduler the {@link ReplayScheduler} that releases windows as they are due, or <code>null</code> if sending them as fast as possible
+     * @throws ServiceFailureException if a window cannot be sent
+     */
+    private void send(final Iterator<FlatMotionObservationColumns> windows, final ReplayScheduler replayScheduler) throws ServiceFailureException {
+        final DataArrayBatcher batcher = new DataArrayBatcher(
+                getConfiguration().getBatchSize(),
+                getConfiguration().getBatchMaxBytes(),
+                FlatMotionObservationInjector::newDataArrayValue
+        );
+        // Observations still failing to be sent despite retries are written to a dead-letter file, if enabled, rather than failing injection
+        final FlatMotionDeadLetterFile deadLetterFile = getConfiguration().isDeadLetter() ? FlatMotionDeadLetterFile.of(getInput(), getConfiguration()) : null;
+        // When sending adaptively, batch size and concurrency are tuned according to server load, within the configured limits
+        final AdaptiveSendController controller = getConfiguration().isAdaptiveSending()
+                ? new AdaptiveSendController(getConfiguration().getBatchSize(), getConfiguration().getConcurrentRequests(), getConfiguration().getAdaptiveLatencyTolerance(), getMetrics())
+                : null;
+        try (final DataArraySender sender = DataArraySender.builder(getSensorThingsService(), getConfiguration().getConcurrentRequests())
+                .statistics(getSendStatistics())
+                .checkpointJournal(getCheckpointJournal())
+                .metrics(getMetrics())
+                .retryPolicy(getRetryPolicy())
+                .circuitBreaker(getCircuitBreaker())
+                .controller(controller)
+                .build()) {
+            int windowIndex = 0;
+            while (windows.hasNext()) {
+                windowIndex++;
+                LOGGER.info("Preparing flat-motion observations window #{} for sending...", windowIndex);
+                final FlatMotionObservationColumns window = windows.next();
+                if (replayScheduler != null) {
+                    final long driftNanos = replayScheduler.await(window.getDeviceDate(0));
+                    LOGGER.debug("Flat-motion observations window #{} released {} ms behind the replay schedule", windowIndex, TimeUnit.NANOSECONDS.toMillis(driftNanos));
+                }
+                final List<DataArrayBatch> batches = split(window, windowIndex, batcher, controller == null ? getConfiguration().getBatchSize() : controller.getBatchSize());
+                // Batches refer to observations by their index within the window's DataArrayDocument, whose order is computed once for all of them
+                final int[] documentOrder = deadLetterFile != null || getConfiguration().isFollow() ? toDocumentOrder(window) : null;
+                final DeadLetterWriter deadLetterWriter = deadLetterFile == null ? null : batch -> deadLetterFile.write(window, documentOrder, batch.getFirstObservationIndex(), batch.getObservationCount());
+                final AcknowledgementListener lagRecorder = getConfiguration().isFollow() ? newLagRecorder(window, documentOrder) : null;
+                for (final DataArrayBatch batch : batches) {
+                    sender.send(batch, deadLetterWriter, lagRecorder);
+                }
+            }
+        } finally {
+            if (deadLetterFile != null) {
+                closeDeadLetterFile(deadLetterFile);
+            }
+            entityResolver.getCaches().forEach(cache -> LOGGER.info("{}", cache));
+            if (controller != null) {
+                LOGGER.info("Adaptive sending ended with {} observations per request and {} request{} in flight", controller.getBatchSize(), controller.getConcurrency(), controller.getConcurrency() > 1 ? "s" : "");
+            }
+        }
+    }
+
+    /**
+     * Transform the given window into {@link DataArrayBatch}es to send
+     *
+     * @param window          the window of observations to transform
+     * @param windowIndex     the index of the window, for logging purpose
+     * @param batcher         the {@link DataArrayBatcher} splitting the transformed window
+     * @param maxObservations the maximum number of observations per {@link DataArrayBatch}
+     * @return the {@link DataArrayBatch}es to send, in window's {@link DataArrayDocument} order
+     * @throws ServiceFailureException if window's entities cannot be resolved
+     */
+    private List<DataArrayBatch> split(final FlatMotionObservationColumns window, final int windowIndex, final DataArrayBatcher batcher, final int maxObservations) throws ServiceFailureException {
+        final Timer transformTimer = getMetrics().timer(TRANSFORM_TIMER);
+        final Timer splitTimer = getMetrics().timer(SPLIT_TIMER);
+        final int datastreamCount;
+        final List<DataArrayBatch> batches;
+        if (getConfiguration().isStreamingRequests()) {
+            // Observations are written straight from the window to requests, so that they are never built as client model objects
+            final Timer.Context transforming = transformTimer.time();
+            final FlatMotionDataArraySource flatMotionObservations = toDataArraySource(window);
+            transforming.stop();
+            final Timer.Context splitting = splitTimer.time();
+            batches = batcher.split(flatMotionObservations, maxObservations);
+            splitting.stop();
+            datastreamCount = flatMotionObservations.getGroupCount();
+        } else {
+            final Timer.Context transforming = transformTimer.time();
+            final DataArrayDocument flatMotionObservations = toDataArrayDocument(window);
+            transforming.stop();
+            final Timer.Context splitting = splitTimer.time();
+            batches = batcher.split(flatMotionObservations, maxObservations);
+            splitting.stop();
+            datastreamCount = flatMotionObservations.getValue().size();
+        }
+        LOGGER.info("Preparing flat-motion observations window #{} for sending... {} flat-motion observations processed for {} Datastream{} within {} batch{}.",
+                windowIndex,
+                window.size(),
+                datastreamCount,
+                datastreamCount > 1 ? "s" : "",
+                batches.size(),
+                batches.size() > 1 ? "es" : ""
         );
+        return batches;
+    }
 
-        LOGGER.info("Sending flat-motion observations to server...");
-        getSensorThingsService().create(flatMotionObservations);
-        LOGGER.info("Sending flat-motion observations to server... Done.");
+    private static void closeDeadLetterFile(final FlatMotionDeadLetterFile deadLetterFile) {
+        try {
+            deadLetterFile.close();
+        } catch (final IOException e) {
+            LOGGER.error("Unable to close dead-letter file {}", deadLetterFile.getFile(), e);
+        }
+        if (deadLetterFile.getObservationCount() > 0) {
+            LOGGER.warn("{} flat-motion observation{} could not be sent and {} written to {}. Inject {} again with the flat-motion-ndjson data format once server is healthy",
+                    deadLetterFile.getObservationCount(),
+                    deadLetterFile.getObservationCount() != 1 ? "s" : "",
+                    deadLetterFile.getObservationCount() != 1 ? "have been" : "has been",
+                    deadLetterFile.getFile(),
+                    deadLetterFile.getObservationCount() != 1 ? "them" : "it"
+            );
+        }
     }
 
-    protected Map<Datastream, List<FlatMotionObservation>> toDatastreams(final List<FlatMotionObservation> data) {
-        return data.stream()
-                .collect(Collectors.toMap(
-                        flatMotionObservation -> {
-                            try {
-                                return getOrCreateAssociatedDatastream(getOrCreateAssociatedSensor(flatMotionObservation));
-                            } catch (ServiceFailureException e) {
-                                throw new IllegalStateException(e);
-                            }
-                        },
-                        value -> Arrays.asList(value),
-                        (observations1, observations2) -> Stream.concat(observations1.stream(), observations2.stream()).collect(Collectors.toList())
-                ));
+    /**
+     * Create the {@link AcknowledgementListener} that records the lag of the observations of the given window, from their recording to their acknowledgement by server
+     *
+     * @param window        the window of observations whose batches are acknowledged
+     * @param documentOrder the rows of the given window, in {@link DataArrayDocument} order
+     */
+    private AcknowledgementListener newLagRecorder(final FlatMotionObservationColumns window, final int[] documentOrder) {
+        final Histogram lag = getMetrics().histogram(FOLLOW_LAG_HISTOGRAM);
+        return batch -> {
+            final long acknowledgedMillis = System.currentTimeMillis();
+            final int lastObservationIndex = batch.getFirstObservationIndex() + batch.getObservationCount();
+            for (int index = batch.getFirstObservationIndex(); index < lastObservationIndex; index++) {
+                final Instant deviceDate = window.getDeviceDate(documentOrder[index]);
+                if (deviceDate != null) {
+                    lag.record(acknowledgedMillis - deviceDate.toEpochMilli());
+                }
+            }
+        };
     }
 
-    protected Datastream getOrCreateAssociatedDatastream(final Sensor sensor) throws ServiceFailureException {
-        // Search the Datastream associated to the given Sensor
-        final EntityList<Datastream> candidates = getSensorThingsService().datastreams()
-                .query()
-                .filter(String.format("Sensor/id eq '%s' and ObservedProperty/id eq '%s'", sensor.getId(), ObservedProperties.MOTION.getId()))
-                .list();
-
-        // If found, then returns it
-        if (!candidates.isEmpty()) {
-            return candidates.iterator().next();
+    private boolean isTrackSimplificationEnabled() {
+        return getConfiguration().getTrackMinInterval() > 0 || getConfiguration().getTrackMinDistance() > 0 || getConfiguration().getTrackTolerance() > 0;
+    }
+
+    private static BiPredicate<FlatMotionObservation, FlatMotionObservation> sameReplayWindow(final long windowMillis) {
+        return (first, observation) -> first.getDeviceDate() == null
+                || observation.getDeviceDate() == null
+                || observation.getDeviceDate().toEpochMilli() - first.getDeviceDate().toEpochMilli() < windowMillis;
+    }
+
+    /**
+     * Get the rows of the given {@link FlatMotionObservationColumns} in the order their observations are within the {@link DataArrayDocument} built by {@link #toDataArrayDocument(FlatMotionObservationColumns)}
+     *
+     * @param data the {@link FlatMotionObservationColumns} from which the {@link DataArrayDocument} is built
+     * @return the rows of the given {@link FlatMotionObservationColumns}, in {@link DataArrayDocument} order
+     */
+    private static int[] toDocumentOrder(final FlatMotionObservationColumns data) {
+        final int[] documentOrder = new int[data.size()];
+        int index = 0;
+        for (final int[] rows : data.groupBySensor()) {
+            System.arraycopy(rows, 0, documentOrder, index, rows.length);
+            index += rows.length;
         }
-        // Else, create it
-        final Datastream newAssociatedDatastream = DatastreamBuilder.builder()
-                .name(sensor.getName())
-                .description(String.format("Human motions caught by Sensor '%s' ('%s')", sensor.getName(), sensor.getId()))
-                .observedProperty(ObservedProperties.MOTION)
-                .unitOfMeasurement(UnitOfMeasurements.UNKNOWN)
-                .sensor(sensor)
-                .thing(Things.UNKNOWN)
-                .build();
-        LOGGER.debug("Creating new Datastream {}...", newAssociatedDatastream);
-        getSensorThingsService().create(newAssociatedDatastream);
-        LOGGER.debug("Creating new Datastream {}... Done.", newAssociatedDatastream);
-        return newAssociatedDatastream;
+        return documentOrder;
     }
 
-    protected Sensor getOrCreateAssociatedSensor(final FlatMotionObservation flatMotionObservation) throws ServiceFailureException {
-        // Search the Sensor associated to the given FlatMotionObservation
-        final EntityList<Sensor> sensors = getSensorThingsService().sensors()
-                .query()
-                .filter(String.format("name eq '%s'", flatMotionObservation.getAppUserId().getSensor()))
-                .list();
-
-        // If found, then returns it
-        if (!sensors.isEmpty()) {
-            return sensors.iterator().next();
+    protected DataArrayDocument toDataArrayDocument(final FlatMotionObservationColumns data) throws ServiceFailureException {
+        final DataArrayDocument dataArrayDocument = new DataArrayDocument();
+        // Each sensor's Datastream is resolved once per window, rather than once per observation. Observations order must be kept in sync with toDocumentOrder()
+        final int[][] rowsBySensor = data.groupBySensor();
+        for (int sensorCode = 0; sensorCode < rowsBySensor.length; sensorCode++) {
+            final int[] rows = rowsBySensor[sensorCode];
+            if (rows.length == 0) {
+                continue;
+            }
+            final DataArrayValue dataArrayValue = newDataArrayValue(getOrCreateAssociatedDatastream(entityResolver.resolveSensor(data.getSensorOfCode(sensorCode))));
+            for (final int row : rows) {
+                dataArrayValue.addObservation(newObservation(data, row));
+            }
+            dataArrayDocument.addDataArrayValue(dataArrayValue);
         }
-        // Else, create it
-        final Sensor newAssociatedSensor = SensorBuilder.builder()
-                .name(flatMotionObservation.getAppUserId().getSensor())
-                .description(flatMotionObservation.getAppUserId().getSensor())
-                .encodingType(AbstractSensorBuilder.ValueCode.PDF) // TODO make it configurable
-                .metadata(String.format("http://example.org/sensors/%s/jsonschema", flatMotionObservation.getAppUserId().getSensor())) // TODO make it configurable
-                .build();
-        LOGGER.debug("Creating new Sensor {}...", newAssociatedSensor);
-        getSensorThingsService().create(newAssociatedSensor);
-        LOGGER.debug("Creating new Sensor {}... Done.", newAssociatedSensor);
-        return newAssociatedSensor;
+        return dataArrayDocument;
     }
 
-    protected DataArrayValue toDataArrayValue(final Map.Entry<Datastream, List<FlatMotionObservation>> entry) {
-        return entry.getValue()
-                .stream()
-                .reduce(
-                        newDataArrayValue(entry.getKey()),
-                        (acc, flatMotionObservation) -> {
-                            try {
-                                acc.addObservation(newObservation(flatMotionObservation));
-                            } catch (final ServiceFailureException e) {
-                                throw new IllegalStateException(e);
-                            }
-                            return acc;
-                        },
-                        (dataArrayValue1, dataArrayValue2) -> {
-                            dataArrayValue2.getObservations().forEach(dataArrayValue1::addObservation);
-                            return dataArrayValue1;
-                        }
-                );
+    protected FlatMotionDataArraySource toDataArraySource(final FlatMotionObservationColumns data) throws ServiceFailureException {
+        // Entities are resolved before sending, so that no other request is needed while writing rows. Groups order must be kept in sync with toDocumentOrder()
+        final List<Datastream> datastreams = new ArrayList<>();
+        final List<int[]> rows = new ArrayList<>();
+        final int[][] rowsBySensor = data.groupBySensor();
+        for (int sensorCode = 0; sensorCode < rowsBySensor.length; sensorCode++) {
+            if (rowsBySensor[sensorCode].length == 0) {
+                continue;
+            }
+            datastreams.add(getOrCreateAssociatedDatastream(entityResolver.resolveSensor(data.getSensorOfCode(sensorCode))));
+            rows.add(rowsBySensor[sensorCode]);
+        }
+        final Object[] featureOfInterestIds = new Object[data.size()];
+        for (int row = 0; row < data.size(); row++) {
+            featureOfInterestIds[row] = entityResolver.resolveFeatureOfInterest(data.getVenueId(row)).getId().getValue();
+        }
+        return new FlatMotionDataArraySource(data, datastreams, rows, featureOfInterestIds);
+    }
+
+    protected Datastream getOrCreateAssociatedDatastream(final Sensor sensor) throws ServiceFailureException {
+        return entityResolver.resolveDatastream(sensor);
+    }
+
+    protected Sensor getOrCreateAssociatedSensor(final FlatMotionObservation flatMotionObservation) throws ServiceFailureException {
+        return entityResolver.resolveSensor(flatMotionObservation.getAppUserId().getSensor());
     }
 
     protected static DataArrayValue newDataArrayValue(final Datastream datastream) {
@@ -214,51 +483,57 @@ public class FlatMotionObservationInjector extends AbstractFormatInjector<FlatMo
     }
 
     protected Observation newObservation(final FlatMotionObservation flatMotionObservation) throws ServiceFailureException {
+        return newObservation(
+                flatMotionObservation.getAppUserId().getSequence(),
+                flatMotionObservation.getAppUserId().getId(),
+                flatMotionObservation.getLat(),
+                flatMotionObservation.getLon(),
+                flatMotionObservation.getBuilding(),
+                flatMotionObservation.getFloor(),
+                getOrCreateAssociatedFeatureOfInterest(flatMotionObservation),
+                flatMotionObservation.getDeviceDate()
+        );
+    }
+
+    protected Observation newObservation(final FlatMotionObservationColumns data, final int row) throws ServiceFailureException {
+        return newObservation(
+                data.getSequence(row),
+                data.getId(row),
+                data.getLat(row),
+                data.getLon(row),
+                data.getBuilding(row),
+                data.getFloor(row),
+                entityResolver.resolveFeatureOfInterest(data.getVenueId(row)),
+                data.getDeviceDate(row)
+        );
+    }
+
+    private static Observation newObservation(final String sequence, final Integer id, final Float lat, final Float lon, final Integer building, final Integer floor, final FeatureOfInterest featureOfInterest, final Instant deviceDate) {
         return MotionObservationBuilder.builder()
                 .result(MotionEventBuilder.builder()
                         .subject(MotionSubjectBuilder.builder()
-                                .id(String.format("%s-%d", flatMotionObservation.getAppUserId().getSequence(), flatMotionObservation.getAppUserId().getId()))
+                                .id(String.format("%s-%d", sequence, id))
                                 .build()
                         )
                         .location(PointFeatureBuilder.builder()
-                                .geometry(new Point(new LngLatAlt(flatMotionObservation.getLat(), flatMotionObservation.getLon())))
-                                .property(FeatureProperty.BUILDING, flatMotionObservation.getBuilding())
-                                .property(FeatureProperty.FLOOR, flatMotionObservation.getFloor())
+                                .geometry(new Point(new LngLatAlt(lat, lon)))
+                                .property(FeatureProperty.BUILDING, building)
+                                .property(FeatureProperty.FLOOR, floor)
                                 .build()
                         )
                         .build()
                 )
-                .featureOfInterest(getOrCreateAssociatedFeatureOfInterest(flatMotionObservation))
-                .phenomenonTime(new TimeObject(flatMotionObservation.getDeviceDate().atZone(ZoneId.systemDefault()))) // TODO make it configurable
+                .featureOfInterest(featureOfInterest)
+                .phenomenonTime(new TimeObject(deviceDate.atZone(PHENOMENON_TIME_ZONE)))
                 .build();
     }
 
     protected FeatureOfInterest getOrCreateAssociatedFeatureOfInterest(final FlatMotionObservation flatMotionObservation) throws ServiceFailureException {
-        // Search the FeatureOfInterest associated to the given FlatMotionObservation
-        final EntityList<FeatureOfInterest> featureOfInterests = getSensorThingsService().featuresOfInterest()
-                .query()
-                .filter(String.format("feature/properties/%s eq %d", FeatureProperty.VENUE_ID.getName(), flatMotionObservation.getVenueId()))
-                .list();
-
-        // If found, then returns it
-        if (!featureOfInterests.isEmpty()) {
-            return featureOfInterests.iterator().next();
-        }
-        // Else, create it
-        final FeatureOfInterest newAssociatedFeatureOfInterest = FeatureOfInterestBuilder.builder()
-                .name(String.valueOf(flatMotionObservation.getVenueId()))
-                .description("Dummy place for venueId " + flatMotionObservation.getVenueId())
-                .feature(
-                        PointFeatureBuilder.builder()
-                                .geometry(new Point(new LngLatAlt(0.0, 0.0)))
-                                .property(FeatureProperty.VENUE_ID, flatMotionObservation.getVenueId())
-                                .build()
-                )
-                .build();
-        LOGGER.debug("Creating new FeatureOfInterest {}...", newAssociatedFeatureOfInterest);
-        getSensorThingsService().create(newAssociatedFeatureOfInterest);
-        LOGGER.debug("Creating new FeatureOfInterest {}... Done.", newAssociatedFeatureOfInterest);
-        return newAssociatedFeatureOfInterest;
+        return entityResolver.resolveFeatureOfInterest(flatMotionObservation.getVenueId());
+    }
+
+    public FlatMotionEntityResolver getEntityResolver() {
+        return entityResolver;
     }
 
 }
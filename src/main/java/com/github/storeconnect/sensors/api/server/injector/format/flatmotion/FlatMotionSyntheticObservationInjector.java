@@ -0,0 +1,67 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Inject synthetic flat-motion observations, generated in memory by a {@link FlatMotionObservationGenerator}.
+ * <p>
+ * Input file does not contain observations but the {@link FlatMotionObservationGenerator.Settings}, as {@link Properties}.
+ * Generated observations are then injected the same way as the {@link FlatMotionObservationInjector}'s ones, with which server environment and entity caches are shared.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionSyntheticObservationInjector extends FlatMotionObservationInjector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlatMotionSyntheticObservationInjector.class);
+
+    public FlatMotionSyntheticObservationInjector(final File input, final InjectionContext context) {
+        super(input, context);
+    }
+
+    @Override
+    public Stream<FlatMotionObservation> parse(final File input) throws IOException {
+        final Properties properties = new Properties();
+        try (final InputStream stream = Files.newInputStream(input.toPath())) {
+            properties.load(stream);
+        }
+        final FlatMotionObservationGenerator.Settings settings;
+        try {
+            // Default to the input's last modification date, so that generation is the same as long as input is not modified (e.g., when resuming)
+            settings = FlatMotionObservationGenerator.Settings.fromProperties(properties, input.lastModified());
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Invalid flat-motion-synthetic settings within " + input + ": " + e.getMessage(), e);
+        }
+        final FlatMotionObservationGenerator generator = new FlatMotionObservationGenerator(settings);
+        LOGGER.info("Generating {} flat-motion observations with {}", generator.getCount(), settings);
+        return StreamSupport.stream(Spliterators.spliterator(generator, generator.getCount(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+}
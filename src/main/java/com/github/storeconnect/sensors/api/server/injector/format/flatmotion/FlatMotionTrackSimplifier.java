@@ -0,0 +1,280 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterator} that reduces the number of {@link FlatMotionObservation}s of each track (i.e., of each {@link AppUserId}), while keeping the shape of its trajectory.
+ * <p>
+ * Each track's observations are successively:
+ * <ol>
+ * <li>dropped if recorded less than a minimum interval after the previous retained one</li>
+ * <li>dropped if located less than a minimum distance away from the previous retained one</li>
+ * <li>simplified in a streaming, Douglas-Peucker like, way: retained observations are accumulated as long as they all lie within a tolerance distance from the segment joining the last emitted observation to the latest retained one. Once an observation breaks this condition, the previous one is emitted and becomes the start of the next segment</li>
+ * </ol>
+ * Hence, observations are emitted in order within a track, but possibly delayed compared to other tracks' ones.
+ * The last observation of each track is always emitted, either when the source {@link Iterator} is exhausted or once the track has not been observed for {@link #IDLE_TRACK_TIMEOUT_MILLIS}, so that memory only depends on the number of active tracks.
+ * Observations without location or recording date are emitted as is.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionTrackSimplifier implements Iterator<FlatMotionObservation> {
+
+    /**
+     * {@link Counter} of the {@link FlatMotionObservation}s given to simplification
+     */
+    public static final String INPUT_COUNTER = "simplification.input";
+
+    /**
+     * {@link Counter} of the {@link FlatMotionObservation}s dropped by simplification
+     */
+    public static final String DROPPED_COUNTER = "simplification.dropped";
+
+    /**
+     * Recording time span, in milliseconds, after which a track that has not been observed is considered as ended
+     */
+    public static final long IDLE_TRACK_TIMEOUT_MILLIS = 60_000;
+
+    private static final double METERS_PER_LATITUDE_DEGREE = 111_320;
+    // Maximum number of observations accumulated for a single segment, so that a track going straight forward does not accumulate indefinitely
+    private static final int MAX_SEGMENT_SIZE = 256;
+    private static final int IDLE_TRACKS_CHECK_PERIOD = 4096;
+
+    private final Iterator<FlatMotionObservation> source;
+    private final long minIntervalMillis;
+    private final double minDistance;
+    private final double tolerance;
+    private final Counter input;
+    private final Counter dropped;
+    private final Map<AppUserId, Track> tracks = new HashMap<>();
+    private final Deque<FlatMotionObservation> emitted = new ArrayDeque<>();
+    private long latestMillis = Long.MIN_VALUE;
+    private int sinceIdleTracksCheck;
+    private long inputCount;
+    private long droppedCount;
+
+    /**
+     * Create a new {@link FlatMotionTrackSimplifier}
+     *
+     * @param source            the {@link Iterator} of the {@link FlatMotionObservation}s to simplify
+     * @param minIntervalMillis the minimum interval, in milliseconds, between two retained observations of a same track. 0 to retain all of them
+     * @param minDistance       the minimum distance, in meters, between two retained observations of a same track. 0 to retain all of them
+     * @param tolerance         the maximum distance, in meters, between a dropped observation and the simplified trajectory. 0 to disable simplification
+     * @param metrics           the {@link MetricsRegistry} in which counting input and dropped observations
+     */
+    public FlatMotionTrackSimplifier(final Iterator<FlatMotionObservation> source, final long minIntervalMillis, final double minDistance, final double tolerance, final MetricsRegistry metrics) {
+        this.source = source;
+        this.minIntervalMillis = minIntervalMillis;
+        this.minDistance = minDistance;
+        this.tolerance = tolerance;
+        this.input = metrics.counter(INPUT_COUNTER);
+        this.dropped = metrics.counter(DROPPED_COUNTER);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (emitted.isEmpty()) {
+            if (source.hasNext()) {
+                accept(source.next());
+            } else if (!tracks.isEmpty()) {
+                tracks.values().forEach(Track::flush);
+                tracks.clear();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public FlatMotionObservation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return emitted.poll();
+    }
+
+    /**
+     * The number of {@link FlatMotionObservation}s given to simplification so far
+     *
+     * @return the number of {@link FlatMotionObservation}s given to simplification so far
+     */
+    public long getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * The number of {@link FlatMotionObservation}s dropped by simplification so far
+     *
+     * @return the number of {@link FlatMotionObservation}s dropped by simplification so far
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    private void accept(final FlatMotionObservation observation) {
+        inputCount++;
+        input.increment();
+        if (observation.getAppUserId() == null || observation.getLat() == null || observation.getLon() == null || observation.getDeviceDate() == null) {
+            emitted.add(observation);
+            return;
+        }
+        latestMillis = Math.max(latestMillis, observation.getDeviceDate().toEpochMilli());
+        final Track track = tracks.get(observation.getAppUserId());
+        if (track == null) {
+            tracks.put(observation.getAppUserId(), new Track(observation));
+            emitted.add(observation);
+        } else {
+            track.accept(observation);
+        }
+        if (++sinceIdleTracksCheck == IDLE_TRACKS_CHECK_PERIOD) {
+            sinceIdleTracksCheck = 0;
+            flushIdleTracks();
+        }
+    }
+
+    private void flushIdleTracks() {
+        final Iterator<Track> iterator = tracks.values().iterator();
+        while (iterator.hasNext()) {
+            final Track track = iterator.next();
+            if (track.lastSeenMillis < latestMillis - IDLE_TRACK_TIMEOUT_MILLIS) {
+                track.flush();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void drop(final int count) {
+        droppedCount += count;
+        dropped.add(count);
+    }
+
+    /**
+     * Simplification state of a single track
+     */
+    private final class Track {
+
+        // Last emitted observation, start of the current segment
+        private FlatMotionObservation anchor;
+        // Retained observations since the anchor, not emitted yet
+        private final List<FlatMotionObservation> segment = new ArrayList<>();
+        // Last observation filtered out for being too close to the previous retained one, not dropped yet
+        private FlatMotionObservation tail;
+        private long lastSeenMillis;
+
+        private Track(final FlatMotionObservation first) {
+            this.anchor = first;
+            this.lastSeenMillis = first.getDeviceDate().toEpochMilli();
+        }
+
+        private void accept(final FlatMotionObservation observation) {
+            lastSeenMillis = Math.max(lastSeenMillis, observation.getDeviceDate().toEpochMilli());
+            final FlatMotionObservation previous = segment.isEmpty() ? anchor : segment.get(segment.size() - 1);
+            if (observation.getDeviceDate().toEpochMilli() - previous.getDeviceDate().toEpochMilli() < minIntervalMillis
+                    || minDistance > 0 && distance(previous, observation) < minDistance) {
+                // Only keep the latest filtered out observation, in case it would be the track's last one
+                if (tail != null) {
+                    drop(1);
+                }
+                tail = observation;
+                return;
+            }
+            if (tail != null) {
+                drop(1);
+                tail = null;
+            }
+            retain(observation);
+        }
+
+        private void retain(final FlatMotionObservation observation) {
+            if (tolerance <= 0) {
+                emit(observation);
+                return;
+            }
+            if (!segment.isEmpty() && (segment.size() == MAX_SEGMENT_SIZE || !isWithinTolerance(observation))) {
+                emit(segment.get(segment.size() - 1));
+            }
+            segment.add(observation);
+        }
+
+        private boolean isWithinTolerance(final FlatMotionObservation end) {
+            for (final FlatMotionObservation observation : segment) {
+                if (distanceToSegment(observation, anchor, end) > tolerance) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Emit the given observation, that is either the last of the current segment or a new one, and start a new segment from it
+        private void emit(final FlatMotionObservation observation) {
+            if (!segment.isEmpty()) {
+                drop(segment.size() - 1);
+                segment.clear();
+            }
+            anchor = observation;
+            emitted.add(observation);
+        }
+
+        private void flush() {
+            if (tail != null) {
+                retain(tail);
+                tail = null;
+            }
+            if (!segment.isEmpty()) {
+                emit(segment.get(segment.size() - 1));
+            }
+        }
+
+    }
+
+    private static double distance(final FlatMotionObservation from, final FlatMotionObservation to) {
+        final double metersPerLongitudeDegree = METERS_PER_LATITUDE_DEGREE * Math.cos(Math.toRadians(from.getLat()));
+        final double x = (to.getLon() - from.getLon()) * metersPerLongitudeDegree;
+        final double y = (to.getLat() - from.getLat()) * METERS_PER_LATITUDE_DEGREE;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    // Distance, in meters, between an observation and the segment joining two others, on the plane tangent to the segment's start
+    private static double distanceToSegment(final FlatMotionObservation observation, final FlatMotionObservation start, final FlatMotionObservation end) {
+        final double metersPerLongitudeDegree = METERS_PER_LATITUDE_DEGREE * Math.cos(Math.toRadians(start.getLat()));
+        final double x = (observation.getLon() - start.getLon()) * metersPerLongitudeDegree;
+        final double y = (observation.getLat() - start.getLat()) * METERS_PER_LATITUDE_DEGREE;
+        final double segmentX = (end.getLon() - start.getLon()) * metersPerLongitudeDegree;
+        final double segmentY = (end.getLat() - start.getLat()) * METERS_PER_LATITUDE_DEGREE;
+        final double squaredLength = segmentX * segmentX + segmentY * segmentY;
+        final double ratio = squaredLength == 0 ? 0 : Math.max(0, Math.min(1, (x * segmentX + y * segmentY) / squaredLength));
+        final double dx = x - ratio * segmentX;
+        final double dy = y - ratio * segmentY;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+}
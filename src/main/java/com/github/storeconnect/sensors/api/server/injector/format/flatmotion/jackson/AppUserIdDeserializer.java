@@ -16,40 +16,102 @@
 package com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
-import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
 import com.github.storeconnect.sensors.api.server.injector.jackson.InvalidPatternException;
+import com.github.storeconnect.sensors.api.server.injector.util.StringInterner;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * {@link AppUserId} {@link JsonDeserializer}
+ * <p>
+ * Raw {@link AppUserId} is scanned directly from the parser's character buffer, and its sensor and sequence parts are interned,
+ * as the same ones are repeated over a huge number of observations.
  *
  * @author Aurelien Bourdon
  */
 public class AppUserIdDeserializer extends JsonDeserializer<AppUserId> {
 
+    /**
+     * The raw {@link AppUserId} format, as checked by the {@link #read(JsonParser)} scanner
+     */
     private static final Pattern RAW_APPUSERID_PATTERN = Pattern.compile("^(?<sensor>[^_]+)_(?<sequence>[^_]+)_(?<id>\\d+)$");
 
+    private static final char SEPARATOR = '_';
+
+    private final StringInterner interner = new StringInterner();
+
     @Override
     public AppUserId deserialize(final JsonParser jsonParser, final DeserializationContext deserializationContext) throws IOException {
-        final JsonNode node = jsonParser.getCodec().readTree(jsonParser);
-        final String rawAppUserId = node.asText();
+        return read(jsonParser);
+    }
+
+    /**
+     * Read the {@link AppUserId} from the current {@link JsonParser}'s value
+     *
+     * @param jsonParser the {@link JsonParser} positioned on the value to read
+     * @return the read {@link AppUserId}
+     * @throws IOException if value does not follow the raw {@link AppUserId} format
+     */
+    public AppUserId read(final JsonParser jsonParser) throws IOException {
+        if (jsonParser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            final JsonNode node = jsonParser.getCodec().readTree(jsonParser);
+            throw new InvalidPatternException(jsonParser, node.asText(), RAW_APPUSERID_PATTERN);
+        }
+        final char[] buffer = jsonParser.getTextCharacters();
+        final int start = jsonParser.getTextOffset();
+        final int end = start + jsonParser.getTextLength();
+
+        // Sensor and sequence parts must be non-empty and separated by the separator
+        final int sensorEnd = indexOfSeparator(buffer, start, end);
+        if (sensorEnd <= start) {
+            throw invalidPattern(jsonParser);
+        }
+        final int sequenceEnd = indexOfSeparator(buffer, sensorEnd + 1, end);
+        if (sequenceEnd <= sensorEnd + 1) {
+            throw invalidPattern(jsonParser);
+        }
 
-        final Matcher matcher = RAW_APPUSERID_PATTERN.matcher(rawAppUserId);
-        if (!matcher.find()) {
-            throw new InvalidPatternException(jsonParser, rawAppUserId, RAW_APPUSERID_PATTERN);
+        // Id part must be a non-empty integer
+        final int idStart = sequenceEnd + 1;
+        if (idStart == end) {
+            throw invalidPattern(jsonParser);
         }
-        return AppUserIdBuilder.builder()
-                .sensor(matcher.group("sensor"))
-                .sequence(matcher.group("sequence"))
-                .id(Integer.parseInt(matcher.group("id"))) // Pattern constraints to only be an integer
-                .build();
+        long id = 0;
+        for (int i = idStart; i < end; i++) {
+            final char c = buffer[i];
+            if (c < '0' || c > '9') {
+                throw invalidPattern(jsonParser);
+            }
+            id = id * 10 + (c - '0');
+            if (id > Integer.MAX_VALUE) {
+                throw invalidPattern(jsonParser);
+            }
+        }
+
+        final AppUserId appUserId = new AppUserId();
+        appUserId.setSensor(interner.intern(buffer, start, sensorEnd - start));
+        appUserId.setSequence(interner.intern(buffer, sensorEnd + 1, sequenceEnd - sensorEnd - 1));
+        appUserId.setId((int) id);
+        return appUserId;
+    }
+
+    private static int indexOfSeparator(final char[] buffer, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static InvalidPatternException invalidPattern(final JsonParser jsonParser) throws IOException {
+        return new InvalidPatternException(jsonParser, jsonParser.getText(), RAW_APPUSERID_PATTERN);
     }
 
 }
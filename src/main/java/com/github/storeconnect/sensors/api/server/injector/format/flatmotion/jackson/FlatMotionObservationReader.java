@@ -0,0 +1,159 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.Type;
+import com.github.storeconnect.sensors.api.server.injector.jackson.EpochTimestampDeserializer;
+import com.github.storeconnect.sensors.api.server.injector.jackson.JsonArrayIterator;
+
+import java.io.IOException;
+
+/**
+ * {@link FlatMotionObservation} reader that walks {@link JsonParser}'s tokens directly, instead of going through the reflective databind path.
+ * <p>
+ * Reading follows the same rules as the databind path: numeric values are read as is, quoted values are converted from their text,
+ * {@code null} values are kept as {@code null} and unknown properties are ignored.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FlatMotionObservationReader implements JsonArrayIterator.ValueReader<FlatMotionObservation> {
+
+    private final AppUserIdDeserializer appUserIdDeserializer = new AppUserIdDeserializer();
+    private final EpochTimestampDeserializer epochTimestampDeserializer = new EpochTimestampDeserializer();
+
+    @Override
+    public FlatMotionObservation read(final JsonParser jsonParser) throws IOException {
+        final JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw MismatchedInputException.from(jsonParser, FlatMotionObservation.class, "Expected a JSON object, got " + token);
+        }
+        final FlatMotionObservation observation = new FlatMotionObservation();
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            final String property = jsonParser.getCurrentName();
+            final JsonToken valueToken = jsonParser.nextToken();
+            switch (property) {
+                case "appuserid":
+                    observation.setAppUserId(valueToken == JsonToken.VALUE_NULL ? null : appUserIdDeserializer.read(jsonParser));
+                    break;
+                case "venueid":
+                    observation.setVenueId(readInteger(jsonParser));
+                    break;
+                case "building":
+                    observation.setBuilding(readInteger(jsonParser));
+                    break;
+                case "floor":
+                    observation.setFloor(readInteger(jsonParser));
+                    break;
+                case "lat":
+                    observation.setLat(readFloat(jsonParser));
+                    break;
+                case "lon":
+                    observation.setLon(readFloat(jsonParser));
+                    break;
+                case "devicedate":
+                    observation.setDeviceDate(valueToken == JsonToken.VALUE_NULL ? null : epochTimestampDeserializer.read(jsonParser));
+                    break;
+                case "type":
+                    observation.setType(readType(jsonParser));
+                    break;
+                default:
+                    jsonParser.skipChildren();
+            }
+        }
+        return observation;
+    }
+
+    private static Integer readInteger(final JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+                if (jsonParser.getNumberType() != JsonParser.NumberType.INT) {
+                    throw new InvalidFormatException(jsonParser, "Numeric value out of range of int", jsonParser.getText(), Integer.class);
+                }
+                return jsonParser.getIntValue();
+            case VALUE_NUMBER_FLOAT:
+                return jsonParser.getValueAsInt();
+            case VALUE_STRING:
+                final String text = jsonParser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return Integer.valueOf(text);
+                } catch (final NumberFormatException e) {
+                    throw new InvalidFormatException(jsonParser, "Not a valid Integer value", text, Integer.class);
+                }
+            case VALUE_NULL:
+                return null;
+            default:
+                throw MismatchedInputException.from(jsonParser, Integer.class, "Cannot read Integer out of " + jsonParser.getCurrentToken());
+        }
+    }
+
+    private static Float readFloat(final JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return jsonParser.getFloatValue();
+            case VALUE_STRING:
+                final String text = jsonParser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return Float.valueOf(text);
+                } catch (final NumberFormatException e) {
+                    throw new InvalidFormatException(jsonParser, "Not a valid Float value", text, Float.class);
+                }
+            case VALUE_NULL:
+                return null;
+            default:
+                throw MismatchedInputException.from(jsonParser, Float.class, "Cannot read Float out of " + jsonParser.getCurrentToken());
+        }
+    }
+
+    private static Type readType(final JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case VALUE_STRING:
+                final String text = jsonParser.getText();
+                for (final Type type : Type.values()) {
+                    if (type.getValue().equals(text)) {
+                        return type;
+                    }
+                }
+                throw new InvalidFormatException(jsonParser, "Not one of the Type values", text, Type.class);
+            case VALUE_NUMBER_INT:
+                // As the databind path, numbers are considered as Type's ordinals
+                final int ordinal = jsonParser.getValueAsInt(-1);
+                if (ordinal < 0 || ordinal >= Type.values().length) {
+                    throw new InvalidFormatException(jsonParser, "Not one of the Type ordinals", jsonParser.getText(), Type.class);
+                }
+                return Type.values()[ordinal];
+            case VALUE_NULL:
+                return null;
+            default:
+                throw MismatchedInputException.from(jsonParser, Type.class, "Cannot read Type out of " + jsonParser.getCurrentToken());
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayWriter;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link org.apache.http.HttpEntity} whose JSON content is written by a {@link DataArrayWriter} straight to the connection, while being sent.
+ * <p>
+ * Content is never held in memory as a whole: it is sent in chunks as the {@link DataArrayWriter} writes it.
+ * As the {@link DataArrayWriter} can write its content again, the entity is repeatable, so that it can be sent again (e.g., when retrying).
+ *
+ * @author Aurelien Bourdon
+ */
+public class DataArrayEntity extends AbstractHttpEntity {
+
+    private final DataArrayWriter writer;
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Create a new {@link DataArrayEntity}
+     *
+     * @param writer      the {@link DataArrayWriter} of the entity content
+     * @param jsonFactory the {@link JsonFactory} from which creating the {@link JsonGenerator} given to the {@link DataArrayWriter}
+     */
+    public DataArrayEntity(final DataArrayWriter writer, final JsonFactory jsonFactory) {
+        this.writer = writer;
+        this.jsonFactory = jsonFactory;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Get the entity content by writing it in memory, as only expected when the entity has to be read instead of written (e.g., for logging)
+     *
+     * @return the entity content
+     * @throws IOException if entity content cannot be written
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        writeTo(content);
+        return new ByteArrayInputStream(content.toByteArray());
+    }
+
+    @Override
+    public void writeTo(final OutputStream output) throws IOException {
+        // Generator must not close the connection's stream, which is handled by the HTTP client
+        try (final JsonGenerator generator = jsonFactory.createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            writer.write(generator);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
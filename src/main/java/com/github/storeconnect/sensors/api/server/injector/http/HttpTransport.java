@@ -0,0 +1,213 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.http;
+
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled and keep-alive HTTP transport to the StoreConnect Sensors API's server.
+ * <p>
+ * Connections are kept open once a request completed, so that next requests, possibly sent in parallel, reuse them instead of paying again for TCP (and TLS) setup.
+ * Pool is sized according to the number of requests an injection can have in flight at the same time, so that no request waits for a connection to be available.
+ * <p>
+ * Number of sent requests and of opened connections are recorded, from which connection reuse can be deduced.
+ *
+ * @author Aurelien Bourdon
+ */
+public class HttpTransport implements Closeable {
+
+    /**
+     * {@link Counter} of the HTTP requests sent to server
+     */
+    public static final String REQUESTS_COUNTER = "http.requests";
+
+    /**
+     * {@link Counter} of the connections opened to server
+     */
+    public static final String OPENED_CONNECTIONS_COUNTER = "http.connections.opened";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpTransport.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final Counter requests;
+    private final Counter openedConnections;
+
+    /**
+     * Create a new {@link HttpTransport}
+     *
+     * @param configuration the {@link InjectorConfiguration} from which getting HTTP settings and the expected number of concurrent requests
+     * @param metrics       the {@link MetricsRegistry} in which recording requests and opened connections
+     */
+    public HttpTransport(final InjectorConfiguration configuration, final MetricsRegistry metrics) {
+        requests = metrics.counter(REQUESTS_COUNTER);
+        openedConnections = metrics.counter(OPENED_CONNECTIONS_COUNTER);
+
+        final int maxConnections = getMaxConnections(configuration);
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = (route, config) -> {
+            openedConnections.increment();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        };
+        connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                        .build(),
+                connectionFactory
+        );
+        connectionManager.setMaxTotal(maxConnections);
+        // All requests target the same server, so that a single route can use the whole pool
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+                .setTcpNoDelay(configuration.isHttpTcpNoDelay())
+                .setSoKeepAlive(true)
+                .setSoTimeout(toTimeout(configuration.getHttpSocketTimeout()))
+                .build());
+
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(toTimeout(configuration.getHttpConnectTimeout()))
+                        .setConnectionRequestTimeout(toTimeout(configuration.getHttpConnectTimeout()))
+                        .setSocketTimeout(toTimeout(configuration.getHttpSocketTimeout()))
+                        .build())
+                .setKeepAliveStrategy(keepAliveStrategy(configuration.getHttpKeepAlive()))
+                .evictExpiredConnections()
+                .evictIdleConnections(configuration.getHttpKeepAlive(), TimeUnit.MILLISECONDS)
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> requests.increment())
+                .useSystemProperties()
+                .build();
+        LOGGER.debug("HTTP transport created with a pool of {} connections", maxConnections);
+    }
+
+    /**
+     * Get the maximum number of connections to keep open to server according to the given {@link InjectorConfiguration}.
+     * <p>
+     * Unless explicitly set, each worker can have as many DataArray requests in flight as concurrent requests, in addition to the one resolving entities.
+     *
+     * @param configuration the {@link InjectorConfiguration} from which getting the expected number of concurrent requests
+     * @return the maximum number of connections to keep open to server
+     */
+    public static int getMaxConnections(final InjectorConfiguration configuration) {
+        if (configuration.getHttpMaxConnections() > 0) {
+            return configuration.getHttpMaxConnections();
+        }
+        return configuration.getWorkers() * (configuration.getConcurrentRequests() + 1);
+    }
+
+    private static int toTimeout(final long millis) {
+        return (int) Math.min(millis, Integer.MAX_VALUE);
+    }
+
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(final long defaultKeepAliveMillis) {
+        return (final HttpResponse response, final HttpContext context) -> {
+            // Follow the Keep-Alive header when server sends one
+            final long keepAliveMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAliveMillis > 0 ? keepAliveMillis : defaultKeepAliveMillis;
+        };
+    }
+
+    /**
+     * Get the pooled HTTP client, to be used by the {@link de.fraunhofer.iosb.ilt.sta.service.SensorThingsService}
+     *
+     * @return the pooled HTTP client
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Get the number of HTTP requests sent to server
+     *
+     * @return the number of HTTP requests sent to server
+     */
+    public long getRequestCount() {
+        return requests.getCount();
+    }
+
+    /**
+     * Get the number of connections opened to server
+     *
+     * @return the number of connections opened to server
+     */
+    public long getOpenedConnectionCount() {
+        return openedConnections.getCount();
+    }
+
+    /**
+     * Get the current state of the connection pool
+     *
+     * @return the current state of the connection pool
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Get the ratio of the HTTP requests sent over an already opened connection
+     *
+     * @return the ratio of the HTTP requests sent over an already opened connection, between 0 and 1
+     */
+    public double getConnectionReuseRatio() {
+        final long requestCount = getRequestCount();
+        return requestCount == 0 ? 0 : Math.max(0, requestCount - getOpenedConnectionCount()) / (double) requestCount;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info(
+                "Sent {} HTTP request{} over {} connection{} ({}% reused)",
+                getRequestCount(),
+                getRequestCount() > 1 ? "s" : "",
+                getOpenedConnectionCount(),
+                getOpenedConnectionCount() > 1 ? "s" : "",
+                Math.round(getConnectionReuseRatio() * 100)
+        );
+        try {
+            client.close();
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to close HTTP connections to server", e);
+        }
+    }
+
+}
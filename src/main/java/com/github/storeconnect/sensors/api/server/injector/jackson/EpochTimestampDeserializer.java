@@ -16,6 +16,7 @@
 package com.github.storeconnect.sensors.api.server.injector.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -34,13 +35,43 @@ public class EpochTimestampDeserializer extends JsonDeserializer<Instant> {
 
     @Override
     public Instant deserialize(final JsonParser jsonParser, final DeserializationContext deserializationContext) throws IOException {
-        final JsonNode node = jsonParser.getCodec().readTree(jsonParser);
-        final String rawTimestamp = node.asText();
+        return read(jsonParser);
+    }
+
+    /**
+     * Read the {@link Instant} from the current {@link JsonParser}'s value.
+     * <p>
+     * Integer numbers are decoded as is. Any other value goes through its textual representation, so that quoted timestamps are also accepted.
+     *
+     * @param jsonParser the {@link JsonParser} positioned on the value to read
+     * @return the read {@link Instant}
+     * @throws IOException if value is not a valid millisecond epoch timestamp
+     */
+    public Instant read(final JsonParser jsonParser) throws IOException {
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+            final JsonParser.NumberType numberType = jsonParser.getNumberType();
+            if (numberType == JsonParser.NumberType.INT || numberType == JsonParser.NumberType.LONG) {
+                return toInstant(jsonParser, jsonParser.getLongValue());
+            }
+        }
+        final String rawTimestamp = jsonParser.getCurrentToken() == JsonToken.VALUE_STRING ? jsonParser.getText() : jsonParser.getCodec().<JsonNode>readTree(jsonParser).asText();
         try {
-            return Instant.ofEpochMilli(Long.valueOf(rawTimestamp));
-        } catch (final NumberFormatException | DateTimeException e) {
-            throw new InvalidFormatException(jsonParser, "Invalid millisecond epoch timestamp", rawTimestamp, Long.class);
+            return toInstant(jsonParser, Long.parseLong(rawTimestamp));
+        } catch (final NumberFormatException e) {
+            throw invalidTimestamp(jsonParser, rawTimestamp);
         }
     }
 
+    private static Instant toInstant(final JsonParser jsonParser, final long timestamp) throws InvalidFormatException {
+        try {
+            return Instant.ofEpochMilli(timestamp);
+        } catch (final DateTimeException e) {
+            throw invalidTimestamp(jsonParser, String.valueOf(timestamp));
+        }
+    }
+
+    private static InvalidFormatException invalidTimestamp(final JsonParser jsonParser, final String rawTimestamp) {
+        return new InvalidFormatException(jsonParser, "Invalid millisecond epoch timestamp", rawTimestamp, Long.class);
+    }
+
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterator} over the values of a root JSON array, that reads values one by one from a {@link JsonParser}.
+ * <p>
+ * Only the current value is kept in memory, whatever the size of the JSON array.
+ * Any {@link IOException} raised while iterating is wrapped into an {@link UncheckedIOException}.
+ *
+ * @param <T> the type of the JSON array's values
+ * @author Aurelien Bourdon
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+    private final JsonParser jsonParser;
+    private final ValueReader<T> valueReader;
+    private JsonToken nextToken;
+
+    /**
+     * Create a new {@link JsonArrayIterator} from the given {@link JsonParser} that has to be positioned at the beginning of the JSON content
+     *
+     * @param jsonParser the {@link JsonParser} from which reading the JSON array
+     * @param valueType  the type of the JSON array's values
+     * @throws IOException if the JSON content is not an array
+     */
+    public JsonArrayIterator(final JsonParser jsonParser, final Class<T> valueType) throws IOException {
+        this(jsonParser, parser -> parser.readValueAs(valueType));
+    }
+
+    /**
+     * Create a new {@link JsonArrayIterator} from the given {@link JsonParser} that has to be positioned at the beginning of the JSON content
+     *
+     * @param jsonParser  the {@link JsonParser} from which reading the JSON array
+     * @param valueReader the {@link ValueReader} to use to read each JSON array's value
+     * @throws IOException if the JSON content is not an array
+     */
+    public JsonArrayIterator(final JsonParser jsonParser, final ValueReader<T> valueReader) throws IOException {
+        this.jsonParser = jsonParser;
+        this.valueReader = valueReader;
+        if (jsonParser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(jsonParser, "Expected a JSON array as root value");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (nextToken == null) {
+                nextToken = jsonParser.nextToken();
+                if (nextToken == null) {
+                    throw new JsonParseException(jsonParser, "Unexpected end of input: JSON array is not closed");
+                }
+                // Read up to the end of input, so that any trailing content is reported rather than silently ignored
+                if (nextToken == JsonToken.END_ARRAY && jsonParser.nextToken() != null) {
+                    throw new JsonParseException(jsonParser, "Unexpected content after the JSON array");
+                }
+            }
+            return nextToken != JsonToken.END_ARRAY;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return valueReader.read(jsonParser);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            nextToken = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonParser.close();
+    }
+
+    /**
+     * Read a single JSON array's value
+     *
+     * @param <T> the type of the read value
+     */
+    @FunctionalInterface
+    public interface ValueReader<T> {
+
+        /**
+         * Read the value the given {@link JsonParser} is positioned on, leaving it on the value's last token
+         *
+         * @param jsonParser the {@link JsonParser} from which reading the value
+         * @return the read value
+         * @throws IOException if value cannot be read
+         */
+        T read(JsonParser jsonParser) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterator} over a sequence of root JSON values (e.g., newline-delimited JSON, one value per line), that reads values one by one from a {@link JsonParser}.
+ * <p>
+ * Only the current value is kept in memory, whatever the size of the sequence.
+ * Any {@link IOException} raised while iterating is wrapped into an {@link UncheckedIOException}.
+ *
+ * @param <T> the type of the sequence's values
+ * @author Aurelien Bourdon
+ */
+public class JsonSequenceIterator<T> implements Iterator<T>, Closeable {
+
+    private final JsonParser jsonParser;
+    private final JsonArrayIterator.ValueReader<T> valueReader;
+    private JsonToken nextToken;
+
+    /**
+     * Create a new {@link JsonSequenceIterator} from the given {@link JsonParser} that has to be positioned at the beginning of the JSON content
+     *
+     * @param jsonParser  the {@link JsonParser} from which reading the sequence of JSON values
+     * @param valueReader the {@link JsonArrayIterator.ValueReader} to use to read each JSON value
+     */
+    public JsonSequenceIterator(final JsonParser jsonParser, final JsonArrayIterator.ValueReader<T> valueReader) {
+        this.jsonParser = jsonParser;
+        this.valueReader = valueReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (nextToken == null) {
+                nextToken = jsonParser.nextToken();
+            }
+            return nextToken != null;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return valueReader.read(jsonParser);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            nextToken = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonParser.close();
+    }
+
+}
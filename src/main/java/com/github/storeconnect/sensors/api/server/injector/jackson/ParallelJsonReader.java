@@ -0,0 +1,327 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * {@link Iterator} over the values of a JSON file, that parses the file on several cores while keeping the file's values order.
+ * <p>
+ * The file is memory-mapped and cut into chunks at record boundaries, i.e., between two values of the root JSON array or between two lines of a newline-delimited JSON file.
+ * Chunks are then parsed on a {@link ForkJoinPool} and their values are returned in the file's order.
+ * Only a bounded number of chunks are scanned ahead of the current one, so that memory usage does not depend on the file size.
+ * Any {@link IOException} raised while iterating is wrapped into an {@link UncheckedIOException}.
+ *
+ * @param <T> the type of the JSON file's values
+ * @author Aurelien Bourdon
+ */
+public class ParallelJsonReader<T> implements Iterator<T>, Closeable {
+
+    /**
+     * Default minimum size, in bytes, of a chunk
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int SCAN_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int PENDING_CHUNKS_PER_THREAD = 2;
+    private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.UTF_8);
+
+    private final File input;
+    private final FileChannel channel;
+    private final long size;
+    private final Layout layout;
+    private final JsonFactory jsonFactory;
+    private final JsonArrayIterator.ValueReader<T> valueReader;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final int maxPendingChunks;
+    private final Deque<ForkJoinTask<List<T>>> pendingChunks = new ArrayDeque<>();
+    private final ChunkScanner scanner = new ChunkScanner();
+    private Iterator<T> current = Collections.emptyIterator();
+
+    /**
+     * Create a new {@link ParallelJsonReader} over the given JSON file
+     *
+     * @param input       the JSON file to read
+     * @param layout      the {@link Layout} of the JSON file
+     * @param jsonFactory the {@link JsonFactory} to use to create the chunks' parsers
+     * @param valueReader the {@link JsonArrayIterator.ValueReader} to use to read each JSON value. Has to be thread-safe
+     * @param parallelism the number of threads to use to parse chunks
+     * @param chunkSize   the minimum size, in bytes, of a chunk
+     * @throws IOException if JSON file cannot be opened or does not follow the given {@link Layout}
+     */
+    public ParallelJsonReader(final File input, final Layout layout, final JsonFactory jsonFactory, final JsonArrayIterator.ValueReader<T> valueReader, final int parallelism, final int chunkSize) throws IOException {
+        this.input = input;
+        this.channel = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+        this.layout = layout;
+        this.jsonFactory = jsonFactory;
+        this.valueReader = valueReader;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxPendingChunks = parallelism * PENDING_CHUNKS_PER_THREAD;
+        try {
+            this.size = channel.size();
+            if (layout == Layout.ARRAY) {
+                scanner.skipArrayStart();
+            }
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            scheduleChunks();
+            final ForkJoinTask<List<T>> chunk = pendingChunks.poll();
+            if (chunk == null) {
+                return false;
+            }
+            current = chunk.join().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (final ForkJoinTask<List<T>> pendingChunk : pendingChunks) {
+            pendingChunk.cancel(true);
+        }
+        pendingChunks.clear();
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    private void scheduleChunks() {
+        try {
+            while (pendingChunks.size() < maxPendingChunks) {
+                final long[] chunk = scanner.nextChunk();
+                if (chunk == null) {
+                    return;
+                }
+                pendingChunks.add(pool.submit(() -> parseChunk(chunk[0], chunk[1])));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<T> parseChunk(final long start, final long end) {
+        final List<T> values = new ArrayList<>();
+        try {
+            final InputStream content = new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            if (layout == Layout.ARRAY) {
+                // Chunk is a part of the root JSON array's values, that has to be enclosed to be parsed as a JSON array
+                try (final JsonArrayIterator<T> iterator = new JsonArrayIterator<>(jsonFactory.createParser(new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                        new ByteArrayInputStream(ARRAY_START),
+                        content,
+                        new ByteArrayInputStream(ARRAY_END)
+                )))), valueReader)) {
+                    iterator.forEachRemaining(values::add);
+                }
+            } else {
+                try (final JsonSequenceIterator<T> iterator = new JsonSequenceIterator<>(jsonFactory.createParser(content), valueReader)) {
+                    iterator.forEachRemaining(values::add);
+                }
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new UncheckedIOException(new IOException(String.format("Unable to parse %s between bytes %d and %d", input, start, end), e));
+        }
+        return values;
+    }
+
+    /**
+     * The layout of a JSON file's values
+     */
+    public enum Layout {
+
+        /**
+         * Values are contained within a root JSON array
+         */
+        ARRAY,
+
+        /**
+         * Values are newline-delimited root JSON values
+         */
+        NEWLINE_DELIMITED
+
+    }
+
+    /**
+     * Scan the JSON file, ahead of parsing, to cut it into chunks at record boundaries
+     */
+    private final class ChunkScanner {
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+        private boolean done;
+        // Root JSON array's scanning state, relative to the root JSON array
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        private void skipArrayStart() throws IOException {
+            skipByteOrderMark();
+            while (position < size) {
+                final byte b = byteAt(position++);
+                if (b == '[') {
+                    return;
+                }
+                if (!isWhitespace(b)) {
+                    break;
+                }
+            }
+            throw new IOException("Expected a JSON array as root value of " + input);
+        }
+
+        private void skipByteOrderMark() throws IOException {
+            if (size >= 3 && byteAt(0) == (byte) 0xEF && byteAt(1) == (byte) 0xBB && byteAt(2) == (byte) 0xBF) {
+                position = 3;
+            }
+        }
+
+        /**
+         * Get the next chunk's byte range
+         *
+         * @return the next chunk's start (inclusive) and end (exclusive) positions, or null if there is no more chunk
+         * @throws IOException if file cannot be read or root JSON array is not closed
+         */
+        private long[] nextChunk() throws IOException {
+            if (done || position >= size && layout == Layout.NEWLINE_DELIMITED) {
+                return null;
+            }
+            return layout == Layout.ARRAY ? nextArrayChunk() : nextLinesChunk();
+        }
+
+        private long[] nextLinesChunk() throws IOException {
+            final long start = position;
+            // Newlines cannot be part of a JSON value (they have to be escaped within strings), so any newline is a record boundary
+            position = Math.min(start + chunkSize, size);
+            while (position < size) {
+                ensureWindow(position);
+                final int limit = window.limit();
+                for (int i = (int) (position - windowStart); i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        position = windowStart + i + 1;
+                        return new long[]{start, position};
+                    }
+                }
+                position = windowStart + limit;
+            }
+            return new long[]{start, position};
+        }
+
+        private long[] nextArrayChunk() throws IOException {
+            final long start = position;
+            while (position < size) {
+                ensureWindow(position);
+                final int limit = window.limit();
+                for (int i = (int) (position - windowStart); i < limit; i++) {
+                    final byte b = window.get(i);
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        if (depth == 0) {
+                            // End of the root JSON array
+                            final long end = windowStart + i;
+                            position = end + 1;
+                            done = true;
+                            checkTrailingContent();
+                            return new long[]{start, end};
+                        }
+                        depth--;
+                    } else if (b == ',' && depth == 0 && windowStart + i - start >= chunkSize) {
+                        final long end = windowStart + i;
+                        position = end + 1;
+                        return new long[]{start, end};
+                    }
+                }
+                position = windowStart + limit;
+            }
+            throw new IOException("Unexpected end of input: JSON array of " + input + " is not closed");
+        }
+
+        private void checkTrailingContent() throws IOException {
+            while (position < size) {
+                if (!isWhitespace(byteAt(position++))) {
+                    throw new IOException("Unexpected content after the JSON array of " + input);
+                }
+            }
+        }
+
+        private byte byteAt(final long index) throws IOException {
+            ensureWindow(index);
+            return window.get((int) (index - windowStart));
+        }
+
+        private void ensureWindow(final long index) throws IOException {
+            if (window == null || index < windowStart || index >= windowStart + window.limit()) {
+                windowStart = index;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, index, Math.min(SCAN_WINDOW_SIZE, size - index));
+            }
+        }
+
+        private boolean isWhitespace(final byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+    }
+
+}
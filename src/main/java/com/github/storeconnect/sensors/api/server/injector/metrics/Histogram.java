@@ -0,0 +1,132 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe distribution of positive {@code long} values, with a fixed memory footprint.
+ * <p>
+ * Values are counted into logarithmic buckets (four buckets per power of two), so that reported percentiles are upper bounds within 25% of the actual values.
+ * Count, sum, minimum and maximum are exact.
+ *
+ * @author Aurelien Bourdon
+ */
+public class Histogram implements Metric {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Record the given value
+     *
+     * @param value the value to record. Negative values are recorded as 0
+     */
+    public void record(final long value) {
+        final long recorded = Math.max(0, value);
+        buckets.incrementAndGet(bucketOf(recorded));
+        count.increment();
+        sum.add(recorded);
+        min.accumulateAndGet(recorded, Math::min);
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        final long currentCount = getCount();
+        return currentCount == 0 ? 0 : (double) getSum() / currentCount;
+    }
+
+    /**
+     * Get the (approximated) value under which the given ratio of recorded values are
+     *
+     * @param ratio the ratio of recorded values, between 0 and 1 (e.g., 0.99 for the 99th percentile)
+     * @return the (approximated) value under which the given ratio of recorded values are, or 0 if no value has been recorded
+     */
+    public long getPercentile(final double ratio) {
+        final long currentCount = getCount();
+        if (currentCount == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(ratio * currentCount));
+        long cumulated = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulated += buckets.get(bucket);
+            if (cumulated >= rank) {
+                return Math.max(getMin(), Math.min(getMax(), upperBoundOf(bucket)));
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public Map<String, Number> summarize() {
+        final Map<String, Number> summary = new LinkedHashMap<>();
+        summary.put("count", getCount());
+        summary.put("min", getMin());
+        summary.put("max", getMax());
+        summary.put("mean", getMean());
+        summary.put("p50", getPercentile(0.5));
+        summary.put("p95", getPercentile(0.95));
+        summary.put("p99", getPercentile(0.99));
+        return summary;
+    }
+
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long nextLowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift;
+        return nextLowerBound <= 0 ? Long.MAX_VALUE : nextLowerBound - 1;
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import java.util.Iterator;
+
+/**
+ * {@link Iterator} that measures the time spent to produce its elements, and counts them.
+ * <p>
+ * Measures are accumulated locally and only reported when calling {@link #report(Timer, Counter)}, to keep per-element overhead low.
+ * Hence, a {@link MeteredIterator} is not thread-safe.
+ *
+ * @param <T> the type of the elements
+ * @author Aurelien Bourdon
+ */
+public class MeteredIterator<T> implements Iterator<T> {
+
+    private final Iterator<T> delegate;
+    private long elapsedNanos;
+    private long count;
+
+    public MeteredIterator(final Iterator<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean hasNext() {
+        final long start = System.nanoTime();
+        try {
+            return delegate.hasNext();
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public T next() {
+        final long start = System.nanoTime();
+        try {
+            final T next = delegate.next();
+            count++;
+            return next;
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Report the time spent to produce elements so far as a single duration, and the number of produced elements
+     *
+     * @param timer   the {@link Timer} to which reporting the time spent to produce elements
+     * @param counter the {@link Counter} to which reporting the number of produced elements
+     */
+    public void report(final Timer timer, final Counter counter) {
+        timer.record(elapsedNanos);
+        counter.add(count);
+        elapsedNanos = 0;
+        count = 0;
+    }
+
+}
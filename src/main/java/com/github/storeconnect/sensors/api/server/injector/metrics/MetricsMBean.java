@@ -0,0 +1,94 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link DynamicMBean} exposing the {@link Metric}s of a {@link MetricsRegistry} as read-only attributes, named {@code <metric name>.<statistic name>}
+ *
+ * @author Aurelien Bourdon
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    private Map<String, Number> attributes() {
+        final Map<String, Number> attributes = new LinkedHashMap<>();
+        registry.snapshot().values().forEach(metrics -> metrics.forEach((metricName, statistics) ->
+                statistics.forEach((statisticName, value) -> attributes.put(metricName + '.' + statisticName, value))
+        ));
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Number value = attributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) {
+        throw new UnsupportedOperationException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] names) {
+        final Map<String, Number> attributes = attributes();
+        final AttributeList list = new AttributeList();
+        for (final String name : names) {
+            if (attributes.containsKey(name)) {
+                list.add(new Attribute(name, attributes.get(name)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+        throw new UnsupportedOperationException("No operation available");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final Map<String, Number> attributes = attributes();
+        final MBeanAttributeInfo[] attributeInfos = attributes.entrySet().stream()
+                .map(attribute -> new MBeanAttributeInfo(attribute.getKey(), attribute.getValue().getClass().getName(), attribute.getKey(), true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(getClass().getName(), "Injection metrics", attributeInfos, null, new MBeanOperationInfo[0], null);
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe registry of the {@link Metric}s of an injection run, by name.
+ * <p>
+ * {@link Metric}s are created on first access, and can be exported as a JSON report or exposed through JMX while the run is in progress.
+ *
+ * @author Aurelien Bourdon
+ */
+public class MetricsRegistry {
+
+    /**
+     * The name of the JMX MBean exposing {@link Metric}s, when registered
+     */
+    public static final String MBEAN_NAME = "com.github.storeconnect.sensors.api.server.injector:type=Metrics";
+
+    private final Instant start = Instant.now();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private ObjectName registeredMBeanName;
+
+    /**
+     * Get the {@link Counter} with the given name, by creating it if necessary
+     *
+     * @param name the {@link Counter}'s name
+     * @return the {@link Counter} with the given name
+     */
+    public Counter counter(final String name) {
+        return getOrCreate(counters, name, Counter::new);
+    }
+
+    /**
+     * Get the {@link Timer} with the given name, by creating it if necessary
+     *
+     * @param name the {@link Timer}'s name
+     * @return the {@link Timer} with the given name
+     */
+    public Timer timer(final String name) {
+        return getOrCreate(timers, name, Timer::new);
+    }
+
+    /**
+     * Get the {@link Histogram} with the given name, by creating it if necessary
+     *
+     * @param name the {@link Histogram}'s name
+     * @return the {@link Histogram} with the given name
+     */
+    public Histogram histogram(final String name) {
+        return getOrCreate(histograms, name, Histogram::new);
+    }
+
+    private static <M extends Metric> M getOrCreate(final ConcurrentMap<String, M> metrics, final String name, final Supplier<M> factory) {
+        final M metric = metrics.get(name);
+        return metric != null ? metric : metrics.computeIfAbsent(name, key -> factory.get());
+    }
+
+    /**
+     * Get a snapshot of all registered {@link Metric}s, by kind (counters, timers or histograms) and then by name
+     *
+     * @return a snapshot of all registered {@link Metric}s
+     */
+    public SortedMap<String, SortedMap<String, Map<String, Number>>> snapshot() {
+        final SortedMap<String, SortedMap<String, Map<String, Number>>> snapshot = new TreeMap<>();
+        snapshot.put("counters", summarize(counters));
+        snapshot.put("histograms", summarize(histograms));
+        snapshot.put("timers", summarize(timers));
+        return snapshot;
+    }
+
+    private static SortedMap<String, Map<String, Number>> summarize(final Map<String, ? extends Metric> metrics) {
+        final SortedMap<String, Map<String, Number>> summaries = new TreeMap<>();
+        metrics.forEach((name, metric) -> summaries.put(name, metric.summarize()));
+        return summaries;
+    }
+
+    /**
+     * Write a JSON report of all registered {@link Metric}s to the given file
+     *
+     * @param output the file to which writing the report
+     * @throws IOException if report cannot be written
+     */
+    public void writeReport(final File output) throws IOException {
+        try (final JsonGenerator generator = new JsonFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("start", start.toString());
+            generator.writeStringField("end", Instant.now().toString());
+            for (final Map.Entry<String, SortedMap<String, Map<String, Number>>> kind : snapshot().entrySet()) {
+                generator.writeObjectFieldStart(kind.getKey());
+                for (final Map.Entry<String, Map<String, Number>> metric : kind.getValue().entrySet()) {
+                    generator.writeObjectFieldStart(metric.getKey());
+                    for (final Map.Entry<String, Number> statistic : metric.getValue().entrySet()) {
+                        generator.writeFieldName(statistic.getKey());
+                        if (statistic.getValue() instanceof Double) {
+                            generator.writeNumber(statistic.getValue().doubleValue());
+                        } else {
+                            generator.writeNumber(statistic.getValue().longValue());
+                        }
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Expose all registered {@link Metric}s through JMX, under the {@link #MBEAN_NAME} name, by replacing any previously registered one
+     */
+    public synchronized void registerMBean() {
+        try {
+            final ObjectName name = new ObjectName(MBEAN_NAME);
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(new MetricsMBean(this), name);
+            registeredMBeanName = name;
+        } catch (final MalformedObjectNameException e) {
+            throw new IllegalStateException("Invalid metrics MBean name", e);
+        } catch (final JMException e) {
+            throw new IllegalStateException("Unable to register metrics MBean", e);
+        }
+    }
+
+    /**
+     * Stop exposing {@link Metric}s through JMX, if previously done by {@link #registerMBean()}
+     */
+    public synchronized void unregisterMBean() {
+        if (registeredMBeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredMBeanName);
+        } catch (final JMException e) {
+            throw new IllegalStateException("Unable to unregister metrics MBean", e);
+        } finally {
+            registeredMBeanName = null;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe distribution of durations, reported in milliseconds
+ *
+ * @author Aurelien Bourdon
+ */
+public class Timer implements Metric {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Histogram durations = new Histogram();
+
+    /**
+     * Start timing an operation
+     *
+     * @return the {@link Context} to stop once operation is done
+     */
+    public Context time() {
+        return new Context(System.nanoTime());
+    }
+
+    /**
+     * Record the given duration
+     *
+     * @param nanos the duration to record, in nanoseconds
+     */
+    public void record(final long nanos) {
+        durations.record(nanos);
+    }
+
+    public long getCount() {
+        return durations.getCount();
+    }
+
+    public long getTotalNanos() {
+        return durations.getSum();
+    }
+
+    @Override
+    public Map<String, Number> summarize() {
+        final Map<String, Number> summary = new LinkedHashMap<>();
+        summary.put("count", durations.getCount());
+        summary.put("totalMillis", toMillis(durations.getSum()));
+        summary.put("minMillis", toMillis(durations.getMin()));
+        summary.put("maxMillis", toMillis(durations.getMax()));
+        summary.put("meanMillis", durations.getMean() / NANOS_PER_MILLI);
+        summary.put("p50Millis", toMillis(durations.getPercentile(0.5)));
+        summary.put("p95Millis", toMillis(durations.getPercentile(0.95)));
+        summary.put("p99Millis", toMillis(durations.getPercentile(0.99)));
+        return summary;
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * A timed operation, recorded into its {@link Timer} once stopped
+     */
+    public final class Context implements AutoCloseable {
+
+        private final long start;
+        private boolean stopped;
+
+        private Context(final long start) {
+            this.start = start;
+        }
+
+        /**
+         * Stop timing the operation, and record its duration if not already done
+         *
+         * @return the operation duration, in nanoseconds
+         */
+        public long stop() {
+            final long elapsed = System.nanoTime() - start;
+            if (!stopped) {
+                stopped = true;
+                record(elapsed);
+            }
+            return elapsed;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+
+    }
+
+}
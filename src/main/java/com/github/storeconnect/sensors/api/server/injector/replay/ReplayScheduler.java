@@ -0,0 +1,136 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.replay;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule the sending of recorded observations according to their recording date, so that server receives them at the same pace as they have been recorded, possibly sped up.
+ * <p>
+ * The first scheduled observation is due immediately, and any next one is due once the time elapsed since the first one, divided by the replay speed, has passed.
+ * The delay between the time an observation is due and the time it is actually released (i.e., how far the sender drifts behind the schedule) is recorded within the {@link #DRIFT_TIMER}.
+ * <p>
+ * Not thread-safe: a {@link ReplayScheduler} has to be used by a single injection.
+ *
+ * @author Aurelien Bourdon
+ */
+public class ReplayScheduler {
+
+    /**
+     * {@link Timer} of the delays between the time observations are due and the time they are released
+     */
+    public static final String DRIFT_TIMER = "replay.drift";
+
+    /**
+     * {@link Timer} of the time spent waiting for observations to be due
+     */
+    public static final String WAIT_TIMER = "replay.wait";
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double speed;
+    private final Timer driftTimer;
+    private final Timer waitTimer;
+    private boolean started;
+    private long startNanos;
+    private long firstRecordingMillis;
+    private long maxDriftNanos;
+
+    /**
+     * Create a new {@link ReplayScheduler}
+     *
+     * @param speed   the replay speed factor, e.g., 1 for real time or 10 for 10 times faster than real time
+     * @param metrics the {@link MetricsRegistry} in which recording drift and waiting times
+     */
+    public ReplayScheduler(final double speed, final MetricsRegistry metrics) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Replay speed must be strictly positive");
+        }
+        this.speed = speed;
+        this.driftTimer = metrics.timer(DRIFT_TIMER);
+        this.waitTimer = metrics.timer(WAIT_TIMER);
+    }
+
+    /**
+     * Wait until an observation recorded at the given date is due
+     *
+     * @param recordingDate the observation's recording date. If null, the observation is considered as due immediately
+     * @return how far, in nanoseconds, the observation is released behind the schedule
+     */
+    public long await(final Instant recordingDate) {
+        if (recordingDate == null) {
+            return 0;
+        }
+        long now = nanoTime();
+        if (!started) {
+            started = true;
+            startNanos = now;
+            firstRecordingMillis = recordingDate.toEpochMilli();
+        }
+        final long dueNanos = startNanos + (long) ((recordingDate.toEpochMilli() - firstRecordingMillis) * NANOS_PER_MILLI / speed);
+        final long aheadNanos = dueNanos - now;
+        if (aheadNanos > 0) {
+            sleep(aheadNanos);
+            waitTimer.record(aheadNanos);
+            now = nanoTime();
+        }
+        final long driftNanos = Math.max(0, now - dueNanos);
+        driftTimer.record(driftNanos);
+        maxDriftNanos = Math.max(maxDriftNanos, driftNanos);
+        return driftNanos;
+    }
+
+    /**
+     * Get the recording time span that is replayed within the given wall-clock time span, according to the replay speed
+     *
+     * @param wallClockMillis the wall-clock time span, in milliseconds
+     * @return the recording time span, in milliseconds, replayed within the given wall-clock time span
+     */
+    public long toRecordingMillis(final long wallClockMillis) {
+        return Math.max(1, (long) (wallClockMillis * speed));
+    }
+
+    /**
+     * The maximum delay between the time an observation has been due and the time it has been released
+     *
+     * @return the maximum drift behind the schedule, in nanoseconds
+     */
+    public long getMaxDriftNanos() {
+        return maxDriftNanos;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    protected void sleep(final long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for observations to be due", e);
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link InputStream} over a file that is still being appended, as with <code>tail -f</code>: once the end of the file is reached, reading waits for new lines to be appended instead of ending.
+ * <p>
+ * Only complete lines are read, so that a line being written is never read partially. The file is followed across rotations:
+ * <ul>
+ * <li>if the file is renamed and a new one is created under its name, the renamed file is read up to its end, and then the new file is read from its beginning</li>
+ * <li>if the file is truncated, it is read again from its beginning</li>
+ * </ul>
+ * Reading ends once the given stop condition is met and all complete lines have been read.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class FollowingInputStream extends InputStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FollowingInputStream.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NEW_LINE = '\n';
+
+    private final Path path;
+    private final long pollIntervalMillis;
+    private final BooleanSupplier stopRequested;
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private int rotationCount;
+    // Bytes read from file, whose complete lines are between start and lineEnd, and the partial last line between lineEnd and end
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private int start;
+    private int lineEnd;
+
+    /**
+     * Create a new {@link FollowingInputStream} that reads the given file from its beginning
+     *
+     * @param path               the file to follow
+     * @param pollIntervalMillis the time, in milliseconds, to wait before checking the file again once its end is reached
+     * @param stopRequested      the condition on which to stop following the file, once its end is reached
+     * @throws IOException if file cannot be opened
+     */
+    public FollowingInputStream(final Path path, final long pollIntervalMillis, final BooleanSupplier stopRequested) throws IOException {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be strictly positive");
+        }
+        this.path = path;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.stopRequested = stopRequested;
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        position = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (start == lineEnd) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        final int count = Math.min(length, lineEnd - start);
+        System.arraycopy(buffer.array(), start, bytes, offset, count);
+        start += count;
+        return count;
+    }
+
+    /**
+     * Read more bytes from file, by waiting for them if necessary
+     *
+     * @return false if following has been stopped and there is no more complete line to read, true otherwise
+     */
+    private boolean fill() throws IOException {
+        compact();
+        final int read = channel.read(buffer);
+        if (read > 0) {
+            position += read;
+            lineEnd = lastLineEnd();
+            return true;
+        }
+        if (followRotation()) {
+            return true;
+        }
+        if (stopRequested.getAsBoolean()) {
+            if (buffer.position() > 0) {
+                LOGGER.warn("Stopped following {} while its last line is incomplete, ignoring {} bytes", path, buffer.position());
+            }
+            return false;
+        }
+        try {
+            Thread.sleep(pollIntervalMillis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while following " + path);
+        }
+        return true;
+    }
+
+    // Discard the bytes already read, and make room for new ones
+    private void compact() {
+        final int end = buffer.position();
+        System.arraycopy(buffer.array(), start, buffer.array(), 0, end - start);
+        buffer.position(end - start);
+        lineEnd -= start;
+        start = 0;
+        // A single line can be longer than the buffer
+        ensureRemaining();
+    }
+
+    private int lastLineEnd() {
+        final byte[] bytes = buffer.array();
+        for (int index = buffer.position() - 1; index >= lineEnd; index--) {
+            if (bytes[index] == NEW_LINE) {
+                return index + 1;
+            }
+        }
+        return lineEnd;
+    }
+
+    /**
+     * Switch to the file now under the followed name if the current one has been rotated or truncated, once the current one has been fully read
+     *
+     * @return true if another file is read from now, false otherwise
+     */
+    private boolean followRotation() throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            // File is being rotated, the new one is not created yet
+            return false;
+        }
+        if (fileKey != null && !fileKey.equals(attributes.fileKey())) {
+            if (channel.size() > position) {
+                // Rotated file has been appended since last read
+                return true;
+            }
+            // Last line of the rotated file is complete, even if not terminated
+            if (buffer.position() > lineEnd) {
+                ensureRemaining();
+                buffer.put(NEW_LINE);
+                lineEnd = buffer.position();
+            }
+            channel.close();
+            open();
+        } else if (attributes.size() < position) {
+            // File has been truncated, so its partial last line is not going to be completed
+            buffer.position(lineEnd);
+            channel.position(0);
+            position = 0;
+        } else {
+            return false;
+        }
+        rotationCount++;
+        LOGGER.info("Followed input {} has been rotated, reading it from its beginning", path);
+        return true;
+    }
+
+    private void ensureRemaining() {
+        if (!buffer.hasRemaining()) {
+            final ByteBuffer grown = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() * 2));
+            grown.position(buffer.position());
+            buffer = grown;
+        }
+    }
+
+    /**
+     * The number of times the followed file has been rotated or truncated
+     *
+     * @return the number of times the followed file has been rotated or truncated
+     */
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
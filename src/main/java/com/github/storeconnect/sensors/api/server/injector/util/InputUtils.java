@@ -0,0 +1,220 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import com.github.storeconnect.sensors.api.server.injector.checkpoint.CheckpointJournal;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionDeadLetterFile;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Set of utilities when handle injection inputs
+ *
+ * @author Aurelien Bourdon
+ */
+public final class InputUtils {
+
+    /**
+     * Suffixes of the files written next to inputs while injecting them, which are not inputs by themselves
+     */
+    public static final List<String> SIDE_FILE_SUFFIXES = Collections.unmodifiableList(Arrays.asList(CheckpointJournal.FILE_EXTENSION, FlatMotionDeadLetterFile.FILE_EXTENSION));
+
+    private static final Pattern GLOB_PATTERN = Pattern.compile("[*?\\[{]");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String ZIP_EXTENSION = ".zip";
+    private static final String DEFLATE_EXTENSION = ".deflate";
+    private static final String ZLIB_EXTENSION = ".zz";
+    private static final String HIDDEN_PREFIX = ".";
+    private static final List<String> TEMPORARY_SUFFIXES = Collections.unmodifiableList(Arrays.asList(".tmp", ".part"));
+
+    /**
+     * Resolve the given input {@link URL}s to the list of files to inject. Each input {@link URL} can target:
+     * <ul>
+     * <li>a file, which is taken as is</li>
+     * <li>a directory, whose inputs are taken in lexicographical order</li>
+     * <li>a glob pattern within its last path segment (e.g., <code>file:/exports/store-*.json</code>), whose matching inputs are taken in lexicographical order</li>
+     * </ul>
+     * Inputs listed from a directory or a glob pattern are the files satisfying {@link #isInput(Path)}.
+     * A file targeted several times is only taken once.
+     *
+     * @param inputs the input {@link URL}s to resolve
+     * @return the list of files to inject
+     * @throws IOException if a directory cannot be listed
+     */
+    public static List<File> resolve(final List<URL> inputs) throws IOException {
+        final Set<File> files = new LinkedHashSet<>();
+        for (final URL input : inputs) {
+            files.addAll(resolve(input));
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static List<File> resolve(final URL input) throws IOException {
+        final String rawInput = input.toString();
+        final int lastSegmentIndex = rawInput.lastIndexOf('/') + 1;
+        final String lastSegment = rawInput.substring(lastSegmentIndex);
+        if (GLOB_PATTERN.matcher(lastSegment).find()) {
+            return list(new File(URI.create(rawInput.substring(0, lastSegmentIndex))).toPath(), lastSegment);
+        }
+        final File file = new File(URI.create(rawInput));
+        if (file.isDirectory()) {
+            return list(file.toPath(), "*");
+        }
+        return Collections.singletonList(file);
+    }
+
+    private static List<File> list(final Path directory, final String glob) throws IOException {
+        final List<File> files = new ArrayList<>();
+        try (final DirectoryStream<Path> paths = Files.newDirectoryStream(directory, glob)) {
+            for (final Path path : paths) {
+                if (isInput(path)) {
+                    files.add(path.toFile());
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Check if the given path is an input to inject, i.e., a regular file which is neither hidden, temporary (ending with {@code .tmp} or {@code .part}), nor a side file written while injecting another input
+     *
+     * @param path the path to check
+     * @return true if the given path is an input to inject, false otherwise
+     * @see #SIDE_FILE_SUFFIXES
+     */
+    public static boolean isInput(final Path path) {
+        final String name = path.getFileName().toString();
+        return !name.startsWith(HIDDEN_PREFIX)
+                && TEMPORARY_SUFFIXES.stream().noneMatch(name::endsWith)
+                && SIDE_FILE_SUFFIXES.stream().noneMatch(name::endsWith)
+                && Files.isRegularFile(path);
+    }
+
+    /**
+     * Open the given input file, transparently decompressing it according to its extension:
+     * <ul>
+     * <li><code>.gz</code>: gzip compressed file</li>
+     * <li><code>.zip</code>: zip archive, whose single file entry is read</li>
+     * <li><code>.deflate</code> or <code>.zz</code>: zlib compressed file</li>
+     * </ul>
+     * Any other file is read as is. Decompression is done on the fly, so that input is never fully decompressed, neither in memory nor on disk.
+     *
+     * @param input the input file to open
+     * @return the {@link InputStream} over the (decompressed) content of the input file
+     * @throws IOException if input file cannot be opened or is not a valid compressed file
+     */
+    public static InputStream open(final File input) throws IOException {
+        final InputStream stream = new BufferedInputStream(new FileInputStream(input), BUFFER_SIZE);
+        try {
+            final String name = input.getName().toLowerCase();
+            if (name.endsWith(GZIP_EXTENSION)) {
+                return new GZIPInputStream(stream, BUFFER_SIZE);
+            }
+            if (name.endsWith(ZIP_EXTENSION)) {
+                return openZipEntry(new ZipInputStream(stream), input);
+            }
+            if (name.endsWith(DEFLATE_EXTENSION) || name.endsWith(ZLIB_EXTENSION)) {
+                return new InflaterInputStream(stream);
+            }
+            return stream;
+        } catch (final IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check if the given input file is compressed, i.e., if its content is decompressed when opened
+     *
+     * @param input the input file to check
+     * @return true if the given input file is compressed, false otherwise
+     * @see #open(File)
+     */
+    public static boolean isCompressed(final File input) {
+        final String name = input.getName().toLowerCase();
+        return name.endsWith(GZIP_EXTENSION) || name.endsWith(ZIP_EXTENSION) || name.endsWith(DEFLATE_EXTENSION) || name.endsWith(ZLIB_EXTENSION);
+    }
+
+    private static InputStream openZipEntry(final ZipInputStream zip, final File input) throws IOException {
+        ZipEntry entry = zip.getNextEntry();
+        while (entry != null && entry.isDirectory()) {
+            entry = zip.getNextEntry();
+        }
+        if (entry == null) {
+            throw new IOException("Zip archive " + input + " does not contain any file");
+        }
+        return new FilterInputStream(zip) {
+            private boolean checked;
+
+            @Override
+            public int read() throws IOException {
+                final int read = super.read();
+                if (read < 0) {
+                    checkSingleEntry();
+                }
+                return read;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read < 0) {
+                    checkSingleEntry();
+                }
+                return read;
+            }
+
+            // Several entries cannot be read as a single input without producing invalid content (e.g., concatenated JSON arrays)
+            private void checkSingleEntry() throws IOException {
+                if (checked) {
+                    return;
+                }
+                checked = true;
+                ZipEntry nextEntry = zip.getNextEntry();
+                while (nextEntry != null && nextEntry.isDirectory()) {
+                    nextEntry = zip.getNextEntry();
+                }
+                if (nextEntry != null) {
+                    throw new IOException("Zip archive " + input + " contains several files, only one is expected");
+                }
+            }
+        };
+    }
+
+}
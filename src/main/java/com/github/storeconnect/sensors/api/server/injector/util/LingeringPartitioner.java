@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Partition an {@link Iterator} whose elements arrive over time (e.g., records read from a followed input) into consecutive partitions, each one being complete either once it reaches a maximum size
+ * or once a maximum linger time has elapsed since its first element arrived, whichever comes first.
+ * <p>
+ * Elements are read from the source {@link Iterator} by a dedicated thread, so that waiting for elements never delays the partitions already complete.
+ * At most the maximum size of a partition of elements is read ahead. Any {@link RuntimeException} raised by the source {@link Iterator} is raised again once the elements read before it are consumed.
+ *
+ * @param <T> the type of the {@link Iterator}'s elements
+ * @param <P> the type of the partitions
+ * @author Aurelien Bourdon
+ * @see StreamUtils#partition(Iterator, int, java.util.function.BiPredicate, Supplier, BiConsumer)
+ */
+public class LingeringPartitioner<T, P> implements Iterator<P>, Closeable {
+
+    private final int size;
+    private final long lingerNanos;
+    private final Supplier<P> newPartition;
+    private final BiConsumer<P, T> accumulator;
+    private final BlockingQueue<Object> queue;
+    private final Thread reader;
+    // Element already taken from the queue, but not yet added to a partition
+    private Object pending;
+
+    /**
+     * Create a new {@link LingeringPartitioner}, that starts reading the given {@link Iterator}
+     *
+     * @param iterator     the {@link Iterator} to partition
+     * @param size         the maximum size of each partition
+     * @param lingerMillis the maximum time, in milliseconds, to wait for more elements once a partition's first element arrived
+     * @param newPartition the {@link Supplier} of new empty partitions
+     * @param accumulator  the {@link BiConsumer} that adds an element to a partition
+     * @param readerName   the name of the thread reading the given {@link Iterator}
+     */
+    public LingeringPartitioner(final Iterator<T> iterator, final int size, final long lingerMillis, final Supplier<P> newPartition, final BiConsumer<P, T> accumulator, final String readerName) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Partition size must be strictly positive");
+        }
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("Linger time must be positive");
+        }
+        this.size = size;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.newPartition = newPartition;
+        this.accumulator = accumulator;
+        this.queue = new LinkedBlockingQueue<>(size);
+        this.reader = new Thread(() -> read(iterator), readerName);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void read(final Iterator<T> iterator) {
+        Object end = End.COMPLETED;
+        try {
+            while (iterator.hasNext()) {
+                queue.put(iterator.next());
+            }
+        } catch (final InterruptedException e) {
+            // Closed, nobody is waiting for elements anymore
+            return;
+        } catch (final RuntimeException e) {
+            end = new End(e);
+        }
+        try {
+            queue.put(end);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            try {
+                pending = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for elements", e);
+            }
+        }
+        if (pending instanceof End) {
+            final RuntimeException failure = ((End) pending).failure;
+            if (failure != null) {
+                pending = End.COMPLETED;
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public P next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final long deadline = System.nanoTime() + lingerNanos;
+        final P partition = newPartition.get();
+        accumulator.accept(partition, (T) pending);
+        pending = null;
+        try {
+            for (int partitionSize = 1; partitionSize < size; partitionSize++) {
+                final Object element = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (element == null) {
+                    break;
+                }
+                if (element instanceof End) {
+                    pending = element;
+                    break;
+                }
+                accumulator.accept(partition, (T) element);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for elements", e);
+        }
+        return partition;
+    }
+
+    /**
+     * Stop reading the source {@link Iterator}, whose remaining elements are discarded
+     */
+    @Override
+    public void close() {
+        reader.interrupt();
+        queue.clear();
+    }
+
+    // End of the source iterator, possibly because of a failure
+    private static final class End {
+        private static final End COMPLETED = new End(null);
+
+        private final RuntimeException failure;
+
+        private End(final RuntimeException failure) {
+            this.failure = failure;
+        }
+    }
+
+}
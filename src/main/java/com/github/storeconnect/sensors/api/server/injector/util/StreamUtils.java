@@ -0,0 +1,155 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Set of utilities when handle {@link Stream}
+ *
+ * @author Aurelien Bourdon
+ */
+public final class StreamUtils {
+
+    /**
+     * Create a sequential and ordered {@link Stream} from the given {@link Iterator}, that closes the given {@link Closeable} when being closed
+     *
+     * @param iterator the {@link Iterator} from which creating the {@link Stream}
+     * @param resource the {@link Closeable} resource to close when the {@link Stream} is closed
+     * @param <T>      the type of the {@link Stream}'s elements
+     * @return a sequential and ordered {@link Stream} from the given {@link Iterator}
+     */
+    public static <T> Stream<T> stream(final Iterator<T> iterator, final Closeable resource) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        resource.close();
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Partition lazily the given {@link Iterator} into consecutive {@link List}s of the given maximum size
+     *
+     * @param iterator the {@link Iterator} to partition
+     * @param size     the maximum size of each partition
+     * @param <T>      the type of the {@link Iterator}'s elements
+     * @return an {@link Iterator} over consecutive partitions of the given {@link Iterator}
+     */
+    public static <T> Iterator<List<T>> partition(final Iterator<T> iterator, final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Partition size must be strictly positive");
+        }
+        return new Iterator<List<T>>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final List<T> partition = new ArrayList<>(size);
+                while (partition.size() < size && iterator.hasNext()) {
+                    partition.add(iterator.next());
+                }
+                return partition;
+            }
+        };
+    }
+
+    /**
+     * Partition lazily the given {@link Iterator} into consecutive {@link List}s of the given maximum size, whose elements all belong to the same window as their first element
+     *
+     * @param iterator   the {@link Iterator} to partition
+     * @param size       the maximum size of each partition
+     * @param sameWindow the {@link BiPredicate} telling if an element (second argument) belongs to the same window as the partition's first element (first argument)
+     * @param <T>        the type of the {@link Iterator}'s elements
+     * @return an {@link Iterator} over consecutive partitions of the given {@link Iterator}
+     */
+    public static <T> Iterator<List<T>> partition(final Iterator<T> iterator, final int size, final BiPredicate<T, T> sameWindow) {
+        return partition(iterator, size, sameWindow, ArrayList::new, List::add);
+    }
+
+    /**
+     * Partition lazily the given {@link Iterator} into consecutive partitions of the given maximum size, whose elements all belong to the same window as their first element
+     * <p>
+     * Partitions are created by the given {@link Supplier} and filled by the given {@link BiConsumer}, so that elements can be stored in another form than themselves (e.g., in a columnar form).
+     *
+     * @param iterator     the {@link Iterator} to partition
+     * @param size         the maximum size of each partition
+     * @param sameWindow   the {@link BiPredicate} telling if an element (second argument) belongs to the same window as the partition's first element (first argument)
+     * @param newPartition the {@link Supplier} of new empty partitions
+     * @param accumulator  the {@link BiConsumer} that adds an element to a partition
+     * @param <T>          the type of the {@link Iterator}'s elements
+     * @param <P>          the type of the partitions
+     * @return an {@link Iterator} over consecutive partitions of the given {@link Iterator}
+     */
+    public static <T, P> Iterator<P> partition(final Iterator<T> iterator, final int size, final BiPredicate<T, T> sameWindow, final Supplier<P> newPartition, final BiConsumer<P, T> accumulator) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Partition size must be strictly positive");
+        }
+        return new Iterator<P>() {
+            // First element of the next partition, already read from the iterator
+            private T pending;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || iterator.hasNext();
+            }
+
+            @Override
+            public P next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final T first = pending != null ? pending : iterator.next();
+                pending = null;
+                final P partition = newPartition.get();
+                accumulator.accept(partition, first);
+                int partitionSize = 1;
+                while (partitionSize < size && iterator.hasNext()) {
+                    final T element = iterator.next();
+                    if (!sameWindow.test(first, element)) {
+                        pending = element;
+                        break;
+                    }
+                    accumulator.accept(partition, element);
+                    partitionSize++;
+                }
+                return partition;
+            }
+        };
+    }
+
+}
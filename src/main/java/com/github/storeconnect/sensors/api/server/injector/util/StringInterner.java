@@ -0,0 +1,87 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+/**
+ * Bounded dictionary of {@link String}s, to share the same instance between highly repeated values decoded from a {@code char} buffer.
+ * <p>
+ * Dictionary is direct-mapped: each value is stored in the slot given by its hash, replacing any other value previously stored there.
+ * Hence, its memory footprint is bounded whatever the number of distinct values, and looking up a value already known does not allocate.
+ * Slots are read and written without locking, as a lost or concurrent update only costs an additional {@link String} allocation.
+ *
+ * @author Aurelien Bourdon
+ */
+public class StringInterner {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final String[] slots;
+    private final int mask;
+
+    public StringInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new {@link StringInterner}
+     *
+     * @param capacity the maximum number of values to keep, rounded up to the next power of two
+     */
+    public StringInterner(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new String[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Get the {@link String} made of the given range of characters, reusing the previously interned instance if any
+     *
+     * @param buffer the buffer containing the characters
+     * @param offset the offset of the first character within the buffer
+     * @param length the number of characters
+     * @return the {@link String} made of the given range of characters
+     */
+    public String intern(final char[] buffer, final int offset, final int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        final int slot = (hash ^ (hash >>> 16)) & mask;
+        final String candidate = slots[slot];
+        if (candidate != null && matches(candidate, buffer, offset, length)) {
+            return candidate;
+        }
+        final String value = new String(buffer, offset, length);
+        slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(final String candidate, final char[] buffer, final int offset, final int length) {
+        if (candidate.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of {@code long} keys, each of them associated to a time, that only remembers keys whose time is within a sliding window ending at the latest added time.
+ * <p>
+ * Keys are stored in primitive arrays with open addressing (linear probing), so that adding a key does not allocate.
+ * Expired keys are dropped whenever the set has to grow, so that memory usage is bounded by the number of keys within the window rather than by the total number of added keys.
+ * <p>
+ * Thread-safe.
+ *
+ * @author Aurelien Bourdon
+ */
+public class TimeWindowedLongSet {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final long window;
+    private long[] keys;
+    private long[] times;
+    private int mask;
+    // Number of used slots, including the ones of expired keys
+    private int used;
+    private long latest = NO_TIME;
+
+    /**
+     * Create a new {@link TimeWindowedLongSet}
+     *
+     * @param window the width of the sliding window, in the same unit as keys' times
+     */
+    public TimeWindowedLongSet(final long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be strictly positive");
+        }
+        this.window = window;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Add the given key, associated to the given time
+     *
+     * @param key  the key to add
+     * @param time the time associated to the key
+     * @return true if the key has been added, false if the key was already contained within the window
+     */
+    public synchronized boolean add(final long key, final long time) {
+        latest = Math.max(latest, time);
+        final long oldest = latest - window;
+        int reusableSlot = -1;
+        int slot = slot(key);
+        while (times[slot] != NO_TIME) {
+            if (keys[slot] == key) {
+                if (times[slot] >= oldest) {
+                    // Keep the latest time, so that a key repeated on a long time span is remembered as long as it is repeated
+                    times[slot] = Math.max(times[slot], time);
+                    return false;
+                }
+                times[slot] = time;
+                return true;
+            }
+            if (reusableSlot < 0 && times[slot] < oldest) {
+                reusableSlot = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (reusableSlot >= 0) {
+            keys[reusableSlot] = key;
+            times[reusableSlot] = time;
+            return true;
+        }
+        keys[slot] = key;
+        times[slot] = time;
+        if (++used > keys.length / 2) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * The number of keys within the window
+     *
+     * @return the number of keys within the window
+     */
+    public synchronized int size() {
+        final long oldest = latest - window;
+        int size = 0;
+        for (final long time : times) {
+            if (time != NO_TIME && time >= oldest) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The number of slots currently allocated, i.e., the memory footprint of this {@link TimeWindowedLongSet}
+     *
+     * @return the number of slots currently allocated
+     */
+    public synchronized int capacity() {
+        return keys.length;
+    }
+
+    private int slot(final long key) {
+        // Keys may be poorly distributed (e.g., sequential), so spread them before taking the lowest bits
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    private void rehash() {
+        final long oldest = latest - window;
+        final long[] oldKeys = keys;
+        final long[] oldTimes = times;
+        int live = 0;
+        for (final long time : oldTimes) {
+            if (time != NO_TIME && time >= oldest) {
+                live++;
+            }
+        }
+        // Only grow if the set would still be more than a quarter full once expired keys dropped
+        allocate(live > oldKeys.length / 4 ? oldKeys.length * 2 : oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldTimes[i] != NO_TIME && oldTimes[i] >= oldest) {
+                int slot = slot(oldKeys[i]);
+                while (times[slot] != NO_TIME) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                times[slot] = oldTimes[i];
+                used++;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        times = new long[capacity];
+        Arrays.fill(times, NO_TIME);
+        mask = capacity - 1;
+        used = 0;
+    }
+
+}
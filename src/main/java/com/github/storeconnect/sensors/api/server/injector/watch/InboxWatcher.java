@@ -0,0 +1,353 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.watch;
+
+import com.github.storeconnect.sensors.api.server.injector.format.AbstractFormatInjector;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionSummary;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Counter;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.metrics.Timer;
+import com.github.storeconnect.sensors.api.server.injector.util.InputUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Watch an inbox directory and inject any input dropped into it, until closed.
+ * <p>
+ * Inputs have to be dropped atomically, i.e., written under a temporary name (starting with {@code .}, or ending with {@code .tmp} or {@code .part}) and then renamed within the inbox, so that an input is never injected while being written.
+ * Inputs already within the inbox when watching starts are injected first. Once injected, an input is moved, with its checkpoint journal and dead-letter file if any, to either the done or the failed directory.
+ * An input dropped under the name of an input still being injected is injected once its predecessor is done. An input that cannot be moved out of the inbox is left there, and is not injected again until watching restarts.
+ * <p>
+ * All inputs are injected by {@link AbstractFormatInjector}s sharing the same context, so that environment, entity caches and connections to server are kept warm from an input to the next one.
+ * The time from the drop of an input to the end of its injection is recorded within the {@link #LATENCY_TIMER}. The drop time is the input's last modification time, as kept by renaming, or the time watching started for inputs dropped before.
+ *
+ * @author Aurelien Bourdon
+ */
+public class InboxWatcher implements Closeable {
+
+    /**
+     * {@link Timer} of the time from the drop of an input to the end of its injection
+     */
+    public static final String LATENCY_TIMER = "watch.latency";
+
+    /**
+     * {@link Timer} of the time from the drop of an input to the start of its injection
+     */
+    public static final String QUEUE_TIMER = "watch.queue";
+
+    /**
+     * {@link Counter} of the inputs successfully injected
+     */
+    public static final String DONE_COUNTER = "watch.done";
+
+    /**
+     * {@link Counter} of the inputs whose injection failed
+     */
+    public static final String FAILED_COUNTER = "watch.failed";
+
+    public static final String DEFAULT_DONE_DIRECTORY_NAME = "done";
+    public static final String DEFAULT_FAILED_DIRECTORY_NAME = "failed";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InboxWatcher.class);
+    private static final long POLL_MILLIS = 500;
+
+    private final Path inbox;
+    private final Path doneDirectory;
+    private final Path failedDirectory;
+    private final Function<File, AbstractFormatInjector<?>> injectorFactory;
+    private final ExecutorService executor;
+    // Guarded by this
+    private final Set<Path> pendingInputs = new HashSet<>();
+    // Inputs dropped while an input of the same name is pending, guarded by this
+    private final Set<Path> requeuedInputs = new HashSet<>();
+    private final Timer latencyTimer;
+    private final Timer queueTimer;
+    private final Counter doneCounter;
+    private final Counter failedCounter;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean closed;
+    private long startMillis;
+
+    /**
+     * Create a new {@link InboxWatcher}
+     *
+     * @param inbox           the directory to watch
+     * @param doneDirectory   the directory where to move successfully injected inputs
+     * @param failedDirectory the directory where to move inputs whose injection failed
+     * @param injectorFactory how to create the {@link AbstractFormatInjector} of a dropped input
+     * @param workers         the maximum number of inputs to inject at the same time
+     * @param metrics         the {@link MetricsRegistry} in which recording latencies and injected inputs
+     */
+    public InboxWatcher(final Path inbox, final Path doneDirectory, final Path failedDirectory, final Function<File, AbstractFormatInjector<?>> injectorFactory, final int workers, final MetricsRegistry metrics) {
+        if (!Files.isDirectory(inbox)) {
+            throw new IllegalArgumentException("Inbox " + inbox + " is not a directory");
+        }
+        this.inbox = inbox;
+        this.doneDirectory = doneDirectory;
+        this.failedDirectory = failedDirectory;
+        this.injectorFactory = injectorFactory;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> new Thread(runnable, "injector-" + threadCount.incrementAndGet()));
+        this.latencyTimer = metrics.timer(LATENCY_TIMER);
+        this.queueTimer = metrics.timer(QUEUE_TIMER);
+        this.doneCounter = metrics.counter(DONE_COUNTER);
+        this.failedCounter = metrics.counter(FAILED_COUNTER);
+    }
+
+    /**
+     * Watch the inbox and inject dropped inputs until {@link #close()} is called, and then wait for the injections in progress to complete
+     *
+     * @throws IOException          if inbox cannot be watched
+     * @throws InterruptedException if interrupted while watching
+     */
+    public void run() throws IOException, InterruptedException {
+        try {
+            Files.createDirectories(doneDirectory);
+            Files.createDirectories(failedDirectory);
+            startMillis = System.currentTimeMillis();
+            try (final WatchService watchService = inbox.getFileSystem().newWatchService()) {
+                // Inbox is registered before being scanned, so that no input dropped meanwhile is missed
+                inbox.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+                scan();
+                LOGGER.info("Watching {} for inputs to inject...", inbox);
+                while (!closed) {
+                    final WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        continue;
+                    }
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            LOGGER.warn("Too many inputs dropped at once into {}, scanning it", inbox);
+                            scan();
+                        } else {
+                            submit(inbox.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Inbox " + inbox + " cannot be watched anymore");
+                    }
+                }
+                LOGGER.info("Watching {} for inputs to inject... Done.", inbox);
+            }
+        } finally {
+            executor.shutdown();
+            LOGGER.info("Waiting for the injections in progress to complete...");
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            LOGGER.info("Waiting for the injections in progress to complete... Done.");
+            terminated.countDown();
+        }
+    }
+
+    private void scan() throws IOException {
+        final List<Path> inputs = new ArrayList<>();
+        try (final DirectoryStream<Path> paths = Files.newDirectoryStream(inbox)) {
+            paths.forEach(inputs::add);
+        }
+        Collections.sort(inputs);
+        inputs.forEach(this::submit);
+    }
+
+    private synchronized void submit(final Path input) {
+        if (!InputUtils.isInput(input)) {
+            return;
+        }
+        if (!pendingInputs.add(input)) {
+            requeuedInputs.add(input);
+            return;
+        }
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(input, BasicFileAttributes.class);
+        } catch (final IOException e) {
+            // Input has been removed meanwhile
+            pendingInputs.remove(input);
+            return;
+        }
+        final long dropMillis = Math.min(Math.max(attributes.lastModifiedTime().toMillis(), startMillis), System.currentTimeMillis());
+        final Object identity = identityOf(attributes);
+        LOGGER.info("Input {} dropped into inbox", input.getFileName());
+        try {
+            executor.execute(() -> {
+                boolean leftInbox = false;
+                try {
+                    leftInbox = inject(input, dropMillis, identity);
+                } finally {
+                    complete(input, leftInbox);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Watching is over, so input is left within inbox until watching restarts
+            pendingInputs.remove(input);
+        }
+    }
+
+    /**
+     * Mark the given input as no more pending, unless it is still within the inbox, and submit again the input dropped under its name meanwhile, if any
+     */
+    private synchronized void complete(final Path input, final boolean leftInbox) {
+        if (!leftInbox) {
+            // Input would be injected again by the next scan
+            return;
+        }
+        pendingInputs.remove(input);
+        if (requeuedInputs.remove(input)) {
+            submit(input);
+        }
+    }
+
+    /**
+     * Inject the given input, and then move it out of the inbox
+     *
+     * @return true if input has left the inbox, false if it cannot be moved out of it
+     */
+    private boolean inject(final Path input, final long dropMillis, final Object identity) {
+        queueTimer.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - dropMillis));
+        InjectionSummary summary = null;
+        try {
+            final AbstractFormatInjector<?> injector = injectorFactory.apply(input.toFile());
+            injector.run();
+            summary = injector.getSummary();
+        } catch (final RuntimeException e) {
+            LOGGER.error("Unable to inject {}", input, e);
+        }
+        final boolean succeeded = summary != null && summary.isSucceeded();
+        final long latencyMillis = System.currentTimeMillis() - dropMillis;
+        latencyTimer.record(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        if (summary != null) {
+            LOGGER.info("{}", summary);
+        }
+        // An input replaced while being injected is left within inbox, as its successor is injected next
+        final boolean replaced = !identity.equals(identityOf(input));
+        final Path directory = succeeded ? doneDirectory : failedDirectory;
+        final Path target;
+        try {
+            target = moveWithSideFiles(input, directory, !replaced);
+        } catch (final IOException e) {
+            failedCounter.increment();
+            LOGGER.error("Input {} {} {} ms after being dropped, but cannot be moved to {}, so it is left within inbox", input.getFileName(), succeeded ? "injected" : "failed", latencyMillis, directory, e);
+            return false;
+        }
+        (succeeded ? doneCounter : failedCounter).increment();
+        if (replaced) {
+            LOGGER.info("Input {} {} {} ms after being dropped, and replaced meanwhile", input.getFileName(), succeeded ? "injected" : "failed", latencyMillis);
+        } else {
+            LOGGER.info("Input {} {} {} ms after being dropped, moved to {}", input.getFileName(), succeeded ? "injected" : "failed", latencyMillis, target);
+        }
+        return true;
+    }
+
+    /**
+     * Get what identifies the given file's content: its file key if file system provides one, its last modification time otherwise
+     */
+    private static Object identityOf(final BasicFileAttributes attributes) {
+        return attributes.fileKey() != null ? attributes.fileKey() : attributes.lastModifiedTime();
+    }
+
+    private static Object identityOf(final Path input) {
+        try {
+            return identityOf(Files.readAttributes(input, BasicFileAttributes.class));
+        } catch (final IOException e) {
+            // Input has been removed meanwhile
+            return null;
+        }
+    }
+
+    /**
+     * Move the given input, and its side files if any, to the given directory, without replacing any existing file
+     *
+     * @param input      the input to move
+     * @param directory  the directory where to move the input
+     * @param movesInput false to only move side files, as when input has been replaced by another one
+     * @return the moved input
+     * @throws IOException if input cannot be moved
+     */
+    private static Path moveWithSideFiles(final Path input, final Path directory, final boolean movesInput) throws IOException {
+        final String name = input.getFileName().toString();
+        final String targetName = Files.exists(directory.resolve(name)) ? System.currentTimeMillis() + "-" + name : name;
+        final Path target = directory.resolve(targetName);
+        if (movesInput) {
+            move(input, target);
+        }
+        // Side files are moved with their input
+        for (final String suffix : InputUtils.SIDE_FILE_SUFFIXES) {
+            final Path sideFile = input.resolveSibling(name + suffix);
+            if (Files.exists(sideFile)) {
+                try {
+                    move(sideFile, directory.resolve(targetName + suffix));
+                } catch (final IOException e) {
+                    LOGGER.error("Unable to move {} to {}", sideFile, directory.resolve(targetName + suffix), e);
+                }
+            }
+        }
+        return target;
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            // Target directory is on another file system, so file is copied and then deleted
+            Files.move(source, target);
+        }
+    }
+
+    /**
+     * Wait for this {@link InboxWatcher} to stop watching and for its injections in progress to complete, once closed
+     *
+     * @param timeout  the maximum time to wait
+     * @param timeUnit the time unit of the timeout argument
+     * @return true if this {@link InboxWatcher} terminated, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
+        return terminated.await(timeout, timeUnit);
+    }
+
+    /**
+     * Stop watching the inbox. Injections in progress are completed before {@link #run()} returns
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.beust.jcommander.ParameterException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.storeconnect.sensors.api.server.injector.batch.AdaptiveSendController;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArraySender;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionDeadLetterFile;
+import com.github.storeconnect.sensors.api.server.injector.replay.ReplayScheduler;
+import com.github.storeconnect.sensors.api.server.injector.standin.SensorThingsStandInServer;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end throughput tests, injecting generated inputs through {@link Application#execute()} to a {@link SensorThingsStandInServer}.
+ * <p>
+ * The number of observations to inject can be set by the {@code throughput.observations} system property.
+ * As they are long and timing-dependent, these tests are tagged as {@code throughput} and only executed within the {@code throughput} Maven profile.
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("Application throughput")
+@Tag("throughput")
+public class ApplicationThroughputTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationThroughputTest.class);
+
+    private static final int OBSERVATIONS = Integer.getInteger("throughput.observations", 50_000);
+    private static final int SENSORS = 20;
+    private static final long SEED = 42L;
+
+    private SensorThingsStandInServer server;
+    private File directory;
+    private File input;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new SensorThingsStandInServer();
+        directory = Files.createTempDirectory("application-throughput").toFile();
+        input = new File(directory, "flat-motion.json");
+        FlatMotionDatasets.write(input, OBSERVATIONS, SENSORS, SEED);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+        try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("Application must inject all observations of an input")
+    public void testInjection() throws IOException {
+        final File metricsReport = new File(directory, "metrics.json");
+        inject("default settings", "--metrics-report", metricsReport.getAbsolutePath());
+        final JsonNode metrics = new ObjectMapper().readTree(metricsReport);
+        assertAll(
+                () -> assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations"),
+                () -> assertEquals(OBSERVATIONS, metrics.path("counters").path("records").path("count").asLong(), "Application must report parsed records"),
+                () -> assertEquals(OBSERVATIONS, metrics.path("counters").path("observations.sent").path("count").asLong(), "Application must report sent observations"),
+                () -> assertEquals(SENSORS, server.getEntities("Sensors").size(), "Application must create a single Sensor per sensor name"),
+                () -> assertEquals(SENSORS, server.getEntities("Datastreams").size(), "Application must create a single Datastream per Sensor")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must prefetch entities already known by server instead of requesting them one by one")
+    public void testInjectionWithExistingEntities() throws IOException {
+        inject("unknown entities");
+        final long sensorQueries = server.getQueryCount("Sensors");
+        final long datastreamQueries = server.getQueryCount("Datastreams");
+        final long featureOfInterestQueries = server.getQueryCount("FeaturesOfInterest");
+        inject("prefetched entities");
+        assertAll(
+                () -> assertEquals(2L * OBSERVATIONS, server.getObservationCount(), "Application must inject all observations"),
+                () -> assertEquals(SENSORS, server.getEntities("Sensors").size(), "Application must not create already existing Sensors"),
+                () -> assertEquals(1, server.getQueryCount("Sensors") - sensorQueries, "Application must prefetch Sensors within a single page"),
+                () -> assertEquals(0, server.getQueryCount("Datastreams") - datastreamQueries, "Application must prefetch Datastreams with their Sensors"),
+                () -> assertEquals(1, server.getQueryCount("FeaturesOfInterest") - featureOfInterestQueries, "Application must prefetch FeaturesOfInterest within a single page")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must inject all observations of an input when server responds with latency")
+    public void testInjectionWithLatency() throws IOException {
+        server.latency(20);
+        inject("20ms latency, 1 concurrent request", "--batch-size", "1000");
+        inject("20ms latency, 4 concurrent requests", "--batch-size", "1000", "--concurrent-requests", "4");
+        assertEquals(2L * OBSERVATIONS, server.getObservationCount(), "Application must inject all observations");
+    }
+
+    @Test
+    @DisplayName("Application must fail when server fails, and then resume injection without sending acknowledged batches again")
+    public void testInjectionWithServerFailure() throws IOException {
+        final String checkpointDirectory = directory.getAbsolutePath();
+        // Batches acknowledged before the failure are journaled, and must then be skipped when resuming
+        server.failCreateObservations(10, 1);
+        assertThrows(IllegalStateException.class, () -> inject("failing server", "--batch-size", "1000", "--send-retries", "0", "--checkpoint-directory", checkpointDirectory));
+        final long observationsBeforeResuming = server.getObservationCount();
+        final File metricsReport = new File(directory, "metrics.json");
+        inject("resumed injection", "--batch-size", "1000", "--resume", "--checkpoint-directory", checkpointDirectory, "--metrics-report", metricsReport.getAbsolutePath());
+        final JsonNode counters = new ObjectMapper().readTree(metricsReport).path("counters");
+        assertAll(
+                () -> assertEquals(10_000, observationsBeforeResuming, "Application must send the batches before the failing one"),
+                () -> assertEquals(10, counters.path(DataArraySender.SKIPPED_BATCHES_COUNTER).path("count").asLong(), "Application must skip the batches acknowledged before the failure"),
+                () -> assertEquals(OBSERVATIONS - 10_000, counters.path(DataArraySender.SENT_OBSERVATIONS_COUNTER).path("count").asLong(), "Application must only send the batches not acknowledged yet"),
+                () -> assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations once resumed, without storing any of them twice")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must inject all observations when writing them straight to requests, and retry streamed requests")
+    public void testInjectionWithStreamingRequests() throws IOException {
+        final File metricsReport = new File(directory, "metrics.json");
+        server.failNextCreateObservations(1);
+        inject("streaming requests", "--batch-size", "1000", "--concurrent-requests", "4", "--streaming-requests", "--send-retry-backoff", "10", "--metrics-report", metricsReport.getAbsolutePath());
+        final JsonNode metrics = new ObjectMapper().readTree(metricsReport);
+        assertAll(
+                () -> assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations"),
+                () -> assertEquals(1, metrics.path("counters").path("batches.retried").path("count").asLong(), "Application must retry failed streamed requests"),
+                () -> assertEquals(SENSORS, server.getEntities("Datastreams").size(), "Application must create a single Datastream per Sensor")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must survive transient server failures by retrying failed requests")
+    public void testInjectionWithTransientServerFailures() throws IOException {
+        server.failNextCreateObservations(3);
+        inject("transiently failing server", "--batch-size", "1000", "--send-retry-backoff", "10", "--circuit-breaker-threshold", "2", "--circuit-breaker-cooldown", "50");
+        assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations despite transient failures");
+    }
+
+    @Test
+    @DisplayName("Application must write batches still failing after retries to a dead-letter file, which can be injected again")
+    public void testInjectionWithDeadLetter() throws IOException {
+        server.failNextCreateObservations(2);
+        inject("failing server with dead letters", "--batch-size", "1000", "--send-retries", "1", "--send-retry-backoff", "10", "--dead-letter");
+        final File deadLetterFile = new File(directory, input.getName() + FlatMotionDeadLetterFile.FILE_EXTENSION);
+        assertAll(
+                () -> assertEquals(OBSERVATIONS - 1000, server.getObservationCount(), "Application must inject all observations but the dead-lettered ones"),
+                () -> assertEquals(1000, Files.readAllLines(deadLetterFile.toPath()).size(), "Application must write the dead-lettered observations")
+        );
+        inject("dead letters", "flat-motion-ndjson", deadLetterFile);
+        assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations once dead letters are injected again");
+    }
+
+    @Test
+    @DisplayName("Application must tune batch size and concurrency when sending adaptively, and report its decisions")
+    public void testAdaptiveSending() throws IOException {
+        server.latency(5);
+        final File metricsReport = new File(directory, "metrics.json");
+        inject("adaptive sending, up to 4 concurrent requests", "--batch-size", "1000", "--concurrent-requests", "4", "--adaptive-sending", "--metrics-report", metricsReport.getAbsolutePath());
+        final JsonNode histograms = new ObjectMapper().readTree(metricsReport).path("histograms");
+        LOGGER.info("Adaptive sending decisions: {} observations per request, {} requests in flight", histograms.path(AdaptiveSendController.BATCH_SIZE_HISTOGRAM), histograms.path(AdaptiveSendController.CONCURRENCY_HISTOGRAM));
+        assertAll(
+                () -> assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations"),
+                () -> assertTrue(histograms.path(AdaptiveSendController.CONCURRENCY_HISTOGRAM).path("count").asLong() > 0, "Application must report adaptive sending decisions"),
+                () -> assertThrows(ParameterException.class, () -> inject("adaptive sending resumed", "--adaptive-sending", "--resume"), "Application must not resume adaptive sending"),
+                () -> assertThrows(ParameterException.class, () -> inject("adaptive sending checkpointed", "--adaptive-sending", "--checkpoint-directory", directory.getAbsolutePath()), "Application must not checkpoint adaptive sending")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must replay observations at the pace they have been recorded, sped up by the replay speed")
+    public void testReplay() throws IOException {
+        // Generated observations are recorded every 50 ms, so replay has to last about 2 seconds
+        final long replaySpeed = Math.max(1, OBSERVATIONS * 50L / 2000);
+        final File metricsReport = new File(directory, "metrics.json");
+        final long start = System.nanoTime();
+        inject(replaySpeed + "x replay", "--replay-speed", String.valueOf(replaySpeed), "--metrics-report", metricsReport.getAbsolutePath());
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        final JsonNode drift = new ObjectMapper().readTree(metricsReport).path("timers").path(ReplayScheduler.DRIFT_TIMER);
+        LOGGER.info("Replay drift behind schedule: {}", drift);
+        assertAll(
+                () -> assertEquals(OBSERVATIONS, server.getObservationCount(), "Application must inject all observations"),
+                () -> assertTrue(elapsedMillis >= 1900, "Application must not send observations before they are due"),
+                () -> assertTrue(drift.path("count").asLong() > 0, "Application must report replay drift")
+        );
+    }
+
+    @Test
+    @DisplayName("Application must inject all observations generated by the flat-motion-synthetic format")
+    public void testSyntheticInjection() throws IOException {
+        // As many observations as the recorded input, from 20 sensors of 5 tracks located 10 times per second
+        final File settings = new File(directory, "synthetic.properties");
+        Files.write(settings.toPath(), Arrays.asList(
+                "sensors=" + SENSORS,
+                "tracks-per-sensor=5",
+                "points-per-second=10",
+                "duration=" + OBSERVATIONS / (SENSORS * 5 * 10)
+        ));
+        inject("synthetic observations", "flat-motion-synthetic", settings);
+        assertAll(
+                () -> assertEquals(OBSERVATIONS / (SENSORS * 5 * 10) * SENSORS * 5 * 10, server.getObservationCount(), "Application must inject all generated observations"),
+                () -> assertEquals(SENSORS, server.getEntities("Sensors").size(), "Application must create a single Sensor per sensor name")
+        );
+    }
+
+    private void inject(final String description, final String... extraArgs) throws IOException {
+        inject(description, "flat-motion", input, extraArgs);
+    }
+
+    private void inject(final String description, final String dataFormat, final File input, final String... extraArgs) throws IOException {
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "--endpoint", server.getEndpoint().toString(),
+                "--input", input.toURI().toURL().toString(),
+                "--data-format", dataFormat
+        ));
+        args.addAll(Arrays.asList(extraArgs));
+        final long observationsBefore = server.getObservationCount();
+        final long start = System.nanoTime();
+        new Application(args.toArray(new String[0])).execute();
+        final long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        final long observations = server.getObservationCount() - observationsBefore;
+        LOGGER.info("Throughput with {}: {} observations in {} ms ({} observations/s)", description, observations, elapsedMillis, observations * 1000 / elapsedMillis);
+    }
+
+}
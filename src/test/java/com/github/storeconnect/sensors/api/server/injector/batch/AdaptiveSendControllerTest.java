@@ -0,0 +1,102 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link AdaptiveSendController}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("AdaptiveSendController")
+public class AdaptiveSendControllerTest {
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_CONCURRENCY = 4;
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private MetricsRegistry metrics;
+    private AdaptiveSendController controller;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new MetricsRegistry();
+        controller = new AdaptiveSendController(MAX_BATCH_SIZE, MAX_CONCURRENCY, 2, metrics);
+    }
+
+    @Test
+    @DisplayName("An AdaptiveSendController must allow more requests in flight while server latency is steady, up to the maximum")
+    public void testAdditiveIncrease() {
+        assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(LATENCY);
+        }
+        assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+        assertEquals(MAX_CONCURRENCY, controller.getConcurrency());
+        assertEquals(MAX_CONCURRENCY - 1, metrics.counter(AdaptiveSendController.INCREASES_COUNTER).getCount());
+        assertEquals(100, metrics.histogram(AdaptiveSendController.CONCURRENCY_HISTOGRAM).getCount());
+    }
+
+    @Test
+    @DisplayName("An AdaptiveSendController must back off when server latency rises, first on concurrency and then on batch size, and recover once latency is steady again")
+    public void testBackOffOnLatencyRise() {
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(LATENCY);
+        }
+        // Server becomes busy
+        for (int i = 0; i < 20; i++) {
+            controller.onSuccess(LATENCY * 10);
+        }
+        assertEquals(1, controller.getConcurrency());
+        assertTrue(controller.getBatchSize() < MAX_BATCH_SIZE);
+        assertTrue(metrics.counter(AdaptiveSendController.DECREASES_COUNTER).getCount() >= 3);
+        // Server is idle again
+        for (int i = 0; i < 1000; i++) {
+            controller.onSuccess(LATENCY);
+        }
+        assertEquals(MAX_BATCH_SIZE, controller.getBatchSize());
+        assertEquals(MAX_CONCURRENCY, controller.getConcurrency());
+    }
+
+    @Test
+    @DisplayName("An AdaptiveSendController must halve both batch size and concurrency when requests fail, but not below their minimum")
+    public void testMultiplicativeDecreaseOnFailure() {
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(LATENCY);
+        }
+        for (int i = 0; i < MAX_CONCURRENCY; i++) {
+            controller.onFailure();
+        }
+        assertEquals(MAX_CONCURRENCY / 2, controller.getConcurrency());
+        assertEquals(MAX_BATCH_SIZE / 2, controller.getBatchSize());
+        for (int i = 0; i < 100; i++) {
+            controller.onFailure();
+        }
+        assertEquals(1, controller.getConcurrency());
+        assertEquals(AdaptiveSendController.MIN_BATCH_SIZE, controller.getBatchSize());
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CircuitBreaker}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("CircuitBreaker")
+public class CircuitBreakerTest {
+
+    private static final long COOLDOWN_MILLIS = 100;
+
+    @Test
+    @DisplayName("A CircuitBreaker must open after too many consecutive failures, and then close once server has been successfully probed")
+    public void testOpenAndClose() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(2, COOLDOWN_MILLIS, metrics);
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(1, metrics.counter(CircuitBreaker.OPENED_COUNTER).getCount());
+
+        // First request waits for the cooldown and probes server, the other one waits for the probe's outcome
+        final long start = System.nanoTime();
+        circuitBreaker.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(COOLDOWN_MILLIS) * 9 / 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        final CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                circuitBreaker.acquire();
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(COOLDOWN_MILLIS / 2);
+        assertFalse(waiting.isDone());
+        circuitBreaker.onSuccess();
+        waiting.get(COOLDOWN_MILLIS * 10, TimeUnit.MILLISECONDS);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("A CircuitBreaker must open again when probing server failed")
+    public void testFailedProbe() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(1, COOLDOWN_MILLIS, metrics);
+        circuitBreaker.onFailure();
+        circuitBreaker.acquire();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, metrics.counter(CircuitBreaker.OPENED_COUNTER).getCount());
+    }
+
+    @Test
+    @DisplayName("A CircuitBreaker without threshold must never open")
+    public void testDisabled() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(0, COOLDOWN_MILLIS, new MetricsRegistry());
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+}
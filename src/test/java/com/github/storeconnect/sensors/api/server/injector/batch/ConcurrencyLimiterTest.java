@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * {@link ConcurrencyLimiter}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("ConcurrencyLimiter")
+public class ConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("A ConcurrencyLimiter must block operations beyond its limit, and apply limit changes to the next operations")
+    public void testResizing() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        limiter.acquire();
+        limiter.acquire();
+        final CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire();
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(third.isDone());
+        limiter.setLimit(3);
+        third.get(1, TimeUnit.SECONDS);
+        assertEquals(3, limiter.getInProgress());
+
+        // Lowering the limit lets operations in progress complete, but next ones wait for the new limit
+        limiter.setLimit(1);
+        limiter.release();
+        limiter.release();
+        final CompletableFuture<Void> fourth = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire();
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(fourth.isDone());
+        limiter.release();
+        fourth.get(1, TimeUnit.SECONDS);
+        limiter.release();
+        limiter.awaitIdle();
+        assertEquals(0, limiter.getInProgress());
+    }
+
+}
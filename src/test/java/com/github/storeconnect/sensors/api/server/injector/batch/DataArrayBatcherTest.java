@@ -0,0 +1,168 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.IdLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DataArrayBatcher}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("DataArrayBatcher")
+public class DataArrayBatcherTest {
+
+    // Each row is written as a single string value of this length, i.e., as about ROW_BYTES bytes
+    private static final int ROW_VALUE_LENGTH = 96;
+    private static final long ROW_BYTES = ROW_VALUE_LENGTH + 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("A DataArrayBatcher must split rows into batches of a maximum number of observations")
+    public void testSplittingByObservationCount() {
+        final List<DataArrayBatch> batches = new DataArrayBatcher(2, Long.MAX_VALUE, datastream -> null).split(new RowSource(5));
+        assertEquals(Arrays.asList(2, 2, 1), observationCounts(batches));
+    }
+
+    @Test
+    @DisplayName("A DataArrayBatcher must split rows into batches of a maximum serialized size")
+    public void testSplittingByBytes() {
+        final long maxBytes = DataArrayBatcher.DATA_ARRAY_VALUE_OVERHEAD + 3 * ROW_BYTES + ROW_BYTES / 2;
+        final List<DataArrayBatch> batches = new DataArrayBatcher(100, maxBytes, datastream -> null).split(new RowSource(7));
+        assertAll(
+                () -> assertEquals(Arrays.asList(3, 3, 1), observationCounts(batches)),
+                () -> assertTrue(batches.stream().allMatch(batch -> batch.getEstimatedBytes() <= maxBytes), "A DataArrayBatcher must not exceed the maximum serialized size")
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArrayBatcher must count the overhead of each Datastream within a batch")
+    public void testSplittingByBytesAcrossDatastreams() throws IOException {
+        // Would fit within a single batch if the second Datastream did not cost anything
+        final long maxBytes = DataArrayBatcher.DATA_ARRAY_VALUE_OVERHEAD + 4 * ROW_BYTES + ROW_BYTES / 2;
+        final List<DataArrayBatch> batches = new DataArrayBatcher(100, maxBytes, datastream -> null).split(new RowSource(2, 2));
+        assertAll(
+                () -> assertEquals(Arrays.asList(2, 2), observationCounts(batches)),
+                () -> assertTrue(batches.get(0).getEstimatedBytes() > DataArrayBatcher.DATA_ARRAY_VALUE_OVERHEAD + ROW_BYTES, "A DataArrayBatcher must count the overhead of the batch's Datastream"),
+                () -> assertEquals(Collections.singletonList(1L), datastreamIds(batches.get(0))),
+                () -> assertEquals(Collections.singletonList(2L), datastreamIds(batches.get(1)))
+        );
+        final List<DataArrayBatch> mixed = new DataArrayBatcher(100, 2 * DataArrayBatcher.DATA_ARRAY_VALUE_OVERHEAD + 4 * ROW_BYTES + ROW_BYTES / 2, datastream -> null).split(new RowSource(2, 2));
+        assertAll(
+                () -> assertEquals(Collections.singletonList(4), observationCounts(mixed)),
+                () -> assertEquals(Arrays.asList(1L, 2L), datastreamIds(mixed.get(0)))
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArrayBatcher must send a row bigger than the maximum serialized size alone within its own batch")
+    public void testSplittingOversizedRow() {
+        final List<DataArrayBatch> batches = new DataArrayBatcher(100, ROW_BYTES, datastream -> null).split(new RowSource(3));
+        assertEquals(Arrays.asList(1, 1, 1), observationCounts(batches));
+    }
+
+    @Test
+    @DisplayName("A DataArrayBatcher must split rows into batches of contiguous observation indexes")
+    public void testContiguousObservationIndexes() {
+        final long maxBytes = DataArrayBatcher.DATA_ARRAY_VALUE_OVERHEAD + 3 * ROW_BYTES + ROW_BYTES / 2;
+        final List<DataArrayBatch> batches = new DataArrayBatcher(2, maxBytes, datastream -> null).split(new RowSource(3, 1, 4));
+        int expectedFirstIndex = 0;
+        for (final DataArrayBatch batch : batches) {
+            assertEquals(expectedFirstIndex, batch.getFirstObservationIndex());
+            expectedFirstIndex += batch.getObservationCount();
+        }
+        assertEquals(8, expectedFirstIndex);
+    }
+
+    private static List<Integer> observationCounts(final List<DataArrayBatch> batches) {
+        return batches.stream().map(DataArrayBatch::getObservationCount).collect(Collectors.toList());
+    }
+
+    private List<Long> datastreamIds(final DataArrayBatch batch) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            batch.getWriter().write(generator);
+        }
+        final List<Long> ids = new ArrayList<>();
+        for (final JsonNode dataArrayValue : objectMapper.readTree(output.toByteArray())) {
+            ids.add(dataArrayValue.get("Datastream").get("@iot.id").asLong());
+        }
+        return ids;
+    }
+
+    /**
+     * {@link DataArraySource} whose groups hold the given numbers of rows, each one made of a single fixed-length string
+     */
+    private static final class RowSource implements DataArraySource {
+
+        private static final String ROW_VALUE = String.join("", Collections.nCopies(ROW_VALUE_LENGTH, "x"));
+
+        private final int[] rowCounts;
+
+        private RowSource(final int... rowCounts) {
+            this.rowCounts = rowCounts;
+        }
+
+        @Override
+        public List<String> getComponents() {
+            return Collections.singletonList("result");
+        }
+
+        @Override
+        public int getGroupCount() {
+            return rowCounts.length;
+        }
+
+        @Override
+        public Datastream getDatastream(final int group) {
+            final Datastream datastream = new Datastream();
+            datastream.setId(new IdLong(group + 1L));
+            return datastream;
+        }
+
+        @Override
+        public int getRowCount(final int group) {
+            return rowCounts[group];
+        }
+
+        @Override
+        public void writeRow(final JsonGenerator generator, final int group, final int index) throws IOException {
+            generator.writeStartArray();
+            generator.writeString(ROW_VALUE);
+            generator.writeEndArray();
+        }
+    }
+
+}
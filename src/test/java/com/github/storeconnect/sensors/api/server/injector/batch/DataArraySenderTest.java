@@ -0,0 +1,297 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.batch;
+
+import com.github.storeconnect.sensors.api.server.injector.checkpoint.CheckpointJournal;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.http.HttpTransport;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.standin.SensorThingsStandInServer;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.StatusCodeException;
+import de.fraunhofer.iosb.ilt.sta.model.ext.DataArrayDocument;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DataArraySender}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("DataArraySender")
+public class DataArraySenderTest {
+
+    @Test
+    @DisplayName("A DataArraySender must send all batches without exceeding the maximum number of in flight requests")
+    public void testSendingWithBoundedInFlightRequests() throws Exception {
+        final SlowSensorThingsService sensorThingsService = new SlowSensorThingsService(false);
+        final DataArraySender sender = DataArraySender.builder(sensorThingsService, 3).build();
+        for (int i = 0; i < 20; i++) {
+            sender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        }
+        sender.close();
+        assertAll(
+                () -> assertEquals(20, sensorThingsService.sentCount.get(), "A DataArraySender must send all batches"),
+                () -> assertTrue(sensorThingsService.maxInFlight.get() <= 3, "A DataArraySender must not exceed the maximum number of in flight requests"),
+                () -> assertEquals(200, sender.getStatistics().getObservationCount(), "A DataArraySender must count sent observations")
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must raise request failures")
+    public void testSendingFailure() throws Exception {
+        final DataArraySender sender = DataArraySender.builder(new SlowSensorThingsService(true), 2).build();
+        sender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        assertThrows(ServiceFailureException.class, sender::close);
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must send again batches whose requests failed, until the maximum number of retries")
+    public void testRetry() throws Exception {
+        final SlowSensorThingsService sensorThingsService = new SlowSensorThingsService(2);
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final DataArraySender sender = DataArraySender.builder(sensorThingsService, 1).metrics(metrics).retryPolicy(new RetryPolicy(2, 1, 5)).build();
+        sender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        sender.close();
+        assertAll(
+                () -> assertEquals(1, sensorThingsService.sentCount.get(), "A DataArraySender must send batch once its request succeeded"),
+                () -> assertEquals(2, sender.getStatistics().getRetryCount(), "A DataArraySender must count retries"),
+                () -> assertEquals(2, metrics.counter(DataArraySender.RETRIED_BATCHES_COUNTER).getCount(), "A DataArraySender must report retries")
+        );
+        final DataArraySender exhausted = DataArraySender.builder(new SlowSensorThingsService(2), 1).metrics(metrics).retryPolicy(new RetryPolicy(1, 1, 5)).build();
+        exhausted.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        assertThrows(ServiceFailureException.class, exhausted::close);
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must only count transient failures toward opening the circuit breaker")
+    public void testCircuitBreakerOnTransientFailures() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final CircuitBreaker rejectedBreaker = new CircuitBreaker(1, 60_000, metrics);
+        final DataArraySender rejectedSender = DataArraySender.builder(new RejectingSensorThingsService(), 1).metrics(metrics).circuitBreaker(rejectedBreaker).build();
+        rejectedSender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        assertThrows(StatusCodeException.class, rejectedSender::close);
+
+        final CircuitBreaker failedBreaker = new CircuitBreaker(1, 60_000, metrics);
+        final DataArraySender failedSender = DataArraySender.builder(new SlowSensorThingsService(true), 1).metrics(metrics).circuitBreaker(failedBreaker).build();
+        failedSender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        assertThrows(ServiceFailureException.class, failedSender::close);
+
+        assertAll(
+                () -> assertEquals(CircuitBreaker.State.CLOSED, rejectedBreaker.getState(), "A DataArraySender must not open the circuit breaker on requests rejected because of their content"),
+                () -> assertEquals(CircuitBreaker.State.OPEN, failedBreaker.getState(), "A DataArraySender must open the circuit breaker on transient failures")
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must neither retry nor open the circuit breaker on failures that are not transient")
+    public void testNonTransientFailures() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final BrokenSensorThingsService sensorThingsService = new BrokenSensorThingsService();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60_000, metrics);
+        final DataArraySender sender = DataArraySender.builder(sensorThingsService, 1).metrics(metrics).retryPolicy(new RetryPolicy(3, 1, 5)).circuitBreaker(circuitBreaker).build();
+        sender.send(new DataArrayBatch(new DataArrayDocument(), 10, 100));
+        assertThrows(ServiceFailureException.class, sender::close);
+        assertAll(
+                () -> assertEquals(1, sensorThingsService.requestCount.get(), "A DataArraySender must not retry failures that are not transient"),
+                () -> assertEquals(0, sender.getStatistics().getRetryCount(), "A DataArraySender must not count retries of failures that are not transient"),
+                () -> assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(), "A DataArraySender must not open the circuit breaker on failures that are not transient")
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must write batches still failing after retries to the dead-letter writer, and go on sending")
+    public void testDeadLetter() throws Exception {
+        final SlowSensorThingsService sensorThingsService = new SlowSensorThingsService(2);
+        final List<DataArrayBatch> deadLetters = Collections.synchronizedList(new ArrayList<>());
+        final List<DataArrayBatch> acknowledged = Collections.synchronizedList(new ArrayList<>());
+        final DataArraySender sender = DataArraySender.builder(sensorThingsService, 1).metrics(new MetricsRegistry()).retryPolicy(new RetryPolicy(1, 1, 5)).build();
+        final DataArrayBatch failing = new DataArrayBatch(new DataArrayDocument(), 10, 100);
+        final DataArrayBatch succeeding = new DataArrayBatch(new DataArrayDocument(), 20, 200);
+        sender.send(failing, deadLetters::add, acknowledged::add);
+        sender.send(succeeding, deadLetters::add, acknowledged::add);
+        sender.close();
+        assertAll(
+                () -> assertEquals(Collections.singletonList(failing), deadLetters, "A DataArraySender must write the failing batch to the dead-letter writer"),
+                () -> assertEquals(Collections.singletonList(succeeding), acknowledged, "A DataArraySender must only notify the acknowledged batches"),
+                () -> assertEquals(1, sender.getStatistics().getDeadLetteredRequestCount(), "A DataArraySender must count dead-lettered batches"),
+                () -> assertEquals(20, sender.getStatistics().getObservationCount(), "A DataArraySender must go on sending next batches")
+        );
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must neither fail nor dead-letter batches accepted by server that cannot be checkpointed")
+    public void testCheckpointFailure() throws Exception {
+        final File input = Files.createTempFile("input", ".json").toFile();
+        final InjectorConfiguration configuration = new InjectorConfiguration();
+        configuration.setResume(true);
+        final CheckpointJournal journal = CheckpointJournal.open(input, configuration);
+        try {
+            // A closed journal cannot be written anymore
+            journal.close();
+            final MetricsRegistry metrics = new MetricsRegistry();
+            final List<DataArrayBatch> deadLetters = Collections.synchronizedList(new ArrayList<>());
+            final List<DataArrayBatch> acknowledged = Collections.synchronizedList(new ArrayList<>());
+            final DataArraySender sender = DataArraySender.builder(new SlowSensorThingsService(false), 1).checkpointJournal(journal).metrics(metrics).build();
+            final DataArrayBatch batch = new DataArrayBatch(new DataArrayDocument(), 10, 100);
+            sender.send(batch, deadLetters::add, acknowledged::add);
+            sender.close();
+            assertAll(
+                    () -> assertEquals(Collections.emptyList(), deadLetters, "A DataArraySender must not dead-letter a batch accepted by server"),
+                    () -> assertEquals(Collections.singletonList(batch), acknowledged, "A DataArraySender must notify a batch accepted by server"),
+                    () -> assertEquals(1, metrics.counter(DataArraySender.UNCHECKPOINTED_BATCHES_COUNTER).getCount(), "A DataArraySender must report batches that cannot be checkpointed"),
+                    () -> assertEquals(0, metrics.counter(DataArraySender.FAILED_BATCHES_COUNTER).getCount(), "A DataArraySender must not fail a batch accepted by server")
+            );
+        } finally {
+            Files.deleteIfExists(journal.getPath());
+            Files.deleteIfExists(input.toPath());
+        }
+    }
+
+    @Test
+    @DisplayName("A DataArraySender must write streamed batches straight to CreateObservations requests, and raise server errors with their status code")
+    public void testStreaming() throws Exception {
+        try (final SensorThingsStandInServer server = new SensorThingsStandInServer();
+             final HttpTransport httpTransport = new HttpTransport(new InjectorConfiguration(), new MetricsRegistry())) {
+            final SensorThingsService sensorThingsService = new SensorThingsService(server.getEndpoint());
+            sensorThingsService.setClient(httpTransport.getClient());
+            final DataArraySender sender = DataArraySender.builder(sensorThingsService, 2).build();
+            for (int i = 0; i < 5; i++) {
+                sender.send(new DataArrayBatch(rows(10), 10, 100, 0));
+            }
+            sender.close();
+            assertAll(
+                    () -> assertEquals(50, server.getObservationCount(), "A DataArraySender must send all streamed rows"),
+                    () -> assertEquals(5, server.getCreateObservationsRequestCount(), "A DataArraySender must send a request per streamed batch"),
+                    () -> assertEquals(50, sender.getStatistics().getObservationCount(), "A DataArraySender must count streamed observations")
+            );
+
+            server.failNextCreateObservations(1);
+            final DataArraySender failingSender = DataArraySender.builder(sensorThingsService, 1).build();
+            failingSender.send(new DataArrayBatch(rows(10), 10, 100, 0));
+            final StatusCodeException e = assertThrows(StatusCodeException.class, failingSender::close);
+            assertEquals(500, e.getStatusCode());
+        }
+    }
+
+    /**
+     * Create a {@link DataArrayWriter} of a single DataArray value of the given number of rows
+     */
+    private static DataArrayWriter rows(final int count) {
+        return generator -> {
+            generator.writeStartArray();
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("Datastream");
+            generator.writeNumberField("@iot.id", 1);
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("components");
+            generator.writeString("result");
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("dataArray");
+            for (int i = 0; i < count; i++) {
+                generator.writeStartArray();
+                generator.writeNumber(i);
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+        };
+    }
+
+    private static class BrokenSensorThingsService extends SensorThingsService {
+
+        private final AtomicInteger requestCount = new AtomicInteger();
+
+        private BrokenSensorThingsService() throws MalformedURLException, URISyntaxException {
+            super(new URL("http://localhost/v1.0/"));
+        }
+
+        @Override
+        public List<String> create(final DataArrayDocument dataArray) {
+            requestCount.incrementAndGet();
+            throw new IllegalStateException("Expected failure");
+        }
+
+    }
+
+    private static class RejectingSensorThingsService extends SensorThingsService {
+
+        private RejectingSensorThingsService() throws MalformedURLException, URISyntaxException {
+            super(new URL("http://localhost/v1.0/"));
+        }
+
+        @Override
+        public List<String> create(final DataArrayDocument dataArray) throws ServiceFailureException {
+            throw new StatusCodeException(getEndpoint().toString(), 400, "Bad Request", "Expected rejection");
+        }
+
+    }
+
+    private static class SlowSensorThingsService extends SensorThingsService {
+
+        private final AtomicInteger remainingFailures;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger sentCount = new AtomicInteger();
+
+        private SlowSensorThingsService(final boolean failing) throws MalformedURLException, URISyntaxException {
+            this(failing ? Integer.MAX_VALUE : 0);
+        }
+
+        private SlowSensorThingsService(final int failures) throws MalformedURLException, URISyntaxException {
+            super(new URL("http://localhost/v1.0/"));
+            this.remainingFailures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public List<String> create(final DataArrayDocument dataArray) throws ServiceFailureException {
+            final int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(10);
+                if (remainingFailures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                    throw new ServiceFailureException("Expected failure", new IOException("Expected failure"));
+                }
+                sentCount.incrementAndGet();
+                return Collections.emptyList();
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+    }
+
+}
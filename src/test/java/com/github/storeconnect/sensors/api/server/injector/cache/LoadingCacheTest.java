@@ -0,0 +1,136 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.cache;
+
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link LoadingCache}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("LoadingCache")
+public class LoadingCacheTest {
+
+    @Test
+    @DisplayName("A LoadingCache must load a value only once per key")
+    public void testLoadingOncePerKey() throws ServiceFailureException {
+        final LoadingCache<String, Integer> cache = new LoadingCache<>("test", 10);
+        final AtomicInteger loadings = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(1), cache.get("a", key -> loadings.incrementAndGet()));
+        }
+        assertAll(
+                () -> assertEquals(1, loadings.get(), "A LoadingCache must load a missing value only once"),
+                () -> assertEquals(2, cache.getHitCount(), "A LoadingCache must count hits"),
+                () -> assertEquals(1, cache.getMissCount(), "A LoadingCache must count misses")
+        );
+    }
+
+    @Test
+    @DisplayName("A LoadingCache must evict the least recently used entries when full")
+    public void testEvictionWhenFull() throws ServiceFailureException {
+        final LoadingCache<String, String> cache = new LoadingCache<>("test", 2);
+        cache.get("a", key -> key);
+        cache.get("b", key -> key);
+        cache.get("a", key -> key);
+        cache.get("c", key -> key);
+        final AtomicInteger loadings = new AtomicInteger();
+        cache.get("a", key -> key + loadings.incrementAndGet());
+        cache.get("b", key -> key + loadings.incrementAndGet());
+        assertAll(
+                () -> assertEquals(1, loadings.get(), "A LoadingCache must keep the most recently used entries"),
+                () -> assertEquals(2, cache.size(), "A LoadingCache must not exceed its maximum size"),
+                () -> assertEquals(2, cache.getEvictionCount(), "A LoadingCache must count evictions")
+        );
+    }
+
+    @Test
+    @DisplayName("A LoadingCache must tell when it is full, so that it is not prefilled beyond its maximum size")
+    public void testFull() {
+        final LoadingCache<String, String> cache = new LoadingCache<>("test", 2);
+        cache.putIfAbsent("a", "a");
+        assertFalse(cache.isFull(), "A LoadingCache must not be full below its maximum size");
+        cache.putIfAbsent("b", "b");
+        assertTrue(cache.isFull(), "A LoadingCache must be full at its maximum size");
+    }
+
+    @Test
+    @DisplayName("A LoadingCache must only prefill missing entries, without loading them")
+    public void testPutIfAbsent() throws ServiceFailureException {
+        final LoadingCache<String, String> cache = new LoadingCache<>("test", 10);
+        assertAll(
+                () -> assertTrue(cache.putIfAbsent("a", "first"), "A LoadingCache must prefill a missing entry"),
+                () -> assertFalse(cache.putIfAbsent("a", "second"), "A LoadingCache must not replace an existing entry"),
+                () -> assertEquals("first", cache.get("a", key -> "loaded"), "A LoadingCache must use the prefilled entry"),
+                () -> assertEquals(0, cache.getMissCount(), "A LoadingCache must not count prefilled entries as misses")
+        );
+    }
+
+    @Test
+    @DisplayName("A LoadingCache must not delay the lookups of other keys while loading a key, but make concurrent lookups of that key wait for it")
+    public void testConcurrentLoading() throws Exception {
+        final LoadingCache<String, String> cache = new LoadingCache<>("test", 10);
+        cache.put("cached", "value");
+        final CountDownLatch loadingStarted = new CountDownLatch(1);
+        final CountDownLatch loadingReleased = new CountDownLatch(1);
+        final AtomicInteger loadings = new AtomicInteger();
+        final LoadingCache.Loader<String, String> slowLoader = key -> {
+            loadings.incrementAndGet();
+            loadingStarted.countDown();
+            try {
+                loadingReleased.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return key + "-loaded";
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> cache.get("slow", slowLoader));
+            assertTrue(loadingStarted.await(10, TimeUnit.SECONDS));
+            final Future<String> second = executor.submit(() -> cache.get("slow", slowLoader));
+            assertAll(
+                    () -> assertEquals("value", cache.get("cached", key -> "reloaded"), "A LoadingCache must serve hits while another key is loading"),
+                    () -> assertEquals("other", cache.get("other", key -> "other"), "A LoadingCache must load other keys while another key is loading")
+            );
+            loadingReleased.countDown();
+            assertAll(
+                    () -> assertEquals("slow-loaded", first.get(10, TimeUnit.SECONDS)),
+                    () -> assertEquals("slow-loaded", second.get(10, TimeUnit.SECONDS)),
+                    () -> assertEquals(1, loadings.get(), "A LoadingCache must not load twice a key being loaded")
+            );
+        } finally {
+            loadingReleased.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+}
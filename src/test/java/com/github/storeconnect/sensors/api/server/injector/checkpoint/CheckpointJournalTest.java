@@ -0,0 +1,149 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.checkpoint;
+
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CheckpointJournal}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("CheckpointJournal")
+public class CheckpointJournalTest {
+
+    private File input;
+    private InjectorConfiguration configuration;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        input = Files.createTempFile("input", ".json").toFile();
+        configuration = new InjectorConfiguration();
+        configuration.setResume(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(new File(input.getParentFile(), input.getName() + CheckpointJournal.FILE_EXTENSION).toPath());
+        Files.deleteIfExists(input.toPath());
+    }
+
+    @Test
+    @DisplayName("A CheckpointJournal must restore acknowledged batches when resuming")
+    public void testResumingAcknowledgedBatches() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            journal.acknowledge(1);
+            journal.acknowledge(3);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertAll(
+                    () -> assertTrue(journal.isAcknowledged(1)),
+                    () -> assertFalse(journal.isAcknowledged(2)),
+                    () -> assertTrue(journal.isAcknowledged(3))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("A CheckpointJournal must not restore acknowledged batches when batching settings changed or when not resuming")
+    public void testNotResumingWithDifferentSettings() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            journal.acknowledge(1);
+        }
+        configuration.setBatchSize(configuration.getBatchSize() + 1);
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertFalse(journal.isAcknowledged(1), "A CheckpointJournal must not be resumed with different batching settings");
+            journal.acknowledge(1);
+        }
+        configuration.setResume(false);
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertFalse(journal.isAcknowledged(1), "A CheckpointJournal must not be resumed when not asked to");
+        }
+    }
+
+    @Test
+    @DisplayName("A CheckpointJournal must drop a partially written last line when resuming")
+    public void testResumingTornLine() throws IOException {
+        final Path path;
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            journal.acknowledge(1);
+            path = journal.getPath();
+        }
+        // Injection interrupted while acknowledging batch #42
+        Files.write(path, "4".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertFalse(journal.isAcknowledged(4), "A CheckpointJournal must not read a partially written line");
+            journal.acknowledge(7);
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertAll(
+                    () -> assertTrue(journal.isAcknowledged(1)),
+                    () -> assertTrue(journal.isAcknowledged(7), "A CheckpointJournal must not glue an acknowledgement to a partially written line"),
+                    () -> assertFalse(journal.isAcknowledged(47), "A CheckpointJournal must not glue an acknowledgement to a partially written line")
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("A CheckpointJournal must only be enabled when resuming or when given a checkpoint directory")
+    public void testEnabling() {
+        final InjectorConfiguration defaults = new InjectorConfiguration();
+        final InjectorConfiguration withDirectory = new InjectorConfiguration();
+        withDirectory.setCheckpointDirectory(input.getParentFile());
+        assertAll(
+                () -> assertTrue(CheckpointJournal.isEnabled(configuration)),
+                () -> assertFalse(CheckpointJournal.isEnabled(defaults)),
+                () -> assertTrue(CheckpointJournal.isEnabled(withDirectory))
+        );
+    }
+
+    @Test
+    @DisplayName("A CheckpointJournal must be recorded as completed once its input is fully injected")
+    public void testCompletion() throws IOException {
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            journal.acknowledge(1);
+            assertFalse(journal.isCompleted());
+            journal.complete();
+            assertTrue(journal.isCompleted());
+        }
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertAll(
+                    () -> assertTrue(journal.isCompleted(), "A completed CheckpointJournal must be recognized when resuming"),
+                    () -> assertTrue(journal.isAcknowledged(1))
+            );
+        }
+        configuration.setResume(false);
+        try (final CheckpointJournal journal = CheckpointJournal.open(input, configuration)) {
+            assertFalse(journal.isCompleted(), "A completed CheckpointJournal must be restarted when not resuming");
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatch;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayBatcher;
+import com.github.storeconnect.sensors.api.server.injector.batch.DataArrayWriter;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.IdLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FlatMotionDataArraySource}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionDataArraySource")
+public class FlatMotionDataArraySourceTest {
+
+    private static final Instant DEVICE_DATE = Instant.parse("2018-03-01T10:15:30.250Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("A FlatMotionDataArraySource must write each row as the DataArray row of its motion observation")
+    public void testWriteRow() throws IOException {
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(Arrays.asList(
+                observation("Cam1", 1, 50.5f, 3.25f, 2),
+                FlatMotionObservationBuilder.builder().appUserId(AppUserIdBuilder.builder().sensor("Cam1").sequence("s").id(2).build()).build()
+        ));
+        final FlatMotionDataArraySource source = new FlatMotionDataArraySource(columns, datastreams(1), Arrays.asList(new int[]{0, 1}), new Object[]{7L, 8L});
+
+        final JsonNode row = objectMapper.readTree(write(generator -> source.writeRow(generator, 0, 0)));
+        assertAll(
+                () -> assertEquals(3, row.size()),
+                () -> assertEquals(DEVICE_DATE, OffsetDateTime.parse(row.get(0).asText()).toInstant()),
+                () -> assertEquals("s-1", row.at("/1/subject/id").asText()),
+                () -> assertEquals("Feature", row.at("/1/location/type").asText()),
+                () -> assertEquals(2, row.at("/1/location/properties/building").asInt()),
+                () -> assertEquals(2, row.at("/1/location/properties/floor").asInt()),
+                () -> assertEquals("Point", row.at("/1/location/geometry/type").asText()),
+                () -> assertEquals(50.5, row.at("/1/location/geometry/coordinates/0").asDouble()),
+                () -> assertEquals(3.25, row.at("/1/location/geometry/coordinates/1").asDouble()),
+                () -> assertEquals(7L, row.get(2).asLong())
+        );
+
+        final JsonNode rowWithNulls = objectMapper.readTree(write(generator -> source.writeRow(generator, 0, 1)));
+        assertAll(
+                () -> assertTrue(rowWithNulls.get(0).isNull()),
+                () -> assertEquals("s-2", rowWithNulls.at("/1/subject/id").asText()),
+                () -> assertTrue(rowWithNulls.at("/1/location/properties/building").isNull()),
+                () -> assertTrue(rowWithNulls.at("/1/location/geometry/coordinates/0").isNull()),
+                () -> assertEquals(8L, rowWithNulls.get(2).asLong())
+        );
+    }
+
+    @Test
+    @DisplayName("A FlatMotionDataArraySource must be split into streamed batches holding all its rows, in order")
+    public void testSplit() throws IOException {
+        final List<FlatMotionObservation> observations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            observations.add(observation(i < 3 ? "Cam1" : "Cam2", i, i, i, i));
+        }
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(observations);
+        final FlatMotionDataArraySource source = new FlatMotionDataArraySource(columns, datastreams(2), Arrays.asList(new int[]{0, 1, 2}, new int[]{3, 4}), new Object[]{1L, 1L, 1L, 1L, 1L});
+
+        final List<DataArrayBatch> batches = new DataArrayBatcher(2, Long.MAX_VALUE, FlatMotionObservationInjector::newDataArrayValue).split(source);
+        assertEquals(3, batches.size());
+        final List<String> subjects = new ArrayList<>();
+        final List<Long> datastreamIds = new ArrayList<>();
+        for (final DataArrayBatch batch : batches) {
+            assertTrue(batch.isStreamed());
+            final JsonNode body = objectMapper.readTree(write(batch.getWriter()));
+            int observationCount = 0;
+            for (final JsonNode dataArrayValue : body) {
+                assertEquals(FlatMotionDataArraySource.COMPONENTS.size(), dataArrayValue.get("components").size());
+                assertEquals(dataArrayValue.get("dataArray").size(), dataArrayValue.get("dataArray@iot.count").asInt());
+                datastreamIds.add(dataArrayValue.at("/Datastream/@iot.id").asLong());
+                for (final JsonNode row : dataArrayValue.get("dataArray")) {
+                    subjects.add(row.at("/1/subject/id").asText());
+                    observationCount++;
+                }
+            }
+            assertEquals(batch.getObservationCount(), observationCount);
+        }
+        assertEquals(Arrays.asList("s-0", "s-1", "s-2", "s-3", "s-4"), subjects);
+        assertEquals(Arrays.asList(1L, 1L, 2L, 2L), datastreamIds);
+        assertEquals(Arrays.asList(0, 2, 4), Arrays.asList(batches.get(0).getFirstObservationIndex(), batches.get(1).getFirstObservationIndex(), batches.get(2).getFirstObservationIndex()));
+    }
+
+    private static FlatMotionObservation observation(final String sensor, final int id, final float lat, final float lon, final int floor) {
+        return FlatMotionObservationBuilder.builder()
+                .appUserId(AppUserIdBuilder.builder().sensor(sensor).sequence("s").id(id).build())
+                .lat(lat)
+                .lon(lon)
+                .building(2)
+                .floor(floor)
+                .venueId(1)
+                .deviceDate(DEVICE_DATE)
+                .build();
+    }
+
+    private static List<Datastream> datastreams(final int count) {
+        final List<Datastream> datastreams = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            final Datastream datastream = new Datastream();
+            datastream.setId(new IdLong(id));
+            datastreams.add(datastream);
+        }
+        return datastreams;
+    }
+
+    private byte[] write(final DataArrayWriter writer) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            writer.write(generator);
+        }
+        return output.toByteArray();
+    }
+
+}
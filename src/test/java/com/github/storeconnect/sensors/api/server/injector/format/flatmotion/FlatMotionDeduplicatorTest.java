@@ -0,0 +1,118 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FlatMotionDeduplicator}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionDeduplicator")
+public class FlatMotionDeduplicatorTest {
+
+    private static final int COUNT = 10_000;
+    private static final int SENSORS = 5;
+    private static final long SEED = 42L;
+
+    private MetricsRegistry metrics;
+    private FlatMotionDeduplicator deduplicator;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new MetricsRegistry();
+        deduplicator = new FlatMotionDeduplicator(60_000, metrics);
+    }
+
+    @Test
+    @DisplayName("A FlatMotionDeduplicator must drop the observations repeated by overlapping inputs")
+    public void testOverlappingInputs() {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        // Second input overlaps the first one's last 1000 observations
+        final List<FlatMotionObservation> first = observations.subList(0, COUNT / 2);
+        final List<FlatMotionObservation> second = observations.subList(COUNT / 2 - 1000, COUNT);
+        final List<FlatMotionObservation> kept = first.stream().filter(deduplicator::isFirstOccurrence).collect(Collectors.toList());
+        kept.addAll(second.stream().filter(deduplicator::isFirstOccurrence).collect(Collectors.toList()));
+        assertEquals(observations, kept);
+        assertEquals(1000, metrics.counter(FlatMotionDeduplicator.DUPLICATES_COUNTER).getCount());
+    }
+
+    @Test
+    @DisplayName("A FlatMotionDeduplicator must give different fingerprints to different observations, and the same fingerprint to equal ones")
+    public void testFingerprint() {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        final Set<Long> fingerprints = new HashSet<>();
+        for (final FlatMotionObservation observation : observations) {
+            fingerprints.add(FlatMotionDeduplicator.fingerprint(observation));
+        }
+        assertEquals(new HashSet<>(observations).size(), fingerprints.size());
+        final FlatMotionObservation observation = observations.get(0);
+        assertEquals(FlatMotionDeduplicator.fingerprint(observation), FlatMotionDeduplicator.fingerprint(copy(observation).build()));
+        assertNotEquals(FlatMotionDeduplicator.fingerprint(observation), FlatMotionDeduplicator.fingerprint(copy(observation).floor(observation.getFloor() + 1).build()));
+        assertNotEquals(FlatMotionDeduplicator.fingerprint(observation), FlatMotionDeduplicator.fingerprint(copy(observation).lat(Math.nextUp(observation.getLat())).build()));
+        assertNotEquals(FlatMotionDeduplicator.fingerprint(observation), FlatMotionDeduplicator.fingerprint(copy(observation).deviceDate(observation.getDeviceDate().plusNanos(1)).build()));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionDeduplicator must not give the same fingerprint to missing and zero values")
+    public void testFingerprintOfMissingValues() {
+        final FlatMotionObservation observation = FlatMotionDatasets.generate(1, SENSORS, SEED).get(0);
+        assertAll(
+                () -> assertNotEquals(FlatMotionDeduplicator.fingerprint(copy(observation).floor(0).build()), FlatMotionDeduplicator.fingerprint(copy(observation).floor(null).build())),
+                () -> assertNotEquals(FlatMotionDeduplicator.fingerprint(copy(observation).building(0).build()), FlatMotionDeduplicator.fingerprint(copy(observation).building(null).build())),
+                () -> assertNotEquals(FlatMotionDeduplicator.fingerprint(copy(observation).venueId(0).build()), FlatMotionDeduplicator.fingerprint(copy(observation).venueId(null).build())),
+                () -> assertNotEquals(FlatMotionDeduplicator.fingerprint(copy(observation).lat(0f).lon(0f).build()), FlatMotionDeduplicator.fingerprint(copy(observation).lat(null).lon(null).build()))
+        );
+    }
+
+    @Test
+    @DisplayName("A FlatMotionDeduplicator must keep observations without recording date")
+    public void testObservationsWithoutRecordingDate() {
+        final FlatMotionObservation observation = copy(FlatMotionDatasets.generate(1, SENSORS, SEED).get(0)).deviceDate(null).build();
+        assertTrue(deduplicator.isFirstOccurrence(observation));
+        assertTrue(deduplicator.isFirstOccurrence(observation));
+    }
+
+    private static FlatMotionObservationBuilder copy(final FlatMotionObservation observation) {
+        return FlatMotionObservationBuilder.builder()
+                .appUserId(observation.getAppUserId())
+                .venueId(observation.getVenueId())
+                .building(observation.getBuilding())
+                .floor(observation.getFloor())
+                .lat(observation.getLat())
+                .lon(observation.getLon())
+                .deviceDate(observation.getDeviceDate())
+                .type(observation.getType());
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.AbstractFormatInjector;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link FlatMotionNdjsonObservationInjector}'s and {@link FlatMotionObservationInjector}'s parsing unit tests, over plain and compressed inputs
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionNdjsonObservationInjector")
+public class FlatMotionNdjsonObservationInjectorTest {
+
+    private static final int COUNT = 1000;
+    private static final int SENSORS = 5;
+    private static final long SEED = 42L;
+
+    private Path directory;
+    private InjectionContext context;
+
+    @BeforeEach
+    public void setUp() throws IOException, URISyntaxException {
+        directory = Files.createTempDirectory("flat-motion-inputs");
+        context = new InjectionContext(new SensorThingsService(new URL("http://localhost/v1.0/")), new InjectorConfiguration());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("A FlatMotionNdjsonObservationInjector must parse one flat-motion observation per line")
+    public void testParseNdjson() throws IOException {
+        final File input = directory.resolve("observations.ndjson").toFile();
+        FlatMotionDatasets.writeNdjson(input, COUNT, SENSORS, SEED);
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), parse(new FlatMotionNdjsonObservationInjector(input, context), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionNdjsonObservationInjector must skip blank lines")
+    public void testParseNdjsonWithBlankLines() throws IOException {
+        final File input = directory.resolve("observations.ndjson").toFile();
+        Files.write(input.toPath(), (
+                "{\"appuserid\": \"Cam1_T3_6\", \"building\": 1, \"devicedate\": 1512042846315, \"floor\": 0, \"lat\": 50.6, \"lon\": 3.02, \"type\": \"location\", \"venueid\": \"95\"}\n"
+                        + "\n"
+                        + "{\"appuserid\": \"Cam1_T3_6\", \"building\": 1, \"devicedate\": 1512042846460, \"floor\": 0, \"lat\": 50.6, \"lon\": 3.02, \"type\": \"location\", \"venueid\": \"95\"}\n"
+        ).getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, parse(new FlatMotionNdjsonObservationInjector(input, context), input).size());
+    }
+
+    @Test
+    @DisplayName("A FlatMotionNdjsonObservationInjector must parse the flat-motion observations written to a dead-letter file")
+    public void testParseDeadLetters() throws IOException {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(observations);
+        final int[] rows = IntStream.range(0, COUNT).map(row -> COUNT - 1 - row).toArray();
+        final File input = directory.resolve("observations" + FlatMotionDeadLetterFile.FILE_EXTENSION).toFile();
+        try (final FlatMotionDeadLetterFile deadLetterFile = new FlatMotionDeadLetterFile(input)) {
+            deadLetterFile.write(columns, rows, 0, 10);
+            deadLetterFile.write(columns, rows, 10, COUNT - 10);
+            assertEquals(COUNT, deadLetterFile.getObservationCount());
+        }
+        final List<FlatMotionObservation> reversed = new ArrayList<>(observations);
+        Collections.reverse(reversed);
+        assertEquals(reversed, parse(new FlatMotionNdjsonObservationInjector(input, context), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionNdjsonObservationInjector must parse a followed input up to its end, once asked to stop following it")
+    public void testParseFollowedNdjson() throws IOException {
+        final File input = directory.resolve("observations.ndjson").toFile();
+        FlatMotionDatasets.writeNdjson(input, COUNT, SENSORS, SEED);
+        final InjectorConfiguration configuration = new InjectorConfiguration();
+        configuration.setFollow(true);
+        final InjectionContext followingContext = new InjectionContext(context.getSensorThingsService(), configuration);
+        followingContext.requestStop();
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), parse(new FlatMotionNdjsonObservationInjector(input, followingContext), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionNdjsonObservationInjector must parse gzip compressed inputs on the fly")
+    public void testParseGzipNdjson() throws IOException {
+        final File input = directory.resolve("observations.ndjson.gz").toFile();
+        FlatMotionDatasets.writeNdjson(input, COUNT, SENSORS, SEED);
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), parse(new FlatMotionNdjsonObservationInjector(input, context), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationInjector must parse gzip compressed inputs on the fly")
+    public void testParseGzipJson() throws IOException {
+        final File input = directory.resolve("observations.json.gz").toFile();
+        FlatMotionDatasets.write(input, COUNT, SENSORS, SEED);
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), parse(new FlatMotionObservationInjector(input, context), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationInjector must parse the single file of zip archive inputs on the fly")
+    public void testParseZipJson() throws IOException {
+        final File input = directory.resolve("observations.zip").toFile();
+        try (final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(input)))) {
+            zip.putNextEntry(new ZipEntry("observations.json"));
+            FlatMotionDatasets.write(zip, COUNT, SENSORS, SEED, false);
+            zip.closeEntry();
+        }
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), parse(new FlatMotionObservationInjector(input, context), input));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationInjector must fail when a zip archive input contains several files")
+    public void testParseZipWithSeveralFiles() throws IOException {
+        final File input = directory.resolve("observations.zip").toFile();
+        try (final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(input)))) {
+            zip.putNextEntry(new ZipEntry("observations-1.json"));
+            FlatMotionDatasets.write(zip, COUNT, SENSORS, SEED, false);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("observations-2.json"));
+            FlatMotionDatasets.write(zip, COUNT, SENSORS, SEED, false);
+            zip.closeEntry();
+        }
+        assertThrows(UncheckedIOException.class, () -> parse(new FlatMotionObservationInjector(input, context), input));
+    }
+
+    private static List<FlatMotionObservation> parse(final AbstractFormatInjector<FlatMotionObservation> injector, final File input) throws IOException {
+        try (final Stream<FlatMotionObservation> observations = injector.parse(input)) {
+            return observations.collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FlatMotionObservationColumns}' unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionObservationColumns")
+public class FlatMotionObservationColumnsTest {
+
+    private static final int COUNT = 10_000;
+    private static final int SENSORS = 5;
+    private static final long SEED = 42L;
+
+    @Test
+    @DisplayName("A FlatMotionObservationColumns must give back the stored observations, while growing as needed")
+    public void testRoundTrip() {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        final FlatMotionObservationColumns columns = new FlatMotionObservationColumns(1);
+        observations.forEach(columns::add);
+        assertEquals(COUNT, columns.size());
+        final List<FlatMotionObservation> stored = new ArrayList<>();
+        for (int row = 0; row < columns.size(); row++) {
+            stored.add(columns.get(row));
+        }
+        assertEquals(observations, stored);
+        assertEquals(SENSORS, columns.getSensorCount());
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationColumns must keep null fields and any millisecond date")
+    public void testNullsAndPrecision() {
+        final FlatMotionObservation withNulls = FlatMotionObservationBuilder.builder()
+                .appUserId(AppUserIdBuilder.builder().sensor("Cam1").build())
+                .build();
+        final FlatMotionObservation withoutAppUserId = FlatMotionObservationBuilder.builder()
+                .deviceDate(Instant.ofEpochMilli(-1_877))
+                .build();
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(Arrays.asList(withNulls, withoutAppUserId));
+        assertEquals(withNulls, columns.get(0));
+        assertNull(columns.getSequence(0));
+        assertNull(columns.getLat(0));
+        assertEquals(withoutAppUserId, columns.get(1));
+        assertNull(columns.get(1).getAppUserId());
+        assertEquals(Instant.ofEpochMilli(-1_877), columns.getDeviceDate(1));
+        // Far beyond year 2262, as when a microsecond timestamp is read as milliseconds
+        columns.add(FlatMotionObservationBuilder.builder().deviceDate(Instant.ofEpochMilli(1_500_000_000_000_000L)).build());
+        assertEquals(Instant.ofEpochMilli(1_500_000_000_000_000L), columns.getDeviceDate(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.get(3));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationColumns must group rows by sensor, in sensors' appearance order")
+    public void testGroupBySensor() {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        final Map<String, List<FlatMotionObservation>> expected = new LinkedHashMap<>();
+        observations.forEach(observation -> expected.computeIfAbsent(observation.getAppUserId().getSensor(), sensor -> new ArrayList<>()).add(observation));
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(observations);
+        final int[][] rowsBySensor = columns.groupBySensor();
+        final Map<String, List<FlatMotionObservation>> actual = new LinkedHashMap<>();
+        for (int sensorCode = 0; sensorCode < rowsBySensor.length; sensorCode++) {
+            final List<FlatMotionObservation> group = new ArrayList<>();
+            for (final int row : rowsBySensor[sensorCode]) {
+                assertEquals(sensorCode, columns.getSensorCode(row));
+                group.add(columns.get(row));
+            }
+            actual.put(columns.getSensorOfCode(sensorCode), group);
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("A cleared FlatMotionObservationColumns must be reusable, and keep its sensor codes")
+    public void testClear() {
+        final List<FlatMotionObservation> observations = FlatMotionDatasets.generate(COUNT, SENSORS, SEED);
+        final FlatMotionObservationColumns columns = FlatMotionObservationColumns.of(observations);
+        columns.clear();
+        assertTrue(columns.isEmpty());
+        columns.add(observations.get(COUNT - 1));
+        assertEquals(observations.get(COUNT - 1), columns.get(0));
+        final int[][] rowsBySensor = columns.groupBySensor();
+        assertEquals(SENSORS, rowsBySensor.length);
+        assertArrayEquals(new int[]{0}, rowsBySensor[columns.getSensorCode(0)]);
+    }
+
+}
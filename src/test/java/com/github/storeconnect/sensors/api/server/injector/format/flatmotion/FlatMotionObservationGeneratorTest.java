@@ -0,0 +1,112 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FlatMotionObservationGenerator}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionObservationGenerator")
+public class FlatMotionObservationGeneratorTest {
+
+    private static final long START = 1512041732159L;
+    private static final double METERS_PER_LATITUDE_DEGREE = 111_320;
+
+    @Test
+    @DisplayName("A FlatMotionObservationGenerator must generate observations of every track, tick by tick")
+    public void testGeneration() {
+        final List<FlatMotionObservation> observations = generate(settings("sensors=3", "tracks-per-sensor=2", "venues=2", "points-per-second=4", "duration=10"));
+        final Set<String> tracks = new HashSet<>();
+        final Set<Integer> venues = new HashSet<>();
+        for (final FlatMotionObservation observation : observations) {
+            tracks.add(observation.getAppUserId().getSensor() + "_" + observation.getAppUserId().getSequence());
+            venues.add(observation.getVenueId());
+        }
+        assertAll(
+                () -> assertEquals(3 * 2 * 4 * 10, observations.size()),
+                () -> assertEquals(6, tracks.size()),
+                () -> assertEquals(2, venues.size()),
+                () -> assertEquals(START, observations.get(0).getDeviceDate().toEpochMilli()),
+                () -> assertEquals(START + 250, observations.get(6).getDeviceDate().toEpochMilli())
+        );
+        for (int i = 1; i < observations.size(); i++) {
+            assertFalse(observations.get(i).getDeviceDate().isBefore(observations.get(i - 1).getDeviceDate()), "Observations must be generated in recording date order");
+        }
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationGenerator must generate the same observations from the same settings")
+    public void testReproducibility() {
+        assertEquals(generate(settings("seed=7")), generate(settings("seed=7")));
+        assertFalse(generate(settings("seed=7")).equals(generate(settings("seed=8"))));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationGenerator must keep tracks around their venue's origin and restart them at the end of their lifetime")
+    public void testTrajectories() {
+        final List<FlatMotionObservation> observations = generate(settings("sensors=1", "tracks-per-sensor=1", "points-per-second=10", "duration=100", "track-lifetime=20", "step=1", "radius=10", "origin-lat=50", "origin-lon=3"));
+        final Set<Integer> ids = new HashSet<>();
+        for (final FlatMotionObservation observation : observations) {
+            ids.add(observation.getAppUserId().getId());
+            final double northMeters = (observation.getLat() - 50) * METERS_PER_LATITUDE_DEGREE;
+            final double eastMeters = (observation.getLon() - 3) * METERS_PER_LATITUDE_DEGREE * Math.cos(Math.toRadians(50));
+            assertTrue(Math.sqrt(northMeters * northMeters + eastMeters * eastMeters) <= 10 + 1 + 0.1, "Tracks must not move away from their area");
+        }
+        assertEquals(5, ids.size());
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationGenerator must reject invalid settings")
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> settings("sensors=0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("sensors=1.5"));
+        assertThrows(IllegalArgumentException.class, () -> settings("points-per-second=fast"));
+        assertThrows(IllegalArgumentException.class, () -> settings("seed=1.5"));
+    }
+
+    private static FlatMotionObservationGenerator.Settings settings(final String... properties) {
+        final Properties settings = new Properties();
+        for (final String property : properties) {
+            final String[] keyValue = property.split("=", 2);
+            settings.setProperty(keyValue[0], keyValue[1]);
+        }
+        return FlatMotionObservationGenerator.Settings.fromProperties(settings, START);
+    }
+
+    private static List<FlatMotionObservation> generate(final FlatMotionObservationGenerator.Settings settings) {
+        final List<FlatMotionObservation> observations = new ArrayList<>();
+        new FlatMotionObservationGenerator(settings).forEachRemaining(observations::add);
+        return observations;
+    }
+
+}
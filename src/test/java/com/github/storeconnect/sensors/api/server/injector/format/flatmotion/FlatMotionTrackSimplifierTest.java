@@ -0,0 +1,153 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion;
+
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.AppUserId;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.Type;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FlatMotionTrackSimplifier}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionTrackSimplifier")
+public class FlatMotionTrackSimplifierTest {
+
+    private static final long START = 1512041732159L;
+    private static final double METERS_PER_LATITUDE_DEGREE = 111_320;
+    private static final float ORIGIN_LAT = 50f;
+    private static final float ORIGIN_LON = 3f;
+
+    private MetricsRegistry metrics;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    @DisplayName("A FlatMotionTrackSimplifier must drop observations recorded too shortly after the previous retained one")
+    public void testMinInterval() {
+        final List<FlatMotionObservation> track = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            track.add(observation("T1", i * 50, i, 0));
+        }
+        assertEquals(Arrays.asList(track.get(0), track.get(4), track.get(8), track.get(9)), simplify(track, 200, 0, 0));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionTrackSimplifier must drop observations located too close to the previous retained one")
+    public void testMinDistance() {
+        final List<FlatMotionObservation> track = Arrays.asList(
+                observation("T1", 0, 0, 0),
+                observation("T1", 100, 0.05, 0),
+                observation("T1", 200, 0.5, 0),
+                observation("T1", 300, 0.6, 0),
+                observation("T1", 400, 1.1, 0)
+        );
+        assertEquals(Arrays.asList(track.get(0), track.get(2), track.get(4)), simplify(track, 0, 0.4, 0));
+        assertEquals(2, metrics.counter(FlatMotionTrackSimplifier.DROPPED_COUNTER).getCount());
+        assertEquals(5, metrics.counter(FlatMotionTrackSimplifier.INPUT_COUNTER).getCount());
+    }
+
+    @Test
+    @DisplayName("A FlatMotionTrackSimplifier must only keep the observations where trajectory changes direction")
+    public void testTolerance() {
+        final List<FlatMotionObservation> track = new ArrayList<>();
+        // Walk 10 meters east, with some noise, then 10 meters north
+        for (int i = 0; i <= 10; i++) {
+            track.add(observation("T1", i * 100, i, i % 2 == 0 ? 0.05 : -0.05));
+        }
+        for (int i = 1; i <= 10; i++) {
+            track.add(observation("T1", 1000 + i * 100, 10, i));
+        }
+        assertEquals(Arrays.asList(track.get(0), track.get(10), track.get(20)), simplify(track, 0, 0, 0.2));
+    }
+
+    @Test
+    @DisplayName("A FlatMotionTrackSimplifier must simplify tracks independently, and keep each track's order")
+    public void testInterleavedTracks() {
+        final List<FlatMotionObservation> observations = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            observations.add(observation("T1", i * 100, i, 0));
+            observations.add(observation("T2", i * 100, 0, i));
+        }
+        final List<FlatMotionObservation> simplified = simplify(observations, 0, 0, 0.2);
+        assertAll(
+                () -> assertEquals(Arrays.asList(observations.get(0), observations.get(20)), ofTrack(simplified, "T1")),
+                () -> assertEquals(Arrays.asList(observations.get(1), observations.get(21)), ofTrack(simplified, "T2"))
+        );
+    }
+
+    @Test
+    @DisplayName("A FlatMotionTrackSimplifier must keep dropped observations within tolerance, while reducing random-walk trajectories by an order of magnitude")
+    public void testRandomWalk() {
+        final Properties properties = new Properties();
+        properties.setProperty(FlatMotionObservationGenerator.Settings.SENSORS, "2");
+        properties.setProperty(FlatMotionObservationGenerator.Settings.POINTS_PER_SECOND, "10");
+        properties.setProperty(FlatMotionObservationGenerator.Settings.STEP, "0.1");
+        final List<FlatMotionObservation> observations = new ArrayList<>();
+        new FlatMotionObservationGenerator(FlatMotionObservationGenerator.Settings.fromProperties(properties, START)).forEachRemaining(observations::add);
+        final List<FlatMotionObservation> simplified = simplify(observations, 0, 0, 0.5);
+        assertTrue(observations.size() >= 10 * simplified.size(), String.format("Simplification must reduce observations by an order of magnitude (from %d to %d)", observations.size(), simplified.size()));
+        for (final FlatMotionObservation observation : simplified) {
+            assertTrue(observations.contains(observation));
+        }
+    }
+
+    private List<FlatMotionObservation> simplify(final List<FlatMotionObservation> observations, final long minInterval, final double minDistance, final double tolerance) {
+        final List<FlatMotionObservation> simplified = new ArrayList<>();
+        new FlatMotionTrackSimplifier(observations.iterator(), minInterval, minDistance, tolerance, metrics).forEachRemaining(simplified::add);
+        return simplified;
+    }
+
+    private static List<FlatMotionObservation> ofTrack(final List<FlatMotionObservation> observations, final String sequence) {
+        return observations.stream().filter(observation -> observation.getAppUserId().getSequence().equals(sequence)).collect(Collectors.toList());
+    }
+
+    private static FlatMotionObservation observation(final String sequence, final long offsetMillis, final double eastMeters, final double northMeters) {
+        final AppUserId appUserId = AppUserIdBuilder.builder().sensor("Cam1").sequence(sequence).id(1).build();
+        return FlatMotionObservationBuilder.builder()
+                .appUserId(appUserId)
+                .venueId(95)
+                .building(1)
+                .floor(0)
+                .lat((float) (ORIGIN_LAT + northMeters / METERS_PER_LATITUDE_DEGREE))
+                .lon((float) (ORIGIN_LON + eastMeters / (METERS_PER_LATITUDE_DEGREE * Math.cos(Math.toRadians(ORIGIN_LAT)))))
+                .deviceDate(Instant.ofEpochMilli(START + offsetMillis))
+                .type(Type.LOCATION)
+                .build();
+    }
+
+}
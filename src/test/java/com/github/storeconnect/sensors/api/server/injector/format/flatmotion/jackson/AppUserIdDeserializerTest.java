@@ -27,6 +27,7 @@ import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -63,7 +64,25 @@ public class AppUserIdDeserializerTest {
     public void testAppUserIdDeserializationWithInvalidFormat() {
         assertAll(
                 () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"Sensor_Sequence_wrong\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when id is not an integer"),
-                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"wrong\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when line is not composed by AppUserId's separator")
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"wrong\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when line is not composed by AppUserId's separator"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"_Sequence_1\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when sensor is empty"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"Sensor__1\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when sequence is empty"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"Sensor_Sequence_\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when id is empty"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"Sensor_Sequence_1_2\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when composed by too many parts"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"Sensor_Sequence_99999999999\"", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when id overflows an integer"),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("1", AppUserId.class), "An AppUserIdDeserializer must not deserialize AppUserId when value is not a string")
+        );
+    }
+
+    @Test
+    @DisplayName("An AppUserIdDeserializer must share sensor and sequence instances between AppUserIds")
+    public void testAppUserIdDeserializationSharesRepeatedParts() throws IOException {
+        final AppUserId[] appUserIds = objectMapper.readValue("[\"Cam1_T3_6\", \"Cam1_T3_7\"]", AppUserId[].class);
+        assertAll(
+                () -> assertEquals(6, (int) appUserIds[0].getId()),
+                () -> assertEquals(7, (int) appUserIds[1].getId()),
+                () -> assertSame(appUserIds[0].getSensor(), appUserIds[1].getSensor()),
+                () -> assertSame(appUserIds[0].getSequence(), appUserIds[1].getSequence())
         );
     }
 
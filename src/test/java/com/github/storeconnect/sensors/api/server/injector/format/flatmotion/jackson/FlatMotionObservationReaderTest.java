@@ -0,0 +1,113 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.jackson.JsonArrayIterator;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import de.fraunhofer.iosb.ilt.sta.jackson.ObjectMapperFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link FlatMotionObservationReader}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FlatMotionObservationReader")
+public class FlatMotionObservationReaderTest {
+
+    private ObjectMapper objectMapper;
+    private FlatMotionObservationReader reader;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = ObjectMapperFactory.get();
+        reader = new FlatMotionObservationReader();
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationReader must read the same FlatMotionObservations as the databind path")
+    public void testReadGeneratedObservations() throws IOException {
+        final File dataset = File.createTempFile("flat-motion-reader", ".json");
+        try {
+            FlatMotionDatasets.write(dataset, 1000, 5, 42L);
+            try (
+                    final JsonArrayIterator<FlatMotionObservation> expected = new JsonArrayIterator<>(objectMapper.getFactory().createParser(dataset), FlatMotionObservation.class);
+                    final JsonArrayIterator<FlatMotionObservation> actual = new JsonArrayIterator<>(objectMapper.getFactory().createParser(dataset), reader)
+            ) {
+                while (expected.hasNext()) {
+                    assertEquals(expected.next(), actual.next());
+                }
+                assertFalse(actual.hasNext());
+            }
+        } finally {
+            Files.delete(dataset.toPath());
+        }
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationReader must read the same FlatMotionObservation as the databind path, whatever values representation")
+    public void testReadAlternativeRepresentations() throws IOException {
+        final String[] jsons = {
+                "{\"appuserid\": \"Cam1_T3_6\", \"building\": 1, \"devicedate\": 1512042846315, \"floor\": 0, \"lat\": 50.633479927598877, \"lon\": 3.0241943673786045, \"type\": \"location\", \"venueid\": \"95\"}",
+                "{\"appuserid\": \"Cam1_T3_6\", \"building\": \"1\", \"devicedate\": \"1512042846315\", \"floor\": \" 0 \", \"lat\": \"50.6\", \"lon\": 3, \"venueid\": 95}",
+                "{\"appuserid\": null, \"building\": null, \"devicedate\": null, \"floor\": \"\", \"lat\": null, \"type\": null, \"venueid\": 95.7}",
+                "{\"unknown\": {\"nested\": [1, 2, {\"appuserid\": \"Cam1_T3_6\"}]}, \"venueid\": 95, \"type\": 0}",
+                "{}"
+        };
+        for (final String json : jsons) {
+            assertEquals(objectMapper.readValue(json, FlatMotionObservation.class), read(json), json);
+        }
+    }
+
+    @Test
+    @DisplayName("A FlatMotionObservationReader must fail as the databind path when invalid values are given")
+    public void testReadInvalidValues() {
+        assertAll(
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"appuserid\": \"wrong\"}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"venueid\": \"wrong\"}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"venueid\": 99999999999}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"building\": true}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"lat\": \"wrong\"}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"lon\": [1]}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"devicedate\": \"wrong\"}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("{\"type\": \"wrong\"}")),
+                () -> assertThrows(JsonMappingException.class, () -> read("[]"))
+        );
+    }
+
+    private FlatMotionObservation read(final String json) throws IOException {
+        try (final JsonParser jsonParser = objectMapper.getFactory().createParser(json)) {
+            jsonParser.nextToken();
+            return reader.read(jsonParser);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.http;
+
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import com.github.storeconnect.sensors.api.server.injector.standin.SensorThingsStandInServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link HttpTransport}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("HttpTransport")
+public class HttpTransportTest {
+
+    private static final int REQUESTS = 20;
+
+    @Test
+    @DisplayName("An HttpTransport must send successive requests over the same connection")
+    public void testSequentialConnectionReuse() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        try (final SensorThingsStandInServer server = new SensorThingsStandInServer();
+             final HttpTransport transport = new HttpTransport(new InjectorConfiguration(), metrics)) {
+            for (int i = 0; i < REQUESTS; i++) {
+                get(transport, server);
+            }
+            assertEquals(REQUESTS, metrics.counter(HttpTransport.REQUESTS_COUNTER).getCount());
+            assertEquals(1, metrics.counter(HttpTransport.OPENED_CONNECTIONS_COUNTER).getCount());
+            assertEquals((REQUESTS - 1) / (double) REQUESTS, transport.getConnectionReuseRatio(), 1e-9);
+            assertEquals(1, transport.getPoolStats().getAvailable());
+        }
+    }
+
+    @Test
+    @DisplayName("An HttpTransport must not open more connections than its pool size, whatever the number of parallel requests")
+    public void testParallelConnectionReuse() throws Exception {
+        final InjectorConfiguration configuration = new InjectorConfiguration();
+        configuration.setHttpMaxConnections(2);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final SensorThingsStandInServer server = new SensorThingsStandInServer();
+             final HttpTransport transport = new HttpTransport(configuration, new MetricsRegistry())) {
+            server.latency(5);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(executor.submit(() -> {
+                    get(transport, server);
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(REQUESTS, transport.getRequestCount());
+            assertTrue(transport.getOpenedConnectionCount() <= 2, "Too many opened connections: " + transport.getOpenedConnectionCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("An HttpTransport must size its pool according to the number of workers and concurrent requests, unless explicitly set")
+    public void testMaxConnections() {
+        final InjectorConfiguration configuration = new InjectorConfiguration();
+        configuration.setWorkers(2);
+        configuration.setConcurrentRequests(4);
+        assertEquals(10, HttpTransport.getMaxConnections(configuration));
+        configuration.setHttpMaxConnections(3);
+        assertEquals(3, HttpTransport.getMaxConnections(configuration));
+    }
+
+    private static void get(final HttpTransport transport, final SensorThingsStandInServer server) throws IOException {
+        try (final CloseableHttpResponse response = transport.getClient().execute(new HttpGet(server.getEndpoint() + "Sensors"))) {
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.Objects;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -53,10 +54,22 @@ public class EpochTimeDeserializerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    @DisplayName("An EpochTimeDeserializer must deserialize Instant when milliseconds from epoch is given as a number")
+    public void testEpochTimeDeserializationWithNumericFormat() throws IOException {
+        final InstantWrapper expected = new InstantWrapper(Instant.ofEpochMilli(1523361600000L));
+        final InstantWrapper actual = objectMapper.readValue("{ \"instant\": 1523361600000 }", InstantWrapper.class);
+        assertEquals(expected, actual);
+    }
+
     @Test
     @DisplayName("An EpochTimeDeserializer must not deserialize Instant when invalid format is given")
     public void testAppUserIdDeserializationWithInvalidFormat() {
-        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{ \"instant\": \"wrong\" }", InstantWrapper.class));
+        assertAll(
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{ \"instant\": \"wrong\" }", InstantWrapper.class)),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{ \"instant\": 1523361600000.5 }", InstantWrapper.class)),
+                () -> assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{ \"instant\": 99999999999999999999 }", InstantWrapper.class))
+        );
     }
 
     private static class InstantWrapper {
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link JsonArrayIterator}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("JsonArrayIterator")
+public class JsonArrayIteratorTest {
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    @DisplayName("A JsonArrayIterator must iterate over all values of a JSON array")
+    public void testIterationOverJsonArray() throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        try (final JsonArrayIterator<Integer> iterator = new JsonArrayIterator<>(objectMapper.getFactory().createParser("[1, 2, 3]"), Integer.class)) {
+            iterator.forEachRemaining(values::add);
+        }
+        assertEquals(Arrays.asList(1, 2, 3), values);
+    }
+
+    @Test
+    @DisplayName("A JsonArrayIterator must not have any value when JSON array is empty")
+    public void testIterationOverEmptyJsonArray() throws IOException {
+        try (final JsonArrayIterator<Integer> iterator = new JsonArrayIterator<>(objectMapper.getFactory().createParser("[]"), Integer.class)) {
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    @DisplayName("A JsonArrayIterator must fail when JSON content is not an array, is not closed or is followed by another content")
+    public void testIterationOverInvalidJsonArray() throws IOException {
+        assertThrows(IOException.class, () -> new JsonArrayIterator<>(objectMapper.getFactory().createParser("{}"), Integer.class));
+        final JsonParser unclosedArray = objectMapper.getFactory().createParser("[1");
+        try (final JsonArrayIterator<Integer> iterator = new JsonArrayIterator<>(unclosedArray, Integer.class)) {
+            assertEquals(Integer.valueOf(1), iterator.next());
+            assertThrows(UncheckedIOException.class, iterator::hasNext);
+        }
+        try (final JsonArrayIterator<Integer> iterator = new JsonArrayIterator<>(objectMapper.getFactory().createParser("[1] [2]"), Integer.class)) {
+            assertEquals(Integer.valueOf(1), iterator.next());
+            assertThrows(UncheckedIOException.class, iterator::hasNext);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link JsonSequenceIterator}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("JsonSequenceIterator")
+public class JsonSequenceIteratorTest {
+
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    @DisplayName("A JsonSequenceIterator must iterate over all root values, whatever they are separated by")
+    public void testIterationOverJsonSequence() throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        try (final JsonSequenceIterator<Integer> iterator = new JsonSequenceIterator<>(objectMapper.getFactory().createParser("1\n2\n\n3 4\n"), parser -> parser.readValueAs(Integer.class))) {
+            iterator.forEachRemaining(values::add);
+        }
+        assertEquals(Arrays.asList(1, 2, 3, 4), values);
+    }
+
+    @Test
+    @DisplayName("A JsonSequenceIterator must not have any value when JSON content is empty")
+    public void testIterationOverEmptyJsonSequence() throws IOException {
+        try (final JsonSequenceIterator<Integer> iterator = new JsonSequenceIterator<>(objectMapper.getFactory().createParser("\n"), parser -> parser.readValueAs(Integer.class))) {
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    @DisplayName("A JsonSequenceIterator must fail when a root value is invalid")
+    public void testIterationOverInvalidJsonSequence() throws IOException {
+        try (final JsonSequenceIterator<Integer> iterator = new JsonSequenceIterator<>(objectMapper.getFactory().createParser("1\n{2"), parser -> parser.readValueAs(Integer.class))) {
+            assertEquals(Integer.valueOf(1), iterator.next());
+            assertThrows(UncheckedIOException.class, iterator::next);
+        }
+    }
+
+}
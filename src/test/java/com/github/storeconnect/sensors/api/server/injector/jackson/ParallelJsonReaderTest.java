@@ -0,0 +1,156 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.jackson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.jackson.FlatMotionObservationReader;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.util.FlatMotionDatasets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link ParallelJsonReader}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("ParallelJsonReader")
+public class ParallelJsonReaderTest {
+
+    private static final int COUNT = 10_000;
+    private static final int SENSORS = 5;
+    private static final long SEED = 42L;
+    private static final int PARALLELISM = 4;
+    private static final int CHUNK_SIZE = 4096;
+
+    private ObjectMapper objectMapper;
+    private File input;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        input = File.createTempFile("parallel-json-reader", ".json");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input.toPath());
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must read all values of a JSON array, in order")
+    public void testReadJsonArray() throws IOException {
+        FlatMotionDatasets.write(input, COUNT, SENSORS, SEED);
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), readFlatMotionObservations(ParallelJsonReader.Layout.ARRAY));
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must read all values of a newline-delimited JSON file, in order")
+    public void testReadNewlineDelimitedJson() throws IOException {
+        FlatMotionDatasets.writeNdjson(input, COUNT, SENSORS, SEED);
+        assertEquals(FlatMotionDatasets.generate(COUNT, SENSORS, SEED), readFlatMotionObservations(ParallelJsonReader.Layout.NEWLINE_DELIMITED));
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must only cut a JSON array between its root values")
+    public void testReadJsonArrayWithNestedSeparators() throws IOException {
+        final List<String> values = new ArrayList<>();
+        final StringBuilder json = new StringBuilder("\n[");
+        for (int i = 0; i < 1000; i++) {
+            final String value = String.format("{\"id\": %d, \"text\": \"a, \\\"quoted\\\" ] and } \\\\\", \"nested\": [{\"a\": [1, 2]}, \"]\"]}", i);
+            values.add(objectMapper.readTree(value).toString());
+            json.append(i == 0 ? "" : ",\n").append(value);
+        }
+        json.append("]\n");
+        Files.write(input.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        final List<String> read = new ArrayList<>();
+        try (final ParallelJsonReader<JsonNode> reader = new ParallelJsonReader<>(input, ParallelJsonReader.Layout.ARRAY, objectMapper.getFactory(), parser -> parser.readValueAsTree(), PARALLELISM, 64)) {
+            reader.forEachRemaining(value -> read.add(value.toString()));
+        }
+        assertEquals(values, read);
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must not have any value when JSON content is empty")
+    public void testReadEmptyContent() throws IOException {
+        Files.write(input.toPath(), " [ ] ".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Collections.emptyList(), read(ParallelJsonReader.Layout.ARRAY));
+        Files.write(input.toPath(), new byte[0]);
+        assertEquals(Collections.emptyList(), read(ParallelJsonReader.Layout.NEWLINE_DELIMITED));
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must fail when JSON content is not an array, is not closed or is followed by another content")
+    public void testReadInvalidJsonArray() throws IOException {
+        Files.write(input.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> read(ParallelJsonReader.Layout.ARRAY));
+        Files.write(input.toPath(), "[1, 2".getBytes(StandardCharsets.UTF_8));
+        assertThrows(UncheckedIOException.class, () -> read(ParallelJsonReader.Layout.ARRAY));
+        Files.write(input.toPath(), "[1, 2] [3]".getBytes(StandardCharsets.UTF_8));
+        assertThrows(UncheckedIOException.class, () -> read(ParallelJsonReader.Layout.ARRAY));
+        Files.write(input.toPath(), "[1, {2]".getBytes(StandardCharsets.UTF_8));
+        assertThrows(UncheckedIOException.class, () -> read(ParallelJsonReader.Layout.ARRAY));
+    }
+
+    @Test
+    @DisplayName("A ParallelJsonReader must read values in order whatever the number of threads and the chunk size")
+    public void testReadWithDifferentSettings() throws IOException {
+        Files.write(input.toPath(), "1\n2\n\n3\n4\n5\n6\n7".getBytes(StandardCharsets.UTF_8));
+        for (final int parallelism : new int[]{1, 2, 8}) {
+            for (final int chunkSize : new int[]{1, 3, 1024}) {
+                try (final ParallelJsonReader<Integer> reader = new ParallelJsonReader<>(input, ParallelJsonReader.Layout.NEWLINE_DELIMITED, new JsonFactory(), parser -> parser.getIntValue(), parallelism, chunkSize)) {
+                    final List<Integer> values = new ArrayList<>();
+                    reader.forEachRemaining(values::add);
+                    assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), values);
+                }
+            }
+        }
+    }
+
+    private List<FlatMotionObservation> readFlatMotionObservations(final ParallelJsonReader.Layout layout) throws IOException {
+        final List<FlatMotionObservation> observations = new ArrayList<>();
+        try (final ParallelJsonReader<FlatMotionObservation> reader = new ParallelJsonReader<>(input, layout, objectMapper.getFactory(), new FlatMotionObservationReader(), PARALLELISM, CHUNK_SIZE)) {
+            reader.forEachRemaining(observations::add);
+        }
+        return observations;
+    }
+
+    private List<Integer> read(final ParallelJsonReader.Layout layout) throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        try (final ParallelJsonReader<Integer> reader = new ParallelJsonReader<>(input, layout, objectMapper.getFactory(), parser -> parser.readValueAs(Integer.class), PARALLELISM, 1)) {
+            reader.forEachRemaining(values::add);
+        }
+        return values;
+    }
+
+}
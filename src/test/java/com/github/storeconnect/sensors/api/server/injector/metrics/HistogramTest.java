@@ -0,0 +1,78 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Histogram}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("Histogram")
+public class HistogramTest {
+
+    @Test
+    @DisplayName("A Histogram must compute exact count, sum, minimum, maximum and mean")
+    public void testExactStatistics() {
+        final Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertAll(
+                () -> assertEquals(1000, histogram.getCount()),
+                () -> assertEquals(500_500, histogram.getSum()),
+                () -> assertEquals(1, histogram.getMin()),
+                () -> assertEquals(1000, histogram.getMax()),
+                () -> assertEquals(500.5, histogram.getMean())
+        );
+    }
+
+    @Test
+    @DisplayName("A Histogram must compute percentiles as upper bounds within 25% of actual values")
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        for (final double ratio : new double[]{0.5, 0.95, 0.99}) {
+            final long actual = (long) Math.ceil(ratio * 1000);
+            final long percentile = histogram.getPercentile(ratio);
+            assertTrue(percentile >= actual && percentile <= actual * 1.25, "Unexpected percentile " + percentile + " for " + ratio);
+        }
+        assertEquals(1000, histogram.getPercentile(1));
+    }
+
+    @Test
+    @DisplayName("A Histogram must handle empty and extreme values")
+    public void testExtremeValues() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(0.99), "An empty Histogram must report 0");
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertAll(
+                () -> assertEquals(0, histogram.getMin()),
+                () -> assertEquals(Long.MAX_VALUE, histogram.getMax()),
+                () -> assertEquals(Long.MAX_VALUE, histogram.getPercentile(1))
+        );
+    }
+
+}
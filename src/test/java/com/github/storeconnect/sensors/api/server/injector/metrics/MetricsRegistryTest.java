@@ -0,0 +1,94 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link MetricsRegistry}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("MetricsRegistry")
+public class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("A MetricsRegistry must return the same Metric for the same name")
+    public void testMetricsByName() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        assertAll(
+                () -> assertSame(registry.counter("records"), registry.counter("records")),
+                () -> assertSame(registry.timer("inject"), registry.timer("inject")),
+                () -> assertSame(registry.histogram("batch.bytes"), registry.histogram("batch.bytes"))
+        );
+    }
+
+    @Test
+    @DisplayName("A MetricsRegistry must write a JSON report of its Metrics")
+    public void testReport() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("records").add(42);
+        registry.timer("inject").record(TimeUnit.MILLISECONDS.toNanos(1500));
+        registry.histogram("batch.observations").record(10);
+        final File report = Files.createTempFile("metrics", ".json").toFile();
+        try {
+            registry.writeReport(report);
+            final JsonNode json = new ObjectMapper().readTree(report);
+            assertAll(
+                    () -> assertTrue(json.has("start") && json.has("end")),
+                    () -> assertEquals(42, json.path("counters").path("records").path("count").asLong()),
+                    () -> assertEquals(1, json.path("timers").path("inject").path("count").asLong()),
+                    () -> assertEquals(1500.0, json.path("timers").path("inject").path("totalMillis").asDouble()),
+                    () -> assertEquals(10, json.path("histograms").path("batch.observations").path("max").asLong())
+            );
+        } finally {
+            Files.delete(report.toPath());
+        }
+    }
+
+    @Test
+    @DisplayName("A MetricsRegistry must expose its Metrics through JMX once registered")
+    public void testMBean() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("records").add(42);
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(MetricsRegistry.MBEAN_NAME);
+        registry.registerMBean();
+        try {
+            assertEquals(42L, mBeanServer.getAttribute(name, "records.count"));
+        } finally {
+            registry.unregisterMBean();
+        }
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.replay;
+
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link ReplayScheduler}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("ReplayScheduler")
+public class ReplaySchedulerTest {
+
+    private static final Instant FIRST_RECORDING = Instant.ofEpochMilli(1512042846315L);
+
+    private MetricsRegistry metrics;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    @DisplayName("A ReplayScheduler must wait for observations to be due, according to the replay speed")
+    public void testAwait() {
+        final ManualReplayScheduler scheduler = new ManualReplayScheduler(10);
+        assertEquals(0, scheduler.await(FIRST_RECORDING));
+        assertEquals(0, scheduler.await(FIRST_RECORDING.plusMillis(1000)));
+        assertEquals(0, scheduler.await(FIRST_RECORDING.plusMillis(1500)));
+        assertEquals(Arrays.asList(TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(50)), scheduler.sleeps);
+        assertEquals(2, metrics.timer(ReplayScheduler.WAIT_TIMER).getCount());
+        assertEquals(3, metrics.timer(ReplayScheduler.DRIFT_TIMER).getCount());
+    }
+
+    @Test
+    @DisplayName("A ReplayScheduler must report how far observations are released behind the schedule")
+    public void testDrift() {
+        final ManualReplayScheduler scheduler = new ManualReplayScheduler(1);
+        scheduler.await(FIRST_RECORDING);
+        // Sender is busy for 300 ms while the next observation is due after 100 ms
+        scheduler.now += TimeUnit.MILLISECONDS.toNanos(300);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), scheduler.await(FIRST_RECORDING.plusMillis(100)));
+        // Out of order observations are due immediately
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), scheduler.await(FIRST_RECORDING));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), scheduler.getMaxDriftNanos());
+        assertEquals(0, scheduler.sleeps.size());
+    }
+
+    @Test
+    @DisplayName("A ReplayScheduler must release immediately observations without recording date")
+    public void testAwaitWithoutRecordingDate() {
+        final ManualReplayScheduler scheduler = new ManualReplayScheduler(1);
+        assertEquals(0, scheduler.await(null));
+        assertEquals(0, metrics.timer(ReplayScheduler.DRIFT_TIMER).getCount());
+    }
+
+    @Test
+    @DisplayName("A ReplayScheduler must convert wall-clock time spans to recording time spans")
+    public void testToRecordingMillis() {
+        assertEquals(1000, new ManualReplayScheduler(10).toRecordingMillis(100));
+        assertEquals(1, new ManualReplayScheduler(0.001).toRecordingMillis(100));
+        assertThrows(IllegalArgumentException.class, () -> new ReplayScheduler(0, metrics));
+    }
+
+    /**
+     * {@link ReplayScheduler} whose clock only moves forward when sleeping or when explicitly told to
+     */
+    private final class ManualReplayScheduler extends ReplayScheduler {
+
+        private final List<Long> sleeps = new ArrayList<>();
+        private long now;
+
+        private ManualReplayScheduler(final double speed) {
+            super(speed, metrics);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return now;
+        }
+
+        @Override
+        protected void sleep(final long nanos) {
+            sleeps.add(nanos);
+            now += nanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,453 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in of a StoreConnect Sensors API server, speaking the subset of the SensorThings API used by the injector:
+ * <ul>
+ * <li>{@code GET} on entity sets, with simple {@code $filter} ({@code <path> eq <value>} expressions joined by {@code and}), {@code $top} and {@code $skip} options,
+ * and {@code $expand} of a single entity set (optionally with its own {@code $filter})</li>
+ * <li>{@code POST} on entity sets, to create an entity</li>
+ * <li>{@code POST} on {@code CreateObservations}, to create {@code Observation}s from a DataArray document</li>
+ * </ul>
+ * Entities are kept in memory, as posted. Observations are only counted.
+ * Response latency and failures can be injected to simulate a loaded server.
+ *
+ * @author Aurelien Bourdon
+ */
+public class SensorThingsStandInServer implements Closeable {
+
+    public static final String BASE_PATH = "/SensorThingsService/v1.0/";
+    public static final List<String> ENTITY_SETS = Collections.unmodifiableList(Arrays.asList(
+            "Sensors", "Datastreams", "FeaturesOfInterest", "Things", "Locations", "ObservedProperties", "Observations"
+    ));
+
+    private static final String CREATE_OBSERVATIONS = "CreateObservations";
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("^(?<set>\\w+)\\((?<id>\\d+)\\)$");
+    private static final Pattern FILTER_EXPRESSION_PATTERN = Pattern.compile("^\\s*(?<path>[\\w/@.]+)\\s+eq\\s+(?<value>'(?:[^']|'')*'|\\S+)\\s*$");
+    private static final String IOT_ID = "@iot.id";
+    private static final String IOT_SELF_LINK = "@iot.selfLink";
+    private static final String IOT_NEXT_LINK = "@iot.nextLink";
+    private static final Pattern EXPAND_PATTERN = Pattern.compile("^(?<set>\\w+)(?:\\(\\$filter=(?<filter>.*)\\))?$");
+    private static final Map<String, String> NAVIGATION_PROPERTIES = new HashMap<>();
+
+    static {
+        NAVIGATION_PROPERTIES.put("Sensors", "Sensor");
+        NAVIGATION_PROPERTIES.put("Datastreams", "Datastream");
+        NAVIGATION_PROPERTIES.put("FeaturesOfInterest", "FeatureOfInterest");
+        NAVIGATION_PROPERTIES.put("Things", "Thing");
+        NAVIGATION_PROPERTIES.put("Locations", "Location");
+        NAVIGATION_PROPERTIES.put("ObservedProperties", "ObservedProperty");
+    }
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<Long, ObjectNode>> entities = new HashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong observationCount = new AtomicLong();
+    private final AtomicLong createObservationsRequestCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Map<String, AtomicLong> queryCounts = new HashMap<>();
+    private final AtomicInteger pendingFailures = new AtomicInteger();
+    private final AtomicInteger pendingSuccesses = new AtomicInteger();
+    private final Random random = new Random(0);
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+
+    /**
+     * Create and start a new {@link SensorThingsStandInServer} listening on a free port of the loopback address
+     *
+     * @throws IOException if server cannot be started
+     */
+    public SensorThingsStandInServer() throws IOException {
+        for (final String entitySet : ENTITY_SETS) {
+            entities.put(entitySet, new LinkedHashMap<>());
+            queryCounts.put(entitySet, new AtomicLong());
+        }
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        httpServer.createContext(BASE_PATH, this::handle);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "sensorthings-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(executor);
+        httpServer.start();
+    }
+
+    /**
+     * Get the endpoint to give to the injector to target this {@link SensorThingsStandInServer}
+     *
+     * @return the endpoint of this {@link SensorThingsStandInServer}
+     */
+    public URL getEndpoint() {
+        try {
+            return new URL("http", httpServer.getAddress().getHostString(), httpServer.getAddress().getPort(), BASE_PATH);
+        } catch (final MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Set the latency to add before responding to any request
+     *
+     * @param latencyMillis the latency to add, in milliseconds
+     * @return this {@link SensorThingsStandInServer}
+     */
+    public SensorThingsStandInServer latency(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * Set the rate of {@code CreateObservations} requests to fail with an internal server error
+     *
+     * @param errorRate the rate of requests to fail, between 0 and 1
+     * @return this {@link SensorThingsStandInServer}
+     */
+    public SensorThingsStandInServer errorRate(final double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Make the next {@code CreateObservations} requests fail with an internal server error
+     *
+     * @param count the number of requests to fail
+     * @return this {@link SensorThingsStandInServer}
+     */
+    public SensorThingsStandInServer failNextCreateObservations(final int count) {
+        return failCreateObservations(0, count);
+    }
+
+    /**
+     * Make {@code CreateObservations} requests fail with an internal server error, once the next ones succeeded
+     *
+     * @param skip  the number of requests to let succeed before failing
+     * @param count the number of requests to fail
+     * @return this {@link SensorThingsStandInServer}
+     */
+    public SensorThingsStandInServer failCreateObservations(final int skip, final int count) {
+        pendingSuccesses.set(skip);
+        pendingFailures.set(count);
+        return this;
+    }
+
+    /**
+     * Get the number of {@code Observation}s successfully created so far
+     *
+     * @return the number of {@code Observation}s successfully created so far
+     */
+    public long getObservationCount() {
+        return observationCount.get();
+    }
+
+    /**
+     * Get the number of {@code CreateObservations} requests received so far, including the failed ones
+     *
+     * @return the number of {@code CreateObservations} requests received so far
+     */
+    public long getCreateObservationsRequestCount() {
+        return createObservationsRequestCount.get();
+    }
+
+    /**
+     * Get the number of requests received so far
+     *
+     * @return the number of requests received so far
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Get the number of {@code GET} requests received so far on the given entity set
+     *
+     * @param entitySet the entity set from which getting the number of {@code GET} requests
+     * @return the number of {@code GET} requests received so far on the given entity set
+     */
+    public long getQueryCount(final String entitySet) {
+        return queryCounts.get(entitySet).get();
+    }
+
+    /**
+     * Get the entities of the given entity set, as they have been posted
+     *
+     * @param entitySet the entity set from which getting entities
+     * @return the entities of the given entity set
+     */
+    public synchronized List<JsonNode> getEntities(final String entitySet) {
+        return new ArrayList<>(entities.get(entitySet).values());
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            final String resource = exchange.getRequestURI().getPath().substring(BASE_PATH.length());
+            final String method = exchange.getRequestMethod();
+            if (CREATE_OBSERVATIONS.equals(resource) && "POST".equals(method)) {
+                createObservations(exchange);
+            } else if (ENTITY_SETS.contains(resource) && "GET".equals(method)) {
+                list(exchange, resource);
+            } else if (ENTITY_SETS.contains(resource) && "POST".equals(method)) {
+                create(exchange, resource);
+            } else if ("GET".equals(method) && ENTITY_PATTERN.matcher(resource).matches()) {
+                get(exchange, resource);
+            } else {
+                respond(exchange, 404, null);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, null);
+        } catch (final RuntimeException e) {
+            respond(exchange, 500, objectMapper.createObjectNode().put("message", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void createObservations(final HttpExchange exchange) throws IOException {
+        createObservationsRequestCount.incrementAndGet();
+        final JsonNode document = readBody(exchange);
+        if (shouldFail()) {
+            respond(exchange, 500, objectMapper.createObjectNode().put("message", "Injected failure"));
+            return;
+        }
+        final ArrayNode selfLinks = objectMapper.createArrayNode();
+        for (final JsonNode dataArrayValue : document) {
+            for (int i = 0; i < dataArrayValue.path("dataArray").size(); i++) {
+                selfLinks.add(selfLink("Observations", ids.incrementAndGet()));
+            }
+        }
+        observationCount.addAndGet(selfLinks.size());
+        respond(exchange, 201, selfLinks);
+    }
+
+    private boolean shouldFail() {
+        if (pendingSuccesses.getAndUpdate(pending -> Math.max(0, pending - 1)) == 0 && pendingFailures.getAndUpdate(pending -> Math.max(0, pending - 1)) > 0) {
+            return true;
+        }
+        synchronized (random) {
+            return errorRate > 0 && random.nextDouble() < errorRate;
+        }
+    }
+
+    private void list(final HttpExchange exchange, final String entitySet) throws IOException {
+        queryCounts.get(entitySet).incrementAndGet();
+        final Map<String, String> options = parseQuery(exchange.getRequestURI().getRawQuery());
+        final int top = options.containsKey("$top") ? Integer.parseInt(options.get("$top")) : Integer.MAX_VALUE;
+        final int skip = options.containsKey("$skip") ? Integer.parseInt(options.get("$skip")) : 0;
+        final List<ObjectNode> candidates = find(entitySet, options.get("$filter"));
+        final ArrayNode values = objectMapper.createArrayNode();
+        for (final ObjectNode candidate : candidates.subList(Math.min(skip, candidates.size()), (int) Math.min((long) skip + top, candidates.size()))) {
+            values.add(expand(entitySet, candidate, options.get("$expand")));
+        }
+        final ObjectNode response = objectMapper.createObjectNode();
+        if ((long) skip + top < candidates.size()) {
+            options.put("$skip", String.valueOf(skip + top));
+            response.put(IOT_NEXT_LINK, String.format("%s%s?%s", getEndpoint(), entitySet, toQuery(options)));
+        }
+        response.set("value", values);
+        respond(exchange, 200, response);
+    }
+
+    private synchronized List<ObjectNode> find(final String entitySet, final String filter) {
+        final List<ObjectNode> found = new ArrayList<>();
+        for (final ObjectNode candidate : entities.get(entitySet).values()) {
+            if (matches(candidate, filter)) {
+                found.add(candidate);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Expand the given entity with the entities of the given entity set that refer to it
+     */
+    private ObjectNode expand(final String entitySet, final ObjectNode entity, final String expand) {
+        if (expand == null) {
+            return entity;
+        }
+        final Matcher matcher = EXPAND_PATTERN.matcher(expand);
+        if (!matcher.matches() || !ENTITY_SETS.contains(matcher.group("set"))) {
+            throw new IllegalArgumentException("Unsupported expand option: " + expand);
+        }
+        final ObjectNode expanded = entity.deepCopy();
+        final ArrayNode related = expanded.putArray(matcher.group("set"));
+        final String navigationProperty = NAVIGATION_PROPERTIES.get(entitySet);
+        for (final ObjectNode candidate : find(matcher.group("set"), matcher.group("filter"))) {
+            if (candidate.path(navigationProperty).path(IOT_ID).asLong(-1) == entity.path(IOT_ID).asLong()) {
+                related.add(candidate);
+            }
+        }
+        return expanded;
+    }
+
+    private void create(final HttpExchange exchange, final String entitySet) throws IOException {
+        final JsonNode body = readBody(exchange);
+        if (!body.isObject()) {
+            respond(exchange, 400, objectMapper.createObjectNode().put("message", "Expected a JSON object"));
+            return;
+        }
+        final long id = ids.incrementAndGet();
+        final ObjectNode entity = (ObjectNode) body;
+        entity.put(IOT_ID, id);
+        entity.put(IOT_SELF_LINK, selfLink(entitySet, id));
+        synchronized (this) {
+            entities.get(entitySet).put(id, entity);
+        }
+        exchange.getResponseHeaders().set("Location", selfLink(entitySet, id));
+        respond(exchange, 201, null);
+    }
+
+    private void get(final HttpExchange exchange, final String resource) throws IOException {
+        final Matcher matcher = ENTITY_PATTERN.matcher(resource);
+        matcher.matches();
+        final ObjectNode entity;
+        synchronized (this) {
+            final Map<Long, ObjectNode> entitySet = entities.get(matcher.group("set"));
+            entity = entitySet == null ? null : entitySet.get(Long.parseLong(matcher.group("id")));
+        }
+        respond(exchange, entity == null ? 404 : 200, entity);
+    }
+
+    private String selfLink(final String entitySet, final long id) {
+        return String.format("%s%s(%d)", getEndpoint(), entitySet, id);
+    }
+
+    private JsonNode readBody(final HttpExchange exchange) throws IOException {
+        try (final InputStream body = exchange.getRequestBody()) {
+            return objectMapper.readTree(body);
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final JsonNode body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        final byte[] content = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, content.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(content);
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String rawQuery) throws UnsupportedEncodingException {
+        final Map<String, String> options = new HashMap<>();
+        if (rawQuery == null) {
+            return options;
+        }
+        for (final String option : rawQuery.split("&")) {
+            final int separator = option.indexOf('=');
+            if (separator > 0) {
+                options.put(
+                        URLDecoder.decode(option.substring(0, separator), StandardCharsets.UTF_8.name()),
+                        URLDecoder.decode(option.substring(separator + 1), StandardCharsets.UTF_8.name())
+                );
+            }
+        }
+        return options;
+    }
+
+    private static String toQuery(final Map<String, String> options) throws UnsupportedEncodingException {
+        final StringBuilder query = new StringBuilder();
+        for (final Map.Entry<String, String> option : options.entrySet()) {
+            if (query.length() > 0) {
+                query.append('&');
+            }
+            query.append(URLEncoder.encode(option.getKey(), StandardCharsets.UTF_8.name()))
+                    .append('=')
+                    .append(URLEncoder.encode(option.getValue(), StandardCharsets.UTF_8.name()));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Check if the given entity matches the given filter, made of {@code <path> eq <value>} expressions joined by {@code and}
+     */
+    private static boolean matches(final JsonNode entity, final String filter) {
+        if (filter == null) {
+            return true;
+        }
+        for (final String expression : filter.split("\\s+and\\s+")) {
+            final Matcher matcher = FILTER_EXPRESSION_PATTERN.matcher(expression);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Unsupported filter expression: " + expression);
+            }
+            JsonNode node = entity;
+            for (final String segment : matcher.group("path").split("/")) {
+                node = node.path("id".equals(segment) ? IOT_ID : segment);
+            }
+            String value = matcher.group("value");
+            if (value.startsWith("'")) {
+                value = value.substring(1, value.length() - 1).replace("''", "'");
+            }
+            if (!node.isValueNode() || !node.asText().equals(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
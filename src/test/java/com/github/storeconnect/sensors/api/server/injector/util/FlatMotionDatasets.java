@@ -0,0 +1,188 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.FlatMotionObservation;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.Type;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.AppUserIdBuilder;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.model.builder.FlatMotionObservationBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generate reproducible flat-motion datasets, either in memory or as input files
+ *
+ * @author Aurelien Bourdon
+ */
+public final class FlatMotionDatasets {
+
+    private static final long START_DEVICE_DATE = 1512041732159L;
+    private static final int TRACKS_PER_SENSOR = 5;
+    private static final int VENUES = 3;
+
+    /**
+     * Generate in memory the given number of {@link FlatMotionObservation}s
+     *
+     * @param count   the number of {@link FlatMotionObservation}s to generate
+     * @param sensors the number of distinct sensors
+     * @param seed    the random generator seed, so that datasets are reproducible
+     * @return the generated {@link FlatMotionObservation}s
+     */
+    public static List<FlatMotionObservation> generate(final int count, final int sensors, final long seed) {
+        final List<FlatMotionObservation> observations = new ArrayList<>(count);
+        generate(count, sensors, seed, row -> observations.add(FlatMotionObservationBuilder.builder()
+                .appUserId(AppUserIdBuilder.builder()
+                        .sensor(row.sensor)
+                        .sequence(row.sequence)
+                        .id(row.id)
+                        .build())
+                .venueId(row.venueId)
+                .building(row.building)
+                .floor(row.floor)
+                .lat(row.lat)
+                .lon(row.lon)
+                .deviceDate(Instant.ofEpochMilli(row.deviceDate))
+                .type(Type.LOCATION)
+                .build()));
+        return observations;
+    }
+
+    /**
+     * Write the given number of generated flat-motion observations to the given file, as a JSON array following the flat-motion format.
+     * File is gzip compressed if its name ends with <code>.gz</code>
+     *
+     * @param output  the file to write
+     * @param count   the number of flat-motion observations to generate
+     * @param sensors the number of distinct sensors
+     * @param seed    the random generator seed, so that datasets are reproducible
+     * @throws IOException if file cannot be written
+     */
+    public static void write(final File output, final int count, final int sensors, final long seed) throws IOException {
+        try (final OutputStream stream = open(output)) {
+            write(stream, count, sensors, seed, false);
+        }
+    }
+
+    /**
+     * Write the given number of generated flat-motion observations to the given file, one JSON object per line following the flat-motion-ndjson format.
+     * File is gzip compressed if its name ends with <code>.gz</code>
+     *
+     * @param output  the file to write
+     * @param count   the number of flat-motion observations to generate
+     * @param sensors the number of distinct sensors
+     * @param seed    the random generator seed, so that datasets are reproducible
+     * @throws IOException if file cannot be written
+     */
+    public static void writeNdjson(final File output, final int count, final int sensors, final long seed) throws IOException {
+        try (final OutputStream stream = open(output)) {
+            write(stream, count, sensors, seed, true);
+        }
+    }
+
+    /**
+     * Write the given number of generated flat-motion observations to the given {@link OutputStream}, which is left open
+     *
+     * @param output           the {@link OutputStream} to write
+     * @param count            the number of flat-motion observations to generate
+     * @param sensors          the number of distinct sensors
+     * @param seed             the random generator seed, so that datasets are reproducible
+     * @param newlineDelimited if observations have to be written one per line rather than within a JSON array
+     * @throws IOException if observations cannot be written
+     */
+    public static void write(final OutputStream output, final int count, final int sensors, final long seed, final boolean newlineDelimited) throws IOException {
+        try (final JsonGenerator generator = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET).createGenerator(output, JsonEncoding.UTF8)) {
+            if (newlineDelimited) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            generate(count, sensors, seed, row -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeStringField("appuserid", String.format("%s_%s_%d", row.sensor, row.sequence, row.id));
+                    generator.writeNumberField("building", row.building);
+                    generator.writeNumberField("devicedate", row.deviceDate);
+                    generator.writeNumberField("floor", row.floor);
+                    generator.writeNumberField("lat", row.lat);
+                    generator.writeNumberField("lon", row.lon);
+                    generator.writeStringField("type", Type.LOCATION.getValue());
+                    generator.writeStringField("venueid", String.valueOf(row.venueId));
+                    generator.writeEndObject();
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            if (newlineDelimited) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private static OutputStream open(final File output) throws IOException {
+        final OutputStream stream = new BufferedOutputStream(new FileOutputStream(output));
+        return output.getName().endsWith(".gz") ? new GZIPOutputStream(stream) : stream;
+    }
+
+    private static void generate(final int count, final int sensors, final long seed, final Consumer<Row> consumer) {
+        final Random random = new Random(seed);
+        final Row row = new Row();
+        for (int i = 0; i < count; i++) {
+            final int sensor = random.nextInt(sensors);
+            row.sensor = "Cam" + sensor;
+            row.sequence = "T" + random.nextInt(TRACKS_PER_SENSOR);
+            row.id = random.nextInt(100);
+            row.venueId = 95 + sensor % VENUES;
+            row.building = 1;
+            row.floor = sensor % 2;
+            row.lat = 50.633f + random.nextFloat() / 1000;
+            row.lon = 3.024f + random.nextFloat() / 1000;
+            row.deviceDate = START_DEVICE_DATE + i * 50L;
+            consumer.accept(row);
+        }
+    }
+
+    /**
+     * A generated flat-motion observation, before being materialized
+     */
+    private static final class Row {
+        private String sensor;
+        private String sequence;
+        private int id;
+        private int venueId;
+        private int building;
+        private int floor;
+        private float lat;
+        private float lon;
+        private long deviceDate;
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link FollowingInputStream}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("FollowingInputStream")
+public class FollowingInputStreamTest {
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private Path directory;
+    private Path file;
+    private AtomicBoolean stopRequested;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("following");
+        file = directory.resolve("observations.ndjson");
+        stopRequested = new AtomicBoolean();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("A FollowingInputStream must read lines as they are appended, but never a partial line")
+    public void testFollowingAppendedLines() throws IOException {
+        append("first\nsec");
+        try (final FollowingInputStream stream = new FollowingInputStream(file, POLL_INTERVAL_MILLIS, stopRequested::get);
+             final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            assertEquals("first", reader.readLine());
+            append("ond\nthird\n");
+            assertEquals("second", reader.readLine());
+            assertEquals("third", reader.readLine());
+            append("partial");
+            stopRequested.set(true);
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    @DisplayName("A FollowingInputStream must read the rotated file up to its end and then the new file from its beginning")
+    public void testFollowingRotation() throws IOException {
+        append("first\n");
+        try (final FollowingInputStream stream = new FollowingInputStream(file, POLL_INTERVAL_MILLIS, stopRequested::get);
+             final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            assertEquals("first", reader.readLine());
+            append("second");
+            Files.move(file, directory.resolve("observations.ndjson.1"));
+            append("third\n");
+            assertEquals("second", reader.readLine());
+            assertEquals("third", reader.readLine());
+            // Truncation is detected once the file is shorter than what has been read from it
+            Files.write(file, "4th\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+            assertEquals("4th", reader.readLine());
+            stopRequested.set(true);
+            assertNull(reader.readLine());
+            assertEquals(2, stream.getRotationCount());
+        }
+    }
+
+    private void append(final String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+}
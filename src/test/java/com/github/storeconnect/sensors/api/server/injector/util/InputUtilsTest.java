@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import com.github.storeconnect.sensors.api.server.injector.checkpoint.CheckpointJournal;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionDeadLetterFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link InputUtils}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("InputUtils")
+public class InputUtilsTest {
+
+    private Path directory;
+    private File a;
+    private File b;
+    private File c;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("inputs");
+        b = Files.createFile(directory.resolve("store-b.json")).toFile();
+        a = Files.createFile(directory.resolve("store-a.json")).toFile();
+        c = Files.createFile(directory.resolve("other.txt")).toFile();
+        Files.createDirectory(directory.resolve("sub"));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("InputUtils must resolve a file to itself")
+    public void testFileResolution() throws IOException {
+        assertEquals(Collections.singletonList(b), InputUtils.resolve(Collections.singletonList(b.toURI().toURL())));
+    }
+
+    @Test
+    @DisplayName("InputUtils must resolve a directory to its regular files in lexicographical order")
+    public void testDirectoryResolution() throws IOException {
+        assertEquals(Arrays.asList(c, a, b), InputUtils.resolve(Collections.singletonList(directory.toUri().toURL())));
+    }
+
+    @Test
+    @DisplayName("InputUtils must not resolve a directory to its hidden, temporary or checkpoint files")
+    public void testDirectoryResolutionSkipsNonInputs() throws IOException {
+        Files.createFile(directory.resolve(".store-c.json"));
+        Files.createFile(directory.resolve("store-c.json.part"));
+        Files.createFile(directory.resolve(a.getName() + CheckpointJournal.FILE_EXTENSION));
+        assertEquals(Arrays.asList(c, a, b), InputUtils.resolve(Collections.singletonList(directory.toUri().toURL())));
+    }
+
+    @Test
+    @DisplayName("InputUtils must not resolve a directory or a glob pattern to dead-letter files, unless explicitly given")
+    public void testDeadLetterResolution() throws IOException {
+        final File deadLetter = Files.createFile(directory.resolve(a.getName() + FlatMotionDeadLetterFile.FILE_EXTENSION)).toFile();
+        final URL glob = new URL(directory.toUri().toURL(), "store-*");
+        assertAll(
+                () -> assertEquals(Arrays.asList(c, a, b), InputUtils.resolve(Collections.singletonList(directory.toUri().toURL()))),
+                () -> assertEquals(Arrays.asList(a, b), InputUtils.resolve(Collections.singletonList(glob))),
+                () -> assertEquals(Collections.singletonList(deadLetter), InputUtils.resolve(Collections.singletonList(deadLetter.toURI().toURL())))
+        );
+    }
+
+    @Test
+    @DisplayName("InputUtils must resolve a glob pattern to its matching files, without duplicates")
+    public void testGlobResolution() throws IOException {
+        final URL glob = new URL(directory.toUri().toURL(), "store-*.json");
+        assertEquals(Arrays.asList(a, b), InputUtils.resolve(Arrays.asList(glob, a.toURI().toURL())));
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link LingeringPartitioner}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("LingeringPartitioner")
+public class LingeringPartitionerTest {
+
+    private static final int END = -1;
+
+    @Test
+    @DisplayName("A LingeringPartitioner must partition an Iterator into consecutive partitions of a maximum size")
+    public void testSizeTrigger() {
+        try (final LingeringPartitioner<Integer, List<Integer>> partitions = newPartitioner(Arrays.asList(1, 2, 3, 4, 5).iterator(), 2, TimeUnit.MINUTES.toMillis(1))) {
+            assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5)), collect(partitions));
+        }
+    }
+
+    @Test
+    @DisplayName("A LingeringPartitioner must complete a partition once its linger time elapsed, without waiting for it to be full")
+    public void testLingerTrigger() throws InterruptedException {
+        final BlockingQueue<Integer> elements = new ArrayBlockingQueue<>(16);
+        try (final LingeringPartitioner<Integer, List<Integer>> partitions = newPartitioner(blockingIterator(elements), 100, 50)) {
+            elements.put(1);
+            elements.put(2);
+            final long start = System.nanoTime();
+            assertEquals(Arrays.asList(1, 2), partitions.next());
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < TimeUnit.SECONDS.toMillis(5), "Partition took " + elapsedMillis + " ms to complete");
+            elements.put(3);
+            elements.put(END);
+            assertEquals(Collections.singletonList(3), partitions.next());
+            assertFalse(partitions.hasNext());
+            assertThrows(NoSuchElementException.class, partitions::next);
+        }
+    }
+
+    @Test
+    @DisplayName("A LingeringPartitioner must raise the source Iterator's failure once the elements read before it are consumed")
+    public void testFailure() {
+        final Iterator<Integer> failing = new Iterator<Integer>() {
+            private int next = 1;
+
+            @Override
+            public boolean hasNext() {
+                if (next > 2) {
+                    throw new IllegalStateException("Broken source");
+                }
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+        try (final LingeringPartitioner<Integer, List<Integer>> partitions = newPartitioner(failing, 10, TimeUnit.MINUTES.toMillis(1))) {
+            assertEquals(Arrays.asList(1, 2), partitions.next());
+            assertThrows(IllegalStateException.class, partitions::hasNext);
+            assertFalse(partitions.hasNext());
+        }
+    }
+
+    private static LingeringPartitioner<Integer, List<Integer>> newPartitioner(final Iterator<Integer> iterator, final int size, final long lingerMillis) {
+        return new LingeringPartitioner<>(iterator, size, lingerMillis, ArrayList::new, List::add, "lingering-partitioner-test");
+    }
+
+    // Iterator over the given queue's elements, that waits for them until END
+    private static Iterator<Integer> blockingIterator(final BlockingQueue<Integer> elements) {
+        return new Iterator<Integer>() {
+            private Integer next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = elements.take();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return next != END;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Integer current = next;
+                next = null;
+                return current;
+            }
+        };
+    }
+
+    private static <T> List<List<T>> collect(final Iterator<List<T>> partitions) {
+        final List<List<T>> collected = new ArrayList<>();
+        partitions.forEachRemaining(collected::add);
+        return collected;
+    }
+
+}
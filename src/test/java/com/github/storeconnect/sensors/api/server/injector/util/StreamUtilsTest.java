@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link StreamUtils}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("StreamUtils")
+public class StreamUtilsTest {
+
+    @Test
+    @DisplayName("StreamUtils must partition an Iterator into consecutive partitions of a maximum size")
+    public void testPartition() {
+        assertEquals(
+                Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Collections.singletonList(5)),
+                collect(StreamUtils.partition(Arrays.asList(1, 2, 3, 4, 5).iterator(), 2))
+        );
+        assertThrows(IllegalArgumentException.class, () -> StreamUtils.partition(Collections.emptyIterator(), 0));
+    }
+
+    @Test
+    @DisplayName("StreamUtils must partition an Iterator into consecutive partitions of a maximum size, whose elements belong to the same window")
+    public void testWindowedPartition() {
+        assertEquals(
+                Arrays.asList(Arrays.asList(1, 5), Arrays.asList(11, 12, 13), Collections.singletonList(14), Collections.singletonList(30)),
+                collect(StreamUtils.partition(Arrays.asList(1, 5, 11, 12, 13, 14, 30).iterator(), 3, (first, element) -> element - first < 10))
+        );
+        assertEquals(Collections.emptyList(), collect(StreamUtils.partition(Collections.<Integer>emptyIterator(), 3, (first, element) -> true)));
+    }
+
+    private static <T> List<List<T>> collect(final Iterator<List<T>> partitions) {
+        final List<List<T>> collected = new ArrayList<>();
+        partitions.forEachRemaining(collected::add);
+        return collected;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link StringInterner}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("StringInterner")
+public class StringInternerTest {
+
+    @Test
+    @DisplayName("A StringInterner must return the same instance for the same characters")
+    public void testInternReusesInstance() {
+        final StringInterner interner = new StringInterner();
+        final String first = interner.intern("xCam1x".toCharArray(), 1, 4);
+        final String second = interner.intern("Cam1_T3".toCharArray(), 0, 4);
+        assertAll(
+                () -> assertEquals("Cam1", first),
+                () -> assertSame(first, second)
+        );
+    }
+
+    @Test
+    @DisplayName("A StringInterner must return the right value even when slots collide")
+    public void testInternWithCollisions() {
+        final StringInterner interner = new StringInterner(1);
+        assertAll(
+                () -> assertEquals("Cam1", interner.intern("Cam1".toCharArray(), 0, 4)),
+                () -> assertEquals("Cam2", interner.intern("Cam2".toCharArray(), 0, 4)),
+                () -> assertEquals("Cam", interner.intern("Cam1".toCharArray(), 0, 3)),
+                () -> assertEquals("", interner.intern("Cam1".toCharArray(), 0, 0))
+        );
+    }
+
+    @Test
+    @DisplayName("A StringInterner must have a positive capacity")
+    public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new StringInterner(0));
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link TimeWindowedLongSet}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("TimeWindowedLongSet")
+public class TimeWindowedLongSetTest {
+
+    @Test
+    @DisplayName("A TimeWindowedLongSet must only add keys not already contained within the window")
+    public void testAdd() {
+        final TimeWindowedLongSet set = new TimeWindowedLongSet(100);
+        assertTrue(set.add(1, 1000));
+        assertTrue(set.add(2, 1000));
+        assertFalse(set.add(1, 1050));
+        assertTrue(set.add(0, 1060));
+        assertFalse(set.add(0, 1060));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    @DisplayName("A TimeWindowedLongSet must forget keys once out of the window")
+    public void testExpiration() {
+        final TimeWindowedLongSet set = new TimeWindowedLongSet(100);
+        assertTrue(set.add(1, 1000));
+        assertTrue(set.add(2, 1000));
+        assertTrue(set.add(3, 1200));
+        assertEquals(1, set.size());
+        assertTrue(set.add(1, 1200));
+        assertTrue(set.add(2, 1150));
+        assertFalse(set.add(2, 1200));
+    }
+
+    @Test
+    @DisplayName("A TimeWindowedLongSet must keep its memory footprint bounded by the number of keys within the window")
+    public void testBoundedCapacity() {
+        final TimeWindowedLongSet set = new TimeWindowedLongSet(1000);
+        for (long key = 0; key < 1_000_000; key++) {
+            assertTrue(set.add(key, key));
+        }
+        assertEquals(1001, set.size());
+        assertTrue(set.capacity() <= 8192, "Capacity must only depend on the number of keys within the window");
+        for (long key = 999_000; key < 1_000_000; key++) {
+            assertFalse(set.add(key, 1_000_000), "Keys within the window must be remembered after growing");
+        }
+    }
+
+}
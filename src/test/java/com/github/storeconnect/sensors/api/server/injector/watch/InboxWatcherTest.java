@@ -0,0 +1,242 @@
+/**
+ * Copyright 2018 Inria Lille
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.storeconnect.sensors.api.server.injector.watch;
+
+import com.github.storeconnect.sensors.api.server.injector.format.AbstractFormatInjector;
+import com.github.storeconnect.sensors.api.server.injector.format.Format;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectionContext;
+import com.github.storeconnect.sensors.api.server.injector.format.InjectorConfiguration;
+import com.github.storeconnect.sensors.api.server.injector.format.flatmotion.FlatMotionDeadLetterFile;
+import com.github.storeconnect.sensors.api.server.injector.metrics.MetricsRegistry;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.service.SensorThingsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link InboxWatcher}'s unit tests
+ *
+ * @author Aurelien Bourdon
+ */
+@DisplayName("InboxWatcher")
+public class InboxWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private Path inbox;
+    private Path doneDirectory;
+    private Path failedDirectory;
+    private InjectionContext context;
+    private MetricsRegistry metrics;
+    private List<String> injected;
+    private CountDownLatch released;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() throws IOException, URISyntaxException {
+        inbox = Files.createTempDirectory("inbox");
+        doneDirectory = inbox.resolve(InboxWatcher.DEFAULT_DONE_DIRECTORY_NAME);
+        failedDirectory = inbox.resolve(InboxWatcher.DEFAULT_FAILED_DIRECTORY_NAME);
+        metrics = new MetricsRegistry();
+        context = new InjectionContext(new SensorThingsService(new URL("http://localhost/v1.0/")), new InjectorConfiguration(), metrics);
+        injected = new CopyOnWriteArrayList<>();
+        released = new CountDownLatch(1);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        try (final Stream<Path> paths = Files.walk(inbox)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("An InboxWatcher must inject the inputs present at start or dropped while watching, and move them according to their outcome")
+    public void testInjectingDroppedInputs() throws Exception {
+        write(inbox.resolve("present.txt"), "ok");
+        try (final InboxWatcher watcher = newWatcher()) {
+            final Future<?> watching = executor.submit(() -> {
+                watcher.run();
+                return null;
+            });
+            awaitExisting(doneDirectory.resolve("present.txt"));
+            drop("dropped.txt", "ok");
+            drop("broken.txt", "fail");
+            awaitExisting(doneDirectory.resolve("dropped.txt"));
+            awaitExisting(failedDirectory.resolve("broken.txt"));
+            watcher.close();
+            watching.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            assertTrue(watcher.awaitTermination(0, TimeUnit.MILLISECONDS));
+        }
+        assertAll(
+                () -> assertEquals(3, injected.size()),
+                () -> assertEquals(2, metrics.counter(InboxWatcher.DONE_COUNTER).getCount()),
+                () -> assertEquals(1, metrics.counter(InboxWatcher.FAILED_COUNTER).getCount()),
+                () -> assertEquals(3, metrics.timer(InboxWatcher.LATENCY_TIMER).getCount()),
+                () -> assertEquals(3, metrics.timer(InboxWatcher.QUEUE_TIMER).getCount()),
+                () -> assertFalse(Files.exists(inbox.resolve("present.txt")))
+        );
+    }
+
+    @Test
+    @DisplayName("An InboxWatcher must move the side files of an input with it, and ignore temporary files")
+    public void testSideAndTemporaryFiles() throws Exception {
+        write(inbox.resolve("input.txt"), "ok");
+        write(inbox.resolve("input.txt" + FlatMotionDeadLetterFile.FILE_EXTENSION), "");
+        write(inbox.resolve("other.txt.tmp"), "ok");
+        write(inbox.resolve(".other.txt"), "ok");
+        try (final InboxWatcher watcher = newWatcher()) {
+            final Future<?> watching = executor.submit(() -> {
+                watcher.run();
+                return null;
+            });
+            awaitExisting(doneDirectory.resolve("input.txt"));
+            watcher.close();
+            watching.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        assertAll(
+                () -> assertEquals(Collections.singletonList("input.txt"), injected),
+                () -> assertTrue(Files.exists(doneDirectory.resolve("input.txt" + FlatMotionDeadLetterFile.FILE_EXTENSION))),
+                () -> assertTrue(Files.exists(inbox.resolve("other.txt.tmp"))),
+                () -> assertTrue(Files.exists(inbox.resolve(".other.txt")))
+        );
+    }
+
+    @Test
+    @DisplayName("An InboxWatcher must inject an input dropped under the name of an input still being injected, once its predecessor is done")
+    public void testReplacedInput() throws Exception {
+        try (final InboxWatcher watcher = newWatcher()) {
+            final Future<?> watching = executor.submit(() -> {
+                watcher.run();
+                return null;
+            });
+            drop("input.txt", "wait");
+            final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (injected.isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for injection to start");
+                Thread.sleep(20);
+            }
+            drop("input.txt", "ok");
+            released.countDown();
+            awaitExisting(doneDirectory.resolve("input.txt"));
+            watcher.close();
+            watching.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        assertAll(
+                () -> assertEquals(Arrays.asList("input.txt", "input.txt"), injected, "An InboxWatcher must inject the replacing input"),
+                () -> assertEquals(Collections.singletonList("ok"), Files.readAllLines(doneDirectory.resolve("input.txt"), StandardCharsets.UTF_8)),
+                () -> assertEquals(2, metrics.counter(InboxWatcher.DONE_COUNTER).getCount()),
+                () -> assertFalse(Files.exists(inbox.resolve("input.txt")))
+        );
+    }
+
+    private InboxWatcher newWatcher() {
+        return new InboxWatcher(inbox, doneDirectory, failedDirectory, input -> new LineInjector(input, context), 2, metrics);
+    }
+
+    private void drop(final String name, final String content) throws IOException {
+        final Path temporary = inbox.resolve(name + ".part");
+        write(temporary, content);
+        Files.move(temporary, inbox.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(final Path path, final String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitExisting(final Path path) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!Files.exists(path)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + path);
+            Thread.sleep(20);
+        }
+    }
+
+    private static final class Line implements Format {
+        private final String content;
+
+        private Line(final String content) {
+            this.content = content;
+        }
+    }
+
+    /**
+     * Injector failing on inputs containing a "fail" line, and waiting for being released on inputs containing a "wait" line
+     */
+    private final class LineInjector extends AbstractFormatInjector<Line> {
+
+        private LineInjector(final File input, final InjectionContext context) {
+            super(input, context);
+        }
+
+        @Override
+        public void initEnvironment() {
+        }
+
+        @Override
+        public Stream<Line> parse(final File input) throws IOException {
+            return Files.lines(input.toPath()).map(Line::new);
+        }
+
+        @Override
+        public void inject(final Stream<Line> data) throws ServiceFailureException {
+            injected.add(getInput().getName());
+            final List<String> lines = data.map(line -> line.content).collect(Collectors.toList());
+            if (lines.contains("wait")) {
+                try {
+                    released.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (lines.contains("fail")) {
+                throw new ServiceFailureException("Unable to inject " + getInput());
+            }
+        }
+    }
+
+}